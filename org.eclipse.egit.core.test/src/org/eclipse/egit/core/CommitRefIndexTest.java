@@ -0,0 +1,76 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CommitRefIndexTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Repository repository;
+
+	private TestRepository<Repository> util;
+
+	@Before
+	public void setUp() throws Exception {
+		repository = FileRepositoryBuilder.create(new File(folder.getRoot(),
+				".git"));
+		repository.create();
+		util = new TestRepository<Repository>(repository);
+	}
+
+	@After
+	public void tearDown() {
+		util.getRevWalk().close();
+		repository.close();
+	}
+
+	@Test
+	public void testPrecedence() throws Exception {
+		RevCommit initial = util.commit().create();
+		RevCommit tagged = util.commit().parent(initial).create();
+		RevCommit local = util.commit().parent(tagged).create();
+		RevCommit remote = util.commit().parent(local).create();
+		RevCommit unnamed = util.commit().parent(remote).create();
+
+		util.update("refs/remotes/origin/a", tagged);
+		util.update("refs/heads/a", tagged);
+		util.update("refs/tags/v1", tagged);
+		util.tick(60);
+		util.update("refs/tags/v0", util.tag("v0", tagged));
+		util.update("refs/remotes/origin/b", local);
+		util.update("refs/heads/a", local);
+		util.update("refs/heads/b", local);
+		util.update("refs/remotes/origin/a", remote);
+		util.update("refs/remotes/origin/b", remote);
+
+		CommitRefIndex index = CommitRefIndex.build(repository);
+
+		// the annotated tag is newer than the commit
+		assertEquals("refs/tags/v0", index.get(tagged));
+		assertEquals("refs/heads/b", index.get(local));
+		assertEquals("refs/remotes/origin/b", index.get(remote));
+		assertNull(index.get(unnamed));
+	}
+}
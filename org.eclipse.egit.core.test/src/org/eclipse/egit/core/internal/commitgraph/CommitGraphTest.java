@@ -0,0 +1,241 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.commitgraph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CommitGraphTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Repository repository;
+
+	private TestRepository<Repository> util;
+
+	private RevCommit initial;
+
+	private RevCommit c1;
+
+	private RevCommit side;
+
+	private RevCommit master;
+
+	@Before
+	public void setUp() throws Exception {
+		repository = FileRepositoryBuilder.create(new File(folder.getRoot(),
+				".git"));
+		repository.create();
+		util = new TestRepository<Repository>(repository);
+		initial = util.commit().message("initial").create();
+		c1 = util.commit().parent(initial).message("c1").create();
+		side = util.commit().parent(c1).message("side").create();
+		master = util.commit().parent(c1).message("master").create();
+		util.branch("refs/heads/side").update(side);
+		util.branch("refs/heads/master").update(master);
+	}
+
+	@After
+	public void tearDown() {
+		util.getRevWalk().close();
+		repository.close();
+	}
+
+	@Test
+	public void testBuild() throws Exception {
+		CommitGraph graph = build(null, "first.graph");
+
+		assertEquals(4, graph.getCommitCount());
+		assertEquals(1, graph.getGeneration(graph.find(initial)));
+		assertEquals(2, graph.getGeneration(graph.find(c1)));
+		assertEquals(3, graph.getGeneration(graph.find(side)));
+		assertEquals(3, graph.getGeneration(graph.find(master)));
+
+		int position = graph.find(side);
+		assertEquals(side, graph.getId(position));
+		assertEquals(side.getTree(), graph.getTreeId(position));
+		assertEquals(side.getCommitTime(), graph.getCommitTime(position));
+		assertEquals(1, graph.getParentCount(position));
+		assertEquals(c1, graph.getId(graph.getParent(position, 0)));
+		assertEquals(0, graph.getParentCount(graph.find(initial)));
+		assertEquals(-1, graph.find(initial.getTree()));
+	}
+
+	@Test
+	public void testAncestry() throws Exception {
+		CommitGraph graph = build(null, "first.graph");
+
+		assertTrue(graph.isAncestor(graph.find(initial), graph.find(side)));
+		assertTrue(graph.isAncestor(graph.find(side), graph.find(side)));
+		assertFalse(graph.isAncestor(graph.find(side), graph.find(master)));
+		assertFalse(graph.isAncestor(graph.find(side), graph.find(c1)));
+		assertEquals(c1, graph.getId(graph.getMergeBase(graph.find(side),
+				graph.find(master))));
+		assertEquals(c1, graph.getId(graph.getMergeBase(graph.find(c1),
+				graph.find(master))));
+	}
+
+	@Test
+	public void testExtend() throws Exception {
+		CommitGraph first = build(null, "first.graph");
+		RevCommit merge = util.commit().parent(master).parent(side)
+				.message("merge").create();
+		util.branch("refs/heads/master").update(merge);
+
+		CommitGraph graph = build(first, "second.graph");
+
+		assertEquals(5, graph.getCommitCount());
+		int position = graph.find(merge);
+		assertEquals(4, graph.getGeneration(position));
+		assertEquals(2, graph.getParentCount(position));
+		assertEquals(master, graph.getId(graph.getParent(position, 0)));
+		assertEquals(side, graph.getId(graph.getParent(position, 1)));
+		assertEquals(c1, graph.getId(graph.getParent(graph.find(side), 0)));
+		assertTrue(graph.isAncestor(graph.find(side), position));
+		assertEquals(side, graph.getId(graph.getMergeBase(graph.find(side),
+				position)));
+	}
+
+	@Test
+	public void testChangedPathFilter() throws Exception {
+		RevCommit change = util.commit().parent(master)
+				.add("folder/file.txt", "content").create();
+		RevCommit empty = util.commit().parent(change).create();
+		util.branch("refs/heads/master").update(empty);
+
+		CommitGraph graph = build(null, "first.graph");
+
+		int position = graph.find(change);
+		assertTrue(graph.mayHaveChanged(position,
+				new ChangedPathFilter.Key("folder/file.txt")));
+		assertTrue(graph.mayHaveChanged(position,
+				new ChangedPathFilter.Key("folder")));
+		assertFalse(graph.mayHaveChanged(graph.find(empty),
+				new ChangedPathFilter.Key("folder")));
+	}
+
+	@Test
+	public void testPathHistory() throws Exception {
+		RevCommit a1 = util.commit().parent(master).add("a/file.txt", "1")
+				.create();
+		RevCommit b1 = util.commit().parent(a1).add("b.txt", "1").create();
+		RevCommit a2 = util.commit().parent(master).add("a/file.txt", "2")
+				.create();
+		RevCommit merge = util.commit().parent(b1).parent(a2)
+				.add("a/file.txt", "3").create();
+		RevCommit b2 = util.commit().parent(merge).add("b.txt", "2").create();
+		util.branch("refs/heads/master").update(b2);
+
+		CommitGraph graph = build(null, "first.graph");
+
+		for (String path : new String[] { "a", "a/file.txt", "b.txt",
+				"missing" })
+			assertEquals(path, walkPath(path), getPathHistory(graph, path));
+	}
+
+	@Test
+	public void testReachability() throws Exception {
+		util.update("refs/tags/v0", initial);
+		util.update("refs/tags/v1", util.tag("v1", c1));
+		CommitGraph graph = build(null, "first.graph");
+		ReachabilityIndex index = new ReachabilityIndex(graph, repository);
+
+		assertTrue(index.canFindTags(side));
+		List<Ref> refs = new ArrayList<Ref>();
+		refs.add(repository.getRef("refs/heads/side"));
+		refs.add(repository.getRef("refs/heads/master"));
+		try (RevWalk walk = new RevWalk(repository)) {
+			assertEquals(refs, index.findRefsContaining(walk,
+					walk.parseCommit(c1), refs));
+			assertEquals(refs.subList(0, 1), index.findRefsContaining(walk,
+					walk.parseCommit(side), refs));
+		}
+
+		assertEquals("refs/tags/v1", index.findNearestTag(side, false)
+				.getName());
+		assertEquals("refs/tags/v0", index.findNearestTag(c1, false)
+				.getName());
+		assertEquals("refs/tags/v1", index.findNearestTag(initial, true)
+				.getName());
+		assertNull(index.findNearestTag(initial, false));
+		assertNull(index.findNearestTag(master, true));
+	}
+
+	private List<String> walkPath(String path) throws Exception {
+		List<String> result = new ArrayList<String>();
+		try (RevWalk walk = new RevWalk(repository)) {
+			walk.setTreeFilter(AndTreeFilter.create(
+					PathFilter.create(path), TreeFilter.ANY_DIFF));
+			walk.markStart(walk.parseCommit(side));
+			walk.markStart(walk.parseCommit(repository
+					.resolve("refs/heads/master")));
+			for (RevCommit commit : walk) {
+				StringBuilder entry = new StringBuilder(commit.name());
+				for (RevCommit parent : commit.getParents())
+					entry.append(' ').append(parent.name());
+				result.add(entry.toString());
+			}
+		}
+		return result;
+	}
+
+	private List<String> getPathHistory(CommitGraph graph, String path)
+			throws Exception {
+		List<String> result = new ArrayList<String>();
+		int[] starts = { graph.find(side),
+				graph.find(repository.resolve("refs/heads/master")) };
+		try (ObjectReader reader = repository.newObjectReader()) {
+			for (PathHistory.Entry commit : new PathHistory(graph, reader,
+					path).compute(starts, new NullProgressMonitor())) {
+				StringBuilder entry = new StringBuilder(graph.getId(
+						commit.getPosition()).name());
+				for (int parent : commit.getParents())
+					entry.append(' ').append(graph.getId(parent).name());
+				result.add(entry.toString());
+			}
+		}
+		return result;
+	}
+
+	private CommitGraph build(CommitGraph base, String name)
+			throws Exception {
+		CommitGraphBuilder builder = new CommitGraphBuilder(repository, base);
+		builder.collect(new NullProgressMonitor());
+		File file = new File(folder.getRoot(), name);
+		builder.write(file);
+		CommitGraph graph = CommitGraph.open(file);
+		assertNotNull(graph);
+		return graph;
+	}
+}
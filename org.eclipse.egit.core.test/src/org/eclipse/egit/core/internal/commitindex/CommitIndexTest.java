@@ -0,0 +1,116 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.commitindex;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.BitSet;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CommitIndexTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Repository repository;
+
+	private TestRepository<Repository> util;
+
+	private RevCommit initial;
+
+	private RevCommit fix;
+
+	@Before
+	public void setUp() throws Exception {
+		repository = FileRepositoryBuilder.create(new File(folder.getRoot(),
+				".git"));
+		repository.create();
+		util = new TestRepository<Repository>(repository);
+		initial = util.commit().message("Initial import").create();
+		fix = util.commit().parent(initial)
+				.author(new PersonIdent("Jane Doe", "jane@example.org"))
+				.message("Fix NPE in parser\n\nBug: 4711").create();
+		util.branch("refs/heads/master").update(fix);
+	}
+
+	@After
+	public void tearDown() {
+		util.getRevWalk().close();
+		repository.close();
+	}
+
+	@Test
+	public void testFindCandidates() throws Exception {
+		CommitIndex index = build(null, "first.idx");
+
+		assertEquals(2, index.getCommitCount());
+		int initialOrdinal = index.find(initial);
+		int fixOrdinal = index.find(fix);
+		assertTrue(initialOrdinal >= 0);
+		assertTrue(fixOrdinal >= 0);
+
+		assertCandidates(index, "npe", fixOrdinal);
+		assertCandidates(index, "ars", fixOrdinal);
+		assertCandidates(index, "Bug: 4711", fixOrdinal);
+		assertCandidates(index, "jane@example", fixOrdinal);
+		assertCandidates(index, "import", initialOrdinal);
+		assertCandidates(index, fix.name().substring(3, 12), fixOrdinal);
+		assertCandidates(index, "missing");
+		assertNull(index.findCandidates("a"));
+		assertNull(index.findCandidates("--"));
+	}
+
+	@Test
+	public void testExtend() throws Exception {
+		CommitIndex first = build(null, "first.idx");
+		RevCommit next = util.commit().parent(fix)
+				.message("Fix another parser bug").create();
+		util.branch("refs/heads/master").update(next);
+
+		CommitIndex index = build(first, "second.idx");
+
+		assertEquals(3, index.getCommitCount());
+		assertEquals(first.find(fix), index.find(fix));
+		assertCandidates(index, "parser", index.find(fix), index.find(next));
+		assertCandidates(index, "another", index.find(next));
+	}
+
+	private static void assertCandidates(CommitIndex index, String text,
+			int... ordinals) {
+		BitSet expected = new BitSet();
+		for (int ordinal : ordinals)
+			expected.set(ordinal);
+		assertEquals(text, expected, index.findCandidates(text));
+	}
+
+	private CommitIndex build(CommitIndex base, String name) throws Exception {
+		CommitIndexBuilder builder = new CommitIndexBuilder(repository, base);
+		builder.collect(new NullProgressMonitor());
+		File file = new File(folder.getRoot(), name);
+		builder.write(file);
+		CommitIndex index = CommitIndex.open(file);
+		assertNotNull(index);
+		return index;
+	}
+}
@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.indexdiff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class IndexDiffCostModelTest {
+
+	@Test
+	public void testDefaultLimit() {
+		IndexDiffCostModel model = new IndexDiffCostModel();
+		assertEquals(IndexDiffCostModel.DEFAULT_LIMIT, model.getLimit());
+		model.recordFull(1000);
+		assertEquals(IndexDiffCostModel.DEFAULT_LIMIT, model.getLimit());
+		assertFalse(model.shouldReload(IndexDiffCostModel.DEFAULT_LIMIT));
+		assertTrue(model.shouldReload(IndexDiffCostModel.DEFAULT_LIMIT + 1));
+	}
+
+	@Test
+	public void testLargeRepository() {
+		IndexDiffCostModel model = new IndexDiffCostModel();
+		// full walk 30 s, 1 ms per file
+		model.recordFull(30000);
+		model.recordIncremental(100, 100);
+		assertEquals(30000, model.getLimit());
+		assertFalse(model.shouldReload(1500));
+	}
+
+	@Test
+	public void testSmallRepository() {
+		IndexDiffCostModel model = new IndexDiffCostModel();
+		model.recordFull(50);
+		model.recordIncremental(20, 100);
+		assertEquals(IndexDiffCostModel.MIN_LIMIT, model.getLimit());
+		assertTrue(model.shouldReload(IndexDiffCostModel.MIN_LIMIT + 1));
+	}
+
+	@Test
+	public void testSmallUpdatesIgnored() {
+		IndexDiffCostModel model = new IndexDiffCostModel();
+		model.recordFull(30000);
+		model.recordIncremental(1, 1000);
+		assertEquals(IndexDiffCostModel.DEFAULT_LIMIT, model.getLimit());
+	}
+
+	@Test
+	public void testMovingAverage() {
+		IndexDiffCostModel model = new IndexDiffCostModel();
+		model.recordIncremental(100, 100);
+		model.recordFull(10000);
+		model.recordFull(20000);
+		// 10000 + 0.3 * 10000
+		assertEquals(13000, model.getLimit());
+	}
+}
@@ -16,9 +16,11 @@
 import static org.junit.Assert.assertTrue;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
+import org.eclipse.egit.core.internal.indexdiff.IndexDiffData.Kind;
 import org.eclipse.egit.core.test.GitTestCase;
 import org.junit.Test;
 
@@ -85,4 +87,45 @@ public void testMergeIgnored() {
 		result = mergeIgnored(oldIgnoredPaths, changedPaths, newIgnoredPaths);
 		assertEquals(expected, result);
 	}
+
+	@Test
+	public void testHasEntryUnder() {
+		Set<String> modified = new HashSet<String>(
+				asList("a/b/c.txt", "a/d.txt", "e.txt"));
+		Set<String> untracked = new HashSet<String>(asList("f/g.txt"));
+		IndexDiffData data = createData(modified, untracked,
+				Collections.<String> emptySet());
+
+		assertTrue(data.hasEntryUnder("a/", Kind.MODIFIED));
+		assertTrue(data.hasEntryUnder("a/b/", Kind.MODIFIED));
+		assertFalse(data.hasEntryUnder("a/c/", Kind.MODIFIED));
+		assertFalse(data.hasEntryUnder("b/", Kind.MODIFIED));
+		assertFalse(data.hasEntryUnder("f/", Kind.MODIFIED));
+		assertTrue(data.hasEntryUnder("f/", Kind.MODIFIED, Kind.UNTRACKED));
+		assertTrue(data.hasEntryUnder("/", Kind.UNTRACKED));
+		assertTrue(data.hasEntryUnder("", Kind.MODIFIED));
+		assertFalse(data.hasEntryUnder("/", Kind.CONFLICTING));
+	}
+
+	@Test
+	public void testHasParentEntry() {
+		Set<String> ignored = new HashSet<String>(asList("bin", "a/target/"));
+		IndexDiffData data = createData(Collections.<String> emptySet(),
+				Collections.<String> emptySet(), ignored);
+
+		assertTrue(data.hasParentEntry("bin/x.class", Kind.IGNORED));
+		assertTrue(data.hasParentEntry("bin/", Kind.IGNORED));
+		assertFalse(data.hasParentEntry("bin", Kind.IGNORED));
+		assertFalse(data.hasParentEntry("binary/x", Kind.IGNORED));
+		assertTrue(data.hasParentEntry("a/target/classes/", Kind.IGNORED));
+		assertFalse(data.hasParentEntry("a/src/", Kind.IGNORED));
+		assertFalse(data.hasParentEntry("bin/x.class", Kind.UNTRACKED));
+	}
+
+	private static IndexDiffData createData(Set<String> modified,
+			Set<String> untracked, Set<String> ignored) {
+		Set<String> empty = Collections.emptySet();
+		return new IndexDiffData(empty, empty, empty, empty, empty, modified,
+				untracked, empty, empty, ignored, empty, empty);
+	}
 }
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.indexdiff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class IndexDiffSchedulerTest {
+
+	private static final long TIMEOUT = 10000;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final IndexDiffScheduler scheduler = new IndexDiffScheduler(1);
+
+	private Repository a;
+
+	private Repository b;
+
+	private Repository c;
+
+	@Before
+	public void setUp() throws Exception {
+		a = createRepository("a");
+		b = createRepository("b");
+		c = createRepository("c");
+	}
+
+	@After
+	public void tearDown() {
+		a.close();
+		b.close();
+		c.close();
+	}
+
+	@Test
+	public void testWaitsForRelease() throws Exception {
+		assertTrue(scheduler.acquire(a, new NullProgressMonitor()));
+		Acquirer waiting = startWaiting(b, new NullProgressMonitor());
+
+		scheduler.release();
+
+		waiting.join(TIMEOUT);
+		assertEquals(Boolean.TRUE, waiting.acquired);
+	}
+
+	@Test
+	public void testVisibleRepositoryFirst() throws Exception {
+		assertTrue(scheduler.acquire(a, new NullProgressMonitor()));
+		Acquirer first = startWaiting(b, new NullProgressMonitor());
+		Acquirer visible = startWaiting(c, new NullProgressMonitor());
+		scheduler.addVisibleRepository(c);
+		assertTrue(scheduler.isVisible(c));
+
+		scheduler.release();
+
+		visible.join(TIMEOUT);
+		assertEquals(Boolean.TRUE, visible.acquired);
+		awaitWaiting(first);
+
+		scheduler.release();
+
+		first.join(TIMEOUT);
+		assertEquals(Boolean.TRUE, first.acquired);
+		scheduler.removeVisibleRepository(c);
+		assertFalse(scheduler.isVisible(c));
+	}
+
+	@Test
+	public void testCancelWhileWaiting() throws Exception {
+		assertTrue(scheduler.acquire(a, new NullProgressMonitor()));
+		IProgressMonitor monitor = new NullProgressMonitor();
+		Acquirer waiting = startWaiting(b, monitor);
+
+		monitor.setCanceled(true);
+		scheduler.wakeUp();
+
+		waiting.join(TIMEOUT);
+		assertEquals(Boolean.FALSE, waiting.acquired);
+	}
+
+	private Repository createRepository(String name) throws Exception {
+		Repository repository = FileRepositoryBuilder.create(new File(
+				folder.newFolder(name), ".git"));
+		repository.create();
+		return repository;
+	}
+
+	private Acquirer startWaiting(Repository repository,
+			IProgressMonitor monitor) throws Exception {
+		Acquirer acquirer = new Acquirer(repository, monitor);
+		acquirer.start();
+		awaitWaiting(acquirer);
+		return acquirer;
+	}
+
+	private static void awaitWaiting(Thread thread) throws Exception {
+		long end = System.currentTimeMillis() + TIMEOUT;
+		while (thread.getState() != Thread.State.WAITING
+				&& System.currentTimeMillis() < end)
+			Thread.sleep(10);
+		assertEquals(Thread.State.WAITING, thread.getState());
+	}
+
+	private class Acquirer extends Thread {
+
+		private final Repository repository;
+
+		private final IProgressMonitor monitor;
+
+		volatile Boolean acquired;
+
+		Acquirer(Repository repository, IProgressMonitor monitor) {
+			this.repository = repository;
+			this.monitor = monitor;
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			try {
+				acquired = Boolean.valueOf(scheduler.acquire(repository,
+						monitor));
+			} catch (InterruptedException e) {
+				// leaves acquired unset
+			}
+		}
+	}
+}
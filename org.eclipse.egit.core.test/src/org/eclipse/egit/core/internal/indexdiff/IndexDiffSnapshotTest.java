@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.indexdiff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Collection;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.egit.core.IteratorService;
+import org.eclipse.egit.core.test.GitTestCase;
+import org.eclipse.egit.core.test.TestRepository;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.IndexDiff;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class IndexDiffSnapshotTest extends GitTestCase {
+
+	private TestRepository testRepository;
+
+	private Repository repository;
+
+	private File snapshotFile;
+
+	@Override
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		testRepository = new TestRepository(gitDir);
+		repository = testRepository.getRepository();
+		snapshotFile = new File(gitDir.getParentFile(), "test.snapshot");
+	}
+
+	@Override
+	@After
+	public void tearDown() throws Exception {
+		testRepository.dispose();
+		repository = null;
+		snapshotFile.delete();
+		super.tearDown();
+	}
+
+	@Test
+	public void testWriteAndRead() throws Exception {
+		File tracked = testRepository.createFile(project.project, "a.txt");
+		testRepository.track(tracked);
+		testRepository.createFile(project.project, "b.txt");
+
+		IndexDiffData data = calcIndexDiffData();
+		IndexDiffSnapshot.capture(repository).withData(data)
+				.write(snapshotFile, repository.getDirectory());
+
+		IndexDiffSnapshot restored = IndexDiffSnapshot.read(snapshotFile,
+				repository.getDirectory());
+		assertNotNull(restored);
+		assertTrue(restored.isValidFor(repository));
+		IndexDiffData restoredData = restored.getData();
+		assertNotNull(restoredData);
+		assertEquals(data.getAdded(), restoredData.getAdded());
+		assertEquals(data.getUntracked(), restoredData.getUntracked());
+		assertEquals(data.getUntrackedFolders(),
+				restoredData.getUntrackedFolders());
+		assertEquals(data.getIgnoredNotInIndex(),
+				restoredData.getIgnoredNotInIndex());
+
+		// snapshots of other repositories are not used
+		assertNull(IndexDiffSnapshot.read(snapshotFile,
+				new File(gitDir.getParentFile(), "other")));
+	}
+
+	@Test
+	public void testInvalidatedByIndexChange() throws Exception {
+		File file = testRepository.createFile(project.project, "a.txt");
+		IndexDiffSnapshot snapshot = IndexDiffSnapshot.capture(repository)
+				.withData(calcIndexDiffData());
+		testRepository.track(file);
+		assertFalse(snapshot.isValidFor(repository));
+	}
+
+	@Test
+	public void testCollectChangedPaths() throws Exception {
+		File file = testRepository.createFile(project.project, "a.txt");
+		testRepository.track(file);
+		IndexDiffSnapshot snapshot = IndexDiffSnapshot.capture(repository)
+				.withData(calcIndexDiffData());
+		testRepository.appendFileContent(file, "changed");
+
+		Collection<String> changed = snapshot.collectChangedPaths(repository,
+				new NullProgressMonitor());
+		assertNotNull(changed);
+		assertTrue(changed.contains(testRepository.getRepoRelativePath(file
+				.getAbsolutePath())));
+	}
+
+	@Test
+	public void testCollectChangedPathsBySize() throws Exception {
+		File file = testRepository.createFile(project.project, "a.txt");
+		testRepository.appendFileContent(file, "content");
+		long lastModified = System.currentTimeMillis() - 60 * 60 * 1000;
+		assertTrue(file.setLastModified(lastModified));
+		testRepository.track(file);
+		IndexDiffSnapshot snapshot = IndexDiffSnapshot.capture(repository)
+				.withData(calcIndexDiffData());
+		String path = testRepository.getRepoRelativePath(file
+				.getAbsolutePath());
+
+		Collection<String> changed = snapshot.collectChangedPaths(repository,
+				new NullProgressMonitor());
+		assertNotNull(changed);
+		assertFalse(changed.contains(path));
+
+		// a change restoring the modification time is found by the size
+		testRepository.appendFileContent(file, "longer content");
+		assertTrue(file.setLastModified(lastModified));
+		changed = snapshot.collectChangedPaths(repository,
+				new NullProgressMonitor());
+		assertNotNull(changed);
+		assertTrue(changed.contains(path));
+	}
+
+	private IndexDiffData calcIndexDiffData() throws Exception {
+		IndexDiff indexDiff = new IndexDiff(repository, Constants.HEAD,
+				IteratorService.createInitialIterator(repository));
+		indexDiff.diff();
+		return new IndexDiffData(indexDiff);
+	}
+}
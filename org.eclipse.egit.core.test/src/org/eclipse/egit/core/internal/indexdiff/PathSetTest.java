@@ -0,0 +1,82 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.indexdiff;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class PathSetTest {
+
+	@Test
+	public void testUpdate() {
+		PathSet base = PathSet.copyOf(asList("a", "b/c", "b/d"));
+		PathSet updated = base.update(asList("e", "a"), asList("b/c", "x"));
+
+		assertEquals(new HashSet<String>(asList("a", "b/c", "b/d")), base);
+		assertEquals(new HashSet<String>(asList("a", "b/d", "e")), updated);
+		assertEquals(3, updated.size());
+		assertTrue(updated.contains("e"));
+		assertFalse(updated.contains("b/c"));
+
+		PathSet reverted = updated.update(asList("b/c"), asList("e"));
+		assertEquals(base, reverted);
+	}
+
+	@Test
+	public void testUpdateWithoutChanges() {
+		PathSet base = PathSet.copyOf(asList("a", "b"));
+		assertSame(base, base.update(asList("a"), asList("c")));
+	}
+
+	@Test
+	public void testCompaction() {
+		Set<String> expected = new HashSet<String>();
+		PathSet set = PathSet.EMPTY;
+		for (int i = 0; i < 1000; i++) {
+			String path = "dir" + (i % 10) + "/file" + i;
+			set = set.update(Collections.singleton(path),
+					Collections.<String> emptySet());
+			expected.add(path);
+			if (i % 3 == 0) {
+				set = set.update(Collections.<String> emptySet(),
+						Collections.singleton(path));
+				expected.remove(path);
+			}
+		}
+		assertEquals(expected, set);
+		assertEquals(expected.size(), set.size());
+	}
+
+	@Test
+	public void testPrefixQueries() {
+		PathSet set = PathSet.copyOf(asList("a/b/c", "a/d", "ab", "e"))
+				.update(asList("f/g"), asList("a/d"));
+
+		assertTrue(set.hasPrefix("a/"));
+		assertTrue(set.hasPrefix("a/b/"));
+		assertTrue(set.hasPrefix("f/"));
+		assertFalse(set.hasPrefix("g/"));
+		assertFalse(set.hasPrefix("a/d"));
+
+		List<String> matches = new ArrayList<String>(set.withPrefix("a"));
+		Collections.sort(matches);
+		assertEquals(asList("a/b/c", "ab"), matches);
+	}
+}
@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.indexdiff;
+
+import static org.eclipse.jgit.junit.JGitTestUtil.write;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.egit.core.internal.indexdiff.IndexDiffData.Kind;
+import org.eclipse.egit.core.test.GitTestCase;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.IndexDiff;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.FileTreeIterator;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.util.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ShardedIndexDiffTest extends GitTestCase {
+
+	private Repository repository;
+
+	private File workTree;
+
+	@Override
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		workTree = testUtils.createTempDir("ShardedIndexDiffTest");
+		repository = Git.init().setDirectory(workTree).call().getRepository();
+		try (Git git = new Git(repository)) {
+			for (String folder : Arrays.asList("a", "b", "c", "d")) {
+				for (int i = 0; i < 3; i++)
+					write(new File(workTree, folder + "/sub/file" + i
+							+ ".txt"), "content " + i);
+			}
+			write(new File(workTree, "top.txt"), "top");
+			git.add().addFilepattern(".").call();
+			git.commit().setMessage("initial commit").call();
+
+			// changes in several top-level folders
+			write(new File(workTree, "a/sub/file0.txt"), "modified");
+			write(new File(workTree, "b/sub/added.txt"), "added");
+			git.add().addFilepattern("b/sub/added.txt").call();
+			write(new File(workTree, "b/sub/file1.txt"), "changed");
+			git.add().addFilepattern("b/sub/file1.txt").call();
+			FileUtils.delete(new File(workTree, "c/sub/file2.txt"));
+			git.rm().addFilepattern("d/sub/file0.txt").call();
+			write(new File(workTree, "d/untracked.txt"), "untracked");
+			write(new File(workTree, "e/new/untracked.txt"), "untracked");
+			write(new File(workTree, ".gitignore"), "*.log\n");
+			write(new File(workTree, "a/ignored.log"), "ignored");
+		}
+	}
+
+	@Override
+	@After
+	public void tearDown() throws Exception {
+		repository.close();
+		testUtils.deleteTempDirs();
+		super.tearDown();
+	}
+
+	@Test
+	public void testShardedDiffEqualsPlainDiff() throws Exception {
+		IndexDiff plain = new IndexDiff(repository, Constants.HEAD,
+				new FileTreeIterator(repository));
+		plain.diff();
+		IndexDiffData expected = new IndexDiffData(plain);
+
+		IndexDiffData sharded = new ShardedIndexDiff(repository, 0, 3)
+				.calculate(new NullProgressMonitor(), "test");
+
+		assertNotNull(sharded);
+		assertFalse(expected.getModified().isEmpty());
+		assertFalse(expected.getUntrackedFolders().isEmpty());
+		assertSamePaths(expected, sharded);
+	}
+
+	@Test
+	public void testMergeShards() throws Exception {
+		IndexDiff plain = new IndexDiff(repository, Constants.HEAD,
+				new FileTreeIterator(repository));
+		plain.diff();
+		List<IndexDiff> shards = new ArrayList<IndexDiff>();
+		for (List<String> paths : Arrays.asList(Arrays.asList("a", "e"),
+				Arrays.asList("b", "top.txt", ".gitignore"),
+				Arrays.asList("c", "d"))) {
+			IndexDiff shard = new IndexDiff(repository, Constants.HEAD,
+					new FileTreeIterator(repository));
+			shard.setFilter(PathFilterGroup.createFromStrings(paths));
+			shard.diff();
+			shards.add(shard);
+		}
+
+		assertSamePaths(new IndexDiffData(plain), new IndexDiffData(shards));
+	}
+
+	@Test
+	public void testSmallRepositoryNotSharded() throws Exception {
+		assertNull(new ShardedIndexDiff(repository).calculate(
+				new NullProgressMonitor(), "test"));
+	}
+
+	private static void assertSamePaths(IndexDiffData expected,
+			IndexDiffData actual) {
+		for (Kind kind : Kind.values())
+			assertEquals(kind.name(),
+					new HashSet<String>(expected.getPaths(kind)),
+					new HashSet<String>(actual.getPaths(kind)));
+	}
+}
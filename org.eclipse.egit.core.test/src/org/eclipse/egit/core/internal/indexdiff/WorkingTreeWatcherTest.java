@@ -0,0 +1,121 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.indexdiff;
+
+import static org.eclipse.jgit.junit.JGitTestUtil.write;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.egit.core.test.GitTestCase;
+import org.eclipse.egit.core.test.TestRepository;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.util.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WorkingTreeWatcherTest extends GitTestCase {
+
+	private static final long TIMEOUT = 10000;
+
+	private TestRepository testRepository;
+
+	private Repository repository;
+
+	private WorkingTreeWatcher watcher;
+
+	private final Set<String> changed = Collections
+			.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	@Override
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		testRepository = new TestRepository(gitDir);
+		repository = testRepository.getRepository();
+		watcher = new WorkingTreeWatcher(repository,
+				new WorkingTreeWatcher.Listener() {
+					@Override
+					public void filesChanged(Collection<String> paths) {
+						changed.addAll(paths);
+					}
+
+					@Override
+					public void changesLost() {
+						// ignore
+					}
+				});
+		watcher.start();
+	}
+
+	@Override
+	@After
+	public void tearDown() throws Exception {
+		watcher.stop();
+		testRepository.dispose();
+		repository = null;
+		super.tearDown();
+	}
+
+	@Test
+	public void testFileChangeReported() throws Exception {
+		File file = new File(repository.getWorkTree(), "outside.txt");
+		// the watcher registers the working tree asynchronously, so keep
+		// touching the file until it is noticed
+		long end = System.currentTimeMillis() + TIMEOUT;
+		while (!changed.contains("outside.txt")
+				&& System.currentTimeMillis() < end) {
+			write(file, "content " + System.nanoTime());
+			Thread.sleep(200);
+		}
+		assertTrue(changed.contains("outside.txt"));
+	}
+
+	@Test
+	public void testFilesInNewFolderReported() throws Exception {
+		File folder = new File(repository.getWorkTree(), "newFolder");
+		long end = System.currentTimeMillis() + TIMEOUT;
+		while (!changed.contains("newFolder/sub/file.txt")
+				&& System.currentTimeMillis() < end) {
+			FileUtils.delete(folder,
+					FileUtils.RECURSIVE | FileUtils.SKIP_MISSING);
+			File sub = new File(folder, "sub");
+			FileUtils.mkdirs(sub);
+			write(new File(sub, "file.txt"), "content");
+			Thread.sleep(200);
+		}
+		assertTrue(changed.contains("newFolder/sub/file.txt"));
+	}
+
+	@Test
+	public void testFilesInNewIgnoredFolderNotReported() throws Exception {
+		write(new File(repository.getWorkTree(), ".gitignore"), "target/\n");
+		File folder = new File(repository.getWorkTree(), "target");
+		File marker = new File(repository.getWorkTree(), "marker.txt");
+		long end = System.currentTimeMillis() + TIMEOUT;
+		while (!changed.contains("marker.txt")
+				&& System.currentTimeMillis() < end) {
+			FileUtils.delete(folder,
+					FileUtils.RECURSIVE | FileUtils.SKIP_MISSING);
+			File sub = new File(folder, "classes");
+			FileUtils.mkdirs(sub);
+			write(new File(sub, "file.class"), "content");
+			write(marker, "content " + System.nanoTime());
+			Thread.sleep(200);
+		}
+		assertTrue(changed.contains("marker.txt"));
+		assertFalse(changed.contains("target/classes/file.class"));
+	}
+}
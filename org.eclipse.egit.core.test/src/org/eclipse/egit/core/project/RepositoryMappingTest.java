@@ -13,11 +13,14 @@
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
+import java.util.Collections;
+
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IWorkspaceRoot;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.Path;
+import org.eclipse.egit.core.op.DisconnectProviderOperation;
 import org.eclipse.egit.core.test.GitTestCase;
 import org.eclipse.egit.core.test.TestRepository;
 import org.eclipse.jgit.lib.Repository;
@@ -99,6 +102,18 @@ public void shouldNotReturnMappingWhenPathIsOutsideRepository() {
 					.setDevice("C:")));
 	}
 
+	@Test
+	public void shouldNotReturnMappingForPathAfterDisconnect()
+			throws Exception {
+		IPath filePath = getWorkTreePath().append("outside.txt");
+		assertNotNull(RepositoryMapping.getMapping(filePath));
+
+		new DisconnectProviderOperation(
+				Collections.singleton(project.getProject())).execute(null);
+
+		assertNull(RepositoryMapping.getMapping(filePath));
+	}
+
 	@Test
 	public void shouldFindRepositoryMappingForRepository() {
 		RepositoryMapping mapping = RepositoryMapping.findRepositoryMapping(repository);
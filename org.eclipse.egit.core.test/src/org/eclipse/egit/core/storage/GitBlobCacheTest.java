@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevBlob;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class GitBlobCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Repository repository;
+
+	private TestRepository<Repository> util;
+
+	@Before
+	public void setUp() throws Exception {
+		repository = FileRepositoryBuilder.create(new File(folder.getRoot(),
+				".git"));
+		repository.create();
+		util = new TestRepository<Repository>(repository);
+	}
+
+	@After
+	public void tearDown() {
+		util.getRevWalk().close();
+		repository.close();
+	}
+
+	@Test
+	public void testHitsAndMisses() throws Exception {
+		RevBlob blob = util.blob("content");
+		GitBlobCache cache = new GitBlobCache(1600);
+
+		byte[] bytes = cache.getBytes(repository, blob);
+		assertEquals("content", new String(bytes, "UTF-8"));
+		assertSame(bytes, cache.getBytes(repository, blob));
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(7, cache.getWeight());
+	}
+
+	@Test
+	public void testText() throws Exception {
+		RevBlob blob = util.blob("content");
+		GitBlobCache cache = new GitBlobCache(1600);
+
+		String text = cache.getText(repository, blob, "UTF-8");
+		assertEquals("content", text);
+		assertSame(text, cache.getText(repository, blob, "UTF-8"));
+		// bytes and characters
+		assertEquals(7 + 2 * 7, cache.getWeight());
+	}
+
+	@Test
+	public void testEvictsLeastRecentlyUsed() throws Exception {
+		// sixteen blobs of ten bytes fill the cache
+		GitBlobCache cache = new GitBlobCache(160);
+		RevBlob[] blobs = new RevBlob[17];
+		for (int i = 0; i < blobs.length; i++)
+			blobs[i] = util.blob(String.format("blob %5d", Integer.valueOf(i)));
+		for (int i = 0; i < 16; i++)
+			cache.getBytes(repository, blobs[i]);
+		assertEquals(160, cache.getWeight());
+
+		cache.getBytes(repository, blobs[0]);
+		cache.getBytes(repository, blobs[16]);
+		assertEquals(160, cache.getWeight());
+		assertEquals(17, cache.getMissCount());
+		assertEquals(1, cache.getHitCount());
+
+		// the least recently used one was evicted, the used one was kept
+		cache.getBytes(repository, blobs[0]);
+		assertEquals(2, cache.getHitCount());
+		cache.getBytes(repository, blobs[1]);
+		assertEquals(18, cache.getMissCount());
+	}
+
+	@Test
+	public void testLargeBlobsAreNotCached() throws Exception {
+		RevBlob blob = util.blob("more than ten bytes");
+		GitBlobCache cache = new GitBlobCache(160);
+
+		assertEquals("more than ten bytes",
+				new String(cache.getBytes(repository, blob), "UTF-8"));
+		assertEquals(0, cache.getWeight());
+	}
+}
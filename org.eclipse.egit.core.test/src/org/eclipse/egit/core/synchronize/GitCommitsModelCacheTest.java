@@ -183,6 +183,71 @@ public void shouldApplyPathFilter() throws Exception {
 				LEFT);
 	}
 
+	@Test
+	public void shouldNotListCommitsOutsideOfPathFilter() throws Exception {
+		// given
+		Git git = new Git(db);
+		writeTrashFile(db, "folder/a.txt", "content");
+		git.add().addFilepattern("folder/a.txt").call();
+		RevCommit c1 = commit(git, "first commit");
+		writeTrashFile(db, "folder2/b.txt", "b content");
+		git.add().addFilepattern("folder2/b.txt").call();
+		RevCommit c2 = commit(git, "second commit");
+
+		// when
+		PathFilter pathFilter = PathFilter.create("folder");
+		List<Commit> result = GitCommitsModelCache.build(db, initialTagId(),
+				c2, pathFilter);
+		// then
+		assertThat(result, notNullValue());
+		assertThat(Integer.valueOf(result.size()), is(Integer.valueOf(1)));
+		assertCommit(result.get(0), c1, 1);
+	}
+
+	@Test
+	public void shouldComputeChangesOnDemand() throws Exception {
+		// given
+		Git git = new Git(db);
+		writeTrashFile(db, "a.txt", "content");
+		git.add().addFilepattern("a.txt").call();
+		RevCommit c = commit(git, "first commit");
+
+		// when
+		List<Commit> result = GitCommitsModelCache.build(db, initialTagId(),
+				c, null, 0);
+		// then
+		assertThat(Integer.valueOf(result.size()), is(Integer.valueOf(1)));
+		assertCommit(result.get(0), c, 1);
+		result.get(0).releaseChildren();
+		assertFileAddition(c, result.get(0).getChildren().get("a.txt"),
+				"a.txt", LEFT);
+	}
+
+	@Test
+	public void shouldPrefetchChangesOfNewestCommitsOnly() throws Exception {
+		// given
+		Git git = new Git(db);
+		writeTrashFile(db, "a.txt", "content");
+		git.add().addFilepattern("a.txt").call();
+		RevCommit c1 = commit(git, "first commit");
+		writeTrashFile(db, "b.txt", "content");
+		git.add().addFilepattern("b.txt").call();
+		RevCommit c2 = commit(git, "second commit");
+
+		// when
+		List<Commit> result = GitCommitsModelCache.build(db, initialTagId(),
+				c2, null, 1);
+
+		// then
+		assertThat(Integer.valueOf(result.size()), is(Integer.valueOf(2)));
+		assertCommit(result.get(0), c2, 1);
+		assertFileAddition(c2, c1, result.get(0).getChildren().get("b.txt"),
+				"b.txt", LEFT);
+		assertCommit(result.get(1), c1, 1);
+		assertFileAddition(c1, result.get(1).getChildren().get("a.txt"),
+				"a.txt", LEFT);
+	}
+
 	@Test
 	public void shouldListAdditionsOrDeletionsInsideFolderInCommit()
 			throws Exception {
@@ -487,6 +552,24 @@ public void shouldListAllTypeOfChangesInsideSeparateFoldersInOneCommit()
 				RIGHT);
 	}
 
+	@Test
+	public void shouldPeekChildrenOnlyOnceComputed() throws Exception {
+		// given
+		Git git = new Git(db);
+		writeTrashFile(db, "a.txt", "content");
+		git.add().addFilepattern("a.txt").call();
+		RevCommit c = commit(git, "first commit");
+		// when
+		List<Commit> result = GitCommitsModelCache.build(db, initialTagId(),
+				c, null, 0);
+		// then
+		assertThat(result.size(), is(1));
+		assertThat(result.get(0).peekChildren(), nullValue());
+		assertThat(result.get(0).getChildren().size(), is(1));
+		assertThat(result.get(0).peekChildren(),
+				is(result.get(0).getChildren()));
+	}
+
 	private RevCommit commit(Git git, String msg) throws Exception {
 		tick();
 		return git.commit().setAll(true).setMessage(msg)
@@ -0,0 +1,238 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.synchronize;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.egit.core.internal.indexdiff.IndexDiffData;
+import org.eclipse.egit.core.synchronize.ThreeWayDiffEntry.ChangeType;
+import org.eclipse.egit.core.synchronize.dto.GitSynchronizeData;
+import org.eclipse.egit.core.test.GitTestCase;
+import org.eclipse.egit.core.test.TestRepository;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.IndexDiff;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.FileTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class GitSyncCacheTest extends GitTestCase {
+
+	private static final String MASTER = Constants.R_HEADS + Constants.MASTER;
+
+	private static final String BRANCH = Constants.R_HEADS + "branch";
+
+	private TestRepository testRepo;
+
+	private Repository repository;
+
+	private File mainFile;
+
+	@Override
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		testRepo = new TestRepository(gitDir);
+		testRepo.connect(project.getProject());
+		repository = testRepo.getRepository();
+
+		mainFile = testRepo.createFile(project.getProject(), "Main.java");
+		testRepo.appendContentAndCommit(project.getProject(), mainFile,
+				"class Main {}", "initial commit");
+		testRepo.createBranch(MASTER, BRANCH);
+	}
+
+	@After
+	public void clearGitResources() throws Exception {
+		testRepo.dispose();
+		repository = null;
+		super.tearDown();
+	}
+
+	@Test
+	public void shouldFindChangedPathsOfIndexDiffs() throws Exception {
+		// given
+		IndexDiffData oldData = calculateIndexDiff();
+		testRepo.appendFileContent(mainFile, "// changed");
+		File newFile = testRepo.createFile(project.getProject(),
+				"folder/new.txt");
+
+		// when
+		IndexDiffData newData = calculateIndexDiff();
+		Set<String> changed = GitSyncCache.getChangedPaths(oldData, newData);
+
+		// then
+		String folderPath = getRepoRelativePath(newFile.getParentFile());
+		assertTrue(newData.getUntrackedFolders().contains(folderPath + "/"));
+		assertEquals(new HashSet<String>(Arrays.asList(
+				getRepoRelativePath(mainFile), folderPath,
+				getRepoRelativePath(newFile))), changed);
+		assertEquals(changed, GitSyncCache.getChangedPaths(newData, oldData));
+		assertTrue(GitSyncCache.getChangedPaths(newData, newData).isEmpty());
+	}
+
+	@Test
+	public void shouldFindChangedPathsWhenOnlyRemoteMoved() throws Exception {
+		// given
+		GitSynchronizeData gsd = new GitSynchronizeData(repository, MASTER,
+				BRANCH, false);
+		RevCommit oldSrc = gsd.getSrcRevCommit();
+		RevCommit oldAncestor = gsd.getCommonAncestorRev();
+		RevCommit oldDst = gsd.getDstRevCommit();
+		String remotePath = commitOnBranch("remote.txt");
+
+		// when
+		gsd.updateRevs();
+		Set<String> changed = GitSyncCache.getChangedPaths(gsd, oldSrc,
+				oldAncestor, oldDst);
+
+		// then
+		assertEquals(oldAncestor, gsd.getCommonAncestorRev());
+		assertEquals(Collections.singleton(remotePath), changed);
+	}
+
+	@Test
+	public void shouldFindChangedPathsOfBothCommits() throws Exception {
+		// given
+		GitSynchronizeData gsd = new GitSynchronizeData(repository, MASTER,
+				BRANCH, false);
+		RevCommit oldSrc = gsd.getSrcRevCommit();
+		RevCommit oldAncestor = gsd.getCommonAncestorRev();
+		RevCommit oldDst = gsd.getDstRevCommit();
+		String localPath = commit("local.txt");
+		String remotePath = commitOnBranch("remote.txt");
+
+		// when
+		gsd.updateRevs();
+		Set<String> changed = GitSyncCache.getChangedPaths(gsd, oldSrc,
+				oldAncestor, oldDst);
+
+		// then
+		assertEquals(new HashSet<String>(Arrays.asList(localPath,
+				remotePath)), changed);
+	}
+
+	@Test
+	public void shouldNotDiffSourceCommitsWhenLocalIsIncluded()
+			throws Exception {
+		// given
+		GitSynchronizeData gsd = new GitSynchronizeData(repository, MASTER,
+				BRANCH, true);
+		RevCommit oldSrc = gsd.getSrcRevCommit();
+		RevCommit oldAncestor = gsd.getCommonAncestorRev();
+		RevCommit oldDst = gsd.getDstRevCommit();
+		commit("local.txt");
+		String remotePath = commitOnBranch("remote.txt");
+
+		// when
+		gsd.updateRevs();
+		Set<String> changed = GitSyncCache.getChangedPaths(gsd, oldSrc,
+				oldAncestor, oldDst);
+
+		// then the working tree is covered by index diff updates
+		assertEquals(Collections.singleton(remotePath), changed);
+	}
+
+	@Test
+	public void shouldMarkFilteredEntriesInSyncInsideUnchangedFolders()
+			throws Exception {
+		// given
+		File a = testRepo.createFile(project.getProject(), "folder/a.txt");
+		File b = testRepo.createFile(project.getProject(), "folder/sub/b.txt");
+		testRepo.track(a);
+		testRepo.track(b);
+		RevCommit base = testRepo.commit("base");
+		testRepo.appendFileContent(a, "remote");
+		testRepo.appendFileContent(b, "remote");
+		testRepo.track(a);
+		testRepo.track(b);
+		RevCommit remote = testRepo.commit("remote");
+		GitSyncObjectCache cache = scan(base, remote, null);
+		String bPath = getRepoRelativePath(b);
+		assertEquals(ChangeType.MODIFY, cache.get(bPath).getDiffEntry()
+				.getChangeType());
+
+		// when b is reverted on the remote side, its folder is in sync
+		testRepo.appendFileContent(b, "", false);
+		testRepo.track(b);
+		RevCommit reverted = testRepo.commit("revert b");
+		Set<String> filterPaths = Collections.singleton(bPath);
+		GitSyncObjectCache filtered = scan(base, reverted,
+				PathFilter.create(bPath));
+		String subPath = bPath.substring(0, bPath.lastIndexOf('/'));
+		assertNull(filtered.get(subPath));
+		cache.merge(filtered, filterPaths);
+
+		// then
+		assertSame(filtered.getDiffEntry(), cache.getDiffEntry());
+		assertEquals(ChangeType.IN_SYNC, cache.get(bPath).getDiffEntry()
+				.getChangeType());
+		String aPath = getRepoRelativePath(a);
+		assertEquals(ChangeType.MODIFY, cache.get(aPath).getDiffEntry()
+				.getChangeType());
+		assertEquals(ChangeType.MODIFY,
+				cache.get(aPath.substring(0, aPath.lastIndexOf('/')))
+						.getDiffEntry().getChangeType());
+	}
+
+	private GitSyncObjectCache scan(RevCommit local, RevCommit remote,
+			PathFilter filter) throws Exception {
+		ThreeWayDiffEntry root = new ThreeWayDiffEntry();
+		root.setBaseId(local.getTree());
+		root.setRemoteId(remote.getTree());
+		GitSyncObjectCache cache = new GitSyncObjectCache("", root);
+		try (TreeWalk walk = new TreeWalk(repository)) {
+			walk.addTree(local.getTree());
+			walk.addTree(local.getTree());
+			walk.addTree(remote.getTree());
+			if (filter != null)
+				walk.setFilter(filter);
+			ThreeWayDiffEntry.scan(walk, cache.createMemberAdder());
+		}
+		return cache;
+	}
+
+	private IndexDiffData calculateIndexDiff() throws Exception {
+		IndexDiff indexDiff = new IndexDiff(repository, Constants.HEAD,
+				new FileTreeIterator(repository));
+		indexDiff.diff();
+		return new IndexDiffData(indexDiff);
+	}
+
+	private String commit(String name) throws Exception {
+		File file = testRepo.createFile(project.getProject(), name);
+		testRepo.appendContentAndCommit(project.getProject(), file, name,
+				"add " + name);
+		return getRepoRelativePath(file);
+	}
+
+	private String commitOnBranch(String name) throws Exception {
+		testRepo.checkoutBranch(BRANCH);
+		String path = commit(name);
+		testRepo.checkoutBranch(MASTER);
+		return path;
+	}
+
+	private String getRepoRelativePath(File file) {
+		return testRepo.getRepoRelativePath(file.getAbsolutePath());
+	}
+}
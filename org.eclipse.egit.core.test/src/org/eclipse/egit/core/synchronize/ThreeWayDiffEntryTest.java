@@ -10,16 +10,20 @@
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.eclipse.egit.core.synchronize.ThreeWayDiffEntry.ChangeType;
 import org.eclipse.egit.core.synchronize.ThreeWayDiffEntry.Direction;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.junit.LocalDiskRepositoryTestCase;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.treewalk.EmptyTreeIterator;
@@ -281,6 +285,77 @@ public void shouldListConflictingModify() throws Exception {
 		}
 	}
 
+	@Test
+	public void shouldVisitFoldersBeforeTheirMembers() throws Exception {
+		// given
+		writeTrashFile("folder/a.txt", "content");
+		writeTrashFile("folder/sub/b.txt", "content");
+		Git git = new Git(db);
+		git.add().addFilepattern("folder").call();
+		RevCommit c = git.commit().setMessage("initial commit").call();
+
+		// when
+		final List<String> paths = new ArrayList<String>();
+		try (TreeWalk walk = new TreeWalk(db)) {
+			walk.addTree(new EmptyTreeIterator());
+			walk.addTree(new EmptyTreeIterator());
+			walk.addTree(c.getTree());
+			ThreeWayDiffEntry.scan(walk, new ThreeWayDiffEntry.Visitor() {
+				@Override
+				public void visit(ThreeWayDiffEntry entry) {
+					paths.add(entry.getPath());
+				}
+			});
+		}
+
+		// then
+		assertThat(paths, is(Arrays.asList("folder", "folder/a.txt",
+				"folder/sub", "folder/sub/b.txt")));
+	}
+
+	@Test
+	public void shouldReturnObjectIds() throws Exception {
+		// given
+		writeTrashFile("a.txt", "content");
+		Git git = new Git(db);
+		git.add().addFilepattern("a.txt").call();
+		RevCommit c = git.commit().setMessage("initial commit").call();
+
+		// when
+		try (TreeWalk walk = new TreeWalk(db)) {
+			walk.addTree(c.getTree());
+			walk.addTree(new EmptyTreeIterator());
+			walk.addTree(new EmptyTreeIterator());
+			ThreeWayDiffEntry entry = ThreeWayDiffEntry.scan(walk).get(0);
+
+			// then
+			ObjectId blobId = db.resolve(c.name() + ":a.txt");
+			assertThat(entry.getLocalObjectId(), is(blobId));
+			assertThat(entry.getLocalId().toObjectId(), is(blobId));
+			assertThat(entry.getBaseObjectId(), is(ObjectId.zeroId()));
+			assertThat(entry.getRemoteObjectId(), is(ObjectId.zeroId()));
+		}
+	}
+
+	@Test
+	public void shouldReturnNullForUnknownIds() throws Exception {
+		// given
+		writeTrashFile("a.txt", "content");
+		Git git = new Git(db);
+		git.add().addFilepattern("a.txt").call();
+		RevCommit c = git.commit().setMessage("initial commit").call();
+
+		// when
+		ThreeWayDiffEntry root = new ThreeWayDiffEntry();
+		root.setBaseId(c.getTree());
+
+		// then
+		assertThat(root.getLocalId(), nullValue());
+		assertThat(root.getLocalObjectId(), nullValue());
+		assertThat(root.getRemoteObjectId(), nullValue());
+		assertThat(root.getBaseObjectId(), is(c.getTree().copy()));
+	}
+
 	// copied from org.eclipse.jgit.lib.RepositoryTestCase
 	private File writeTrashFile(final String name, final String data)
 			throws IOException {
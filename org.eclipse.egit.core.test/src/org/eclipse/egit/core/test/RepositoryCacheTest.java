@@ -13,15 +13,21 @@
 import static org.hamcrest.Matchers.isIn;
 import static org.hamcrest.core.IsNot.not;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.Path;
 import org.eclipse.egit.core.Activator;
 import org.eclipse.egit.core.RepositoryCache;
+import org.eclipse.egit.core.RepositoryCacheListener;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.util.FileUtils;
@@ -57,9 +63,38 @@ public void shouldNotContainDeletedRepository() throws IOException {
 		cache.lookupRepository(repository.getDirectory());
 		assertThat(repository, isIn(cache.getAllRepositories()));
 		FileUtils.delete(repository.getDirectory(), FileUtils.RECURSIVE);
+		cache.prune();
 		assertThat(repository, not(isIn(cache.getAllRepositories())));
 	}
 
+	@Test
+	public void notifiesListenerAboutRemovedRepository() throws IOException {
+		cache.lookupRepository(repository.getDirectory());
+		final List<File> removed = new ArrayList<File>();
+		RepositoryCacheListener listener = new RepositoryCacheListener() {
+			@Override
+			public void repositoryAdded(Repository added) {
+				// not tested
+			}
+
+			@Override
+			public void repositoryRemoved(File gitDir) {
+				removed.add(gitDir);
+			}
+		};
+		cache.addListener(listener);
+		try {
+			FileUtils.delete(repository.getDirectory(), FileUtils.RECURSIVE);
+			cache.prune();
+			assertEquals(Collections.singletonList(repository.getDirectory()),
+					removed);
+			assertNull(cache.getRepository(
+					new Path(repository.getWorkTree().getAbsolutePath())));
+		} finally {
+			cache.removeListener(listener);
+		}
+	}
+
 	@Test
 	public void findsRepositoryForOpenProject() throws Exception {
 		IFile a = testUtils.addFileToProject(project.getProject(),
@@ -100,4 +135,18 @@ public void findsNestedRepositoryForClosedProject()
 		assertEquals(repository, cache.getRepository(a));
 		assertEquals(repository2.repository, cache.getRepository(b));
 	}
+
+	@Test
+	public void findsRepositoryForLocation() throws Exception {
+		cache.lookupRepository(repository.getDirectory());
+		File workTree = repository.getWorkTree();
+		assertEquals(repository, cache.getRepository(
+				new Path(workTree.getAbsolutePath())));
+		assertEquals(repository, cache.getRepository(new Path(
+				new File(workTree, "not/existing/file.txt").getAbsolutePath())));
+		assertNull(cache.getRepository(new Path(
+				workTree.getParentFile().getAbsolutePath())));
+		assertNull(cache.getRepository(new Path(
+				workTree.getAbsolutePath() + "sibling")));
+	}
 }
@@ -46,8 +46,12 @@
 import org.eclipse.core.runtime.preferences.IEclipsePreferences;
 import org.eclipse.core.runtime.preferences.InstanceScope;
 import org.eclipse.egit.core.internal.CoreText;
+import org.eclipse.egit.core.internal.commitgraph.CommitGraphCache;
+import org.eclipse.egit.core.internal.commitgraph.ReachabilityIndex;
+import org.eclipse.egit.core.internal.commitindex.CommitIndexCache;
 import org.eclipse.egit.core.internal.indexdiff.IndexDiffCache;
 import org.eclipse.egit.core.internal.job.JobUtil;
+import org.eclipse.egit.core.internal.job.WorkerPool;
 import org.eclipse.egit.core.internal.trace.GitTraceLocation;
 import org.eclipse.egit.core.internal.util.ResourceUtil;
 import org.eclipse.egit.core.op.ConnectProviderOperation;
@@ -56,6 +60,7 @@
 import org.eclipse.egit.core.project.RepositoryFinder;
 import org.eclipse.egit.core.project.RepositoryMapping;
 import org.eclipse.egit.core.securestorage.EGitSecureStore;
+import org.eclipse.egit.core.storage.GitBlobCache;
 import org.eclipse.equinox.security.storage.SecurePreferencesFactory;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.merge.MergeStrategy;
@@ -75,6 +80,7 @@ public class Activator extends Plugin implements DebugOptionsListener {
 	private static String pluginId;
 	private RepositoryCache repositoryCache;
 	private IndexDiffCache indexDiffCache;
+	private GitBlobCache blobCache;
 	private RepositoryUtil repositoryUtil;
 	private EGitSecureStore secureStore;
 	private AutoShareProjects shareGitProjectsJob;
@@ -177,6 +183,7 @@ public void start(final BundleContext context) throws Exception {
 
 		repositoryCache = new RepositoryCache();
 		indexDiffCache = new IndexDiffCache();
+		blobCache = new GitBlobCache();
 		try {
 			GitProjectData.reconfigureWindowCache();
 		} catch (RuntimeException e) {
@@ -295,6 +302,13 @@ public IndexDiffCache getIndexDiffCache() {
 		return indexDiffCache;
 	}
 
+	/**
+	 * @return cache for the contents of blobs
+	 */
+	public GitBlobCache getBlobCache() {
+		return blobCache;
+	}
+
 	/**
 	 * @return the {@link RepositoryUtil} instance
 	 */
@@ -312,9 +326,16 @@ public EGitSecureStore getSecureStore() {
 	@Override
 	public void stop(final BundleContext context) throws Exception {
 		GitProjectData.detachFromWorkspace();
+		repositoryCache.dispose();
 		repositoryCache = null;
 		indexDiffCache.dispose();
 		indexDiffCache = null;
+		CommitGraphCache.dispose();
+		ReachabilityIndex.dispose();
+		CommitIndexCache.dispose();
+		WorkerPool.shutdown();
+		blobCache.clear();
+		blobCache = null;
 		repositoryUtil.dispose();
 		repositoryUtil = null;
 		secureStore = null;
@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core;
+
+import java.io.IOException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jgit.annotations.Nullable;
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.CheckoutEntry;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.ReflogEntry;
+import org.eclipse.jgit.lib.ReflogReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevTag;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Immutable map from object ids to the name of the ref
+ * {@link RepositoryUtil#mapCommitToRef(Repository, String, boolean)} returns
+ * for them.
+ * <p>
+ * All refs and the HEAD reflog are read once when the map is built, so a
+ * lookup is a single hash map access.
+ */
+class CommitRefIndex {
+
+	private static final Date EPOCH = new Date(0);
+
+	private final Map<ObjectId, String> refNames;
+
+	private CommitRefIndex(Map<ObjectId, String> refNames) {
+		this.refNames = refNames;
+	}
+
+	/**
+	 * @param id
+	 * @return the full name of the preferred ref pointing to the object, or
+	 *         null if there is none
+	 */
+	@Nullable
+	String get(AnyObjectId id) {
+		return refNames.get(id);
+	}
+
+	/**
+	 * Reads the refs of a repository. Refs which cannot be read are left
+	 * out.
+	 *
+	 * @param repository
+	 * @return the index
+	 */
+	static CommitRefIndex build(Repository repository) {
+		Map<ObjectId, String> refNames = new HashMap<ObjectId, String>();
+		// lowest precedence first, later ones replace the names of earlier
+		// ones
+		addBranches(repository, Constants.R_REMOTES, refNames);
+		addBranches(repository, Constants.R_HEADS, refNames);
+		addTags(repository, refNames);
+		addCheckouts(repository, refNames);
+		return new CommitRefIndex(refNames);
+	}
+
+	private static void addBranches(Repository repository, String prefix,
+			Map<ObjectId, String> refNames) {
+		Map<ObjectId, String> branches = new HashMap<ObjectId, String>();
+		try {
+			for (Ref branch : repository.getRefDatabase().getRefs(prefix)
+					.values()) {
+				ObjectId objectId = branch.getObjectId();
+				if (objectId == null)
+					continue;
+				// the highest lexicographic name wins
+				String old = branches.get(objectId);
+				if (old == null || old.compareTo(branch.getName()) < 0)
+					branches.put(objectId, branch.getName());
+			}
+		} catch (IOException e) {
+			// ignore here
+		}
+		refNames.putAll(branches);
+	}
+
+	private static void addTags(Repository repository,
+			Map<ObjectId, String> refNames) {
+		Map<ObjectId, String> tagNames = new HashMap<ObjectId, String>();
+		Map<ObjectId, Date> tagDates = new HashMap<ObjectId, Date>();
+		try (RevWalk rw = new RevWalk(repository)) {
+			for (Ref tagRef : repository.getRefDatabase()
+					.getRefs(Constants.R_TAGS).values()) {
+				ObjectId tagId = tagRef.getObjectId();
+				if (tagId == null)
+					continue;
+				RevObject any;
+				try {
+					any = rw.parseAny(tagId);
+				} catch (MissingObjectException e) {
+					continue;
+				}
+				ObjectId target;
+				Date timestamp;
+				if (any instanceof RevTag) {
+					RevTag tag = (RevTag) any;
+					target = tag.getObject().copy();
+					PersonIdent tagger = tag.getTaggerIdent();
+					if (tagger != null) {
+						timestamp = tagger.getWhen();
+					} else {
+						try {
+							RevCommit commit = rw.parseCommit(target);
+							timestamp = commit.getCommitterIdent().getWhen();
+						} catch (MissingObjectException
+								| IncorrectObjectTypeException e) {
+							// not referencing a commit
+							timestamp = null;
+						}
+					}
+				} else if (any instanceof RevCommit) {
+					target = any.copy();
+					timestamp = ((RevCommit) any).getCommitterIdent()
+							.getWhen();
+				} else {
+					continue;
+				}
+				if (isPreferredTag(tagRef.getName(), timestamp,
+						tagNames.get(target), tagDates.get(target))) {
+					tagNames.put(target, tagRef.getName());
+					tagDates.put(target, timestamp);
+				}
+			}
+		} catch (IOException e) {
+			// ignore here
+		}
+		refNames.putAll(tagNames);
+	}
+
+	/**
+	 * The newest tag wins. Tags without time stamps only win over other tags
+	 * without time stamps, by their lexicographic name.
+	 */
+	private static boolean isPreferredTag(String name, Date timestamp,
+			String oldName, Date oldTimestamp) {
+		if (oldName == null)
+			return true;
+		boolean dated = timestamp != null && timestamp.after(EPOCH);
+		boolean oldDated = oldTimestamp != null && oldTimestamp.after(EPOCH);
+		if (dated != oldDated)
+			return dated;
+		if (dated && !timestamp.equals(oldTimestamp))
+			return timestamp.after(oldTimestamp);
+		return name.compareTo(oldName) > 0;
+	}
+
+	/**
+	 * Maps the commits checked out according to the HEAD reflog to the
+	 * branches they were checked out from, if those still point to them. The
+	 * most recent checkout wins.
+	 */
+	private static void addCheckouts(Repository repository,
+			Map<ObjectId, String> refNames) {
+		Map<ObjectId, String> checkouts = new HashMap<ObjectId, String>();
+		try {
+			ReflogReader reflogReader = repository
+					.getReflogReader(Constants.HEAD);
+			if (reflogReader == null)
+				return;
+			Map<String, Ref> branches = new HashMap<String, Ref>();
+			for (ReflogEntry entry : reflogReader.getReverseEntries()) {
+				ObjectId newId = entry.getNewId();
+				if (checkouts.containsKey(newId))
+					continue;
+				CheckoutEntry checkoutEntry = entry.parseCheckout();
+				if (checkoutEntry == null)
+					continue;
+				String toBranch = checkoutEntry.getToBranch();
+				Ref ref;
+				if (branches.containsKey(toBranch)) {
+					ref = branches.get(toBranch);
+				} else {
+					ref = repository.getRef(toBranch);
+					if (ref != null)
+						ref = repository.peel(ref);
+					branches.put(toBranch, ref);
+				}
+				if (ref != null && (newId.equals(ref.getObjectId())
+						|| newId.equals(ref.getPeeledObjectId())))
+					checkouts.put(newId, toBranch);
+			}
+		} catch (IOException e) {
+			// ignore here
+		}
+		refNames.putAll(checkouts);
+	}
+}
@@ -29,6 +29,10 @@ public void initializeDefaultPreferences() {
 		p.putInt(GitCorePreferences.core_streamFileThreshold, 50 * MB);
 		p.putBoolean(GitCorePreferences.core_autoShareProjects, true);
 		p.putBoolean(GitCorePreferences.core_autoIgnoreDerivedResources, true);
+		p.putBoolean(GitCorePreferences.core_parallelIndexDiff, false);
+		p.putBoolean(GitCorePreferences.core_watchWorkingTree, false);
+		p.putBoolean(GitCorePreferences.core_commitGraph, true);
+		p.putBoolean(GitCorePreferences.core_commitIndex, true);
 
 		String defaultRepoDir = RepositoryUtil.getDefaultDefaultRepositoryDir();
 		p.put(GitCorePreferences.core_defaultRepositoryDir, defaultRepoDir);
@@ -49,4 +49,32 @@ public class GitCorePreferences {
 	 * {@code MergeStrategy.get(key)}.
 	 */
 	public static final String core_preferredMergeStrategy = "core_preferredMergeStrategy"; //$NON-NLS-1$
+
+	/**
+	 * Whether the full Git status of large repositories is calculated in
+	 * parallel for several parts of the working tree.
+	 */
+	public static final String core_parallelIndexDiff =
+		"core_parallelIndexDiff"; //$NON-NLS-1$
+
+	/**
+	 * Whether changes in the working trees of repositories are detected by
+	 * watching the file system, in addition to workspace resource changes.
+	 */
+	public static final String core_watchWorkingTree =
+		"core_watchWorkingTree"; //$NON-NLS-1$
+
+	/**
+	 * Whether a commit graph is maintained per repository to speed up
+	 * ancestry queries such as merge base calculations.
+	 */
+	public static final String core_commitGraph =
+		"core_commitGraph"; //$NON-NLS-1$
+
+	/**
+	 * Whether an index of commit messages, authors and committers is
+	 * maintained per repository to speed up commit searches.
+	 */
+	public static final String core_commitIndex =
+		"core_commitIndex"; //$NON-NLS-1$
 }
@@ -14,28 +14,68 @@
 import java.io.File;
 import java.io.IOException;
 import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.egit.core.internal.CoreText;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
 
 /**
  * Central cache for Repository instances
- *
+ * <p>
+ * Repositories are held weakly and removed from the cache once they are no
+ * longer referenced. Repositories whose git directory was deleted are removed
+ * by a periodic background check, or by calling {@link #prune()}. Lookups of
+ * cached repositories do not lock.
  */
 public class RepositoryCache {
-	private final Map<File, Reference<Repository>> repositoryCache = new HashMap<File, Reference<Repository>>();
+
+	// interval of the background check for deleted git directories
+	private static final long PRUNE_INTERVAL = 10000;
+
+	private final ConcurrentMap<File, RepositoryReference> repositoryCache = new ConcurrentHashMap<File, RepositoryReference>();
+
+	private final ReferenceQueue<Repository> queue = new ReferenceQueue<Repository>();
+
+	private final List<RepositoryCacheListener> listeners = new CopyOnWriteArrayList<RepositoryCacheListener>();
+
+	// trie of the working trees of all cached repositories, replaced whenever
+	// the cache content changes; read without locking
+	private volatile WorkTreeNode workTrees = new WorkTreeNode();
+
+	private final Job pruneJob;
+
+	private volatile boolean disposed;
 
 	RepositoryCache() {
 		// package private constructor
+		pruneJob = new Job(CoreText.RepositoryCache_pruneJobName) {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				prune();
+				if (!disposed)
+					schedule(PRUNE_INTERVAL);
+				return Status.OK_STATUS;
+			}
+		};
+		pruneJob.setSystem(true);
+		pruneJob.schedule(PRUNE_INTERVAL);
 	}
 
 	/**
@@ -46,30 +86,85 @@ public class RepositoryCache {
 	 *         in the cache.
 	 * @throws IOException
 	 */
-	public synchronized Repository lookupRepository(final File gitDir)
+	public Repository lookupRepository(final File gitDir)
 			throws IOException {
-		prune(repositoryCache);
-		Reference<Repository> r = repositoryCache.get(gitDir);
-		Repository d = r != null ? r.get() : null;
-		if (d == null) {
+		expungeStale();
+		Repository d = get(gitDir);
+		if (d != null)
+			return d;
+		synchronized (this) {
+			// only one thread creates the instance
+			d = get(gitDir);
+			if (d != null)
+				return d;
 			d = FileRepositoryBuilder.create(gitDir);
-			repositoryCache.put(gitDir, new WeakReference<Repository>(d));
+			repositoryCache.put(gitDir,
+					new RepositoryReference(gitDir, d, queue));
+			updateWorkTrees();
 		}
+		for (RepositoryCacheListener listener : listeners)
+			listener.repositoryAdded(d);
 		return d;
 	}
 
+	private Repository get(File gitDir) {
+		RepositoryReference r = repositoryCache.get(gitDir);
+		return r != null ? r.get() : null;
+	}
+
 	/**
 	 * @return all Repository instances contained in the cache
 	 */
-	public synchronized Repository[] getAllRepositories() {
-		prune(repositoryCache);
+	public Repository[] getAllRepositories() {
+		expungeStale();
 		List<Repository> repositories = new ArrayList<Repository>();
-		for (Reference<Repository> reference : repositoryCache.values()) {
-			repositories.add(reference.get());
+		for (RepositoryReference reference : repositoryCache.values()) {
+			Repository repository = reference.get();
+			if (repository != null)
+				repositories.add(repository);
 		}
 		return repositories.toArray(new Repository[repositories.size()]);
 	}
 
+	/**
+	 * Removes repositories whose git directory no longer exists from the
+	 * cache. This is done periodically in the background; call this method to
+	 * get an up-to-date state immediately.
+	 *
+	 * @since 4.2
+	 */
+	public void prune() {
+		expungeStale();
+		List<File> removed = new ArrayList<File>();
+		for (Map.Entry<File, RepositoryReference> entry : repositoryCache
+				.entrySet()) {
+			Repository repository = entry.getValue().get();
+			if (repository != null && !repository.getDirectory().exists()
+					&& repositoryCache.remove(entry.getKey(),
+							entry.getValue()))
+				removed.add(entry.getKey());
+		}
+		fireRemoved(removed);
+	}
+
+	/**
+	 * @param listener
+	 *            to be notified when repositories are added to or removed from
+	 *            the cache
+	 * @since 4.2
+	 */
+	public void addListener(RepositoryCacheListener listener) {
+		listeners.add(listener);
+	}
+
+	/**
+	 * @param listener
+	 * @since 4.2
+	 */
+	public void removeListener(RepositoryCacheListener listener) {
+		listeners.remove(listener);
+	}
+
 	/**
 	 * Lookup the closest git repository with a working tree containing the
 	 * given resource. If there are repositories nested above in the file system
@@ -100,32 +195,107 @@ public Repository getRepository(final IResource resource) {
 	 * @since 3.2
 	 */
 	public Repository getRepository(final IPath location) {
-		Repository[] repositories = org.eclipse.egit.core.Activator
-				.getDefault().getRepositoryCache().getAllRepositories();
+		if (location == null)
+			return null;
+		WorkTreeNode node = workTrees.children.get(getDeviceKey(location));
 		Repository repository = null;
-		int largestSegmentCount = 0;
-		for (Repository r : repositories) {
-			if (!r.isBare()) {
-				IPath repoPath = new Path(r.getWorkTree().getAbsolutePath());
-				if (location != null && repoPath.isPrefixOf(location)) {
-					if (repository == null
-							|| repoPath.segmentCount() > largestSegmentCount) {
-						repository = r;
-						largestSegmentCount = repoPath.segmentCount();
-					}
-				}
-			}
+		for (int i = 0; node != null; i++) {
+			Repository r = node.get();
+			if (r != null)
+				repository = r;
+			if (i == location.segmentCount())
+				break;
+			node = node.children.get(location.segment(i));
 		}
 		return repository;
 	}
 
-	private static void prune(Map<File, Reference<Repository>> map) {
-		for (final Iterator<Map.Entry<File, Reference<Repository>>> i = map.entrySet()
-				.iterator(); i.hasNext();) {
-			Repository repository = i.next().getValue().get();
-			if (repository == null
-					|| !repository.getDirectory().exists())
-				i.remove();
+	/**
+	 * Stops the background check for deleted repositories
+	 */
+	void dispose() {
+		disposed = true;
+		pruneJob.cancel();
+	}
+
+	private void expungeStale() {
+		List<File> removed = null;
+		Reference<? extends Repository> reference;
+		while ((reference = queue.poll()) != null) {
+			RepositoryReference r = (RepositoryReference) reference;
+			if (repositoryCache.remove(r.gitDir, r)) {
+				if (removed == null)
+					removed = new ArrayList<File>();
+				removed.add(r.gitDir);
+			}
+		}
+		if (removed != null)
+			fireRemoved(removed);
+	}
+
+	private void fireRemoved(List<File> removed) {
+		if (removed.isEmpty())
+			return;
+		updateWorkTrees();
+		for (File gitDir : removed)
+			for (RepositoryCacheListener listener : listeners)
+				listener.repositoryRemoved(gitDir);
+	}
+
+	private synchronized void updateWorkTrees() {
+		WorkTreeNode root = new WorkTreeNode();
+		for (Reference<Repository> reference : repositoryCache.values()) {
+			Repository repository = reference.get();
+			if (repository == null || repository.isBare())
+				continue;
+			IPath path = new Path(repository.getWorkTree().getAbsolutePath());
+			WorkTreeNode node = root.getOrCreate(getDeviceKey(path));
+			for (String segment : path.segments())
+				node = node.getOrCreate(segment);
+			node.repository = reference;
+		}
+		workTrees = root;
+	}
+
+	private static String getDeviceKey(IPath path) {
+		// devices are compared case-insensitively, like IPath.isPrefixOf()
+		String device = path.getDevice();
+		return device == null ? "" : device.toUpperCase(Locale.ROOT); //$NON-NLS-1$
+	}
+
+	/**
+	 * Node of the working tree trie; the children of the root are keyed by
+	 * device, all others by path segment. Never modified once published.
+	 */
+	private static final class WorkTreeNode {
+
+		final Map<String, WorkTreeNode> children = new HashMap<String, WorkTreeNode>();
+
+		Reference<Repository> repository;
+
+		WorkTreeNode getOrCreate(String key) {
+			WorkTreeNode child = children.get(key);
+			if (child == null) {
+				child = new WorkTreeNode();
+				children.put(key, child);
+			}
+			return child;
+		}
+
+		Repository get() {
+			return repository != null ? repository.get() : null;
+		}
+	}
+
+	private static final class RepositoryReference extends
+			WeakReference<Repository> {
+
+		final File gitDir;
+
+		RepositoryReference(File gitDir, Repository repository,
+				ReferenceQueue<Repository> queue) {
+			super(repository, queue);
+			this.gitDir = gitDir;
 		}
 	}
 
@@ -135,6 +305,7 @@ private static void prune(Map<File, Reference<Repository>> map) {
 	 */
 	public synchronized void clear() {
 		repositoryCache.clear();
+		workTrees = new WorkTreeNode();
 	}
 
 }
@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core;
+
+import java.io.File;
+
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Listener for repositories being added to or removed from the
+ * {@link RepositoryCache}. Listeners may be called from any thread and must
+ * not block.
+ *
+ * @since 4.2
+ */
+public interface RepositoryCacheListener {
+
+	/**
+	 * Called after a new repository instance was added to the cache
+	 *
+	 * @param repository
+	 */
+	void repositoryAdded(Repository repository);
+
+	/**
+	 * Called after a repository was removed from the cache, either because
+	 * its git directory was deleted or because it is no longer referenced
+	 *
+	 * @param gitDir
+	 *            the git directory of the removed repository
+	 */
+	void repositoryRemoved(File gitDir);
+}
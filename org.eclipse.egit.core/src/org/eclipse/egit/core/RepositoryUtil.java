@@ -12,17 +12,19 @@
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
-import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
@@ -38,19 +40,16 @@
 import org.eclipse.egit.core.project.RepositoryMapping;
 import org.eclipse.jgit.annotations.NonNull;
 import org.eclipse.jgit.annotations.Nullable;
-import org.eclipse.jgit.errors.IncorrectObjectTypeException;
-import org.eclipse.jgit.lib.CheckoutEntry;
+import org.eclipse.jgit.events.ListenerHandle;
+import org.eclipse.jgit.events.RefsChangedEvent;
+import org.eclipse.jgit.events.RefsChangedListener;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
-import org.eclipse.jgit.lib.ReflogEntry;
-import org.eclipse.jgit.lib.ReflogReader;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.RepositoryCache.FileKey;
 import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevObject;
-import org.eclipse.jgit.revwalk.RevTag;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.treewalk.WorkingTreeIterator;
@@ -66,7 +65,7 @@ public class RepositoryUtil {
 	/** The preferences to store the directories known to the Git Repositories view */
 	public static final String PREFS_DIRECTORIES = "GitRepositoriesView.GitDirectories"; //$NON-NLS-1$
 
-	private final Map<String, Map<String, String>> commitMappingCache = new HashMap<String, Map<String, String>>();
+	private final ConcurrentMap<String, CommitRefMapping> commitMappingCache = new ConcurrentHashMap<String, CommitRefMapping>();
 
 	private final Map<String, String> repositoryNameCache = new HashMap<String, String>();
 
@@ -84,6 +83,8 @@ public class RepositoryUtil {
 	 * Used by {@link Activator}
 	 */
 	void dispose() {
+		for (CommitRefMapping mapping : commitMappingCache.values())
+			mapping.dispose();
 		commitMappingCache.clear();
 		repositoryNameCache.clear();
 	}
@@ -148,8 +149,9 @@ private static String migrateRepoRootPreference() {
 	/**
 	 * Tries to map a commit to a symbolic reference.
 	 * <p>
-	 * This value will be cached for the given commit ID unless refresh is
-	 * specified. The return value will be the full name, e.g.
+	 * The mapping is computed once for all commits of a repository and
+	 * recomputed after its refs have changed or if refresh is specified. The
+	 * return value will be the full name, e.g.
 	 * "refs/remotes/someBranch", "refs/tags/v.1.0"
 	 * <p>
 	 * Since this mapping is not unique, the following precedence rules are
@@ -175,165 +177,20 @@ private static String migrateRepoRootPreference() {
 	 */
 	public String mapCommitToRef(Repository repository, String commitId,
 			boolean refresh) {
-		synchronized (commitMappingCache) {
-
-			if (!ObjectId.isId(commitId)) {
-				return null;
-			}
-
-			try {
-				ReflogReader reflogReader = repository.getReflogReader(Constants.HEAD);
-				if (reflogReader != null) {
-					List<ReflogEntry> lastEntry = reflogReader.getReverseEntries();
-					for (ReflogEntry entry : lastEntry) {
-						if (entry.getNewId().name().equals(commitId)) {
-							CheckoutEntry checkoutEntry = entry.parseCheckout();
-							if (checkoutEntry != null) {
-								Ref ref = repository.getRef(checkoutEntry.getToBranch());
-								if (ref != null) {
-									ObjectId objectId = ref.getObjectId();
-									if (objectId != null && objectId.getName()
-											.equals(commitId)) {
-										return checkoutEntry.getToBranch();
-									}
-									ref = repository.peel(ref);
-								}
-								if (ref != null) {
-									ObjectId id = ref.getPeeledObjectId();
-									if (id != null && id.getName().equals(commitId)) {
-										return checkoutEntry.getToBranch();
-									}
-								}
-							}
-						}
-					}
-				}
-			} catch (IOException e) {
-				// ignore here
-			}
-
-			Map<String, String> cacheEntry = commitMappingCache.get(repository
-					.getDirectory().toString());
-			if (!refresh && cacheEntry != null
-					&& cacheEntry.containsKey(commitId)) {
-				// this may be null in fact
-				return cacheEntry.get(commitId);
-			}
-			if (cacheEntry == null) {
-				cacheEntry = new HashMap<String, String>();
-				commitMappingCache.put(repository.getDirectory().getPath(),
-						cacheEntry);
-			} else {
-				cacheEntry.clear();
-			}
-
-			Map<String, Date> tagMap = new HashMap<String, Date>();
-			try (RevWalk rw = new RevWalk(repository)) {
-				Map<String, Ref> tags = repository.getRefDatabase().getRefs(
-						Constants.R_TAGS);
-				for (Ref tagRef : tags.values()) {
-					RevObject any = rw.parseAny(repository.resolve(tagRef.getName()));
-					if (any instanceof RevTag) {
-						RevTag tag = (RevTag) any;
-						if (tag.getObject().name().equals(commitId)) {
-							Date timestamp;
-							if (tag.getTaggerIdent() != null) {
-								timestamp = tag.getTaggerIdent().getWhen();
-							} else {
-								try {
-									RevCommit commit = rw.parseCommit(tag.getObject());
-									timestamp = commit.getCommitterIdent().getWhen();
-								} catch (IncorrectObjectTypeException e) {
-									// not referencing a comit.
-									timestamp = null;
-								}
-							}
-							tagMap.put(tagRef.getName(), timestamp);
-						}
-					} else if (any instanceof RevCommit) {
-						RevCommit commit = ((RevCommit)any);
-						if (commit.name().equals(commitId))
-							tagMap.put(tagRef.getName(), commit.getCommitterIdent().getWhen());
-					} // else ignore here
-				}
-			} catch (IOException e) {
-				// ignore here
-			}
-
-			String cacheValue = null;
-
-			if (!tagMap.isEmpty()) {
-				// we try to obtain the "latest" tag
-				Date compareDate = new Date(0);
-				for (Map.Entry<String, Date> tagEntry : tagMap.entrySet()) {
-					if (tagEntry.getValue() != null
-							&& tagEntry.getValue().after(compareDate)) {
-						compareDate = tagEntry.getValue();
-						cacheValue = tagEntry.getKey();
-					}
-				}
-				// if we don't have time stamps, we sort
-				if (cacheValue == null) {
-					String compareString = ""; //$NON-NLS-1$
-					for (String tagName : tagMap.keySet()) {
-						if (tagName.compareTo(compareString) >= 0) {
-							cacheValue = tagName;
-							compareString = tagName;
-						}
-					}
-				}
-			}
-
-			if (cacheValue == null) {
-				// we didnt't find a tag, so let's look for local branches
-				Set<String> branchNames = new TreeSet<String>();
-				// put this into a sorted set
-				try {
-					Map<String, Ref> remoteBranches = repository
-							.getRefDatabase().getRefs(Constants.R_HEADS);
-					for (Ref branch : remoteBranches.values()) {
-						ObjectId objectId = branch.getObjectId();
-						if (objectId != null
-								&& objectId.name().equals(commitId)) {
-							branchNames.add(branch.getName());
-						}
-					}
-				} catch (IOException e) {
-					// ignore here
-				}
-				if (!branchNames.isEmpty()) {
-					// get the last (sorted) entry
-					cacheValue = branchNames.toArray(new String[branchNames
-							.size()])[branchNames.size() - 1];
-				}
-			}
-
-			if (cacheValue == null) {
-				// last try: remote branches
-				Set<String> branchNames = new TreeSet<String>();
-				// put this into a sorted set
-				try {
-					Map<String, Ref> remoteBranches = repository
-							.getRefDatabase().getRefs(Constants.R_REMOTES);
-					for (Ref branch : remoteBranches.values()) {
-						ObjectId objectId = branch.getObjectId();
-						if (objectId != null
-								&& objectId.name().equals(commitId)) {
-							branchNames.add(branch.getName());
-						}
-					}
-					if (!branchNames.isEmpty()) {
-						// get the last (sorted) entry
-						cacheValue = branchNames.toArray(new String[branchNames
-								.size()])[branchNames.size() - 1];
-					}
-				} catch (IOException e) {
-					// ignore here
-				}
-			}
-			cacheEntry.put(commitId, cacheValue);
-			return cacheValue;
+		if (!ObjectId.isId(commitId)) {
+			return null;
+		}
+		String key = repository.getDirectory().getPath();
+		CommitRefMapping mapping = commitMappingCache.get(key);
+		if (mapping == null) {
+			mapping = new CommitRefMapping();
+			CommitRefMapping existing = commitMappingCache.putIfAbsent(key,
+					mapping);
+			if (existing != null)
+				mapping = existing;
 		}
+		return mapping.get(repository, refresh).get(
+				ObjectId.fromString(commitId));
 	}
 
 	/**
@@ -654,4 +511,54 @@ public static boolean isDetachedHead(Repository repository) {
 		}
 		return false;
 	}
+
+	/**
+	 * The {@link CommitRefIndex} of a repository, rebuilt lazily after its
+	 * refs have changed.
+	 */
+	private static class CommitRefMapping {
+
+		private volatile CommitRefIndex index;
+
+		private volatile boolean stale;
+
+		private Reference<Repository> listened = new WeakReference<Repository>(
+				null);
+
+		private ListenerHandle listenerHandle;
+
+		CommitRefIndex get(Repository repository, boolean refresh) {
+			CommitRefIndex current = index;
+			if (current != null && !refresh && !stale
+					&& listened.get() == repository)
+				return current;
+			synchronized (this) {
+				if (listened.get() != repository) {
+					// the repository may have been closed and opened again
+					dispose();
+					listenerHandle = repository.getListenerList()
+							.addRefsChangedListener(new RefsChangedListener() {
+								@Override
+								public void onRefsChanged(RefsChangedEvent event) {
+									stale = true;
+								}
+							});
+					listened = new WeakReference<Repository>(repository);
+					index = null;
+				}
+				if (index == null || refresh || stale) {
+					stale = false;
+					index = CommitRefIndex.build(repository);
+				}
+				return index;
+			}
+		}
+
+		synchronized void dispose() {
+			if (listenerHandle != null) {
+				listenerHandle.remove();
+				listenerHandle = null;
+			}
+		}
+	}
 }
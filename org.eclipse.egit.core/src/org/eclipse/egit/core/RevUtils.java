@@ -14,6 +14,8 @@
 import java.util.List;
 
 import org.eclipse.core.runtime.Assert;
+import org.eclipse.egit.core.internal.commitgraph.CommitGraph;
+import org.eclipse.egit.core.internal.commitgraph.CommitGraphCache;
 import org.eclipse.jgit.lib.AnyObjectId;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
@@ -52,6 +54,20 @@ public static RevCommit getCommonAncestor(Repository repo,
 		Assert.isNotNull(commit1);
 		Assert.isNotNull(commit2);
 
+		CommitGraph graph = CommitGraphCache.get(repo);
+		if (graph != null) {
+			int position1 = graph.find(commit1);
+			int position2 = graph.find(commit2);
+			if (position1 >= 0 && position2 >= 0) {
+				int base = graph.getMergeBase(position1, position2);
+				if (base < 0)
+					return null;
+				try (RevWalk rw = new RevWalk(repo)) {
+					return rw.parseCommit(graph.getId(base));
+				}
+			}
+		}
+
 		try (RevWalk rw = new RevWalk(repo)) {
 			rw.setRetainBody(false);
 			rw.setRevFilter(RevFilter.MERGE_BASE);
@@ -139,9 +155,23 @@ public static boolean isContainedInAnyRef(Repository repo,
 
 		final int skew = 24 * 60 * 60; // one day clock skew
 
+		CommitGraph graph = CommitGraphCache.get(repo);
+		int position = graph != null ? graph.find(commitId) : -1;
+
 		try (RevWalk walk = new RevWalk(repo)) {
 			RevCommit commit = walk.parseCommit(commitId);
 			for (Ref ref : refs) {
+				if (position >= 0) {
+					// no need to parse anything if the graph knows the ref
+					ObjectId refId = ref.getPeeledObjectId() != null ? ref
+							.getPeeledObjectId() : ref.getObjectId();
+					int refPosition = refId != null ? graph.find(refId) : -1;
+					if (refPosition >= 0) {
+						if (graph.isAncestor(position, refPosition))
+							return true;
+						continue;
+					}
+				}
 				RevCommit refCommit = walk.parseCommit(ref.getObjectId());
 
 				// if commit is in the ref branch, then the tip of ref should be
@@ -55,6 +55,12 @@ public class CoreText extends NLS {
 	/** */
 	public static String CherryPickOperation_cherryPicking;
 
+	/** */
+	public static String CommitGraphCache_updating;
+
+	/** */
+	public static String CommitIndexCache_updating;
+
 	/** */
 	public static String CommitFileRevision_errorLookingUpPath;
 
@@ -151,6 +157,9 @@ public class CoreText extends NLS {
 	/** */
 	public static String UntrackOperation_writingIndex;
 
+	/** */
+	public static String GitCommitsModelCache_changesNotComputed;
+
 	/** */
 	public static String GitFileHistory_errorParsingHistory;
 
@@ -187,6 +196,9 @@ public class CoreText extends NLS {
 	/** */
 	public static String RebaseInteractivePlan_WriteRebaseTodoFailed;
 
+	/** */
+	public static String RepositoryCache_pruneJobName;
+
 	/** */
 	public static String RepositoryFinder_finding;
 
@@ -289,6 +301,9 @@ public class CoreText extends NLS {
 	/** */
 	public static String IndexDiffCacheEntry_errorCalculatingIndexDelta;
 
+	/** */
+	public static String IndexDiffCacheEntry_errorWritingSnapshot;
+
 	/** */
 	public static String IndexDiffCacheEntry_refreshingProjects;
 
@@ -298,6 +313,12 @@ public class CoreText extends NLS {
 	/** */
 	public static String IndexDiffCacheEntry_reindexingIncrementally;
 
+	/** */
+	public static String IndexDiffCacheEntry_verifyingSnapshot;
+
+	/** */
+	public static String WorkingTreeWatcher_cannotWatch;
+
 	/** */
 	public static String IndexFileRevision_errorLookingUpPath;
 
@@ -433,6 +454,9 @@ public class CoreText extends NLS {
 	/** */
 	public static String GitResourceVariantTreeSubscriber_fetchTaskName;
 
+	/** */
+	public static String GitResourceVariantTreeSubscriber_updateJobName;
+
 	/** */
 	public static String GitSyncObjectCache_noData;
 
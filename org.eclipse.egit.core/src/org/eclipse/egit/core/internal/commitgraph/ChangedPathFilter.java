@@ -0,0 +1,150 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.commitgraph;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+
+import org.eclipse.jgit.lib.Constants;
+
+/**
+ * Bloom filter of the paths changed by a commit relative to its first parent.
+ * <p>
+ * The filter contains every changed file and all folders containing it, so a
+ * negative answer for a path means that neither the path nor anything below
+ * it was changed. Filters use 10 bits per path and 7 hash functions, which
+ * gives a false positive rate of about 1%.
+ */
+final class ChangedPathFilter {
+
+	/**
+	 * Maximum number of paths in a filter; commits changing more paths get no
+	 * filter and always have to be diffed.
+	 */
+	static final int MAX_PATHS = 512;
+
+	private static final int BITS_PER_PATH = 10;
+
+	private static final int HASH_COUNT = 7;
+
+	private static final int SEED1 = 0x293ae76f;
+
+	private static final int SEED2 = 0x7e646e2c;
+
+	private ChangedPathFilter() {
+		// static access only
+	}
+
+	/**
+	 * @param paths
+	 *            changed paths including their folders
+	 * @return the filter
+	 */
+	static byte[] create(Collection<String> paths) {
+		// an empty change set still gets a filter, which rejects everything
+		byte[] filter = new byte[Math.max(1,
+				(paths.size() * BITS_PER_PATH + 7) / 8)];
+		int bits = filter.length * 8;
+		for (String path : paths) {
+			Key key = new Key(path);
+			for (int i = 0; i < HASH_COUNT; i++) {
+				int bit = key.getBit(i, bits);
+				filter[bit >>> 3] |= 1 << (bit & 7);
+			}
+		}
+		return filter;
+	}
+
+	/**
+	 * @param buffer
+	 * @param offset
+	 *            start of the filter in the buffer
+	 * @param length
+	 *            length of the filter in bytes
+	 * @param key
+	 * @return false if the path was certainly not changed
+	 */
+	static boolean mayContain(ByteBuffer buffer, int offset, int length,
+			Key key) {
+		int bits = length * 8;
+		for (int i = 0; i < HASH_COUNT; i++) {
+			int bit = key.getBit(i, bits);
+			if ((buffer.get(offset + (bit >>> 3)) & (1 << (bit & 7))) == 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * The hashes of a path, computed once per query instead of once per
+	 * commit.
+	 */
+	static final class Key {
+
+		private final int h1;
+
+		private final int h2;
+
+		Key(String path) {
+			byte[] raw = Constants.encode(path);
+			h1 = murmur3(SEED1, raw);
+			h2 = murmur3(SEED2, raw);
+		}
+
+		int getBit(int i, int bits) {
+			// double hashing; the long avoids overflow into negative values
+			return (int) (((h1 & 0xffffffffL) + i * (h2 & 0xffffffffL))
+					% bits);
+		}
+	}
+
+	private static int murmur3(int seed, byte[] data) {
+		final int c1 = 0xcc9e2d51;
+		final int c2 = 0x1b873593;
+		int h = seed;
+		int blocks = data.length / 4;
+		for (int i = 0; i < blocks; i++) {
+			int k = (data[4 * i] & 0xff) | (data[4 * i + 1] & 0xff) << 8
+					| (data[4 * i + 2] & 0xff) << 16
+					| (data[4 * i + 3] & 0xff) << 24;
+			k *= c1;
+			k = Integer.rotateLeft(k, 15);
+			k *= c2;
+			h ^= k;
+			h = Integer.rotateLeft(h, 13);
+			h = h * 5 + 0xe6546b64;
+		}
+		int k = 0;
+		int tail = blocks * 4;
+		switch (data.length & 3) {
+		case 3:
+			k ^= (data[tail + 2] & 0xff) << 16;
+			//$FALL-THROUGH$
+		case 2:
+			k ^= (data[tail + 1] & 0xff) << 8;
+			//$FALL-THROUGH$
+		case 1:
+			k ^= data[tail] & 0xff;
+			k *= c1;
+			k = Integer.rotateLeft(k, 15);
+			k *= c2;
+			h ^= k;
+			break;
+		default:
+			break;
+		}
+		h ^= data.length;
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+}
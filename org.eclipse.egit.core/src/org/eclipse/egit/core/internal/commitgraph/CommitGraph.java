@@ -0,0 +1,338 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.commitgraph;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.util.NB;
+
+/**
+ * Read-only, memory-mapped graph of the commits of a repository.
+ * <p>
+ * For every commit the graph stores its id, tree id, commit time, generation
+ * number, the positions of its parents and a {@link ChangedPathFilter} of the
+ * paths it changed. Commits are identified by their
+ * position in the sorted id table. The generation number of a commit without
+ * parents is 1; for all others it is one more than the maximum generation of
+ * its parents, so an ancestor always has a lower generation than its
+ * descendants. This allows ancestry queries to stop early without parsing any
+ * commit objects.
+ * <p>
+ * Since commits never change, a graph remains correct when new commits are
+ * created; it just doesn't know about them. Callers must fall back to a
+ * {@code RevWalk} for commits not in the graph.
+ *
+ * @see CommitGraphCache
+ */
+public final class CommitGraph {
+
+	static final int MAGIC = 0x45474347; // "EGCG"
+
+	static final int VERSION = 2;
+
+	static final int HEADER_SIZE = 20;
+
+	private static final int ID_LENGTH = Constants.OBJECT_ID_LENGTH;
+
+	private final ByteBuffer buffer;
+
+	private final int count;
+
+	private final int treeTable;
+
+	private final int timeTable;
+
+	private final int generationTable;
+
+	private final int parentOffsetTable;
+
+	private final int parentTable;
+
+	private final int filterOffsetTable;
+
+	private final int filterTable;
+
+	private CommitGraph(ByteBuffer buffer, int count, int parents) {
+		this.buffer = buffer;
+		this.count = count;
+		treeTable = HEADER_SIZE + count * ID_LENGTH;
+		timeTable = treeTable + count * ID_LENGTH;
+		generationTable = timeTable + count * 4;
+		parentOffsetTable = generationTable + count * 4;
+		parentTable = parentOffsetTable + (count + 1) * 4;
+		filterOffsetTable = parentTable + parents * 4;
+		filterTable = filterOffsetTable + (count + 1) * 4;
+	}
+
+	/**
+	 * Maps a commit graph file into memory.
+	 *
+	 * @param file
+	 * @return the graph, or null if the file is not a valid graph file
+	 * @throws IOException
+	 */
+	static CommitGraph open(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+				FileChannel channel = raf.getChannel()) {
+			long size = channel.size();
+			if (size < HEADER_SIZE || size > Integer.MAX_VALUE)
+				return null;
+			// the mapping stays valid after the channel is closed
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					size);
+			if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+				return null;
+			int count = buffer.getInt(8);
+			int parents = buffer.getInt(12);
+			int filterBytes = buffer.getInt(16);
+			long expected = getFileSize(count, parents, filterBytes);
+			if (count < 0 || parents < 0 || filterBytes < 0
+					|| expected != size)
+				return null;
+			return new CommitGraph(buffer, count, parents);
+		}
+	}
+
+	static long getFileSize(int count, int parents, int filterBytes) {
+		return HEADER_SIZE + 2L * count * ID_LENGTH + 4L * count * 4 + 8
+				+ parents * 4L + filterBytes;
+	}
+
+	/**
+	 * @return the number of commits in this graph
+	 */
+	public int getCommitCount() {
+		return count;
+	}
+
+	/**
+	 * @param id
+	 * @return position of the commit in this graph, or -1 if the graph
+	 *         doesn't contain the commit
+	 */
+	public int find(AnyObjectId id) {
+		byte[] raw = new byte[ID_LENGTH];
+		id.copyRawTo(raw, 0);
+		int low = 0;
+		int high = count;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			int cmp = compareId(mid, raw);
+			if (cmp < 0)
+				low = mid + 1;
+			else if (cmp > 0)
+				high = mid;
+			else
+				return mid;
+		}
+		return -1;
+	}
+
+	private int compareId(int position, byte[] raw) {
+		int offset = HEADER_SIZE + position * ID_LENGTH;
+		for (int i = 0; i < ID_LENGTH; i += 4) {
+			int a = buffer.getInt(offset + i) ^ Integer.MIN_VALUE;
+			int b = NB.decodeInt32(raw, i) ^ Integer.MIN_VALUE;
+			if (a != b)
+				return a < b ? -1 : 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * @param position
+	 * @return id of the commit at the given position
+	 */
+	public ObjectId getId(int position) {
+		return readId(HEADER_SIZE + position * ID_LENGTH);
+	}
+
+	/**
+	 * @param position
+	 * @return id of the tree of the commit at the given position
+	 */
+	public ObjectId getTreeId(int position) {
+		return readId(treeTable + position * ID_LENGTH);
+	}
+
+	private ObjectId readId(int offset) {
+		byte[] raw = new byte[ID_LENGTH];
+		for (int i = 0; i < ID_LENGTH; i++)
+			raw[i] = buffer.get(offset + i);
+		return ObjectId.fromRaw(raw);
+	}
+
+	/**
+	 * @param position
+	 * @return commit time of the commit at the given position, in seconds
+	 *         since the epoch
+	 */
+	public int getCommitTime(int position) {
+		return buffer.getInt(timeTable + position * 4);
+	}
+
+	/**
+	 * @param position
+	 * @return generation number of the commit at the given position
+	 */
+	public int getGeneration(int position) {
+		return buffer.getInt(generationTable + position * 4);
+	}
+
+	/**
+	 * @param position
+	 * @return number of parents of the commit at the given position
+	 */
+	public int getParentCount(int position) {
+		return getParentOffset(position + 1) - getParentOffset(position);
+	}
+
+	/**
+	 * @param position
+	 * @param n
+	 *            index of the parent, starting at 0
+	 * @return position of the n-th parent of the commit at the given position
+	 */
+	public int getParent(int position, int n) {
+		return buffer.getInt(parentTable
+				+ (getParentOffset(position) + n) * 4);
+	}
+
+	private int getParentOffset(int position) {
+		return buffer.getInt(parentOffsetTable + position * 4);
+	}
+
+	/**
+	 * @param position
+	 * @param path
+	 * @return false if the commit at the given position certainly didn't
+	 *         change the path, or anything below it, relative to its first
+	 *         parent (or relative to the empty tree if it has no parents)
+	 */
+	boolean mayHaveChanged(int position, ChangedPathFilter.Key path) {
+		int offset = getFilterOffset(position);
+		int length = getFilterOffset(position + 1) - offset;
+		if (length == 0)
+			return true; // too many changes for a filter
+		return ChangedPathFilter.mayContain(buffer, filterTable + offset,
+				length, path);
+	}
+
+	/**
+	 * @param position
+	 * @return the raw changed path filter of the commit, empty if it has none
+	 */
+	byte[] getChangedPathFilter(int position) {
+		int offset = getFilterOffset(position);
+		byte[] filter = new byte[getFilterOffset(position + 1) - offset];
+		for (int i = 0; i < filter.length; i++)
+			filter[i] = buffer.get(filterTable + offset + i);
+		return filter;
+	}
+
+	private int getFilterOffset(int position) {
+		return buffer.getInt(filterOffsetTable + position * 4);
+	}
+
+	/**
+	 * @param ancestor
+	 *            position of the possible ancestor
+	 * @param descendant
+	 *            position of the possible descendant
+	 * @return true if {@code ancestor} is reachable from {@code descendant}
+	 *         (including if they are the same commit)
+	 */
+	public boolean isAncestor(int ancestor, int descendant) {
+		int minGeneration = getGeneration(ancestor);
+		BitSet seen = new BitSet();
+		Deque<Integer> pending = new ArrayDeque<Integer>();
+		pending.push(Integer.valueOf(descendant));
+		while (!pending.isEmpty()) {
+			int current = pending.pop().intValue();
+			if (current == ancestor)
+				return true;
+			// ancestors of commits with a lower generation have even lower
+			// generations
+			if (getGeneration(current) <= minGeneration || seen.get(current))
+				continue;
+			seen.set(current);
+			for (int i = getParentCount(current) - 1; i >= 0; i--)
+				pending.push(Integer.valueOf(getParent(current, i)));
+		}
+		return false;
+	}
+
+	/**
+	 * Finds a best common ancestor of two commits, i.e. a common ancestor
+	 * which is not an ancestor of any other common ancestor.
+	 *
+	 * @param a
+	 *            position of the first commit
+	 * @param b
+	 *            position of the second commit
+	 * @return position of the merge base, or -1 if the commits have no common
+	 *         ancestor
+	 */
+	public int getMergeBase(int a, int b) {
+		final int reachedFromA = 1;
+		final int reachedFromB = 2;
+		Map<Integer, Integer> flags = new HashMap<Integer, Integer>();
+		// highest generation first: when a commit is polled, all of its
+		// descendants in the walk have already been processed
+		PriorityQueue<Integer> queue = new PriorityQueue<Integer>(16,
+				new Comparator<Integer>() {
+					@Override
+					public int compare(Integer c1, Integer c2) {
+						int g1 = getGeneration(c1.intValue());
+						int g2 = getGeneration(c2.intValue());
+						return g1 > g2 ? -1 : (g1 < g2 ? 1 : 0);
+					}
+				});
+		addFlags(flags, queue, a, reachedFromA);
+		addFlags(flags, queue, b, reachedFromB);
+		while (!queue.isEmpty()) {
+			Integer current = queue.poll();
+			int currentFlags = flags.get(current).intValue();
+			if (currentFlags == (reachedFromA | reachedFromB))
+				return current.intValue();
+			for (int i = 0; i < getParentCount(current.intValue()); i++)
+				addFlags(flags, queue, getParent(current.intValue(), i),
+						currentFlags);
+		}
+		return -1;
+	}
+
+	private static void addFlags(Map<Integer, Integer> flags,
+			PriorityQueue<Integer> queue, int position, int newFlags) {
+		Integer key = Integer.valueOf(position);
+		Integer old = flags.get(key);
+		if (old == null) {
+			flags.put(key, Integer.valueOf(newFlags));
+			queue.add(key);
+		} else {
+			// a queued element's generation doesn't change, so updating its
+			// flags doesn't break the queue order
+			flags.put(key, Integer.valueOf(old.intValue() | newFlags));
+		}
+	}
+}
@@ -0,0 +1,339 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.commitgraph;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.jgit.annotations.Nullable;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdOwnerMap;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.eclipse.jgit.util.FileUtils;
+import org.eclipse.jgit.util.RawParseUtils;
+
+/**
+ * Writes a {@link CommitGraph} file containing all commits reachable from the
+ * refs of a repository.
+ * <p>
+ * Commits contained in an existing graph are copied from it; only commits
+ * missing in the existing graph are read from the object database, and only
+ * their headers are parsed. Their trees are diffed against the trees of their
+ * first parents to create the {@link ChangedPathFilter}s.
+ */
+class CommitGraphBuilder {
+
+	private static final byte[] PARENT = Constants.encodeASCII("parent "); //$NON-NLS-1$
+
+	private final Repository repository;
+
+	private final CommitGraph base;
+
+	private final ObjectIdOwnerMap<Node> newCommits = new ObjectIdOwnerMap<Node>();
+
+	/**
+	 * @param repository
+	 * @param base
+	 *            existing graph to extend, may be null
+	 */
+	CommitGraphBuilder(Repository repository, @Nullable CommitGraph base) {
+		this.repository = repository;
+		this.base = base;
+	}
+
+	/**
+	 * Reads all commits reachable from the refs of the repository which are
+	 * not in the base graph.
+	 *
+	 * @param monitor
+	 * @return number of new commits
+	 * @throws IOException
+	 */
+	int collect(IProgressMonitor monitor) throws IOException {
+		try (ObjectReader reader = repository.newObjectReader()) {
+			Deque<ObjectId> pending = new ArrayDeque<ObjectId>(getTips());
+			while (!pending.isEmpty()) {
+				if (monitor.isCanceled())
+					throw new OperationCanceledException();
+				ObjectId id = pending.pop();
+				if (contains(id))
+					continue;
+				ObjectLoader loader = reader.open(id);
+				if (loader.getType() != Constants.OBJ_COMMIT)
+					continue;
+				Node node = parse(id, loader.getCachedBytes());
+				newCommits.add(node);
+				for (ObjectId parent : node.parents)
+					if (!contains(parent))
+						pending.push(parent);
+			}
+			try (TreeWalk walk = new TreeWalk(reader)) {
+				walk.setRecursive(true);
+				walk.setFilter(TreeFilter.ANY_DIFF);
+				for (Node node : newCommits) {
+					if (monitor.isCanceled())
+						throw new OperationCanceledException();
+					node.changedPaths = getChangedPaths(walk, node);
+				}
+			}
+		}
+		return newCommits.size();
+	}
+
+	private byte[] getChangedPaths(TreeWalk walk, Node node)
+			throws IOException {
+		walk.reset();
+		if (node.parents.length > 0)
+			walk.addTree(getTreeId(node.parents[0]));
+		else
+			walk.addTree(new EmptyTreeIterator());
+		walk.addTree(node.tree);
+		Set<String> paths = new HashSet<String>();
+		while (walk.next()) {
+			String path = walk.getPathString();
+			// the folders containing a changed file are changed as well
+			for (int end = path.indexOf('/'); end > 0; end = path.indexOf(
+					'/', end + 1))
+				paths.add(path.substring(0, end));
+			paths.add(path);
+			if (paths.size() > ChangedPathFilter.MAX_PATHS)
+				return new byte[0];
+		}
+		return ChangedPathFilter.create(paths);
+	}
+
+	private ObjectId getTreeId(AnyObjectId commit) {
+		Node node = newCommits.get(commit);
+		if (node != null)
+			return node.tree;
+		return base.getTreeId(base.find(commit));
+	}
+
+	private Collection<ObjectId> getTips() throws IOException {
+		List<ObjectId> tips = new ArrayList<ObjectId>();
+		for (Ref ref : repository.getRefDatabase().getRefs(RefDatabase.ALL)
+				.values()) {
+			Ref peeled = repository.peel(ref);
+			ObjectId id = peeled.getPeeledObjectId() != null ? peeled
+					.getPeeledObjectId() : peeled.getObjectId();
+			if (id != null)
+				tips.add(id);
+		}
+		return tips;
+	}
+
+	private boolean contains(AnyObjectId id) {
+		return newCommits.contains(id) || (base != null && base.find(id) >= 0);
+	}
+
+	private static Node parse(AnyObjectId id, byte[] raw) {
+		// see RevCommit.parseCanonical
+		Node node = new Node(id);
+		node.tree = ObjectId.fromString(raw, 5);
+		int ptr = 46;
+		List<ObjectId> parents = new ArrayList<ObjectId>(2);
+		while (RawParseUtils.match(raw, ptr, PARENT) >= 0) {
+			parents.add(ObjectId.fromString(raw, ptr + PARENT.length));
+			ptr += PARENT.length + Constants.OBJECT_ID_STRING_LENGTH + 1;
+		}
+		node.parents = parents.toArray(new ObjectId[parents.size()]);
+		int committer = RawParseUtils.committer(raw, ptr);
+		if (committer > 0) {
+			int emailEnd = RawParseUtils.nextLF(raw, committer, '>');
+			node.commitTime = RawParseUtils.parseBase10(raw, emailEnd, null);
+		}
+		return node;
+	}
+
+	/**
+	 * Writes the base graph merged with the collected commits.
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	void write(File file) throws IOException {
+		int baseCount = base != null ? base.getCommitCount() : 0;
+		List<Node> added = new ArrayList<Node>(newCommits.size());
+		for (Node node : newCommits)
+			added.add(node);
+		Collections.sort(added);
+		int count = baseCount + added.size();
+
+		// merge the sorted ids; merged[i] is the commit at position i, either
+		// a position in the base graph or a node
+		Object[] merged = new Object[count];
+		int[] basePositions = new int[baseCount];
+		int b = 0;
+		int n = 0;
+		for (int i = 0; i < count; i++) {
+			if (n == added.size() || (b < baseCount
+					&& base.getId(b).compareTo(added.get(n)) < 0)) {
+				basePositions[b] = i;
+				merged[i] = Integer.valueOf(b++);
+			} else {
+				added.get(n).position = i;
+				merged[i] = added.get(n++);
+			}
+		}
+		computeGenerations(added);
+
+		int[] parentOffsets = new int[count + 1];
+		for (int i = 0; i < count; i++)
+			parentOffsets[i + 1] = parentOffsets[i] + getParentCount(merged[i]);
+		byte[][] filters = new byte[count][];
+		int[] filterOffsets = new int[count + 1];
+		for (int i = 0; i < count; i++) {
+			if (merged[i] instanceof Node)
+				filters[i] = ((Node) merged[i]).changedPaths;
+			else
+				filters[i] = base.getChangedPathFilter(((Integer) merged[i])
+						.intValue());
+			filterOffsets[i + 1] = filterOffsets[i] + filters[i].length;
+		}
+
+		FileUtils.mkdirs(file.getParentFile(), true);
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(CommitGraph.MAGIC);
+			out.writeInt(CommitGraph.VERSION);
+			out.writeInt(count);
+			out.writeInt(parentOffsets[count]);
+			out.writeInt(filterOffsets[count]);
+			byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+			for (Object entry : merged) {
+				if (entry instanceof Node)
+					((Node) entry).copyRawTo(raw, 0);
+				else
+					base.getId(((Integer) entry).intValue()).copyRawTo(raw, 0);
+				out.write(raw);
+			}
+			for (Object entry : merged) {
+				if (entry instanceof Node)
+					((Node) entry).tree.copyRawTo(raw, 0);
+				else
+					base.getTreeId(((Integer) entry).intValue()).copyRawTo(raw,
+							0);
+				out.write(raw);
+			}
+			for (Object entry : merged)
+				out.writeInt(entry instanceof Node ? ((Node) entry).commitTime
+						: base.getCommitTime(((Integer) entry).intValue()));
+			for (Object entry : merged)
+				out.writeInt(entry instanceof Node ? ((Node) entry).generation
+						: base.getGeneration(((Integer) entry).intValue()));
+			for (int offset : parentOffsets)
+				out.writeInt(offset);
+			for (Object entry : merged) {
+				if (entry instanceof Node) {
+					for (ObjectId parent : ((Node) entry).parents)
+						out.writeInt(positionOf(parent, basePositions));
+				} else {
+					int position = ((Integer) entry).intValue();
+					for (int i = 0; i < base.getParentCount(position); i++)
+						out.writeInt(basePositions[base.getParent(position, i)]);
+				}
+			}
+			for (int offset : filterOffsets)
+				out.writeInt(offset);
+			for (byte[] filter : filters)
+				out.write(filter);
+		}
+	}
+
+	private int getParentCount(Object entry) {
+		if (entry instanceof Node)
+			return ((Node) entry).parents.length;
+		return base.getParentCount(((Integer) entry).intValue());
+	}
+
+	private int positionOf(AnyObjectId id, int[] basePositions) {
+		Node node = newCommits.get(id);
+		if (node != null)
+			return node.position;
+		return basePositions[base.find(id)];
+	}
+
+	private int generationOf(AnyObjectId id) {
+		Node node = newCommits.get(id);
+		if (node != null)
+			return node.generation;
+		return base.getGeneration(base.find(id));
+	}
+
+	private void computeGenerations(List<Node> nodes) {
+		// iterative post-order traversal; history can be too deep for
+		// recursion
+		Deque<Node> stack = new ArrayDeque<Node>();
+		for (Node start : nodes) {
+			if (start.generation > 0)
+				continue;
+			stack.push(start);
+			while (!stack.isEmpty()) {
+				Node node = stack.peek();
+				boolean ready = true;
+				for (ObjectId parent : node.parents) {
+					Node parentNode = newCommits.get(parent);
+					if (parentNode != null && parentNode.generation == 0) {
+						stack.push(parentNode);
+						ready = false;
+					}
+				}
+				if (!ready)
+					continue;
+				stack.pop();
+				int generation = 1;
+				for (ObjectId parent : node.parents)
+					generation = Math.max(generation,
+							generationOf(parent) + 1);
+				node.generation = generation;
+			}
+		}
+	}
+
+	private static class Node extends ObjectIdOwnerMap.Entry {
+
+		ObjectId tree;
+
+		ObjectId[] parents;
+
+		int commitTime;
+
+		int generation;
+
+		int position;
+
+		byte[] changedPaths;
+
+		Node(AnyObjectId id) {
+			super(id);
+		}
+	}
+}
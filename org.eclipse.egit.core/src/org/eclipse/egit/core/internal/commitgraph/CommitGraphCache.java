@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.commitgraph;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.egit.core.Activator;
+import org.eclipse.egit.core.GitCorePreferences;
+import org.eclipse.egit.core.internal.CoreText;
+import org.eclipse.egit.core.internal.util.RepositoryFileCache;
+import org.eclipse.jgit.annotations.Nullable;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Maintains a {@link CommitGraph} file per repository in the state location of
+ * the plug-in.
+ * <p>
+ * The graph is extended in a background job whenever refs change. Until the
+ * first graph of a repository has been written, {@link #get(Repository)}
+ * returns null and callers have to walk the commits themselves. Shallow
+ * repositories have no graph, as the parents of their oldest commits are
+ * missing.
+ */
+public class CommitGraphCache {
+
+	private static final String GRAPH_FOLDER = "commitgraph"; //$NON-NLS-1$
+
+	private static final String GRAPH_EXTENSION = ".graph"; //$NON-NLS-1$
+
+	private static final String SHALLOW = "shallow"; //$NON-NLS-1$
+
+	private static final RepositoryFileCache<CommitGraph> graphs = new GraphFiles();
+
+	private CommitGraphCache() {
+		// static access only
+	}
+
+	/**
+	 * Returns the current commit graph of a repository. The graph may not
+	 * contain the newest commits; it is updated in the background.
+	 *
+	 * @param repository
+	 * @return the graph, or null if there is none yet or commit graphs are
+	 *         disabled
+	 */
+	@Nullable
+	public static CommitGraph get(Repository repository) {
+		return graphs.get(repository);
+	}
+
+	/**
+	 * Stops listening to ref changes and cancels running updates
+	 */
+	public static void dispose() {
+		graphs.dispose();
+	}
+
+	private static class GraphFiles extends RepositoryFileCache<CommitGraph> {
+
+		GraphFiles() {
+			super("commit graph", CoreText.CommitGraphCache_updating, //$NON-NLS-1$
+					GRAPH_EXTENSION, GitCorePreferences.core_commitGraph);
+		}
+
+		@Override
+		protected File getFolder(Repository repository) {
+			return Activator.getDefault().getStateLocation()
+					.append(GRAPH_FOLDER).toFile();
+		}
+
+		@Override
+		protected String getPrefix(Repository repository) {
+			MessageDigest digest = Constants.newMessageDigest();
+			digest.update(Constants.encode(repository.getDirectory()
+					.getAbsolutePath()));
+			return ObjectId.fromRaw(digest.digest()).name() + '.';
+		}
+
+		@Override
+		protected boolean isSupported(Repository repository) {
+			// the graph cannot be built without the missing parents
+			return !new File(repository.getDirectory(), SHALLOW).isFile();
+		}
+
+		@Override
+		protected CommitGraph open(File file) throws IOException {
+			return CommitGraph.open(file);
+		}
+
+		@Override
+		protected int write(Repository repository,
+				@Nullable CommitGraph current, File file,
+				IProgressMonitor monitor) throws IOException {
+			CommitGraphBuilder builder = new CommitGraphBuilder(repository,
+					current);
+			int added = builder.collect(monitor);
+			if (added > 0)
+				builder.write(file);
+			return added;
+		}
+	}
+}
@@ -0,0 +1,277 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.commitgraph;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * Computes the history of a path from a {@link CommitGraph}.
+ * <p>
+ * The result is the same as that of a {@code RevWalk} with a path filter and
+ * parent rewriting: commits which don't change the path are left out, merges
+ * which took the path unchanged from one of their parents only follow that
+ * parent, and the parents of the remaining commits are rewritten to the
+ * nearest commits in the result. Commits are not parsed, and the trees of
+ * commits whose {@link ChangedPathFilter} shows that they didn't change the
+ * path are not diffed.
+ */
+public class PathHistory {
+
+	private static final byte SEEN = 1;
+
+	private static final byte REWRITE = 2;
+
+	private static final byte NO_PARENTS = 4;
+
+	private static final int[] NONE = new int[0];
+
+	/**
+	 * A commit in the history of a path.
+	 */
+	public static final class Entry {
+
+		private final int position;
+
+		private final int[] parents;
+
+		Entry(int position, int[] parents) {
+			this.position = position;
+			this.parents = parents;
+		}
+
+		/**
+		 * @return position of the commit in the graph
+		 */
+		public int getPosition() {
+			return position;
+		}
+
+		/**
+		 * @return positions of the rewritten parents of the commit
+		 */
+		public int[] getParents() {
+			return parents;
+		}
+	}
+
+	private final CommitGraph graph;
+
+	private final ObjectReader reader;
+
+	private final ChangedPathFilter.Key key;
+
+	private final TreeFilter filter;
+
+	private final byte[] flags;
+
+	// the only parent followed by a merge, or -1
+	private final int[] onlyParent;
+
+	// 1 + rewritten position, or 0 if not yet computed
+	private final int[] rewritten;
+
+	private final int[] order;
+
+	private int nextOrder;
+
+	/**
+	 * @param graph
+	 * @param reader
+	 *            reader used to diff trees
+	 * @param path
+	 *            repository relative path of a file or folder, not empty
+	 */
+	public PathHistory(CommitGraph graph, ObjectReader reader, String path) {
+		this.graph = graph;
+		this.reader = reader;
+		key = new ChangedPathFilter.Key(path);
+		filter = AndTreeFilter.create(
+				PathFilterGroup.createFromStrings(Collections.singleton(path)),
+				TreeFilter.ANY_DIFF);
+		int count = graph.getCommitCount();
+		flags = new byte[count];
+		onlyParent = new int[count];
+		rewritten = new int[count];
+		order = new int[count];
+	}
+
+	/**
+	 * @param starts
+	 *            positions of the commits to start from
+	 * @param monitor
+	 * @return the commits changing the path, newest first
+	 * @throws IOException
+	 */
+	public List<Entry> compute(int[] starts, IProgressMonitor monitor)
+			throws IOException {
+		// newest first, in the order of insertion for equal commit times,
+		// like the queue of a RevWalk
+		PriorityQueue<Integer> queue = new PriorityQueue<Integer>(64,
+				new Comparator<Integer>() {
+					@Override
+					public int compare(Integer c1, Integer c2) {
+						int t1 = graph.getCommitTime(c1.intValue());
+						int t2 = graph.getCommitTime(c2.intValue());
+						if (t1 != t2)
+							return t1 > t2 ? -1 : 1;
+						int o1 = order[c1.intValue()];
+						int o2 = order[c2.intValue()];
+						return o1 < o2 ? -1 : (o1 > o2 ? 1 : 0);
+					}
+				});
+		for (int start : starts)
+			add(queue, start);
+		List<Integer> included = new ArrayList<Integer>();
+		try (TreeWalk walk = new TreeWalk(reader)) {
+			walk.setFilter(filter);
+			walk.setRecursive(filter.shouldBeRecursive());
+			while (!queue.isEmpty()) {
+				if (monitor.isCanceled())
+					throw new OperationCanceledException();
+				int commit = queue.poll().intValue();
+				if (include(walk, commit))
+					included.add(Integer.valueOf(commit));
+				for (int parent : getParents(commit))
+					add(queue, parent);
+			}
+		}
+		List<Entry> result = new ArrayList<Entry>(included.size());
+		for (Integer commit : included)
+			result.add(new Entry(commit.intValue(),
+					rewriteParents(commit.intValue())));
+		return result;
+	}
+
+	private void add(PriorityQueue<Integer> queue, int commit) {
+		if ((flags[commit] & SEEN) != 0)
+			return;
+		flags[commit] |= SEEN;
+		order[commit] = nextOrder++;
+		onlyParent[commit] = -1;
+		queue.add(Integer.valueOf(commit));
+	}
+
+	private int[] getParents(int commit) {
+		if ((flags[commit] & NO_PARENTS) != 0)
+			return NONE;
+		if (onlyParent[commit] >= 0)
+			return new int[] { onlyParent[commit] };
+		int[] parents = new int[graph.getParentCount(commit)];
+		for (int i = 0; i < parents.length; i++)
+			parents[i] = graph.getParent(commit, i);
+		return parents;
+	}
+
+	// see TreeRevFilter
+	private boolean include(TreeWalk walk, int commit) throws IOException {
+		int[] parents = getParents(commit);
+		// the filter is relative to the first parent of the graph, which may
+		// have been cut off by a merge
+		boolean filterApplies = parents.length > 0
+				|| graph.getParentCount(commit) == 0;
+		if (filterApplies && !graph.mayHaveChanged(commit, key)) {
+			if (parents.length > 1)
+				onlyParent[commit] = parents[0];
+			flags[commit] |= REWRITE;
+			return false;
+		}
+		walk.reset();
+		for (int parent : parents)
+			walk.addTree(graph.getTreeId(parent));
+		walk.addTree(graph.getTreeId(commit));
+		if (parents.length <= 1) {
+			if (walk.next())
+				return true;
+			flags[commit] |= REWRITE;
+			return false;
+		}
+
+		int n = parents.length;
+		int[] changes = new int[n];
+		int[] adds = new int[n];
+		while (walk.next()) {
+			int mode = walk.getRawMode(n);
+			for (int i = 0; i < n; i++) {
+				int parentMode = walk.getRawMode(i);
+				if (mode == parentMode && walk.idEqual(i, n))
+					continue;
+				changes[i]++;
+				if (parentMode == 0 && mode != 0)
+					adds[i]++;
+			}
+		}
+		for (int i = 0; i < n; i++) {
+			if (changes[i] == 0) {
+				// same as this parent, so pretend to be it
+				onlyParent[commit] = parents[i];
+				flags[commit] |= REWRITE;
+				return false;
+			}
+			if (changes[i] == adds[i])
+				// the parent doesn't have the path at all, its history is
+				// not relevant
+				flags[parents[i]] |= NO_PARENTS;
+		}
+		return true;
+	}
+
+	// see RewriteGenerator
+	private int[] rewriteParents(int commit) {
+		int[] parents = getParents(commit);
+		List<Integer> result = new ArrayList<Integer>(parents.length);
+		for (int parent : parents) {
+			int p = rewrite(parent);
+			if (p >= 0 && !result.contains(Integer.valueOf(p)))
+				result.add(Integer.valueOf(p));
+		}
+		int[] positions = new int[result.size()];
+		for (int i = 0; i < positions.length; i++)
+			positions[i] = result.get(i).intValue();
+		return positions;
+	}
+
+	private int rewrite(int commit) {
+		List<Integer> chain = new ArrayList<Integer>();
+		int p = commit;
+		int result;
+		for (;;) {
+			if (rewritten[p] != 0) {
+				result = rewritten[p] - 1;
+				break;
+			}
+			chain.add(Integer.valueOf(p));
+			int[] parents = getParents(p);
+			if (parents.length > 1 || (flags[p] & REWRITE) == 0) {
+				result = p;
+				break;
+			}
+			if (parents.length == 0) {
+				result = -1;
+				break;
+			}
+			p = parents[0];
+		}
+		for (Integer c : chain)
+			rewritten[c.intValue()] = result + 1;
+		return result;
+	}
+}
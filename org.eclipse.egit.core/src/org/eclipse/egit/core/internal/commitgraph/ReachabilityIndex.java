@@ -0,0 +1,346 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.commitgraph;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.WeakHashMap;
+
+import org.eclipse.jgit.annotations.Nullable;
+import org.eclipse.jgit.events.ListenerHandle;
+import org.eclipse.jgit.events.RefsChangedEvent;
+import org.eclipse.jgit.events.RefsChangedListener;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+/**
+ * Answers which refs contain a commit and which tags are nearest to it, using
+ * a {@link CommitGraph}.
+ * <p>
+ * The index adds the children of every commit to the graph, so the
+ * descendants of a commit can be walked as easily as its ancestors, and maps
+ * the commits of the tags to graph positions. Walks are ordered and cut off
+ * by generation numbers. The children are computed once per graph; the tags
+ * are looked up again after refs have changed.
+ */
+public final class ReachabilityIndex {
+
+	private static final Map<Repository, Entry> entries = new WeakHashMap<Repository, Entry>();
+
+	private static ListenerHandle refsChangedHandle;
+
+	private final CommitGraph graph;
+
+	private final int[] childOffsets;
+
+	private final int[] children;
+
+	// position of the tagged commit -> tag with the greatest name
+	private final Map<Integer, Ref> tags;
+
+	private final boolean allTagsInGraph;
+
+	/**
+	 * @param graph
+	 * @param repository
+	 *            repository to read the tags from
+	 * @throws IOException
+	 */
+	ReachabilityIndex(CommitGraph graph, Repository repository)
+			throws IOException {
+		this(graph, null, repository);
+	}
+
+	private ReachabilityIndex(CommitGraph graph, ReachabilityIndex previous,
+			Repository repository) throws IOException {
+		this.graph = graph;
+		if (previous != null && previous.graph == graph) {
+			childOffsets = previous.childOffsets;
+			children = previous.children;
+		} else {
+			int count = graph.getCommitCount();
+			childOffsets = new int[count + 1];
+			for (int i = 0; i < count; i++)
+				for (int j = 0; j < graph.getParentCount(i); j++)
+					childOffsets[graph.getParent(i, j) + 1]++;
+			for (int i = 0; i < count; i++)
+				childOffsets[i + 1] += childOffsets[i];
+			children = new int[childOffsets[count]];
+			int[] filled = new int[count];
+			for (int i = 0; i < count; i++) {
+				for (int j = 0; j < graph.getParentCount(i); j++) {
+					int parent = graph.getParent(i, j);
+					children[childOffsets[parent] + filled[parent]++] = i;
+				}
+			}
+		}
+		tags = new HashMap<Integer, Ref>();
+		boolean complete = true;
+		try (ObjectReader reader = repository.newObjectReader()) {
+			for (Ref tag : repository.getTags().values()) {
+				Ref peeled = repository.peel(tag);
+				ObjectId target = peeled.getPeeledObjectId() != null ? peeled
+						.getPeeledObjectId() : peeled.getObjectId();
+				if (target == null)
+					continue;
+				int position = graph.find(target);
+				if (position < 0) {
+					// tags of trees and blobs are never in the graph
+					if (!reader.has(target) || reader.open(target)
+							.getType() == Constants.OBJ_COMMIT)
+						complete = false;
+					continue;
+				}
+				// the tag with the greatest name wins, as when iterating
+				// over all tags
+				Integer key = Integer.valueOf(position);
+				Ref old = tags.get(key);
+				if (old == null || old.getName().compareTo(tag.getName()) < 0)
+					tags.put(key, tag);
+			}
+		}
+		allTagsInGraph = complete;
+	}
+
+	/**
+	 * Returns the index for the current commit graph and tags of a
+	 * repository.
+	 *
+	 * @param repository
+	 * @return the index, or null if there is no commit graph
+	 * @throws IOException
+	 */
+	@Nullable
+	public static ReachabilityIndex get(Repository repository)
+			throws IOException {
+		CommitGraph graph = CommitGraphCache.get(repository);
+		if (graph == null)
+			return null;
+		Entry entry;
+		synchronized (entries) {
+			if (refsChangedHandle == null)
+				refsChangedHandle = Repository.getGlobalListenerList()
+						.addRefsChangedListener(new RefsChangedListener() {
+							@Override
+							public void onRefsChanged(RefsChangedEvent event) {
+								refsChanged(event.getRepository());
+							}
+						});
+			entry = entries.get(repository);
+			if (entry == null) {
+				entry = new Entry();
+				entries.put(repository, entry);
+			}
+		}
+		return entry.get(repository, graph);
+	}
+
+	private static void refsChanged(Repository repository) {
+		Entry entry;
+		synchronized (entries) {
+			entry = entries.get(repository);
+		}
+		if (entry != null)
+			entry.stale = true;
+	}
+
+	/**
+	 * Stops listening to ref changes and drops all indexes
+	 */
+	public static void dispose() {
+		synchronized (entries) {
+			if (refsChangedHandle != null) {
+				refsChangedHandle.remove();
+				refsChangedHandle = null;
+			}
+			entries.clear();
+		}
+	}
+
+	/**
+	 * @param commit
+	 * @return whether the commit is in the index
+	 */
+	public boolean contains(AnyObjectId commit) {
+		return graph.find(commit) >= 0;
+	}
+
+	/**
+	 * Finds the refs from which a commit is reachable. Refs whose commits are
+	 * not in the graph yet are checked with the walk.
+	 *
+	 * @param walk
+	 * @param commit
+	 *            a commit parsed by the walk
+	 * @param refs
+	 * @return the refs containing the commit, in the order of {@code refs},
+	 *         or null if the commit is not in the index
+	 * @throws IOException
+	 */
+	@Nullable
+	public List<Ref> findRefsContaining(RevWalk walk, RevCommit commit,
+			Collection<Ref> refs) throws IOException {
+		int position = graph.find(commit);
+		if (position < 0)
+			return null;
+		int[] refPositions = new int[refs.size()];
+		int maxGeneration = 0;
+		int i = 0;
+		for (Ref ref : refs) {
+			ObjectId target = ref.getPeeledObjectId() != null ? ref
+					.getPeeledObjectId() : ref.getObjectId();
+			int refPosition = target != null ? graph.find(target) : -1;
+			refPositions[i++] = refPosition;
+			if (refPosition >= 0)
+				maxGeneration = Math.max(maxGeneration,
+						graph.getGeneration(refPosition));
+		}
+		BitSet descendants = getDescendants(position, maxGeneration);
+		List<Ref> result = new ArrayList<Ref>();
+		i = 0;
+		for (Ref ref : refs) {
+			int refPosition = refPositions[i++];
+			if (refPosition >= 0) {
+				if (descendants.get(refPosition))
+					result.add(ref);
+			} else if (walk.isMergedInto(commit,
+					walk.parseCommit(ref.getObjectId())))
+				result.add(ref);
+		}
+		return result;
+	}
+
+	private BitSet getDescendants(int position, int maxGeneration) {
+		BitSet seen = new BitSet(graph.getCommitCount());
+		int[] stack = new int[64];
+		int size = 0;
+		stack[size++] = position;
+		seen.set(position);
+		while (size > 0) {
+			int current = stack[--size];
+			// descendants of commits at the highest generation of the refs
+			// can't be commits of refs
+			if (graph.getGeneration(current) >= maxGeneration)
+				continue;
+			for (int i = childOffsets[current]; i < childOffsets[current
+					+ 1]; i++) {
+				int child = children[i];
+				if (seen.get(child))
+					continue;
+				seen.set(child);
+				if (size == stack.length) {
+					int[] larger = new int[stack.length * 2];
+					System.arraycopy(stack, 0, larger, 0, size);
+					stack = larger;
+				}
+				stack[size++] = child;
+			}
+		}
+		return seen;
+	}
+
+	/**
+	 * @param commit
+	 * @return whether {@link #findNearestTag(AnyObjectId, boolean)} can
+	 *         answer for the commit: it and the commits of all tags are in
+	 *         the graph
+	 */
+	public boolean canFindTags(AnyObjectId commit) {
+		return allTagsInGraph && contains(commit);
+	}
+
+	/**
+	 * Finds the nearest tag of another commit among the ancestors or the
+	 * descendants of a commit. No other tag lies between the commit and the
+	 * tag found.
+	 *
+	 * @param commit
+	 *            a commit for which {@link #canFindTags(AnyObjectId)} is true
+	 * @param searchDescendants
+	 *            whether to search the descendants instead of the ancestors
+	 * @return the tag, or null if there is none
+	 */
+	@Nullable
+	public Ref findNearestTag(AnyObjectId commit,
+			final boolean searchDescendants) {
+		int position = graph.find(commit);
+		if (position < 0 || tags.isEmpty())
+			return null;
+		// ancestors by descending and descendants by ascending generation:
+		// a commit is polled only after all commits between it and the
+		// start
+		PriorityQueue<Integer> queue = new PriorityQueue<Integer>(16,
+				new Comparator<Integer>() {
+					@Override
+					public int compare(Integer c1, Integer c2) {
+						int g1 = graph.getGeneration(c1.intValue());
+						int g2 = graph.getGeneration(c2.intValue());
+						int result = g1 < g2 ? -1 : (g1 > g2 ? 1 : 0);
+						return searchDescendants ? result : -result;
+					}
+				});
+		BitSet seen = new BitSet(graph.getCommitCount());
+		seen.set(position);
+		queue.add(Integer.valueOf(position));
+		while (!queue.isEmpty()) {
+			Integer current = queue.poll();
+			if (current.intValue() != position) {
+				Ref tag = tags.get(current);
+				if (tag != null)
+					return tag;
+			}
+			int c = current.intValue();
+			if (searchDescendants) {
+				for (int i = childOffsets[c]; i < childOffsets[c + 1]; i++)
+					add(queue, seen, children[i]);
+			} else {
+				for (int i = 0; i < graph.getParentCount(c); i++)
+					add(queue, seen, graph.getParent(c, i));
+			}
+		}
+		return null;
+	}
+
+	private static void add(PriorityQueue<Integer> queue, BitSet seen,
+			int position) {
+		if (seen.get(position))
+			return;
+		seen.set(position);
+		queue.add(Integer.valueOf(position));
+	}
+
+	private static class Entry {
+
+		private ReachabilityIndex index;
+
+		private volatile boolean stale = true;
+
+		synchronized ReachabilityIndex get(Repository repository,
+				CommitGraph graph) throws IOException {
+			if (index == null || index.graph != graph || stale) {
+				stale = false;
+				index = new ReachabilityIndex(graph, index, repository);
+			}
+			return index;
+		}
+	}
+}
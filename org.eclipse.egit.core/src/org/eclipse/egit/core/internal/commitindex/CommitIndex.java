@@ -0,0 +1,403 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.commitindex;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.eclipse.jgit.annotations.Nullable;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.util.IntList;
+import org.eclipse.jgit.util.NB;
+import org.eclipse.jgit.util.RawParseUtils;
+
+/**
+ * Read-only, memory-mapped inverted index of the commit messages, author and
+ * committer names and e-mail addresses of a repository.
+ * <p>
+ * Texts are split into lower case tokens of letters and digits. For every
+ * token the index stores the ordinals of the commits containing it. Ordinals
+ * are assigned in the order in which commits are added, so an index can be
+ * extended without renumbering; a table of ordinals sorted by commit id maps
+ * ids to ordinals.
+ * <p>
+ * The index only narrows down the commits a search has to look at:
+ * {@link #findCandidates(String)} returns a superset of the commits whose
+ * indexed texts or ids contain the search text, and callers still have to
+ * match the candidates themselves. Commits that are not in the index yet must
+ * always be matched.
+ *
+ * @see CommitIndexCache
+ */
+public final class CommitIndex {
+
+	static final int MAGIC = 0x45434958; // "ECIX"
+
+	static final int VERSION = 1;
+
+	static final int HEADER_SIZE = 28;
+
+	/**
+	 * Words shorter than this are contained in too many tokens to narrow
+	 * down a search; they are not looked up.
+	 */
+	static final int MIN_WORD_LENGTH = 2;
+
+	private static final int ID_LENGTH = Constants.OBJECT_ID_LENGTH;
+
+	private final ByteBuffer buffer;
+
+	private final int count;
+
+	private final int tipCount;
+
+	private final int tokenCount;
+
+	private final int sortedTable;
+
+	private final int tipTable;
+
+	private final int tokenOffsetTable;
+
+	private final int tokenTable;
+
+	private final int postingOffsetTable;
+
+	private final int postingTable;
+
+	private CommitIndex(ByteBuffer buffer, int count, int tipCount,
+			int tokenCount, int tokenBytes) {
+		this.buffer = buffer;
+		this.count = count;
+		this.tipCount = tipCount;
+		this.tokenCount = tokenCount;
+		sortedTable = HEADER_SIZE + count * ID_LENGTH;
+		tipTable = sortedTable + count * 4;
+		tokenOffsetTable = tipTable + tipCount * ID_LENGTH;
+		tokenTable = tokenOffsetTable + (tokenCount + 1) * 4;
+		postingOffsetTable = tokenTable + tokenBytes;
+		postingTable = postingOffsetTable + (tokenCount + 1) * 4;
+	}
+
+	/**
+	 * Maps a commit index file into memory.
+	 *
+	 * @param file
+	 * @return the index, or null if the file is not a valid index file
+	 * @throws IOException
+	 */
+	static CommitIndex open(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+				FileChannel channel = raf.getChannel()) {
+			long size = channel.size();
+			if (size < HEADER_SIZE || size > Integer.MAX_VALUE)
+				return null;
+			// the mapping stays valid after the channel is closed
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					size);
+			if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+				return null;
+			int count = buffer.getInt(8);
+			int tipCount = buffer.getInt(12);
+			int tokenCount = buffer.getInt(16);
+			int tokenBytes = buffer.getInt(20);
+			int postingBytes = buffer.getInt(24);
+			if (count < 0 || tipCount < 0 || tokenCount < 0 || tokenBytes < 0
+					|| postingBytes < 0)
+				return null;
+			long expected = getFileSize(count, tipCount, tokenCount,
+					tokenBytes, postingBytes);
+			if (expected != size)
+				return null;
+			return new CommitIndex(buffer, count, tipCount, tokenCount,
+					tokenBytes);
+		}
+	}
+
+	static long getFileSize(int count, int tipCount, int tokenCount,
+			int tokenBytes, int postingBytes) {
+		return HEADER_SIZE + (long) count * (ID_LENGTH + 4)
+				+ (long) tipCount * ID_LENGTH + 8L * (tokenCount + 1)
+				+ tokenBytes + postingBytes;
+	}
+
+	/**
+	 * Splits a text into lower case tokens of letters and digits.
+	 *
+	 * @param text
+	 * @param tokens
+	 *            receives the tokens
+	 */
+	static void tokenize(String text, Collection<String> tokens) {
+		String lower = text.toLowerCase(Locale.ROOT);
+		int start = -1;
+		for (int i = 0; i < lower.length(); i++) {
+			if (Character.isLetterOrDigit(lower.charAt(i))) {
+				if (start < 0)
+					start = i;
+			} else if (start >= 0) {
+				tokens.add(lower.substring(start, i));
+				start = -1;
+			}
+		}
+		if (start >= 0)
+			tokens.add(lower.substring(start));
+	}
+
+	/**
+	 * @return the number of commits in this index
+	 */
+	public int getCommitCount() {
+		return count;
+	}
+
+	/**
+	 * @param ordinal
+	 * @return id of the commit
+	 */
+	ObjectId getId(int ordinal) {
+		return readId(HEADER_SIZE + ordinal * ID_LENGTH);
+	}
+
+	private ObjectId readId(int offset) {
+		byte[] raw = new byte[ID_LENGTH];
+		for (int i = 0; i < ID_LENGTH; i++)
+			raw[i] = buffer.get(offset + i);
+		return ObjectId.fromRaw(raw);
+	}
+
+	/**
+	 * @param id
+	 * @return ordinal of the commit in this index, or -1 if the index doesn't
+	 *         contain the commit
+	 */
+	public int find(AnyObjectId id) {
+		byte[] raw = new byte[ID_LENGTH];
+		id.copyRawTo(raw, 0);
+		int low = 0;
+		int high = count;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			int ordinal = buffer.getInt(sortedTable + mid * 4);
+			int cmp = compareId(ordinal, raw);
+			if (cmp < 0)
+				low = mid + 1;
+			else if (cmp > 0)
+				high = mid;
+			else
+				return ordinal;
+		}
+		return -1;
+	}
+
+	private int compareId(int ordinal, byte[] raw) {
+		int offset = HEADER_SIZE + ordinal * ID_LENGTH;
+		for (int i = 0; i < ID_LENGTH; i += 4) {
+			int a = buffer.getInt(offset + i) ^ Integer.MIN_VALUE;
+			int b = NB.decodeInt32(raw, i) ^ Integer.MIN_VALUE;
+			if (a != b)
+				return a < b ? -1 : 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * @return the ref targets the index was built from; all commits reachable
+	 *         from them are in the index
+	 */
+	List<ObjectId> getTips() {
+		List<ObjectId> tips = new ArrayList<ObjectId>(tipCount);
+		for (int i = 0; i < tipCount; i++)
+			tips.add(readId(tipTable + i * ID_LENGTH));
+		return tips;
+	}
+
+	/**
+	 * @return the number of distinct tokens
+	 */
+	int getTokenCount() {
+		return tokenCount;
+	}
+
+	/**
+	 * @param token
+	 * @return the UTF-8 encoded token
+	 */
+	byte[] getRawToken(int token) {
+		int start = getTokenOffset(token);
+		return read(tokenTable + start, getTokenOffset(token + 1) - start);
+	}
+
+	/**
+	 * @param token
+	 * @param ordinals
+	 *            receives the ascending ordinals of the commits containing the
+	 *            token
+	 */
+	void getPostings(int token, IntList ordinals) {
+		int start = postingTable
+				+ buffer.getInt(postingOffsetTable + token * 4);
+		int end = postingTable
+				+ buffer.getInt(postingOffsetTable + (token + 1) * 4);
+		int ordinal = -1;
+		int ptr = start;
+		while (ptr < end) {
+			int delta = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = buffer.get(ptr++);
+				delta |= (b & 0x7f) << shift;
+				shift += 7;
+			} while (b < 0);
+			ordinal += delta;
+			ordinals.add(ordinal);
+		}
+	}
+
+	/**
+	 * Finds the commits which may contain a text in their message, author,
+	 * committer or id.
+	 * <p>
+	 * A commit is a candidate if each word of the text, that is every run of
+	 * letters and digits, is contained in one of its tokens or, for
+	 * hexadecimal words, in its id. Case is ignored. This is true for every
+	 * commit containing the text, and for every commit matching a wildcard
+	 * pattern whose literal parts are the words.
+	 *
+	 * @param text
+	 * @return the ordinals of the candidates, or null if the text has no
+	 *         words long enough to be looked up and all commits have to be
+	 *         matched
+	 */
+	@Nullable
+	public BitSet findCandidates(String text) {
+		Set<String> words = new LinkedHashSet<String>();
+		tokenize(text, words);
+		BitSet result = null;
+		IntList ordinals = new IntList();
+		for (String word : words) {
+			if (word.length() < MIN_WORD_LENGTH)
+				continue;
+			BitSet matches = new BitSet(count);
+			byte[] raw = Constants.encode(word);
+			int from = 0;
+			int hit;
+			while ((hit = indexOfToken(raw, from)) >= 0) {
+				int token = findToken(hit);
+				int end = getTokenOffset(token + 1);
+				if (hit + raw.length <= end) {
+					ordinals.clear();
+					getPostings(token, ordinals);
+					for (int i = 0; i < ordinals.size(); i++)
+						matches.set(ordinals.get(i));
+					from = end;
+				} else
+					// spans two tokens
+					from = hit + 1;
+			}
+			if (isHex(word))
+				findIds(word, matches);
+			if (result == null)
+				result = matches;
+			else
+				result.and(matches);
+			if (result.isEmpty())
+				break;
+		}
+		return result;
+	}
+
+	private byte[] read(int offset, int length) {
+		byte[] raw = new byte[length];
+		// the buffer is shared, a duplicate has its own position
+		ByteBuffer view = buffer.duplicate();
+		view.position(offset);
+		view.get(raw);
+		return raw;
+	}
+
+	private int getTokenOffset(int token) {
+		return buffer.getInt(tokenOffsetTable + token * 4);
+	}
+
+	private int findToken(int offset) {
+		// the last token starting at or before the offset
+		int low = 0;
+		int high = tokenCount - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			if (getTokenOffset(mid) <= offset)
+				low = mid;
+			else
+				high = mid - 1;
+		}
+		return low;
+	}
+
+	private int indexOfToken(byte[] pattern, int from) {
+		// searches the mapped tokens in place; copying them for every search
+		// would cost more than the search itself. Offsets are relative to
+		// the token table.
+		int last = postingOffsetTable - tokenTable - pattern.length;
+		byte first = pattern[0];
+		outer: for (int i = from; i <= last; i++) {
+			if (buffer.get(tokenTable + i) != first)
+				continue;
+			for (int j = 1; j < pattern.length; j++)
+				if (buffer.get(tokenTable + i + j) != pattern[j])
+					continue outer;
+			return i;
+		}
+		return -1;
+	}
+
+	private static boolean isHex(String word) {
+		for (int i = 0; i < word.length(); i++) {
+			char c = word.charAt(i);
+			if ((c < '0' || c > '9') && (c < 'a' || c > 'f'))
+				return false;
+		}
+		return word.length() <= Constants.OBJECT_ID_STRING_LENGTH;
+	}
+
+	private void findIds(String word, BitSet matches) {
+		int[] nibbles = new int[word.length()];
+		for (int i = 0; i < nibbles.length; i++)
+			nibbles[i] = RawParseUtils.parseHexInt4((byte) word.charAt(i));
+		int last = Constants.OBJECT_ID_STRING_LENGTH - nibbles.length;
+		for (int ordinal = 0; ordinal < count; ordinal++) {
+			int offset = HEADER_SIZE + ordinal * ID_LENGTH;
+			outer: for (int i = 0; i <= last; i++) {
+				for (int j = 0; j < nibbles.length; j++)
+					if (nibble(offset, i + j) != nibbles[j])
+						continue outer;
+				matches.set(ordinal);
+				break;
+			}
+		}
+	}
+
+	private int nibble(int offset, int index) {
+		int b = buffer.get(offset + (index >>> 1));
+		return (index & 1) == 0 ? (b >>> 4) & 0xf : b & 0xf;
+	}
+}
@@ -0,0 +1,245 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.commitindex;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.jgit.annotations.Nullable;
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.util.FileUtils;
+import org.eclipse.jgit.util.IntList;
+import org.eclipse.jgit.util.RawParseUtils;
+
+/**
+ * Writes a {@link CommitIndex} file for all commits reachable from the refs of
+ * a repository.
+ * <p>
+ * The walk stops at the tips of an existing index, so only new commits are
+ * read and tokenized. Their ordinals follow those of the existing index, whose
+ * tokens and postings are copied.
+ */
+class CommitIndexBuilder {
+
+	private final Repository repository;
+
+	private final CommitIndex base;
+
+	private final List<ObjectId> newCommits = new ArrayList<ObjectId>();
+
+	private final Map<String, IntList> newPostings = new HashMap<String, IntList>();
+
+	private Set<ObjectId> tips;
+
+	/**
+	 * @param repository
+	 * @param base
+	 *            existing index to extend, may be null
+	 */
+	CommitIndexBuilder(Repository repository, @Nullable CommitIndex base) {
+		this.repository = repository;
+		this.base = base;
+	}
+
+	/**
+	 * Reads and tokenizes all commits reachable from the refs of the
+	 * repository which are not in the base index.
+	 *
+	 * @param monitor
+	 * @return number of new commits
+	 * @throws IOException
+	 */
+	int collect(IProgressMonitor monitor) throws IOException {
+		int baseCount = base != null ? base.getCommitCount() : 0;
+		tips = new LinkedHashSet<ObjectId>();
+		try (RevWalk walk = new RevWalk(repository)) {
+			for (Ref ref : repository.getRefDatabase().getRefs(RefDatabase.ALL)
+					.values()) {
+				if (ref.getObjectId() == null)
+					continue;
+				RevObject object;
+				try {
+					object = walk.peel(walk.parseAny(ref.getObjectId()));
+				} catch (MissingObjectException e) {
+					continue;
+				}
+				if (object instanceof RevCommit && tips.add(object.copy()))
+					walk.markStart((RevCommit) object);
+			}
+			if (base != null) {
+				for (ObjectId tip : base.getTips()) {
+					try {
+						walk.markUninteresting(walk.parseCommit(tip));
+					} catch (MissingObjectException
+							| IncorrectObjectTypeException e) {
+						// pruned; its commits are skipped one by one below
+					}
+				}
+			}
+			Set<String> tokens = new HashSet<String>();
+			for (RevCommit commit : walk) {
+				if (monitor.isCanceled())
+					throw new OperationCanceledException();
+				if (base != null && base.find(commit) >= 0)
+					continue;
+				int ordinal = baseCount + newCommits.size();
+				newCommits.add(commit.copy());
+				tokens.clear();
+				CommitIndex.tokenize(commit.getFullMessage(), tokens);
+				addPerson(commit.getAuthorIdent(), tokens);
+				addPerson(commit.getCommitterIdent(), tokens);
+				for (String token : tokens) {
+					IntList ordinals = newPostings.get(token);
+					if (ordinals == null) {
+						ordinals = new IntList(4);
+						newPostings.put(token, ordinals);
+					}
+					ordinals.add(ordinal);
+				}
+				commit.disposeBody();
+			}
+		}
+		return newCommits.size();
+	}
+
+	private static void addPerson(PersonIdent person, Set<String> tokens) {
+		if (person == null)
+			return;
+		CommitIndex.tokenize(person.getName(), tokens);
+		CommitIndex.tokenize(person.getEmailAddress(), tokens);
+	}
+
+	/**
+	 * Writes the base index extended by the collected commits.
+	 *
+	 * @param file
+	 * @throws IOException
+	 */
+	void write(File file) throws IOException {
+		int baseCount = base != null ? base.getCommitCount() : 0;
+		int count = baseCount + newCommits.size();
+		final ObjectId[] ids = new ObjectId[count];
+		for (int i = 0; i < baseCount; i++)
+			ids[i] = base.getId(i);
+		for (int i = 0; i < newCommits.size(); i++)
+			ids[baseCount + i] = newCommits.get(i);
+		Integer[] sorted = new Integer[count];
+		for (int i = 0; i < count; i++)
+			sorted[i] = Integer.valueOf(i);
+		Arrays.sort(sorted, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return ids[o1.intValue()].compareTo(ids[o2.intValue()]);
+			}
+		});
+
+		// tokens of the base first, in their order, then the new ones
+		ByteArrayOutputStream tokenBytes = new ByteArrayOutputStream();
+		ByteArrayOutputStream postingBytes = new ByteArrayOutputStream();
+		IntList tokenOffsets = new IntList();
+		IntList postingOffsets = new IntList();
+		tokenOffsets.add(0);
+		postingOffsets.add(0);
+		Map<String, IntList> remaining = new HashMap<String, IntList>(
+				newPostings);
+		IntList ordinals = new IntList();
+		int baseTokens = base != null ? base.getTokenCount() : 0;
+		for (int token = 0; token < baseTokens; token++) {
+			byte[] raw = base.getRawToken(token);
+			ordinals.clear();
+			base.getPostings(token, ordinals);
+			// new ordinals are larger than all in the base, so appending
+			// keeps the postings sorted
+			IntList added = remaining.remove(RawParseUtils.decode(raw));
+			if (added != null)
+				for (int i = 0; i < added.size(); i++)
+					ordinals.add(added.get(i));
+			addToken(raw, ordinals, tokenBytes, postingBytes, tokenOffsets,
+					postingOffsets);
+		}
+		for (Map.Entry<String, IntList> entry : remaining.entrySet())
+			addToken(Constants.encode(entry.getKey()), entry.getValue(),
+					tokenBytes, postingBytes, tokenOffsets, postingOffsets);
+		int tokenCount = tokenOffsets.size() - 1;
+
+		FileUtils.mkdirs(file.getParentFile(), true);
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file)))) {
+			out.writeInt(CommitIndex.MAGIC);
+			out.writeInt(CommitIndex.VERSION);
+			out.writeInt(count);
+			out.writeInt(tips.size());
+			out.writeInt(tokenCount);
+			out.writeInt(tokenBytes.size());
+			out.writeInt(postingBytes.size());
+			byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+			for (ObjectId id : ids) {
+				id.copyRawTo(raw, 0);
+				out.write(raw);
+			}
+			for (Integer ordinal : sorted)
+				out.writeInt(ordinal.intValue());
+			for (ObjectId tip : tips) {
+				tip.copyRawTo(raw, 0);
+				out.write(raw);
+			}
+			for (int i = 0; i < tokenOffsets.size(); i++)
+				out.writeInt(tokenOffsets.get(i));
+			tokenBytes.writeTo(out);
+			for (int i = 0; i < postingOffsets.size(); i++)
+				out.writeInt(postingOffsets.get(i));
+			postingBytes.writeTo(out);
+		}
+	}
+
+	private static void addToken(byte[] token, IntList ordinals,
+			ByteArrayOutputStream tokenBytes,
+			ByteArrayOutputStream postingBytes, IntList tokenOffsets,
+			IntList postingOffsets) {
+		tokenBytes.write(token, 0, token.length);
+		tokenOffsets.add(tokenBytes.size());
+		// deltas to the previous ordinal as variable length integers
+		int previous = -1;
+		for (int i = 0; i < ordinals.size(); i++) {
+			int delta = ordinals.get(i) - previous;
+			previous = ordinals.get(i);
+			while ((delta & ~0x7f) != 0) {
+				postingBytes.write((delta & 0x7f) | 0x80);
+				delta >>>= 7;
+			}
+			postingBytes.write(delta);
+		}
+		postingOffsets.add(postingBytes.size());
+	}
+}
@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.commitindex;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.egit.core.GitCorePreferences;
+import org.eclipse.egit.core.internal.CoreText;
+import org.eclipse.egit.core.internal.util.RepositoryFileCache;
+import org.eclipse.jgit.annotations.Nullable;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Maintains a {@link CommitIndex} file per repository in the folder
+ * {@code egit} of its git directory.
+ * <p>
+ * The index is extended in a background job whenever refs change. Until the
+ * first index of a repository has been written, {@link #get(Repository)}
+ * returns null and callers have to match all commits themselves.
+ */
+public class CommitIndexCache {
+
+	private static final String INDEX_FOLDER = "egit"; //$NON-NLS-1$
+
+	private static final String INDEX_PREFIX = "commits."; //$NON-NLS-1$
+
+	private static final String INDEX_EXTENSION = ".idx"; //$NON-NLS-1$
+
+	private static final RepositoryFileCache<CommitIndex> indexes = new IndexFiles();
+
+	private CommitIndexCache() {
+		// static access only
+	}
+
+	/**
+	 * Returns the current commit index of a repository. The index may not
+	 * contain the newest commits; it is updated in the background.
+	 *
+	 * @param repository
+	 * @return the index, or null if there is none yet or commit indexes are
+	 *         disabled
+	 */
+	@Nullable
+	public static CommitIndex get(Repository repository) {
+		return indexes.get(repository);
+	}
+
+	/**
+	 * Stops listening to ref changes and cancels running updates
+	 */
+	public static void dispose() {
+		indexes.dispose();
+	}
+
+	private static class IndexFiles extends RepositoryFileCache<CommitIndex> {
+
+		IndexFiles() {
+			super("commit index", CoreText.CommitIndexCache_updating, //$NON-NLS-1$
+					INDEX_EXTENSION, GitCorePreferences.core_commitIndex);
+		}
+
+		@Override
+		protected File getFolder(Repository repository) {
+			return new File(repository.getDirectory(), INDEX_FOLDER);
+		}
+
+		@Override
+		protected String getPrefix(Repository repository) {
+			return INDEX_PREFIX;
+		}
+
+		@Override
+		protected CommitIndex open(File file) throws IOException {
+			return CommitIndex.open(file);
+		}
+
+		@Override
+		protected int write(Repository repository,
+				@Nullable CommitIndex current, File file,
+				IProgressMonitor monitor) throws IOException {
+			CommitIndexBuilder builder = new CommitIndexBuilder(repository,
+					current);
+			int added = builder.collect(monitor);
+			if (added > 0)
+				builder.write(file);
+			return added;
+		}
+	}
+}
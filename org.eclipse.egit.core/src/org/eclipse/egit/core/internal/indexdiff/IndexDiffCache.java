@@ -304,6 +304,11 @@ public void dispose() {
 		} catch (InterruptedException e) {
 			Thread.currentThread().interrupt();
 		}
+		// save the last known state so that next startup can skip the
+		// initial full index diff calculation
+		for (IndexDiffCacheEntry entry : entries.values()) {
+			entry.writeSnapshot();
+		}
 	}
 
 }
@@ -10,6 +10,7 @@
  *******************************************************************************/
 package org.eclipse.egit.core.internal.indexdiff;
 
+import java.io.File;
 import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
@@ -19,7 +20,6 @@
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.concurrent.Semaphore;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.eclipse.core.resources.IProject;
@@ -36,8 +36,12 @@
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.preferences.DefaultScope;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.core.runtime.preferences.InstanceScope;
 import org.eclipse.egit.core.Activator;
 import org.eclipse.egit.core.EclipseGitProgressTransformer;
+import org.eclipse.egit.core.GitCorePreferences;
 import org.eclipse.egit.core.IteratorService;
 import org.eclipse.egit.core.JobFamilies;
 import org.eclipse.egit.core.internal.CoreText;
@@ -60,6 +64,7 @@
 import org.eclipse.jgit.treewalk.WorkingTreeIterator;
 import org.eclipse.jgit.treewalk.filter.InterIndexDiffFilter;
 import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.util.FileUtils;
 import org.eclipse.osgi.util.NLS;
 
 /**
@@ -70,12 +75,17 @@
  */
 public class IndexDiffCacheEntry {
 
-	private static final int RESOURCE_LIST_UPDATE_LIMIT = 1000;
-
 	private Repository repository;
 
 	private volatile IndexDiffData indexDiffData;
 
+	// index checksum, HEAD and time of the last full reload; incremental
+	// updates don't renew it since they only look at the changed files
+	private volatile IndexDiffSnapshot snapshotKey;
+
+	// measured durations of reloads and updates, used by shouldReload
+	private final IndexDiffCostModel costModel = new IndexDiffCostModel();
+
 	private Job reloadJob;
 
 	private volatile boolean reloadJobIsInitializing;
@@ -92,8 +102,7 @@ public class IndexDiffCacheEntry {
 	private final ListenerHandle indexChangedListenerHandle;
 	private final ListenerHandle refsChangedListenerHandle;
 	private IResourceChangeListener resourceChangeListener;
-
-	private static Semaphore parallelism = new Semaphore(2);
+	private WorkingTreeWatcher workingTreeWatcher;
 
 	/**
 	 * @param repository
@@ -122,8 +131,13 @@ public void onRefsChanged(RefsChangedEvent event) {
 					}
 				});
 
-		scheduleReloadJob("IndexDiffCacheEntry construction"); //$NON-NLS-1$
+		if (!restoreSnapshot()) {
+			scheduleReloadJob("IndexDiffCacheEntry construction"); //$NON-NLS-1$
+		}
 		createResourceChangeListener();
+		if (!repository.isBare()
+				&& getBooleanPreference(GitCorePreferences.core_watchWorkingTree))
+			createWorkingTreeWatcher();
 		if (!repository.isBare()) {
 			try {
 				lastIndex = repository.readDirCache();
@@ -302,7 +316,9 @@ public IndexDiffData getIndexDiff() {
 	 */
 	protected void scheduleReloadJob(final String trigger) {
 		if (reloadJob != null) {
-			if (reloadJobIsInitializing) {
+			if (isReloadPending()) {
+				// the pending reload has not started calculating yet and will
+				// see this change as well
 				return;
 			}
 			reloadJob.cancel();
@@ -317,26 +333,38 @@ protected void scheduleReloadJob(final String trigger) {
 		reloadJob = new Job(getReloadJobName()) {
 			@Override
 			protected IStatus run(IProgressMonitor monitor) {
+				IndexDiffScheduler scheduler = IndexDiffScheduler
+						.getInstance();
+				boolean acquired = false;
 				try {
 					reloadJobIsInitializing = true;
 					waitForWorkspaceLock(monitor);
+					acquired = scheduler.acquire(repository, monitor);
+				} catch (InterruptedException e) {
+					return Status.CANCEL_STATUS;
 				} finally {
 					reloadJobIsInitializing = false;
 				}
+				if (!acquired) {
+					return Status.CANCEL_STATUS;
+				}
 				lock.lock();
 				try {
 					if (monitor.isCanceled()) {
 						return Status.CANCEL_STATUS;
 					}
-					parallelism.acquire();
 					long startTime = System.currentTimeMillis();
+					IndexDiffSnapshot key = IndexDiffSnapshot
+							.capture(repository);
 					IndexDiffData result = calcIndexDiffDataFull(monitor, getName());
 					if (monitor.isCanceled() || (result == null)) {
 						return Status.CANCEL_STATUS;
 					}
 					indexDiffData = result;
+					snapshotKey = key;
+					long time = System.currentTimeMillis() - startTime;
+					costModel.recordFull(time);
 					if (GitTraceLocation.INDEXDIFFCACHE.isActive()) {
-						long time = System.currentTimeMillis() - startTime;
 						StringBuilder message = new StringBuilder(
 								getTraceMessage(time));
 						GitTraceLocation.getTrace().trace(
@@ -354,14 +382,18 @@ protected IStatus run(IProgressMonitor monitor) {
 								GitTraceLocation.INDEXDIFFCACHE.getLocation(),
 								"Calculating IndexDiff failed", e); //$NON-NLS-1$
 					return Status.OK_STATUS;
-				} catch (InterruptedException e) {
-					return Status.CANCEL_STATUS;
 				} finally {
 					lock.unlock();
-					parallelism.release();
+					scheduler.release();
 				}
 			}
 
+			@Override
+			protected void canceling() {
+				// the scheduler doesn't poll the monitor while waiting
+				IndexDiffScheduler.getInstance().wakeUp();
+			}
+
 			private String getTraceMessage(long time) {
 				return NLS
 						.bind("\nUpdated IndexDiffData in {0} ms\nReason: {1}\nRepository: {2}\n", //$NON-NLS-1$
@@ -382,6 +414,124 @@ public boolean belongsTo(Object family) {
 		reloadJob.schedule();
 	}
 
+	/**
+	 * @return true if the reload job is scheduled or waiting for its turn, but
+	 *         has not started calculating yet
+	 */
+	private boolean isReloadPending() {
+		Job job = reloadJob;
+		return job != null
+				&& (reloadJobIsInitializing || job.getState() == Job.WAITING);
+	}
+
+	/**
+	 * Serves the status saved on last shutdown, if the index and HEAD did not
+	 * change since. A background job then updates the restored data for the
+	 * files modified in the meantime.
+	 *
+	 * @return true if a snapshot was restored
+	 */
+	private boolean restoreSnapshot() {
+		if (repository.isBare()) {
+			return false;
+		}
+		File file = IndexDiffSnapshot.getSnapshotFile(repository);
+		if (file == null) {
+			return false;
+		}
+		final IndexDiffSnapshot snapshot;
+		try {
+			IndexDiffSnapshot restored = IndexDiffSnapshot.read(file,
+					repository.getDirectory());
+			// a snapshot is only good for one startup
+			FileUtils.delete(file, FileUtils.SKIP_MISSING);
+			if (restored == null || !restored.isValidFor(repository)) {
+				return false;
+			}
+			snapshot = restored;
+		} catch (IOException e) {
+			if (GitTraceLocation.INDEXDIFFCACHE.isActive()) {
+				GitTraceLocation.getTrace().trace(
+						GitTraceLocation.INDEXDIFFCACHE.getLocation(),
+						"Reading IndexDiff snapshot failed", e); //$NON-NLS-1$
+			}
+			return false;
+		}
+		indexDiffData = snapshot.getData();
+		snapshotKey = snapshot;
+		Job verifyJob = new Job(getVerifySnapshotJobName()) {
+			@Override
+			protected IStatus run(IProgressMonitor monitor) {
+				notifyListeners();
+				Collection<String> changedFiles;
+				try {
+					changedFiles = snapshot.collectChangedPaths(repository,
+							monitor);
+				} catch (IOException e) {
+					scheduleReloadJob("Verifying snapshot failed"); //$NON-NLS-1$
+					return Status.OK_STATUS;
+				}
+				if (monitor.isCanceled() || changedFiles == null) {
+					return Status.CANCEL_STATUS;
+				}
+				if (GitTraceLocation.INDEXDIFFCACHE.isActive()) {
+					GitTraceLocation.getTrace().trace(
+							GitTraceLocation.INDEXDIFFCACHE.getLocation(),
+							NLS.bind(
+									"Restored IndexDiffData snapshot for {0}, {1} files changed since", //$NON-NLS-1$
+									repository.getWorkTree().getName(),
+									Integer.valueOf(changedFiles.size())));
+				}
+				for (String path : changedFiles) {
+					if (path.equals(Constants.DOT_GIT_IGNORE)
+							|| path.endsWith("/" + Constants.DOT_GIT_IGNORE)) { //$NON-NLS-1$
+						scheduleReloadJob("A .gitignore changed since snapshot"); //$NON-NLS-1$
+						return Status.OK_STATUS;
+					}
+				}
+				if (!changedFiles.isEmpty()) {
+					List<IResource> resources = Collections.emptyList();
+					scheduleUpdateJob(changedFiles, resources);
+				}
+				return Status.OK_STATUS;
+			}
+
+			@Override
+			public boolean belongsTo(Object family) {
+				if (JobFamilies.INDEX_DIFF_CACHE_UPDATE.equals(family)) {
+					return true;
+				}
+				return super.belongsTo(family);
+			}
+		};
+		verifyJob.setSystem(true);
+		verifyJob.schedule();
+		return true;
+	}
+
+	/**
+	 * Saves the current index diff so that it can be restored on next
+	 * startup. Must only be called when no update jobs are running anymore.
+	 */
+	void writeSnapshot() {
+		IndexDiffData data = indexDiffData;
+		IndexDiffSnapshot key = snapshotKey;
+		if (data == null || key == null || repository.isBare()) {
+			return;
+		}
+		File file = IndexDiffSnapshot.getSnapshotFile(repository);
+		if (file == null) {
+			return;
+		}
+		try {
+			key.withData(data).write(file, repository.getDirectory());
+		} catch (IOException e) {
+			Activator.logError(MessageFormat.format(
+					CoreText.IndexDiffCacheEntry_errorWritingSnapshot,
+					repository), e);
+		}
+	}
+
 	private boolean checkRepository() {
 		if (Activator.getDefault() == null)
 			return false;
@@ -422,7 +572,7 @@ protected void scheduleUpdateJob(final Collection<String> filesToUpdate,
 			final Collection<IResource> resourcesToUpdate) {
 		if (!checkRepository())
 			return;
-		if (reloadJob != null && reloadJobIsInitializing)
+		if (isReloadPending())
 			return;
 
 		if (shouldReload(filesToUpdate)) {
@@ -466,9 +616,12 @@ protected IStatus updateIndexDiff(Collection<String> files,
 					if (monitor.isCanceled() || (result == null)) {
 						return Status.CANCEL_STATUS;
 					}
+					// keep the key of the last full reload: the data is only
+					// known to be complete as of that time
 					indexDiffData = result;
+					long time = System.currentTimeMillis() - startTime;
+					costModel.recordIncremental(files.size(), time);
 					if (GitTraceLocation.INDEXDIFFCACHE.isActive()) {
-						long time = System.currentTimeMillis() - startTime;
 						StringBuilder message = new StringBuilder(
 								NLS.bind(
 										"Updated IndexDiffData based on resource list (length = {0}) in {1} ms\n", //$NON-NLS-1$
@@ -506,13 +659,27 @@ public boolean belongsTo(Object family) {
 	}
 
 	/**
-	 * Check if the index update or reload is recommended for given files
+	 * Check if the index update or reload is recommended for given files. The
+	 * decision is based on the measured durations of previous reloads and
+	 * updates of this repository.
 	 *
 	 * @param filesToUpdate
 	 * @return true if the reload operation is preferred
 	 */
 	protected boolean shouldReload(final Collection<String> filesToUpdate) {
-		return filesToUpdate.size() > RESOURCE_LIST_UPDATE_LIMIT;
+		boolean reload = costModel.shouldReload(filesToUpdate.size());
+		if (filesToUpdate.size() > IndexDiffCostModel.MIN_LIMIT
+				&& GitTraceLocation.INDEXDIFFCACHE.isActive()) {
+			GitTraceLocation.getTrace().trace(
+					GitTraceLocation.INDEXDIFFCACHE.getLocation(),
+					NLS.bind("{0} files changed in {1}: {2} ({3})", //$NON-NLS-1$
+							new Object[] {
+									Integer.valueOf(filesToUpdate.size()),
+									repository.getWorkTree().getName(),
+									reload ? "full reload" : "incremental update", //$NON-NLS-1$ //$NON-NLS-2$
+									costModel }));
+		}
+		return reload;
 	}
 
 	private IndexDiffData calcIndexDiffDataIncremental(IProgressMonitor monitor,
@@ -574,6 +741,14 @@ private void notifyListeners() {
 
 	private IndexDiffData calcIndexDiffDataFull(IProgressMonitor monitor, String jobName)
 			throws IOException {
+		if (getBooleanPreference(GitCorePreferences.core_parallelIndexDiff)) {
+			IndexDiffData result = new ShardedIndexDiff(repository)
+					.calculate(monitor, jobName);
+			if (result != null || monitor.isCanceled()) {
+				return result;
+			}
+			// too small to be sharded: diff in one go
+		}
 		EclipseGitProgressTransformer jgitMonitor = new EclipseGitProgressTransformer(
 				monitor);
 
@@ -587,12 +762,27 @@ private IndexDiffData calcIndexDiffDataFull(IProgressMonitor monitor, String job
 		return new IndexDiffData(newIndexDiff);
 	}
 
+	private static boolean getBooleanPreference(String key) {
+		IEclipsePreferences d = DefaultScope.INSTANCE
+				.getNode(Activator.getPluginId());
+		IEclipsePreferences p = InstanceScope.INSTANCE
+				.getNode(Activator.getPluginId());
+		return p.getBoolean(key, d.getBoolean(key, false));
+	}
+
 	private String getReloadJobName() {
 		String repoName = Activator.getDefault().getRepositoryUtil()
 				.getRepositoryName(repository);
 		return MessageFormat.format(CoreText.IndexDiffCacheEntry_reindexing, repoName);
 	}
 
+	private String getVerifySnapshotJobName() {
+		String repoName = Activator.getDefault().getRepositoryUtil()
+				.getRepositoryName(repository);
+		return MessageFormat.format(
+				CoreText.IndexDiffCacheEntry_verifyingSnapshot, repoName);
+	}
+
 	private String getUpdateJobName() {
 		String repoName = Activator.getDefault().getRepositoryUtil()
 				.getRepositoryName(repository);
@@ -627,6 +817,34 @@ public void resourceChanged(IResourceChangeEvent event) {
 				resourceChangeListener, IResourceChangeEvent.POST_CHANGE);
 	}
 
+	private void createWorkingTreeWatcher() {
+		workingTreeWatcher = new WorkingTreeWatcher(repository,
+				new WorkingTreeWatcher.Listener() {
+					@Override
+					public void filesChanged(Collection<String> paths) {
+						for (String path : paths) {
+							if (path.equals(Constants.DOT_GIT_IGNORE)
+									|| path.endsWith("/" + Constants.DOT_GIT_IGNORE)) { //$NON-NLS-1$
+								scheduleReloadJob("A .gitignore changed outside of the workspace"); //$NON-NLS-1$
+								return;
+							}
+						}
+						if (indexDiffData == null) {
+							scheduleReloadJob("Working tree changed, no diff available"); //$NON-NLS-1$
+						} else if (!paths.isEmpty()) {
+							List<IResource> resources = Collections.emptyList();
+							scheduleUpdateJob(paths, resources);
+						}
+					}
+
+					@Override
+					public void changesLost() {
+						scheduleReloadJob("Working tree watcher missed changes"); //$NON-NLS-1$
+					}
+				});
+		workingTreeWatcher.start();
+	}
+
 	/**
 	 * FOR TESTS ONLY
 	 *
@@ -644,6 +862,8 @@ public void dispose() {
 		refsChangedListenerHandle.remove();
 		if (resourceChangeListener != null)
 			ResourcesPlugin.getWorkspace().removeResourceChangeListener(resourceChangeListener);
+		if (workingTreeWatcher != null)
+			workingTreeWatcher.stop();
 	}
 
 }
@@ -0,0 +1,98 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.indexdiff;
+
+/**
+ * Decides whether a set of changed files is cheaper to handle by an
+ * incremental update or by a full reload of the index diff, based on the
+ * measured durations of previous runs for one repository.
+ * <p>
+ * The cost of a full reload is the moving average of the measured reloads;
+ * the cost of an incremental update is the moving average of the measured
+ * time per file multiplied by the number of files. Until both have been
+ * measured, a fixed limit is used. The resulting limit is kept within bounds,
+ * so that timing noise cannot cause reloads for a handful of files or
+ * incremental updates for huge change sets.
+ */
+class IndexDiffCostModel {
+
+	/** Limit used as long as no measurements are available */
+	static final int DEFAULT_LIMIT = 1000;
+
+	/** Incremental updates are always used for at most this many files */
+	static final int MIN_LIMIT = 100;
+
+	/** Full reloads are always used for more than this many files */
+	static final int MAX_LIMIT = 100000;
+
+	// weight of a new measurement in the moving averages
+	private static final double WEIGHT = 0.3;
+
+	// incremental runs with fewer files are dominated by fixed costs
+	private static final int MIN_FILES_FOR_MEASUREMENT = 10;
+
+	private double fullCost = -1;
+
+	private double costPerFile = -1;
+
+	/**
+	 * @param millis
+	 *            duration of a full reload
+	 */
+	synchronized void recordFull(long millis) {
+		fullCost = average(fullCost, millis);
+	}
+
+	/**
+	 * @param files
+	 *            number of files updated
+	 * @param millis
+	 *            duration of the incremental update
+	 */
+	synchronized void recordIncremental(int files, long millis) {
+		if (files < MIN_FILES_FOR_MEASUREMENT)
+			return;
+		costPerFile = average(costPerFile, (double) millis / files);
+	}
+
+	/**
+	 * @return the number of changed files above which a full reload is
+	 *         expected to be cheaper than an incremental update
+	 */
+	synchronized int getLimit() {
+		if (fullCost < 0 || costPerFile < 0)
+			return DEFAULT_LIMIT;
+		if (costPerFile == 0)
+			return MAX_LIMIT;
+		double limit = fullCost / costPerFile;
+		return (int) Math.max(MIN_LIMIT, Math.min(MAX_LIMIT, limit));
+	}
+
+	/**
+	 * @param files
+	 *            number of changed files
+	 * @return true if a full reload is expected to be cheaper
+	 */
+	boolean shouldReload(int files) {
+		return files > getLimit();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "full reload: " + Math.round(fullCost) //$NON-NLS-1$
+				+ " ms, incremental: " + costPerFile //$NON-NLS-1$
+				+ " ms/file, limit: " + getLimit(); //$NON-NLS-1$
+	}
+
+	private static double average(double current, double value) {
+		if (current < 0)
+			return value;
+		return current + WEIGHT * (value - current);
+	}
+}
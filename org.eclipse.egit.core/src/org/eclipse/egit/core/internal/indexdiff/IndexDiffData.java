@@ -8,9 +8,11 @@
  *******************************************************************************/
 package org.eclipse.egit.core.internal.indexdiff;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import org.eclipse.core.resources.IResource;
@@ -25,31 +27,63 @@
  */
 public class IndexDiffData {
 
+	/**
+	 * The kinds of paths tracked by an {@link IndexDiffData}, for use with the
+	 * path index queries {@link IndexDiffData#hasEntryUnder(String, Kind...)}
+	 * and {@link IndexDiffData#hasParentEntry(String, Kind)}.
+	 */
+	public enum Kind {
+		/** @see IndexDiffData#getAdded() */
+		ADDED,
+		/** @see IndexDiffData#getAssumeUnchanged() */
+		ASSUME_UNCHANGED,
+		/** @see IndexDiffData#getChanged() */
+		CHANGED,
+		/** @see IndexDiffData#getRemoved() */
+		REMOVED,
+		/** @see IndexDiffData#getMissing() */
+		MISSING,
+		/** @see IndexDiffData#getModified() */
+		MODIFIED,
+		/** @see IndexDiffData#getUntracked() */
+		UNTRACKED,
+		/** @see IndexDiffData#getUntrackedFolders() */
+		UNTRACKED_FOLDERS,
+		/** @see IndexDiffData#getConflicting() */
+		CONFLICTING,
+		/** @see IndexDiffData#getIgnoredNotInIndex() */
+		IGNORED,
+		/** @see IndexDiffData#getSymlinks() */
+		SYMLINKS,
+		/** @see IndexDiffData#getSubmodules() */
+		SUBMODULES
+	}
+
 	private static final String NEW_LINE = "\n"; //$NON-NLS-1$
 
-	private final Set<String> added;
+	private final PathSet added;
 
-	private final Set<String> assumeUnchanged;
+	private final PathSet assumeUnchanged;
 
-	private final Set<String> changed;
+	private final PathSet changed;
 
-	private final Set<String> removed;
+	private final PathSet removed;
 
-	private final Set<String> missing;
+	private final PathSet missing;
 
-	private final Set<String> modified;
+	private final PathSet modified;
 
-	private final Set<String> untracked;
+	private final PathSet untracked;
 
-	private final Set<String> untrackedFolders;
+	private final PathSet untrackedFolders;
 
-	private final Set<String> conflicts;
+	private final PathSet conflicts;
 
-	private final Set<String> ignored;
+	private final PathSet ignored;
 
-	private final Set<String> symlinks;
+	private final PathSet symlinks;
 
-	private final Set<String> submodules;
+	private final PathSet submodules;
 
 	private final Collection<IResource> changedResources;
 
@@ -57,18 +91,18 @@ public class IndexDiffData {
 	 * Empty, immutable data
 	 */
 	public IndexDiffData() {
-		added = Collections.emptySet();
-		assumeUnchanged = Collections.emptySet();
-		changed = Collections.emptySet();
-		removed = Collections.emptySet();
-		missing = Collections.emptySet();
-		modified = Collections.emptySet();
-		untracked = Collections.emptySet();
-		untrackedFolders = Collections.emptySet();
-		conflicts = Collections.emptySet();
-		ignored = Collections.emptySet();
-		symlinks = Collections.emptySet();
-		submodules = Collections.emptySet();
+		added = PathSet.EMPTY;
+		assumeUnchanged = PathSet.EMPTY;
+		changed = PathSet.EMPTY;
+		removed = PathSet.EMPTY;
+		missing = PathSet.EMPTY;
+		modified = PathSet.EMPTY;
+		untracked = PathSet.EMPTY;
+		untrackedFolders = PathSet.EMPTY;
+		conflicts = PathSet.EMPTY;
+		ignored = PathSet.EMPTY;
+		symlinks = PathSet.EMPTY;
+		submodules = PathSet.EMPTY;
 		changedResources = Collections.emptySet();
 	}
 
@@ -76,33 +110,97 @@ public IndexDiffData() {
 	 * @param indexDiff
 	 */
 	public IndexDiffData(IndexDiff indexDiff) {
-		added = Collections.unmodifiableSet(new HashSet<String>(indexDiff
-				.getAdded()));
-		assumeUnchanged = Collections.unmodifiableSet(
-				new HashSet<String>(indexDiff.getAssumeUnchanged()));
-		changed = Collections.unmodifiableSet(new HashSet<String>(indexDiff
-				.getChanged()));
-		removed = Collections.unmodifiableSet(new HashSet<String>(indexDiff
-				.getRemoved()));
-		missing = Collections.unmodifiableSet(new HashSet<String>(indexDiff
-				.getMissing()));
-		modified = Collections.unmodifiableSet(new HashSet<String>(indexDiff
-				.getModified()));
-		untracked = Collections.unmodifiableSet(new HashSet<String>(indexDiff
-				.getUntracked()));
-		untrackedFolders = Collections.unmodifiableSet(getUntrackedFolders(indexDiff));
-		conflicts = Collections.unmodifiableSet(new HashSet<String>(indexDiff
-				.getConflicting()));
-		ignored = Collections.unmodifiableSet(new HashSet<String>(indexDiff
-				.getIgnoredNotInIndex()));
-		symlinks = Collections.unmodifiableSet(new HashSet<String>(indexDiff
-				.getPathsWithIndexMode(FileMode.SYMLINK)));
-		submodules = Collections.unmodifiableSet(new HashSet<String>(indexDiff
-				.getPathsWithIndexMode(FileMode.GITLINK)));
+		added = PathSet.copyOf(indexDiff.getAdded());
+		assumeUnchanged = PathSet.copyOf(indexDiff.getAssumeUnchanged());
+		changed = PathSet.copyOf(indexDiff.getChanged());
+		removed = PathSet.copyOf(indexDiff.getRemoved());
+		missing = PathSet.copyOf(indexDiff.getMissing());
+		modified = PathSet.copyOf(indexDiff.getModified());
+		untracked = PathSet.copyOf(indexDiff.getUntracked());
+		untrackedFolders = PathSet.copyOf(getUntrackedFolders(indexDiff));
+		conflicts = PathSet.copyOf(indexDiff.getConflicting());
+		ignored = PathSet.copyOf(indexDiff.getIgnoredNotInIndex());
+		symlinks = PathSet.copyOf(
+				indexDiff.getPathsWithIndexMode(FileMode.SYMLINK));
+		submodules = PathSet.copyOf(
+				indexDiff.getPathsWithIndexMode(FileMode.GITLINK));
 		changedResources = Collections.emptySet();
 	}
 
-	private Set<String> getUntrackedFolders(IndexDiff indexDiff) {
+	/**
+	 * Combines the results of several {@link IndexDiff}s calculated for
+	 * disjoint parts of the working tree, see {@link ShardedIndexDiff}.
+	 *
+	 * @param shards
+	 */
+	IndexDiffData(Collection<IndexDiff> shards) {
+		Set<String> added2 = new HashSet<String>();
+		Set<String> assumeUnchanged2 = new HashSet<String>();
+		Set<String> changed2 = new HashSet<String>();
+		Set<String> removed2 = new HashSet<String>();
+		Set<String> missing2 = new HashSet<String>();
+		Set<String> modified2 = new HashSet<String>();
+		Set<String> untracked2 = new HashSet<String>();
+		Set<String> untrackedFolders2 = new HashSet<String>();
+		Set<String> conflicts2 = new HashSet<String>();
+		Set<String> ignored2 = new HashSet<String>();
+		Set<String> symlinks2 = new HashSet<String>();
+		Set<String> submodules2 = new HashSet<String>();
+		for (IndexDiff shard : shards) {
+			added2.addAll(shard.getAdded());
+			assumeUnchanged2.addAll(shard.getAssumeUnchanged());
+			changed2.addAll(shard.getChanged());
+			removed2.addAll(shard.getRemoved());
+			missing2.addAll(shard.getMissing());
+			modified2.addAll(shard.getModified());
+			untracked2.addAll(shard.getUntracked());
+			untrackedFolders2.addAll(getUntrackedFolders(shard));
+			conflicts2.addAll(shard.getConflicting());
+			ignored2.addAll(shard.getIgnoredNotInIndex());
+			symlinks2.addAll(shard.getPathsWithIndexMode(FileMode.SYMLINK));
+			submodules2.addAll(shard.getPathsWithIndexMode(FileMode.GITLINK));
+		}
+		added = PathSet.copyOf(added2);
+		assumeUnchanged = PathSet.copyOf(assumeUnchanged2);
+		changed = PathSet.copyOf(changed2);
+		removed = PathSet.copyOf(removed2);
+		missing = PathSet.copyOf(missing2);
+		modified = PathSet.copyOf(modified2);
+		untracked = PathSet.copyOf(untracked2);
+		untrackedFolders = PathSet.copyOf(untrackedFolders2);
+		conflicts = PathSet.copyOf(conflicts2);
+		ignored = PathSet.copyOf(ignored2);
+		symlinks = PathSet.copyOf(symlinks2);
+		submodules = PathSet.copyOf(submodules2);
+		changedResources = Collections.emptySet();
+	}
+
+	/**
+	 * Restores data from previously saved path sets, see
+	 * {@link IndexDiffSnapshot}.
+	 */
+	IndexDiffData(Set<String> added, Set<String> assumeUnchanged,
+			Set<String> changed, Set<String> removed, Set<String> missing,
+			Set<String> modified, Set<String> untracked,
+			Set<String> untrackedFolders, Set<String> conflicts,
+			Set<String> ignored, Set<String> symlinks,
+			Set<String> submodules) {
+		this.added = PathSet.copyOf(added);
+		this.assumeUnchanged = PathSet.copyOf(assumeUnchanged);
+		this.changed = PathSet.copyOf(changed);
+		this.removed = PathSet.copyOf(removed);
+		this.missing = PathSet.copyOf(missing);
+		this.modified = PathSet.copyOf(modified);
+		this.untracked = PathSet.copyOf(untracked);
+		this.untrackedFolders = PathSet.copyOf(untrackedFolders);
+		this.conflicts = PathSet.copyOf(conflicts);
+		this.ignored = PathSet.copyOf(ignored);
+		this.symlinks = PathSet.copyOf(symlinks);
+		this.submodules = PathSet.copyOf(submodules);
+		this.changedResources = Collections.emptySet();
+	}
+
+	private static Set<String> getUntrackedFolders(IndexDiff indexDiff) {
 		HashSet<String> result = new HashSet<String>();
 		for (String folder:indexDiff.getUntrackedFolders())
 			result.add(folder + "/"); //$NON-NLS-1$
@@ -126,84 +224,68 @@ public IndexDiffData(IndexDiffData baseDiff,
 			IndexDiff diffForChangedFiles) {
 		this.changedResources = Collections
 				.unmodifiableCollection(new HashSet<IResource>(changedResources));
-		Set<String> added2 = new HashSet<String>(baseDiff.getAdded());
-		Set<String> assumeUnchanged2 = new HashSet<String>(
-				baseDiff.getAssumeUnchanged());
-		Set<String> changed2 = new HashSet<String>(baseDiff.getChanged());
-		Set<String> removed2 = new HashSet<String>(baseDiff.getRemoved());
-		Set<String> missing2 = new HashSet<String>(baseDiff.getMissing());
-		Set<String> modified2 = new HashSet<String>(baseDiff.getModified());
-		Set<String> untracked2 = new HashSet<String>(baseDiff.getUntracked());
-		Set<String> conflicts2 = new HashSet<String>(baseDiff.getConflicting());
-		Set<String> symlinks2 = new HashSet<String>(baseDiff.getSymlinks());
-		Set<String> submodules2 = new HashSet<String>(baseDiff.getSubmodules());
-
-		mergeList(added2, changedFiles, diffForChangedFiles.getAdded());
-		mergeList(assumeUnchanged2, changedFiles,
+		// only the changed paths are touched, the unchanged parts of the
+		// path sets are shared with baseDiff
+		added = mergeList(baseDiff.added, changedFiles,
+				diffForChangedFiles.getAdded());
+		assumeUnchanged = mergeList(baseDiff.assumeUnchanged, changedFiles,
 				diffForChangedFiles.getAssumeUnchanged());
-		mergeList(changed2, changedFiles, diffForChangedFiles.getChanged());
-		mergeList(removed2, changedFiles, diffForChangedFiles.getRemoved());
-		mergeList(missing2, changedFiles, diffForChangedFiles.getMissing());
-		mergeList(modified2, changedFiles, diffForChangedFiles.getModified());
-		mergeList(untracked2, changedFiles, diffForChangedFiles.getUntracked());
-		mergeList(symlinks2, changedFiles,
+		changed = mergeList(baseDiff.changed, changedFiles,
+				diffForChangedFiles.getChanged());
+		removed = mergeList(baseDiff.removed, changedFiles,
+				diffForChangedFiles.getRemoved());
+		missing = mergeList(baseDiff.missing, changedFiles,
+				diffForChangedFiles.getMissing());
+		modified = mergeList(baseDiff.modified, changedFiles,
+				diffForChangedFiles.getModified());
+		untracked = mergeList(baseDiff.untracked, changedFiles,
+				diffForChangedFiles.getUntracked());
+		symlinks = mergeList(baseDiff.symlinks, changedFiles,
 				diffForChangedFiles.getPathsWithIndexMode(FileMode.SYMLINK));
-		mergeList(submodules2, changedFiles,
+		submodules = mergeList(baseDiff.submodules, changedFiles,
 				diffForChangedFiles.getPathsWithIndexMode(FileMode.GITLINK));
-		Set<String> untrackedFolders2 = mergeUntrackedFolders(
-				baseDiff.getUntrackedFolders(), changedFiles,
-				getUntrackedFolders(diffForChangedFiles));
-		mergeList(conflicts2, changedFiles,
+		untrackedFolders = mergeUntrackedFolders(baseDiff.untrackedFolders,
+				changedFiles, getUntrackedFolders(diffForChangedFiles));
+		conflicts = mergeList(baseDiff.conflicts, changedFiles,
 				diffForChangedFiles.getConflicting());
-		Set<String> ignored2 = mergeIgnored(baseDiff.getIgnoredNotInIndex(), changedFiles,
+		ignored = mergeIgnored(baseDiff.ignored, changedFiles,
 				diffForChangedFiles.getIgnoredNotInIndex());
+	}
 
-		added = Collections.unmodifiableSet(added2);
-		assumeUnchanged = Collections.unmodifiableSet(assumeUnchanged2);
-		changed = Collections.unmodifiableSet(changed2);
-		removed = Collections.unmodifiableSet(removed2);
-		missing = Collections.unmodifiableSet(missing2);
-		modified = Collections.unmodifiableSet(modified2);
-		untracked = Collections.unmodifiableSet(untracked2);
-		untrackedFolders = Collections.unmodifiableSet(untrackedFolders2);
-		conflicts = Collections.unmodifiableSet(conflicts2);
-		ignored = Collections.unmodifiableSet(ignored2);
-		symlinks = Collections.unmodifiableSet(symlinks2);
-		submodules = Collections.unmodifiableSet(submodules2);
-	}
-
-	private void mergeList(Set<String> baseList,
+	private static PathSet mergeList(PathSet baseList,
 			Collection<String> changedFiles, Set<String> listForChangedFiles) {
+		List<String> toAdd = new ArrayList<String>();
+		List<String> toRemove = new ArrayList<String>();
 		for (String file : changedFiles) {
 			if (baseList.contains(file)) {
 				if (!listForChangedFiles.contains(file))
-					baseList.remove(file);
+					toRemove.add(file);
 			} else {
 				if (listForChangedFiles.contains(file))
-					baseList.add(file);
+					toAdd.add(file);
 			}
 		}
+		return baseList.update(toAdd, toRemove);
 	}
 
-	private static Set<String> mergeUntrackedFolders(Set<String> oldUntrackedFolders,
-			Collection<String> changedFiles, Set<String> newUntrackedFolders) {
-		Set<String> merged = new HashSet<String>();
-		for (String oldUntrackedFolder : oldUntrackedFolders) {
-			boolean changeInUntrackedFolder = isAnyFileContainedInFolder(
-					oldUntrackedFolder, changedFiles);
-			if (!changeInUntrackedFolder)
-				merged.add(oldUntrackedFolder);
+	private static PathSet mergeUntrackedFolders(
+			PathSet oldUntrackedFolders, Collection<String> changedFiles,
+			Set<String> newUntrackedFolders) {
+		// untracked folders end with a slash: a folder contains a changed
+		// file if it is one of the slash terminated prefixes of that file
+		List<String> toRemove = new ArrayList<String>();
+		for (String file : changedFiles) {
+			int slash = file.indexOf('/');
+			while (slash >= 0) {
+				String folder = file.substring(0, slash + 1);
+				if (oldUntrackedFolders.contains(folder))
+					toRemove.add(folder);
+				slash = file.indexOf('/', slash + 1);
+			}
 		}
-		merged.addAll(newUntrackedFolders);
-		return merged;
-	}
-
-	private static boolean isAnyFileContainedInFolder(String folder,
-			Collection<String> files) {
-		for (String file : files)
-			if (file.startsWith(folder))
-				return true;
-		return false;
+		return oldUntrackedFolders.update(Collections.<String> emptySet(),
+				toRemove).update(newUntrackedFolders,
+				Collections.<String> emptySet());
 	}
 
 	/**
@@ -216,15 +298,26 @@ private static boolean isAnyFileContainedInFolder(String folder,
 	 */
 	protected static Set<String> mergeIgnored(Set<String> oldIgnoredPaths,
 			Collection<String> changedPaths, Set<String> newIgnoredPaths) {
-		Set<String> merged = new HashSet<String>();
-		for (String oldIgnoredPath : oldIgnoredPaths) {
-			boolean changed = isAnyPrefixOf(oldIgnoredPath, changedPaths);
-			if (!changed) {
-				merged.add(oldIgnoredPath);
+		return mergeIgnored(PathSet.copyOf(oldIgnoredPaths), changedPaths,
+				newIgnoredPaths);
+	}
+
+	private static PathSet mergeIgnored(PathSet oldPaths,
+			Collection<String> changedPaths, Set<String> newIgnoredPaths) {
+		// remove all old paths having one of the changed paths as prefix,
+		// see isAnyPrefixOf()
+		Set<String> toRemove = new HashSet<String>();
+		for (String changedPath : changedPaths) {
+			toRemove.addAll(oldPaths.withPrefix(changedPath));
+			if (changedPath.endsWith("/")) { //$NON-NLS-1$
+				String folder = changedPath.substring(0,
+						changedPath.length() - 1);
+				if (oldPaths.contains(folder))
+					toRemove.add(folder);
 			}
 		}
-		merged.addAll(newIgnoredPaths);
-		return merged;
+		return oldPaths.update(Collections.<String> emptySet(), toRemove)
+				.update(newIgnoredPaths, Collections.<String> emptySet());
 	}
 
 	/**
@@ -250,12 +343,107 @@ protected static boolean isAnyPrefixOf(String pathToCheck,
 		return false;
 	}
 
+	/**
+	 * Checks whether any path of the given kinds starts with the given prefix.
+	 * Typically the prefix is a repository-relative folder path ending with a
+	 * slash, so this tells whether the folder contains any such entries. The
+	 * repository root may be given as empty string or as "/".
+	 * <p>
+	 * The lookup is a binary search in a sorted index of the paths which is
+	 * built once and shared by all incremental updates of this data.
+	 *
+	 * @param prefix
+	 *            repository-relative path prefix
+	 * @param kinds
+	 *            the kinds of paths to check
+	 * @return true if any path of the given kinds starts with the prefix
+	 */
+	public boolean hasEntryUnder(@NonNull String prefix, Kind... kinds) {
+		boolean root = prefix.isEmpty() || "/".equals(prefix); //$NON-NLS-1$
+		for (Kind kind : kinds) {
+			PathSet paths = getPathSet(kind);
+			if (root ? !paths.isEmpty() : paths.hasPrefix(prefix))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Checks whether the given path lies inside a folder which is itself an
+	 * entry of the given kind, e.g. whether a file is in an ignored folder.
+	 * Folder entries may or may not end with a slash. If the given path ends
+	 * with a slash, an entry for the path itself also matches.
+	 * <p>
+	 * The cost is proportional to the number of segments of the path.
+	 *
+	 * @param path
+	 *            repository-relative path
+	 * @param kind
+	 *            the kind of paths to check
+	 * @return true if a parent folder of the path is an entry of the given
+	 *         kind
+	 */
+	public boolean hasParentEntry(@NonNull String path, Kind kind) {
+		Set<String> paths = getPaths(kind);
+		if (paths.isEmpty())
+			return false;
+		int slash = path.indexOf('/');
+		while (slash >= 0) {
+			String parent = path.substring(0, slash);
+			if (paths.contains(parent)
+					|| paths.contains(path.substring(0, slash + 1)))
+				return true;
+			slash = path.indexOf('/', slash + 1);
+		}
+		return false;
+	}
+
+	/**
+	 * @param kind
+	 * @return the set of paths of the given kind
+	 */
+	@NonNull
+	public Set<String> getPaths(Kind kind) {
+		return getPathSet(kind);
+	}
+
+	private PathSet getPathSet(Kind kind) {
+		switch (kind) {
+		case ADDED:
+			return added;
+		case ASSUME_UNCHANGED:
+			return assumeUnchanged;
+		case CHANGED:
+			return changed;
+		case REMOVED:
+			return removed;
+		case MISSING:
+			return missing;
+		case MODIFIED:
+			return modified;
+		case UNTRACKED:
+			return untracked;
+		case UNTRACKED_FOLDERS:
+			return untrackedFolders;
+		case CONFLICTING:
+			return conflicts;
+		case IGNORED:
+			return ignored;
+		case SYMLINKS:
+			return symlinks;
+		case SUBMODULES:
+			return submodules;
+		default:
+			throw new IllegalArgumentException(kind.name());
+		}
+	}
+
 	/**
 	 * @return list of files added to the index, not in the tree
 	 */
 	@NonNull
 	public Set<String> getAdded() {
-		return Collections.unmodifiableSet(added);
+		return added;
 	}
 
 	/**
@@ -263,7 +451,7 @@ public Set<String> getAdded() {
 	 */
 	@NonNull
 	public Set<String> getAssumeUnchanged() {
-		return Collections.unmodifiableSet(assumeUnchanged);
+		return assumeUnchanged;
 	}
 
 	/**
@@ -0,0 +1,148 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.indexdiff;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.jgit.annotations.NonNull;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Limits the number of full index diff calculations running at the same time
+ * and decides which repository gets to run next.
+ * <p>
+ * Repositories shown to the user, i.e. in the Staging view or in the active
+ * editor, are served before all others; within the same priority, requests
+ * are served in arrival order. Views showing all projects, like the Project
+ * Explorer, don't register their repositories since that wouldn't prefer any
+ * of them. The number of concurrent calculations depends on the number of
+ * available processors.
+ */
+public class IndexDiffScheduler {
+
+	private static final IndexDiffScheduler INSTANCE = new IndexDiffScheduler(
+			Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+
+	private final int limit;
+
+	private int running;
+
+	// waiting requests in arrival order, guarded by this
+	private final List<Repository> waiting = new ArrayList<Repository>();
+
+	// reference counts of consumers showing a repository, guarded by this
+	private final Map<Repository, Integer> visible = new WeakHashMap<Repository, Integer>();
+
+	IndexDiffScheduler(int limit) {
+		this.limit = limit;
+	}
+
+	/**
+	 * @return the scheduler shared by all index diff cache entries
+	 */
+	@NonNull
+	public static IndexDiffScheduler getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Tells the scheduler that the status of the given repository is
+	 * currently shown to the user. Each call must be matched by a call to
+	 * {@link #removeVisibleRepository(Repository)}.
+	 *
+	 * @param repository
+	 */
+	public synchronized void addVisibleRepository(
+			@NonNull Repository repository) {
+		Integer count = visible.get(repository);
+		visible.put(repository,
+				Integer.valueOf(count == null ? 1 : count.intValue() + 1));
+		notifyAll();
+	}
+
+	/**
+	 * @param repository
+	 *            no longer shown by a consumer
+	 */
+	public synchronized void removeVisibleRepository(
+			@NonNull Repository repository) {
+		Integer count = visible.get(repository);
+		if (count == null)
+			return;
+		if (count.intValue() <= 1)
+			visible.remove(repository);
+		else
+			visible.put(repository, Integer.valueOf(count.intValue() - 1));
+	}
+
+	/**
+	 * @param repository
+	 * @return whether any consumer currently shows the given repository
+	 */
+	public synchronized boolean isVisible(@NonNull Repository repository) {
+		return visible.containsKey(repository);
+	}
+
+	/**
+	 * Waits until a calculation for the given repository may start. Every
+	 * successful call must be followed by a call to {@link #release()}.
+	 * <p>
+	 * The monitor is checked whenever the scheduler changes; callers whose
+	 * monitor gets cancelled while waiting must call {@link #wakeUp()}.
+	 *
+	 * @param repository
+	 * @param monitor
+	 *            checked for cancellation while waiting
+	 * @return true if the calculation may start, false if the monitor was
+	 *         cancelled while waiting
+	 * @throws InterruptedException
+	 */
+	synchronized boolean acquire(Repository repository,
+			IProgressMonitor monitor) throws InterruptedException {
+		waiting.add(repository);
+		try {
+			while (running >= limit || next() != repository) {
+				if (monitor.isCanceled())
+					return false;
+				wait();
+			}
+			running++;
+			return true;
+		} finally {
+			waiting.remove(repository);
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Ends a calculation started after {@link #acquire}.
+	 */
+	synchronized void release() {
+		running--;
+		notifyAll();
+	}
+
+	/**
+	 * Lets waiting calculations check their monitors for cancellation.
+	 */
+	synchronized void wakeUp() {
+		notifyAll();
+	}
+
+	private Repository next() {
+		for (Repository candidate : waiting)
+			if (visible.containsKey(candidate))
+				return candidate;
+		return waiting.get(0);
+	}
+}
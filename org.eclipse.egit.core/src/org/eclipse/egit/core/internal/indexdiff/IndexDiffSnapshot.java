@@ -0,0 +1,355 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.indexdiff;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.egit.core.Activator;
+import org.eclipse.egit.core.IteratorService;
+import org.eclipse.jgit.annotations.NonNull;
+import org.eclipse.jgit.annotations.Nullable;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.dircache.DirCacheIterator;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.WorkingTreeIterator;
+import org.eclipse.jgit.util.FileUtils;
+
+/**
+ * A persistable snapshot of an {@link IndexDiffData}, keyed by the checksum of
+ * the index file and the id of HEAD at the time the diff was calculated.
+ * <p>
+ * Snapshots are written on shutdown and read back on startup, so that the
+ * Git status of a repository is available immediately. A restored snapshot
+ * must be verified against the working tree, see
+ * {@link #collectChangedPaths(Repository, IProgressMonitor)}.
+ */
+class IndexDiffSnapshot {
+
+	private static final int MAGIC = 0x45494453; // "EIDS"
+
+	private static final int VERSION = 1;
+
+	private static final String SNAPSHOT_FOLDER = "indexdiff"; //$NON-NLS-1$
+
+	private static final String SNAPSHOT_EXTENSION = ".snapshot"; //$NON-NLS-1$
+
+	/**
+	 * Files modified this close to (or after) the time a snapshot was taken
+	 * are considered changed, to cope with coarse file system timestamps.
+	 */
+	private static final long TIMESTAMP_SLACK = 2000;
+
+	private final ObjectId indexChecksum;
+
+	private final ObjectId headId;
+
+	private final long timestamp;
+
+	private final IndexDiffData data;
+
+	private IndexDiffSnapshot(ObjectId indexChecksum, ObjectId headId,
+			long timestamp, IndexDiffData data) {
+		this.indexChecksum = indexChecksum;
+		this.headId = headId;
+		this.timestamp = timestamp;
+		this.data = data;
+	}
+
+	/**
+	 * Captures the current state of the index and HEAD of the repository. Must
+	 * be called <em>before</em> the corresponding {@link IndexDiffData} is
+	 * calculated.
+	 *
+	 * @param repository
+	 * @return a snapshot key without data
+	 * @throws IOException
+	 */
+	@NonNull
+	static IndexDiffSnapshot capture(Repository repository) throws IOException {
+		long now = System.currentTimeMillis();
+		return new IndexDiffSnapshot(readIndexChecksum(repository),
+				readHead(repository), now, null);
+	}
+
+	/**
+	 * @param indexDiffData
+	 * @return a snapshot with the same key holding the given data
+	 */
+	@NonNull
+	IndexDiffSnapshot withData(IndexDiffData indexDiffData) {
+		return new IndexDiffSnapshot(indexChecksum, headId, timestamp,
+				indexDiffData);
+	}
+
+	/**
+	 * @return the data of this snapshot, or null for a plain key
+	 */
+	@Nullable
+	IndexDiffData getData() {
+		return data;
+	}
+
+	/**
+	 * @param repository
+	 * @return true if neither the index nor HEAD changed since this snapshot
+	 *         was captured
+	 * @throws IOException
+	 */
+	boolean isValidFor(Repository repository) throws IOException {
+		return indexChecksum.equals(readIndexChecksum(repository))
+				&& headId.equals(readHead(repository));
+	}
+
+	/**
+	 * Determines the paths that may have changed in the working tree since
+	 * this snapshot was taken, based on modification times and, for tracked
+	 * files, on the sizes recorded in the index. File contents are not
+	 * compared; the returned paths are meant to be fed into an incremental
+	 * index diff update.
+	 *
+	 * @param repository
+	 * @param monitor
+	 * @return repository-relative paths to update, or null if the workspace
+	 *         is closed or the operation was cancelled
+	 * @throws IOException
+	 */
+	@Nullable
+	Collection<String> collectChangedPaths(Repository repository,
+			IProgressMonitor monitor) throws IOException {
+		WorkingTreeIterator iterator = IteratorService
+				.createInitialIterator(repository);
+		if (iterator == null || data == null)
+			return null;
+		long threshold = timestamp - TIMESTAMP_SLACK;
+		Set<String> changed = new TreeSet<String>();
+		try (TreeWalk walk = new TreeWalk(repository)) {
+			walk.addTree(new DirCacheIterator(repository.readDirCache()));
+			walk.addTree(iterator);
+			while (walk.next()) {
+				if (monitor.isCanceled())
+					return null;
+				DirCacheIterator indexEntry = walk.getTree(0,
+						DirCacheIterator.class);
+				WorkingTreeIterator fileEntry = walk.getTree(1,
+						WorkingTreeIterator.class);
+				String path = walk.getPathString();
+				if (walk.isSubtree()) {
+					// Don't descend into ignored folders not in the index,
+					// same as IndexDiff does
+					if (indexEntry == null && fileEntry != null
+							&& fileEntry.isEntryIgnored())
+						continue;
+					walk.enterSubtree();
+					continue;
+				}
+				if (fileEntry == null) {
+					if (!data.getMissing().contains(path))
+						changed.add(path);
+				} else if (fileEntry.getEntryLastModified() >= threshold
+						|| sizeChanged(indexEntry, fileEntry, path))
+					changed.add(path);
+			}
+		}
+		// Deleted files which were not in the index are not visited above
+		File workTree = repository.getWorkTree();
+		for (String path : data.getUntracked())
+			if (!new File(workTree, path).exists())
+				changed.add(path);
+		for (String path : data.getIgnoredNotInIndex())
+			if (!new File(workTree, path).exists())
+				changed.add(path);
+		return changed;
+	}
+
+	/**
+	 * Checks whether a file the snapshot considers unmodified has a different
+	 * size than recorded in the index, which catches changes that kept or
+	 * restored the modification time.
+	 */
+	private boolean sizeChanged(@Nullable DirCacheIterator indexEntry,
+			WorkingTreeIterator fileEntry, String path) {
+		if (indexEntry == null || data.getModified().contains(path)
+				|| data.getConflicting().contains(path))
+			return false;
+		DirCacheEntry entry = indexEntry.getDirCacheEntry();
+		return entry != null && !entry.isAssumeValid()
+				&& entry.getLength() != fileEntry.getEntryLength();
+	}
+
+	/**
+	 * @param file
+	 * @param gitDir
+	 *            the git directory the snapshot must belong to
+	 * @return the snapshot read from the file, or null if there is no usable
+	 *         snapshot for the given git directory
+	 * @throws IOException
+	 */
+	@Nullable
+	static IndexDiffSnapshot read(File file, File gitDir) throws IOException {
+		if (!file.isFile())
+			return null;
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file)))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION)
+				return null;
+			if (!gitDir.getAbsolutePath().equals(in.readUTF()))
+				return null;
+			ObjectId index = readId(in);
+			ObjectId head = readId(in);
+			long time = in.readLong();
+			Set<String> added = readSet(in);
+			Set<String> assumeUnchanged = readSet(in);
+			Set<String> changed = readSet(in);
+			Set<String> removed = readSet(in);
+			Set<String> missing = readSet(in);
+			Set<String> modified = readSet(in);
+			Set<String> untracked = readSet(in);
+			Set<String> untrackedFolders = readSet(in);
+			Set<String> conflicts = readSet(in);
+			Set<String> ignored = readSet(in);
+			Set<String> symlinks = readSet(in);
+			Set<String> submodules = readSet(in);
+			IndexDiffData restored = new IndexDiffData(added, assumeUnchanged,
+					changed, removed, missing, modified, untracked,
+					untrackedFolders, conflicts, ignored, symlinks,
+					submodules);
+			return new IndexDiffSnapshot(index, head, time, restored);
+		} catch (EOFException e) {
+			// truncated file, e.g. crash during shutdown
+			return null;
+		}
+	}
+
+	/**
+	 * Writes this snapshot. Does nothing if this is a plain key without data.
+	 *
+	 * @param file
+	 * @param gitDir
+	 *            the git directory the snapshot belongs to
+	 * @throws IOException
+	 */
+	void write(File file, File gitDir) throws IOException {
+		if (data == null)
+			return;
+		FileUtils.mkdirs(file.getParentFile(), true);
+		File tmp = new File(file.getParentFile(), file.getName() + ".tmp"); //$NON-NLS-1$
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(tmp)))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(gitDir.getAbsolutePath());
+			writeId(out, indexChecksum);
+			writeId(out, headId);
+			out.writeLong(timestamp);
+			writeSet(out, data.getAdded());
+			writeSet(out, data.getAssumeUnchanged());
+			writeSet(out, data.getChanged());
+			writeSet(out, data.getRemoved());
+			writeSet(out, data.getMissing());
+			writeSet(out, data.getModified());
+			writeSet(out, data.getUntracked());
+			writeSet(out, data.getUntrackedFolders());
+			writeSet(out, data.getConflicting());
+			writeSet(out, data.getIgnoredNotInIndex());
+			writeSet(out, data.getSymlinks());
+			writeSet(out, data.getSubmodules());
+		}
+		FileUtils.rename(tmp, file);
+	}
+
+	/**
+	 * @param repository
+	 * @return the file the snapshot of the given repository is stored in, or
+	 *         null if the plug-in is not active
+	 */
+	@Nullable
+	static File getSnapshotFile(Repository repository) {
+		Activator activator = Activator.getDefault();
+		if (activator == null)
+			return null;
+		IPath stateLocation = activator.getStateLocation();
+		MessageDigest digest = Constants.newMessageDigest();
+		digest.update(Constants.encode(repository.getDirectory()
+				.getAbsolutePath()));
+		String name = ObjectId.fromRaw(digest.digest()).name();
+		return stateLocation.append(SNAPSHOT_FOLDER)
+				.append(name + SNAPSHOT_EXTENSION).toFile();
+	}
+
+	private static ObjectId readIndexChecksum(Repository repository)
+			throws IOException {
+		// the last bytes of the index file are a SHA-1 over its content
+		File indexFile = repository.getIndexFile();
+		try (RandomAccessFile raf = new RandomAccessFile(indexFile, "r")) { //$NON-NLS-1$
+			long length = raf.length();
+			if (length < Constants.OBJECT_ID_LENGTH)
+				return ObjectId.zeroId();
+			byte[] checksum = new byte[Constants.OBJECT_ID_LENGTH];
+			raf.seek(length - Constants.OBJECT_ID_LENGTH);
+			raf.readFully(checksum);
+			return ObjectId.fromRaw(checksum);
+		} catch (FileNotFoundException e) {
+			return ObjectId.zeroId();
+		}
+	}
+
+	private static ObjectId readHead(Repository repository) throws IOException {
+		ObjectId head = repository.resolve(Constants.HEAD);
+		return head != null ? head.copy() : ObjectId.zeroId();
+	}
+
+	private static ObjectId readId(DataInputStream in) throws IOException {
+		byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+		in.readFully(raw);
+		return ObjectId.fromRaw(raw);
+	}
+
+	private static void writeId(DataOutputStream out, ObjectId id)
+			throws IOException {
+		byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+		id.copyRawTo(raw, 0);
+		out.write(raw);
+	}
+
+	private static Set<String> readSet(DataInputStream in) throws IOException {
+		int size = in.readInt();
+		List<String> items = new ArrayList<String>(size);
+		for (int i = 0; i < size; i++)
+			items.add(in.readUTF());
+		return PathSet.copyOf(items);
+	}
+
+	private static void writeSet(DataOutputStream out, Set<String> set)
+			throws IOException {
+		out.writeInt(set.size());
+		for (String path : set)
+			out.writeUTF(path);
+	}
+}
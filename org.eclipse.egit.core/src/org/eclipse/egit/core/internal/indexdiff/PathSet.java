@@ -0,0 +1,263 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.indexdiff;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Immutable set of repository-relative paths supporting cheap derivation of
+ * modified copies.
+ * <p>
+ * A path set consists of a shared, never modified base set and a small delta
+ * of added and removed paths. {@link #update(Collection, Collection)} copies
+ * only the delta, so an incremental update costs time and memory proportional
+ * to the accumulated changes, not to the size of the set. Once the delta grows
+ * too large relative to the base, it is folded into a new base.
+ * <p>
+ * The base additionally provides a sorted index, built lazily once and shared
+ * by all sets derived from it, for prefix queries.
+ */
+final class PathSet extends AbstractSet<String> {
+
+	private static final SortedSet<String> NO_PATHS = Collections
+			.unmodifiableSortedSet(new TreeSet<String>());
+
+	/** The empty path set */
+	static final PathSet EMPTY = new PathSet(
+			new Base(Collections.<String> emptySet()), NO_PATHS,
+			Collections.<String> emptySet());
+
+	private static final int MIN_COMPACTION_THRESHOLD = 64;
+
+	private final Base base;
+
+	// paths not in base
+	private final SortedSet<String> added;
+
+	// paths in base
+	private final Set<String> removed;
+
+	private PathSet(Base base, SortedSet<String> added, Set<String> removed) {
+		this.base = base;
+		this.added = added;
+		this.removed = removed;
+	}
+
+	/**
+	 * @param paths
+	 * @return a path set containing a copy of the given paths
+	 */
+	static PathSet copyOf(Collection<String> paths) {
+		if (paths instanceof PathSet)
+			return (PathSet) paths;
+		if (paths.isEmpty())
+			return EMPTY;
+		return new PathSet(new Base(new HashSet<String>(paths)),
+				NO_PATHS, Collections.<String> emptySet());
+	}
+
+	/**
+	 * @param additions
+	 *            paths to add
+	 * @param removals
+	 *            paths to remove
+	 * @return a new set with the given changes applied, sharing unchanged
+	 *         data with this set; this set if nothing changed
+	 */
+	PathSet update(Collection<String> additions, Collection<String> removals) {
+		SortedSet<String> newAdded = null;
+		Set<String> newRemoved = null;
+		for (String path : removals) {
+			if (!contains(path))
+				continue;
+			if (added.contains(path)) {
+				if (newAdded == null)
+					newAdded = new TreeSet<String>(added);
+				newAdded.remove(path);
+			} else {
+				if (newRemoved == null)
+					newRemoved = new HashSet<String>(removed);
+				newRemoved.add(path);
+			}
+		}
+		for (String path : additions) {
+			if (newAdded != null ? newAdded.contains(path)
+					: added.contains(path))
+				continue;
+			if (base.paths.contains(path)) {
+				Set<String> currentRemoved = newRemoved != null ? newRemoved
+						: removed;
+				if (currentRemoved.contains(path)) {
+					if (newRemoved == null)
+						newRemoved = new HashSet<String>(removed);
+					newRemoved.remove(path);
+				}
+			} else {
+				if (newAdded == null)
+					newAdded = new TreeSet<String>(added);
+				newAdded.add(path);
+			}
+		}
+		if (newAdded == null && newRemoved == null)
+			return this;
+		PathSet result = new PathSet(base,
+				newAdded != null ? newAdded : added,
+				newRemoved != null ? newRemoved : removed);
+		int threshold = Math.max(MIN_COMPACTION_THRESHOLD,
+				base.paths.size() / 8);
+		if (result.added.size() + result.removed.size() > threshold)
+			return result.compact();
+		return result;
+	}
+
+	private PathSet compact() {
+		if (isEmpty())
+			return EMPTY;
+		return new PathSet(new Base(new HashSet<String>(this)),
+				NO_PATHS, Collections.<String> emptySet());
+	}
+
+	/**
+	 * @param prefix
+	 * @return true if any path in this set starts with the given prefix
+	 */
+	boolean hasPrefix(String prefix) {
+		SortedSet<String> tail = added.tailSet(prefix);
+		if (!tail.isEmpty() && tail.first().startsWith(prefix))
+			return true;
+		String[] sorted = base.getSorted();
+		for (int i = findFirst(sorted, prefix); i < sorted.length; i++) {
+			String path = sorted[i];
+			if (!path.startsWith(prefix))
+				return false;
+			if (!removed.contains(path))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @param prefix
+	 * @return all paths in this set starting with the given prefix
+	 */
+	List<String> withPrefix(String prefix) {
+		List<String> result = new ArrayList<String>();
+		for (String path : added.tailSet(prefix)) {
+			if (!path.startsWith(prefix))
+				break;
+			result.add(path);
+		}
+		String[] sorted = base.getSorted();
+		for (int i = findFirst(sorted, prefix); i < sorted.length; i++) {
+			String path = sorted[i];
+			if (!path.startsWith(prefix))
+				break;
+			if (!removed.contains(path))
+				result.add(path);
+		}
+		return result;
+	}
+
+	private static int findFirst(String[] sorted, String prefix) {
+		int index = Arrays.binarySearch(sorted, prefix);
+		return index >= 0 ? index : -index - 1;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (!(o instanceof String))
+			return false;
+		return added.contains(o)
+				|| (base.paths.contains(o) && !removed.contains(o));
+	}
+
+	@Override
+	public int size() {
+		return base.paths.size() - removed.size() + added.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return size() == 0;
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+		return new Iterator<String>() {
+
+			private final Iterator<String> baseIterator = base.paths.iterator();
+
+			private final Iterator<String> addedIterator = added.iterator();
+
+			private String next = advance();
+
+			private String advance() {
+				while (baseIterator.hasNext()) {
+					String path = baseIterator.next();
+					if (!removed.contains(path))
+						return path;
+				}
+				if (addedIterator.hasNext())
+					return addedIterator.next();
+				return null;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return next != null;
+			}
+
+			@Override
+			public String next() {
+				if (next == null)
+					throw new NoSuchElementException();
+				String result = next;
+				next = advance();
+				return result;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	private static final class Base {
+
+		final Set<String> paths;
+
+		private volatile String[] sorted;
+
+		Base(Set<String> paths) {
+			this.paths = paths;
+		}
+
+		String[] getSorted() {
+			String[] result = sorted;
+			if (result == null) {
+				result = paths.toArray(new String[paths.size()]);
+				Arrays.sort(result);
+				sorted = result;
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,237 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.indexdiff;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.egit.core.IteratorService;
+import org.eclipse.egit.core.internal.job.WorkerPool;
+import org.eclipse.egit.core.internal.trace.GitTraceLocation;
+import org.eclipse.jgit.annotations.Nullable;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.IndexDiff;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.WorkingTreeIterator;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * Calculates a full index diff by splitting the working tree into shards of
+ * top-level paths and diffing the shards in parallel.
+ * <p>
+ * Every shard is a separate JGit {@link IndexDiff} restricted to its paths by a
+ * {@link PathFilterGroup}; the results are merged into one
+ * {@link IndexDiffData}. Top-level paths are distributed over the shards by
+ * their number of index entries, so that the shards are of similar size.
+ */
+class ShardedIndexDiff {
+
+	/**
+	 * Repositories with fewer index entries are diffed in one go; sharding
+	 * does not pay off for them.
+	 */
+	static final int MIN_ENTRIES_FOR_SHARDING = 10000;
+
+	private final Repository repository;
+
+	private final int minEntries;
+
+	private final int maxShards;
+
+	ShardedIndexDiff(Repository repository) {
+		this(repository, MIN_ENTRIES_FOR_SHARDING,
+				WorkerPool.getParallelism());
+	}
+
+	/**
+	 * @param repository
+	 * @param minEntries
+	 *            the number of index entries below which the repository is
+	 *            not sharded
+	 * @param maxShards
+	 *            the maximum number of shards
+	 */
+	ShardedIndexDiff(Repository repository, int minEntries, int maxShards) {
+		this.repository = repository;
+		this.minEntries = minEntries;
+		this.maxShards = maxShards;
+	}
+
+	/**
+	 * @param monitor
+	 * @param jobName
+	 * @return the merged result, or null if the calculation was cancelled,
+	 *         the workspace is closed, or the repository is too small to be
+	 *         sharded
+	 * @throws IOException
+	 */
+	@Nullable
+	IndexDiffData calculate(final IProgressMonitor monitor, String jobName)
+			throws IOException {
+		DirCache dirCache = repository.readDirCache();
+		if (dirCache.getEntryCount() < minEntries)
+			return null;
+		List<List<String>> shards = partition(dirCache, maxShards);
+		if (shards.size() < 2)
+			return null;
+
+		// progress is reported per shard; JGit's per-file progress can't be
+		// aggregated over several threads
+		final ProgressMonitor cancelMonitor = new CancelOnlyMonitor(monitor);
+		List<Callable<IndexDiff>> tasks = new ArrayList<Callable<IndexDiff>>();
+		for (final List<String> shard : shards) {
+			tasks.add(new Callable<IndexDiff>() {
+				@Override
+				public IndexDiff call() throws IOException {
+					WorkingTreeIterator iterator = IteratorService
+							.createInitialIterator(repository);
+					if (iterator == null)
+						return null; // workspace is closed
+					IndexDiff diff = new IndexDiff(repository, Constants.HEAD,
+							iterator);
+					diff.setFilter(PathFilterGroup.createFromStrings(shard));
+					diff.diff(cancelMonitor, 0, 0, ""); //$NON-NLS-1$
+					return diff;
+				}
+			});
+		}
+
+		monitor.beginTask(jobName, shards.size());
+		List<IndexDiff> results = new ArrayList<IndexDiff>(shards.size());
+		try {
+			List<Future<IndexDiff>> futures = WorkerPool.getExecutor()
+					.invokeAll(tasks);
+			for (Future<IndexDiff> future : futures) {
+				IndexDiff diff = future.get();
+				if (diff == null || monitor.isCanceled())
+					return null;
+				results.add(diff);
+				monitor.worked(1);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			throw new IOException(cause);
+		} finally {
+			monitor.done();
+		}
+		if (GitTraceLocation.INDEXDIFFCACHE.isActive()) {
+			GitTraceLocation.getTrace().trace(
+					GitTraceLocation.INDEXDIFFCACHE.getLocation(),
+					NLS.bind("Calculated IndexDiff for {0} in {1} shards", //$NON-NLS-1$
+							repository.getWorkTree().getName(),
+							Integer.valueOf(results.size())));
+		}
+		return new IndexDiffData(results);
+	}
+
+	/**
+	 * Distributes the top-level paths of the index and the working tree over
+	 * at most {@code count} shards, balancing the number of index entries.
+	 */
+	private List<List<String>> partition(DirCache dirCache, int count) {
+		final Map<String, Integer> weights = new HashMap<String, Integer>();
+		for (int i = 0; i < dirCache.getEntryCount(); i++) {
+			String path = dirCache.getEntry(i).getPathString();
+			int slash = path.indexOf('/');
+			String topLevel = slash < 0 ? path : path.substring(0, slash);
+			Integer weight = weights.get(topLevel);
+			weights.put(topLevel,
+					Integer.valueOf(weight == null ? 1 : weight.intValue() + 1));
+		}
+		// untracked top-level files and folders
+		String[] names = repository.getWorkTree().list();
+		if (names != null) {
+			for (String name : names) {
+				if (!Constants.DOT_GIT.equals(name)
+						&& !weights.containsKey(name))
+					weights.put(name, Integer.valueOf(1));
+			}
+		}
+
+		List<String> paths = new ArrayList<String>(weights.keySet());
+		Collections.sort(paths, new Comparator<String>() {
+			@Override
+			public int compare(String p1, String p2) {
+				return weights.get(p2).compareTo(weights.get(p1));
+			}
+		});
+		int shardCount = Math.min(count, paths.size());
+		List<List<String>> shards = new ArrayList<List<String>>(shardCount);
+		int[] shardWeights = new int[shardCount];
+		for (int i = 0; i < shardCount; i++)
+			shards.add(new ArrayList<String>());
+		// largest paths first, each into the currently smallest shard
+		for (String path : paths) {
+			int smallest = 0;
+			for (int i = 1; i < shardCount; i++)
+				if (shardWeights[i] < shardWeights[smallest])
+					smallest = i;
+			shards.get(smallest).add(path);
+			shardWeights[smallest] += weights.get(path).intValue();
+		}
+		return shards;
+	}
+
+	/**
+	 * Forwards only cancellation from an Eclipse progress monitor; safe to be
+	 * shared by several threads.
+	 */
+	private static class CancelOnlyMonitor implements ProgressMonitor {
+
+		private final IProgressMonitor monitor;
+
+		CancelOnlyMonitor(IProgressMonitor monitor) {
+			this.monitor = monitor;
+		}
+
+		@Override
+		public void start(int totalTasks) {
+			// ignore
+		}
+
+		@Override
+		public void beginTask(String title, int totalWork) {
+			// ignore
+		}
+
+		@Override
+		public void update(int completed) {
+			// ignore
+		}
+
+		@Override
+		public void endTask() {
+			// ignore
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return monitor.isCanceled();
+		}
+	}
+}
@@ -0,0 +1,292 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.indexdiff;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.text.MessageFormat;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.egit.core.Activator;
+import org.eclipse.egit.core.internal.CoreText;
+import org.eclipse.jgit.dircache.DirCacheIterator;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.treewalk.FileTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.WorkingTreeIterator;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+
+/**
+ * Watches the working tree of a repository for changes made outside of the
+ * Eclipse resource tree, using the file system's {@link WatchService}.
+ * <p>
+ * Changes are reported as repository-relative file paths, so that they can be
+ * fed into incremental index diff updates. Folders ignored by git and not in
+ * the index are not watched.
+ */
+class WorkingTreeWatcher {
+
+	/**
+	 * Receives changes detected by a {@link WorkingTreeWatcher}. Called from
+	 * the watcher thread.
+	 */
+	interface Listener {
+
+		/**
+		 * @param paths
+		 *            repository-relative paths of changed files
+		 */
+		void filesChanged(Collection<String> paths);
+
+		/**
+		 * Called if changes may have been missed, e.g. because folders were
+		 * deleted or events were lost. Requires a full reload.
+		 */
+		void changesLost();
+	}
+
+	// time to wait for more events before reporting a batch of changes
+	private static final long BATCH_DELAY = 100;
+
+	private final Repository repository;
+
+	private final Path workTree;
+
+	private final Listener listener;
+
+	private final Map<WatchKey, Path> keys = new HashMap<WatchKey, Path>();
+
+	private final Map<Path, WatchKey> folders = new HashMap<Path, WatchKey>();
+
+	private WatchService watchService;
+
+	private Thread thread;
+
+	/**
+	 * @param repository
+	 *            non-bare repository to watch
+	 * @param listener
+	 */
+	WorkingTreeWatcher(Repository repository, Listener listener) {
+		this.repository = repository;
+		this.workTree = repository.getWorkTree().toPath();
+		this.listener = listener;
+	}
+
+	/**
+	 * Starts watching in a background thread.
+	 */
+	synchronized void start() {
+		if (thread != null)
+			return;
+		thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				watch();
+			}
+		}, "EGit working tree watcher for " + workTree); //$NON-NLS-1$
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops watching.
+	 */
+	synchronized void stop() {
+		if (thread == null)
+			return;
+		thread.interrupt();
+		thread = null;
+		if (watchService != null) {
+			try {
+				watchService.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+	}
+
+	private void watch() {
+		try {
+			WatchService service = FileSystems.getDefault().newWatchService();
+			synchronized (this) {
+				if (thread != Thread.currentThread()) {
+					service.close();
+					return; // stopped before start-up completed
+				}
+				watchService = service;
+			}
+			registerWorkingTree();
+			Set<String> changed = new TreeSet<String>();
+			while (!Thread.currentThread().isInterrupted()) {
+				WatchKey key = changed.isEmpty() ? watchService.take()
+						: watchService.poll(BATCH_DELAY,
+								TimeUnit.MILLISECONDS);
+				if (key == null) {
+					// no more events for a while: report the batch
+					listener.filesChanged(changed);
+					changed = new TreeSet<String>();
+					continue;
+				}
+				if (!processEvents(key, changed)) {
+					changed.clear();
+					listener.changesLost();
+				}
+			}
+		} catch (InterruptedException e) {
+			// stopped
+		} catch (ClosedWatchServiceException e) {
+			// stopped
+		} catch (IOException e) {
+			// e.g. the limit of watched folders is reached: fall back to
+			// resource change events only
+			Activator.logWarning(MessageFormat.format(
+					CoreText.WorkingTreeWatcher_cannotWatch, workTree), e);
+		}
+	}
+
+	/**
+	 * @return false if changes may have been lost
+	 */
+	private boolean processEvents(WatchKey key, Set<String> changed) {
+		Path dir = keys.get(key);
+		boolean complete = dir != null;
+		if (dir != null) {
+			for (WatchEvent<?> event : key.pollEvents()) {
+				if (event.kind() == OVERFLOW) {
+					complete = false;
+					continue;
+				}
+				Path child = dir.resolve((Path) event.context());
+				if (event.kind() == ENTRY_CREATE && Files.isDirectory(child,
+						LinkOption.NOFOLLOW_LINKS)) {
+					// already registered if created inside a new folder
+					if (!folders.containsKey(child)
+							&& !registerNewFolder(child, changed))
+						complete = false;
+				} else if (event.kind() == ENTRY_DELETE
+						&& folders.containsKey(child)) {
+					// the files of a deleted folder are unknown here
+					complete = false;
+				} else if (event.kind() == ENTRY_MODIFY && Files
+						.isDirectory(child, LinkOption.NOFOLLOW_LINKS)) {
+					// changes inside are reported by the folder's own key
+				} else {
+					changed.add(toRepoRelative(child));
+				}
+			}
+		}
+		if (!key.reset()) {
+			Path removed = keys.remove(key);
+			if (removed != null && folders.get(removed) == key)
+				folders.remove(removed);
+		}
+		return complete;
+	}
+
+	/**
+	 * Registers all folders of the working tree, skipping folders which are
+	 * ignored and not in the index, as IndexDiff does.
+	 */
+	private void registerWorkingTree() throws IOException {
+		register(workTree);
+		try (TreeWalk walk = new TreeWalk(repository)) {
+			walk.addTree(new DirCacheIterator(repository.readDirCache()));
+			walk.addTree(new FileTreeIterator(repository));
+			while (walk.next()) {
+				if (!walk.isSubtree())
+					continue;
+				WorkingTreeIterator folder = walk.getTree(1,
+						WorkingTreeIterator.class);
+				if (folder == null)
+					continue;
+				if (walk.getTree(0, DirCacheIterator.class) == null
+						&& folder.isEntryIgnored())
+					continue;
+				register(workTree.resolve(walk.getPathString()));
+				walk.enterSubtree();
+			}
+		}
+	}
+
+	/**
+	 * Registers a folder created while watching and its subfolders, skipping
+	 * folders which are ignored and not in the index, and reports all files
+	 * in them, since events for them may have been missed.
+	 *
+	 * @return false if changes may have been lost because a folder could not
+	 *         be registered
+	 */
+	private boolean registerNewFolder(Path folder, Set<String> changed) {
+		String path = toRepoRelative(folder);
+		boolean complete = true;
+		try (TreeWalk walk = new TreeWalk(repository)) {
+			walk.addTree(new DirCacheIterator(repository.readDirCache()));
+			walk.addTree(new FileTreeIterator(repository));
+			walk.setFilter(PathFilter.create(path));
+			while (walk.next()) {
+				WorkingTreeIterator entry = walk.getTree(1,
+						WorkingTreeIterator.class);
+				if (entry == null)
+					continue;
+				if (!walk.isSubtree()) {
+					changed.add(walk.getPathString());
+					continue;
+				}
+				if (walk.getPathString().length() < path.length()) {
+					// a parent of the new folder, registered before
+					walk.enterSubtree();
+					continue;
+				}
+				if (walk.getTree(0, DirCacheIterator.class) == null
+						&& entry.isEntryIgnored())
+					continue;
+				try {
+					register(workTree.resolve(walk.getPathString()));
+				} catch (IOException e) {
+					// e.g. deleted right after it was created
+					complete = false;
+					continue;
+				}
+				walk.enterSubtree();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+		return complete;
+	}
+
+	private void register(Path dir) throws IOException {
+		WatchKey key = dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE,
+				ENTRY_MODIFY);
+		keys.put(key, dir);
+		folders.put(dir, key);
+	}
+
+	private String toRepoRelative(Path path) {
+		return workTree.relativize(path).toString().replace('\\', '/');
+	}
+}
@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.job;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool of daemon threads shared by the computations which split their
+ * work into parallel tasks, e.g. sharded index diffs and commit searches.
+ * <p>
+ * The pool has one thread per processor; further tasks wait in a queue. Tasks
+ * must therefore not block waiting for other tasks of the pool. Idle threads
+ * end after a while, and all threads are stopped when the plug-in stops.
+ */
+public final class WorkerPool {
+
+	private static final long KEEP_ALIVE_SECONDS = 30;
+
+	private static ThreadPoolExecutor executor;
+
+	private WorkerPool() {
+		// static access only
+	}
+
+	/**
+	 * @return the number of tasks the pool runs at the same time
+	 */
+	public static int getParallelism() {
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * @return the shared executor
+	 */
+	public static synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			int threads = getParallelism();
+			executor = new ThreadPoolExecutor(threads, threads,
+					KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+
+						private final AtomicInteger count = new AtomicInteger();
+
+						@Override
+						public Thread newThread(Runnable r) {
+							Thread thread = new Thread(r, "EGit worker " //$NON-NLS-1$
+									+ count.incrementAndGet());
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+			executor.allowCoreThreadTimeOut(true);
+		}
+		return executor;
+	}
+
+	/**
+	 * Stops the threads of the pool, interrupting running tasks
+	 */
+	public static synchronized void shutdown() {
+		if (executor != null) {
+			executor.shutdownNow();
+			executor = null;
+		}
+	}
+}
@@ -12,15 +12,22 @@
 package org.eclipse.egit.core.internal.storage;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map.Entry;
 
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.IAdaptable;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.egit.core.Activator;
 import org.eclipse.egit.core.internal.CoreText;
 import org.eclipse.egit.core.internal.Utils;
+import org.eclipse.egit.core.internal.commitgraph.CommitGraph;
+import org.eclipse.egit.core.internal.commitgraph.CommitGraphCache;
+import org.eclipse.egit.core.internal.commitgraph.PathHistory;
 import org.eclipse.egit.core.project.RepositoryMapping;
 import org.eclipse.egit.core.synchronize.GitRemoteResource;
 import org.eclipse.osgi.util.NLS;
@@ -32,6 +39,7 @@
 import org.eclipse.jgit.errors.MissingObjectException;
 import org.eclipse.jgit.lib.AnyObjectId;
 import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
@@ -113,6 +121,13 @@ private IFileRevision[] buildRevisions(final IProgressMonitor monitor,
 				return new IFileRevision[] { single };
 			}
 
+			if (gitPath != null && gitPath.length() > 0) {
+				IFileRevision[] fromGraph = buildRevisionsFromGraph(root,
+						monitor);
+				if (fromGraph != null)
+					return fromGraph;
+			}
+
 			markStartAllRefs(walk, Constants.R_HEADS);
 			markStartAllRefs(walk, Constants.R_REMOTES);
 			markStartAllRefs(walk, Constants.R_TAGS);
@@ -149,6 +164,78 @@ private IFileRevision[] buildRevisions(final IProgressMonitor monitor,
 		return r;
 	}
 
+	/**
+	 * Computes the revisions from the commit graph of the repository, which
+	 * avoids diffing the trees of most commits.
+	 *
+	 * @param head
+	 * @param monitor
+	 * @return the revisions, or null if there is no commit graph or it
+	 *         doesn't contain all commits to start from yet
+	 * @throws IOException
+	 */
+	private IFileRevision[] buildRevisionsFromGraph(RevCommit head,
+			IProgressMonitor monitor) throws IOException {
+		CommitGraph graph = CommitGraphCache.get(db);
+		if (graph == null)
+			return null;
+		List<Integer> starts = new ArrayList<Integer>();
+		for (String prefix : new String[] { Constants.R_HEADS,
+				Constants.R_REMOTES, Constants.R_TAGS }) {
+			for (Ref ref : db.getRefDatabase().getRefs(prefix).values()) {
+				if (ref.isSymbolic() || ref.getLeaf().getObjectId() == null)
+					continue;
+				ObjectId id = ref.getLeaf().getObjectId();
+				int position = graph.find(id);
+				if (position >= 0)
+					starts.add(Integer.valueOf(position));
+				else if (isCommit(id))
+					return null;
+			}
+		}
+		int headPosition = graph.find(head);
+		if (headPosition < 0)
+			return null;
+		starts.add(Integer.valueOf(headPosition));
+		int[] startPositions = new int[starts.size()];
+		for (int i = 0; i < startPositions.length; i++)
+			startPositions[i] = starts.get(i).intValue();
+
+		List<PathHistory.Entry> entries;
+		try {
+			entries = new PathHistory(graph, walk.getObjectReader(), gitPath)
+					.compute(startPositions, monitor != null ? monitor
+							: new NullProgressMonitor());
+		} catch (OperationCanceledException e) {
+			return NO_REVISIONS;
+		}
+		final IFileRevision[] r = new IFileRevision[entries.size()];
+		for (int i = 0; i < r.length; i++) {
+			PathHistory.Entry entry = entries.get(i);
+			KidCommit c = (KidCommit) walk.parseCommit(graph.getId(entry
+					.getPosition()));
+			int[] parents = entry.getParents();
+			c.historyParents = new KidCommit[parents.length];
+			for (int j = 0; j < parents.length; j++) {
+				KidCommit p = (KidCommit) walk.parseCommit(graph
+						.getId(parents[j]));
+				c.historyParents[j] = p;
+				p.addChild(c);
+			}
+			r[i] = new CommitFileRevision(db, c, gitPath);
+		}
+		return r;
+	}
+
+	private boolean isCommit(ObjectId id) throws IOException {
+		try {
+			return walk.parseAny(id) instanceof RevCommit;
+		} catch (MissingObjectException e) {
+			// ignored like in markStartRef
+			return false;
+		}
+	}
+
 	private void markStartAllRefs(RevWalk theWalk, String prefix)
 			throws IOException, MissingObjectException,
 			IncorrectObjectTypeException {
@@ -180,9 +267,10 @@ public IFileRevision[] getContributors(final IFileRevision ifr) {
 		RevCommit commit = getRevCommit(ifr);
 
 		if (path != null && commit != null) {
-			final IFileRevision[] r = new IFileRevision[commit.getParentCount()];
+			final RevCommit[] parents = getParents(commit);
+			final IFileRevision[] r = new IFileRevision[parents.length];
 			for (int i = 0; i < r.length; i++)
-				r[i] = new CommitFileRevision(db, commit.getParent(i), path);
+				r[i] = new CommitFileRevision(db, parents[i], path);
 			return r;
 		}
 
@@ -205,6 +293,13 @@ public IFileRevision[] getTargets(final IFileRevision ifr) {
 		return NO_REVISIONS;
 	}
 
+	private static RevCommit[] getParents(RevCommit commit) {
+		if (commit instanceof KidCommit
+				&& ((KidCommit) commit).historyParents != null)
+			return ((KidCommit) commit).historyParents;
+		return commit.getParents();
+	}
+
 	private String getGitPath(IFileRevision revision) {
 		if (revision instanceof CommitFileRevision)
 			return ((CommitFileRevision) revision).getGitPath();
@@ -16,6 +16,12 @@ class KidCommit extends RevCommit {
 
 	KidCommit[] children = NO_CHILDREN;
 
+	/**
+	 * The parents in the history of a path if the history was computed from a
+	 * commit graph; null if the parents were rewritten by the walk.
+	 */
+	KidCommit[] historyParents;
+
 	KidCommit(final AnyObjectId id) {
 		super(id);
 	}
@@ -37,6 +43,7 @@ else if (cnt == 1)
 	@Override
 	public void reset() {
 		children = NO_CHILDREN;
+		historyParents = null;
 		super.reset();
 	}
 }
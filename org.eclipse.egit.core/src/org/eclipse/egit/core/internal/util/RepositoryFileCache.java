@@ -0,0 +1,335 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.internal.util;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
+import org.eclipse.core.runtime.preferences.DefaultScope;
+import org.eclipse.core.runtime.preferences.IEclipsePreferences;
+import org.eclipse.core.runtime.preferences.InstanceScope;
+import org.eclipse.egit.core.Activator;
+import org.eclipse.egit.core.internal.trace.GitTraceLocation;
+import org.eclipse.jgit.annotations.Nullable;
+import org.eclipse.jgit.events.ListenerHandle;
+import org.eclipse.jgit.events.RefsChangedEvent;
+import org.eclipse.jgit.events.RefsChangedListener;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.util.FileUtils;
+import org.eclipse.osgi.util.NLS;
+
+/**
+ * Maintains a file per repository which is computed from its commits, like a
+ * commit graph, and extends it in a background job whenever refs change.
+ * <p>
+ * Until the first file of a repository has been written, {@link #get(Repository)}
+ * returns null. Each version is written to a new file since the previous one
+ * may still be mapped, which prevents replacing it on some platforms.
+ *
+ * @param <T>
+ *            type of the opened files
+ */
+public abstract class RepositoryFileCache<T> {
+
+	private final Map<Repository, Entry> entries = new WeakHashMap<Repository, Entry>();
+
+	private final String name;
+
+	private final String jobName;
+
+	private final String extension;
+
+	private final String enabledPreference;
+
+	private ListenerHandle refsChangedHandle;
+
+	/**
+	 * @param name
+	 *            what the files contain, for tracing
+	 * @param jobName
+	 *            name of the update jobs, with the repository name as
+	 *            parameter {0}
+	 * @param extension
+	 *            file name extension of the files
+	 * @param enabledPreference
+	 *            key of the core preference which enables the files
+	 */
+	protected RepositoryFileCache(String name, String jobName,
+			String extension, String enabledPreference) {
+		this.name = name;
+		this.jobName = jobName;
+		this.extension = extension;
+		this.enabledPreference = enabledPreference;
+	}
+
+	/**
+	 * Returns the current file of a repository. It may not contain the newest
+	 * commits; it is updated in the background.
+	 *
+	 * @param repository
+	 * @return the opened file, or null if there is none yet or the files are
+	 *         disabled
+	 */
+	@Nullable
+	public T get(Repository repository) {
+		if (!isEnabled())
+			return null;
+		Entry entry;
+		synchronized (entries) {
+			if (refsChangedHandle == null)
+				refsChangedHandle = Repository.getGlobalListenerList()
+						.addRefsChangedListener(new RefsChangedListener() {
+							@Override
+							public void onRefsChanged(RefsChangedEvent event) {
+								refsChanged(event.getRepository());
+							}
+						});
+			entry = entries.get(repository);
+			if (entry == null) {
+				entry = new Entry(getFolder(repository), getPrefix(repository));
+				entries.put(repository, entry);
+			}
+		}
+		return entry.get(repository);
+	}
+
+	private void refsChanged(Repository repository) {
+		Entry entry;
+		synchronized (entries) {
+			entry = entries.get(repository);
+		}
+		if (entry != null)
+			entry.stale = true;
+	}
+
+	/**
+	 * Stops listening to ref changes and cancels running updates
+	 */
+	public void dispose() {
+		synchronized (entries) {
+			if (refsChangedHandle != null) {
+				refsChangedHandle.remove();
+				refsChangedHandle = null;
+			}
+			for (Entry entry : entries.values())
+				entry.cancel();
+			entries.clear();
+		}
+	}
+
+	private boolean isEnabled() {
+		Activator activator = Activator.getDefault();
+		if (activator == null)
+			return false;
+		IEclipsePreferences d = DefaultScope.INSTANCE
+				.getNode(Activator.getPluginId());
+		IEclipsePreferences p = InstanceScope.INSTANCE
+				.getNode(Activator.getPluginId());
+		return p.getBoolean(enabledPreference,
+				d.getBoolean(enabledPreference, true));
+	}
+
+	/**
+	 * @param repository
+	 * @return the folder containing the files of the repository
+	 */
+	protected abstract File getFolder(Repository repository);
+
+	/**
+	 * @param repository
+	 * @return the prefix of the names of the files of the repository
+	 */
+	protected abstract String getPrefix(Repository repository);
+
+	/**
+	 * @param repository
+	 * @return whether a file can be computed for the repository; the files
+	 *         of repositories which don't support them are deleted
+	 */
+	protected boolean isSupported(Repository repository) {
+		return true;
+	}
+
+	/**
+	 * @param file
+	 * @return the opened file, or null if it is not valid
+	 * @throws IOException
+	 */
+	@Nullable
+	protected abstract T open(File file) throws IOException;
+
+	/**
+	 * Writes a new version of the file if the repository has commits which
+	 * are not in the current version.
+	 *
+	 * @param repository
+	 * @param current
+	 *            the current version, or null if there is none
+	 * @param file
+	 *            the file to write the new version to
+	 * @param monitor
+	 * @return number of commits added; nothing has been written if 0
+	 * @throws IOException
+	 * @throws OperationCanceledException
+	 *             if the monitor has been canceled
+	 */
+	protected abstract int write(Repository repository, @Nullable T current,
+			File file, IProgressMonitor monitor) throws IOException;
+
+	private class Entry {
+
+		private final File folder;
+
+		private final String prefix;
+
+		private volatile T data;
+
+		private volatile boolean stale = true;
+
+		private boolean loaded;
+
+		private Job updateJob;
+
+		Entry(File folder, String prefix) {
+			this.folder = folder;
+			this.prefix = prefix;
+		}
+
+		T get(Repository repository) {
+			synchronized (this) {
+				if (!loaded) {
+					loaded = true;
+					data = load();
+				}
+				if (stale && updateJob == null) {
+					stale = false;
+					updateJob = createUpdateJob(repository);
+					updateJob.schedule();
+				}
+			}
+			return data;
+		}
+
+		synchronized void cancel() {
+			if (updateJob != null)
+				updateJob.cancel();
+		}
+
+		private T load() {
+			File newest = null;
+			for (File file : listFiles())
+				if (newest == null
+						|| file.getName().compareTo(newest.getName()) > 0)
+					newest = file;
+			if (newest == null)
+				return null;
+			try {
+				return open(newest);
+			} catch (IOException e) {
+				trace(NLS.bind("Reading {0} failed", name), e); //$NON-NLS-1$
+				return null;
+			}
+		}
+
+		private File[] listFiles() {
+			File[] files = folder.listFiles(new FilenameFilter() {
+				@Override
+				public boolean accept(File dir, String fileName) {
+					return fileName.startsWith(prefix)
+							&& fileName.endsWith(extension);
+				}
+			});
+			return files != null ? files : new File[0];
+		}
+
+		private Job createUpdateJob(final Repository repository) {
+			String repoName = Activator.getDefault().getRepositoryUtil()
+					.getRepositoryName(repository);
+			Job job = new Job(MessageFormat.format(jobName, repoName)) {
+				@Override
+				protected IStatus run(IProgressMonitor monitor) {
+					try {
+						update(repository, monitor);
+					} catch (OperationCanceledException e) {
+						stale = true;
+						return Status.CANCEL_STATUS;
+					} catch (IOException e) {
+						trace(NLS.bind("Updating {0} failed", name), e); //$NON-NLS-1$
+					}
+					return Status.OK_STATUS;
+				}
+			};
+			job.setSystem(true);
+			job.setPriority(Job.DECORATE);
+			// the job references the repository, which must not be kept
+			// reachable from the weakly keyed entries once the job is done
+			job.addJobChangeListener(new JobChangeAdapter() {
+				@Override
+				public void done(IJobChangeEvent event) {
+					synchronized (Entry.this) {
+						if (updateJob == event.getJob())
+							updateJob = null;
+					}
+				}
+			});
+			return job;
+		}
+
+		private void update(Repository repository, IProgressMonitor monitor)
+				throws IOException {
+			if (!isSupported(repository)) {
+				// don't retry a full walk on every ref change
+				data = null;
+				deleteFiles(null);
+				return;
+			}
+			File file = new File(folder,
+					prefix + System.currentTimeMillis() + extension);
+			int added = write(repository, data, file, monitor);
+			if (added == 0)
+				return;
+			T updated = open(file);
+			if (updated == null)
+				return;
+			data = updated;
+			deleteFiles(file);
+			if (GitTraceLocation.CORE.isActive())
+				GitTraceLocation.getTrace().trace(
+						GitTraceLocation.CORE.getLocation(),
+						NLS.bind("Added {0} commits to {1} of {2}", //$NON-NLS-1$
+								new Object[] { Integer.valueOf(added), name,
+										repository }));
+		}
+
+		private void deleteFiles(@Nullable File keep) throws IOException {
+			for (File old : listFiles()) {
+				if (!old.equals(keep))
+					FileUtils.delete(old, FileUtils.SKIP_MISSING
+							| FileUtils.IGNORE_ERRORS);
+			}
+		}
+	}
+
+	private static void trace(String message, Throwable e) {
+		if (GitTraceLocation.CORE.isActive())
+			GitTraceLocation.getTrace().trace(
+					GitTraceLocation.CORE.getLocation(), message, e);
+	}
+}
@@ -19,22 +19,26 @@
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.core.resources.IContainer;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IResourceChangeEvent;
 import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Path;
 import org.eclipse.core.runtime.QualifiedName;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.core.runtime.jobs.Job;
@@ -68,6 +72,22 @@ public class GitProjectData {
 
 	private static Set<RepositoryChangeListener> repositoryChangeListeners = new HashSet<RepositoryChangeListener>();
 
+	// mappings of all cached projects, guarded by mappingIndexLock
+	private static final Map<IProject, Collection<RepositoryMapping>> indexedMappings = new HashMap<IProject, Collection<RepositoryMapping>>();
+
+	private static final Object mappingIndexLock = new Object();
+
+	// work tree -> mapping, derived from indexedMappings; replaced on change
+	private static volatile Map<IPath, RepositoryMapping> mappingsByWorkTree = Collections
+			.emptyMap();
+
+	// counts the projects opened or added, whose mappings may not have been
+	// loaded yet
+	private static final AtomicInteger projectChanges = new AtomicInteger();
+
+	// value of projectChanges when the mappings of all projects were loaded
+	private static volatile int loadedProjectChanges = -1;
+
 	@SuppressWarnings("synthetic-access")
 	private static final IResourceChangeListener rcl = new RCL();
 
@@ -86,6 +106,17 @@ public void resourceChanged(final IResourceChangeEvent event) {
 					Activator.logError(e.getMessage(), e);
 				}
 				break;
+			case IResourceChangeEvent.POST_CHANGE:
+				for (IResourceDelta delta : event.getDelta()
+						.getAffectedChildren(
+								IResourceDelta.ADDED | IResourceDelta.CHANGED)) {
+					if (delta.getKind() == IResourceDelta.ADDED
+							|| (delta.getFlags() & IResourceDelta.OPEN) != 0) {
+						projectChanges.incrementAndGet();
+						break;
+					}
+				}
+				break;
 			default:
 				break;
 			}
@@ -262,6 +293,7 @@ private synchronized static void cache(final IProject p,
 	}
 
 	private synchronized static void uncache(final IProject p) {
+		unindexMappings(p);
 		if (projectDataCache.remove(p) != null) {
 			trace("uncacheDataFor(" //$NON-NLS-1$
 				+ p.getName() + ")"); //$NON-NLS-1$
@@ -272,6 +304,86 @@ private synchronized static GitProjectData lookup(final IProject p) {
 		return projectDataCache.get(p);
 	}
 
+	/**
+	 * Finds the mapping with the deepest working tree containing the given
+	 * location among the mappings of all projects in the workspace.
+	 *
+	 * @param location
+	 * @return the mapping, or null if the location is in no mapped working
+	 *         tree
+	 */
+	@Nullable
+	static RepositoryMapping findMapping(@NonNull IPath location) {
+		loadAllMappings();
+		Map<IPath, RepositoryMapping> index = mappingsByWorkTree;
+		if (index.isEmpty())
+			return null;
+		IPath path = location.removeTrailingSeparator();
+		for (int i = path.segmentCount(); i >= 0; i--) {
+			RepositoryMapping mapping = index.get(path.uptoSegment(i)
+					.removeTrailingSeparator());
+			if (mapping != null)
+				return mapping;
+		}
+		return null;
+	}
+
+	private static void loadAllMappings() {
+		if (loadedProjectChanges == projectChanges.get())
+			return;
+		// same lock order as get() and uncache(), which (un)index mappings
+		synchronized (GitProjectData.class) {
+			synchronized (mappingIndexLock) {
+				// projects opened while loading are loaded by the next call
+				int changes = projectChanges.get();
+				if (loadedProjectChanges == changes)
+					return;
+				// loading the mappings of all projects indexes them
+				for (IProject project : ResourcesPlugin.getWorkspace()
+						.getRoot().getProjects())
+					RepositoryMapping.getMapping(project);
+				loadedProjectChanges = changes;
+			}
+		}
+	}
+
+	private static void indexMapping(IProject p, RepositoryMapping m) {
+		synchronized (mappingIndexLock) {
+			Collection<RepositoryMapping> projectMappings = indexedMappings
+					.get(p);
+			if (projectMappings == null) {
+				projectMappings = new ArrayList<RepositoryMapping>();
+				indexedMappings.put(p, projectMappings);
+			}
+			projectMappings.add(m);
+			updateMappingsByWorkTree();
+		}
+	}
+
+	private static void unindexMappings(IProject p) {
+		synchronized (mappingIndexLock) {
+			if (indexedMappings.remove(p) != null)
+				updateMappingsByWorkTree();
+		}
+	}
+
+	private static void updateMappingsByWorkTree() {
+		Map<IPath, RepositoryMapping> index = new HashMap<IPath, RepositoryMapping>();
+		for (Collection<RepositoryMapping> projectMappings : indexedMappings
+				.values()) {
+			for (RepositoryMapping m : projectMappings) {
+				File workTree = m.getWorkTree();
+				if (workTree == null)
+					continue;
+				IPath path = new Path(workTree.toString())
+						.removeTrailingSeparator();
+				if (!index.containsKey(path))
+					index.put(path, m);
+			}
+		}
+		mappingsByWorkTree = index;
+	}
+
 	/**
 	 * Update the settings for the global window cache of the workspace.
 	 */
@@ -474,6 +586,7 @@ private GitProjectData load() throws IOException {
 	}
 
 	private void remapAll() {
+		unindexMappings(getProject());
 		protectedResources.clear();
 		for (final RepositoryMapping repoMapping : mappings) {
 			map(repoMapping);
@@ -531,6 +644,8 @@ private void map(final RepositoryMapping m) {
 			Activator.logError(
 					CoreText.GitProjectData_failedToCacheRepoMapping, err);
 		}
+		if (!ResourceUtil.isNonWorkspace(getProject()))
+			indexMapping(getProject(), m);
 
 		dotGit = c.findMember(Constants.DOT_GIT);
 		if (dotGit != null && dotGit.getLocation().toFile().equals(git)) {
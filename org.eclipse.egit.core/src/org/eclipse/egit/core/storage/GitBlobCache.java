@@ -0,0 +1,226 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.core.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * Least recently used cache of the inflated contents of blobs, shared by the
+ * storages of blobs, the compare editors and quick diff, so that the same
+ * blob shown in several places is inflated only once.
+ * <p>
+ * Blobs are identified by their id alone, as equal ids mean equal contents in
+ * any repository. The contents may be kept decoded as text as well. The cache
+ * is bounded by the total size of the contents it holds, counting two bytes
+ * per character of text; blobs larger than a sixteenth of that bound are
+ * never cached.
+ *
+ * @since 4.2
+ */
+public class GitBlobCache {
+
+	private static final long DEFAULT_MAX_WEIGHT = 32 * 1024 * 1024;
+
+	private final long maxWeight;
+
+	private final long maxBlobSize;
+
+	private final LinkedHashMap<ObjectId, Entry> entries = new LinkedHashMap<ObjectId, Entry>(
+			16, 0.75f, true);
+
+	private long weight;
+
+	private long hitCount;
+
+	private long missCount;
+
+	/**
+	 * Creates a cache holding up to 32 MiB
+	 */
+	public GitBlobCache() {
+		this(DEFAULT_MAX_WEIGHT);
+	}
+
+	/**
+	 * @param maxWeight
+	 *            the maximum total size of the cached contents in bytes
+	 */
+	public GitBlobCache(long maxWeight) {
+		this.maxWeight = maxWeight;
+		this.maxBlobSize = maxWeight / 16;
+	}
+
+	/**
+	 * @param repository
+	 *            the repository to read the blob from if it is not cached
+	 * @param blobId
+	 * @return a stream of the contents of the blob
+	 * @throws IOException
+	 *             if the blob cannot be read
+	 */
+	public InputStream openStream(Repository repository, AnyObjectId blobId)
+			throws IOException {
+		Entry entry = get(blobId);
+		if (entry != null)
+			return new ByteArrayInputStream(entry.bytes);
+		ObjectLoader loader = repository.open(blobId, Constants.OBJ_BLOB);
+		if (loader.getSize() > maxBlobSize)
+			return loader.openStream();
+		return new ByteArrayInputStream(
+				put(blobId, loader.getCachedBytes()).bytes);
+	}
+
+	/**
+	 * @param repository
+	 *            the repository to read the blob from if it is not cached
+	 * @param blobId
+	 * @return the contents of the blob, which must not be modified
+	 * @throws IOException
+	 *             if the blob cannot be read
+	 */
+	public byte[] getBytes(Repository repository, AnyObjectId blobId)
+			throws IOException {
+		Entry entry = get(blobId);
+		if (entry != null)
+			return entry.bytes;
+		ObjectLoader loader = repository.open(blobId, Constants.OBJ_BLOB);
+		if (loader.getSize() > maxBlobSize)
+			return loader.getBytes();
+		return put(blobId, loader.getCachedBytes()).bytes;
+	}
+
+	/**
+	 * @param repository
+	 *            the repository to read the blob from if it is not cached
+	 * @param blobId
+	 * @param charset
+	 *            name of the charset to decode the contents with
+	 * @return the contents of the blob decoded as text
+	 * @throws IOException
+	 *             if the blob cannot be read or the charset is not supported
+	 */
+	public String getText(Repository repository, AnyObjectId blobId,
+			String charset) throws IOException {
+		Entry entry = get(blobId);
+		if (entry == null) {
+			ObjectLoader loader = repository.open(blobId, Constants.OBJ_BLOB);
+			if (loader.getSize() > maxBlobSize)
+				return new String(loader.getBytes(), charset);
+			entry = put(blobId, loader.getCachedBytes());
+		} else {
+			synchronized (this) {
+				if (charset.equals(entry.charset))
+					return entry.text;
+			}
+		}
+		String text = new String(entry.bytes, charset);
+		synchronized (this) {
+			// the text of an evicted entry would not be accounted for
+			if (entries.get(blobId) == entry) {
+				weight += 2L * text.length() - entry.getTextWeight();
+				entry.charset = charset;
+				entry.text = text;
+				trim();
+			}
+		}
+		return text;
+	}
+
+	private synchronized Entry get(AnyObjectId blobId) {
+		Entry entry = entries.get(blobId);
+		if (entry != null)
+			hitCount++;
+		else
+			missCount++;
+		return entry;
+	}
+
+	private synchronized Entry put(AnyObjectId blobId, byte[] bytes) {
+		Entry entry = entries.get(blobId);
+		// another thread may have loaded the blob in the meantime
+		if (entry != null)
+			return entry;
+		entry = new Entry(bytes);
+		entries.put(blobId.copy(), entry);
+		weight += bytes.length;
+		trim();
+		return entry;
+	}
+
+	private void trim() {
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (weight > maxWeight && iterator.hasNext()) {
+			Entry eldest = iterator.next();
+			weight -= eldest.bytes.length + eldest.getTextWeight();
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Removes all cached contents. The statistics are kept.
+	 */
+	public synchronized void clear() {
+		entries.clear();
+		weight = 0;
+	}
+
+	/**
+	 * @return how often cached contents were used
+	 */
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * @return how often contents had to be read from a repository
+	 */
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * @return the total size of the cached contents in bytes
+	 */
+	public synchronized long getWeight() {
+		return weight;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "GitBlobCache[blobs=" + entries.size() + ", weight=" + weight //$NON-NLS-1$ //$NON-NLS-2$
+				+ ", hits=" + hitCount + ", misses=" + missCount + "]"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+	}
+
+	private static class Entry {
+
+		final byte[] bytes;
+
+		String charset;
+
+		String text;
+
+		Entry(byte[] bytes) {
+			this.bytes = bytes;
+		}
+
+		long getTextWeight() {
+			return text != null ? 2L * text.length() : 0;
+		}
+	}
+}
@@ -86,8 +86,7 @@ private InputStream open() throws IOException, CoreException,
 
 		try {
 			WorkingTreeOptions workingTreeOptions = db.getConfig().get(WorkingTreeOptions.KEY);
-			final InputStream objectInputStream = db.open(blobId,
-					Constants.OBJ_BLOB).openStream();
+			final InputStream objectInputStream = openBlob();
 			switch (workingTreeOptions.getAutoCRLF()) {
 			case INPUT:
 				// When autocrlf == input the working tree could be either CRLF or LF, i.e. the comparison
@@ -105,6 +104,15 @@ private InputStream open() throws IOException, CoreException,
 		}
 	}
 
+	private InputStream openBlob() throws IOException {
+		Activator activator = Activator.getDefault();
+		GitBlobCache cache = activator != null ? activator.getBlobCache()
+				: null;
+		if (cache != null)
+			return cache.openStream(db, blobId);
+		return db.open(blobId, Constants.OBJ_BLOB).openStream();
+	}
+
 	@Override
 	public IPath getFullPath() {
 		return Path.fromPortableString(path);
@@ -26,7 +26,7 @@ public GitBaseResourceVariantTree(GitSyncCache cache, GitSynchronizeDataSet gsds
 
 	@Override
 	protected ObjectId getObjectId(ThreeWayDiffEntry diffEntry) {
-		return diffEntry.getBaseId().toObjectId();
+		return diffEntry.getBaseObjectId();
 	}
 
 	@Override
@@ -12,15 +12,21 @@
 import static org.eclipse.jgit.treewalk.filter.TreeFilter.ANY_DIFF;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
+import org.eclipse.egit.core.Activator;
+import org.eclipse.egit.core.internal.CoreText;
+import org.eclipse.egit.core.internal.job.WorkerPool;
 import org.eclipse.jgit.lib.AbbreviatedObjectId;
 import org.eclipse.jgit.lib.MutableObjectId;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevFlag;
@@ -30,6 +36,7 @@
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
 import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.eclipse.osgi.util.NLS;
 
 /**
  * Retrieves list of commits and the changes associated with each commit
@@ -94,7 +101,15 @@ public static class Commit {
 
 		private String committerName;
 
-		private Map<String, Change> children;
+		private volatile Map<String, Change> children;
+
+		private Repository repo;
+
+		private TreeFilter pathFilter;
+
+		private volatile PendingChanges pendingChanges;
+
+		private boolean queued;
 
 		private Commit() {
 			// reduce the visibility of the default constructor
@@ -147,18 +162,72 @@ public String getShortMessage() {
 		}
 
 		/**
-		 * @return list of changes made by this commit or {@code null} when
-		 *         commit doesn't have any changes
+		 * Returns the changes of this commit, computing them or waiting for
+		 * them to be computed if necessary.
+		 *
+		 * @return list of changes made by this commit, empty if they could
+		 *         not be computed
 		 */
-		public Map<String, Change> getChildren() {
+		public synchronized Map<String, Change> getChildren() {
+			if (children == null && pendingChanges != null) {
+				try {
+					if (queued && !pendingChanges.claim()) {
+						// a task is already computing them
+						queued = false;
+						children = pendingChanges.get();
+					} else {
+						queued = false;
+						children = computeChanges(repo, pathFilter,
+								pendingChanges);
+					}
+				} catch (InterruptedIOException e) {
+					// don't remember the interrupted attempt
+					Thread.currentThread().interrupt();
+					return new HashMap<String, Change>(0);
+				} catch (IOException e) {
+					Activator.logError(e.getMessage(), e);
+					children = new HashMap<String, Change>(0);
+				}
+			}
 			return children;
 		}
 
+		/**
+		 * Returns the changes of this commit if they are known already,
+		 * without computing them or waiting for them.
+		 *
+		 * @return list of changes made by this commit, or {@code null} if
+		 *         they are not computed yet
+		 */
+		public Map<String, Change> peekChildren() {
+			Map<String, Change> result = children;
+			if (result == null) {
+				PendingChanges pending = pendingChanges;
+				if (pending != null)
+					result = pending.peek();
+			}
+			return result;
+		}
+
+		/**
+		 * Drops the changes of this commit to save memory. The next call of
+		 * {@link #getChildren()} computes them again.
+		 */
+		public synchronized void releaseChildren() {
+			if (queued) {
+				queued = false;
+				pendingChanges.cancel();
+			}
+			children = null;
+		}
+
 		/**
 		 * Disposes nested resources
 		 */
-		public void dispose() {
-			children.clear();
+		public synchronized void dispose() {
+			releaseChildren();
+			pendingChanges = null;
+			children = new HashMap<String, Change>(0);
 		}
 
 	}
@@ -307,9 +376,19 @@ private String getObjectId(AbbreviatedObjectId object) {
 	static final AbbreviatedObjectId ZERO_ID = AbbreviatedObjectId
 			.fromObjectId(zeroId());
 
+	/**
+	 * Number of commits whose changes are computed by one task of the
+	 * {@link WorkerPool}
+	 */
+	private static final int BATCH_SIZE = 8;
+
 	/**
 	 * Scans given {@code repo} and build list of commits between two given
 	 * RevCommit objectId's. Each commit contains list of changed resources
+	 * <p>
+	 * The changes of the commits are computed in parallel while the commits
+	 * are walked, and may still be computed when this method returns;
+	 * {@link Commit#getChildren()} waits for them.
 	 *
 	 * @param repo
 	 *            repository that should be scanned
@@ -328,10 +407,43 @@ private String getObjectId(AbbreviatedObjectId object) {
 	 */
 	public static List<Commit> build(Repository repo, ObjectId srcId,
 			ObjectId dstId, TreeFilter pathFilter) throws IOException {
+		return build(repo, srcId, dstId, pathFilter, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Scans given {@code repo} and build list of commits between two given
+	 * RevCommit objectId's.
+	 *
+	 * @param repo
+	 *            repository that should be scanned
+	 * @param srcId
+	 *            commit id that is considered the "local" version (e.g. from
+	 *            master)
+	 * @param dstId
+	 *            commit id that is considered the "remote" version (e.g. from
+	 *            origin/master)
+	 * @param pathFilter
+	 *            path filter definition or {@code null} when all paths should
+	 *            be included
+	 * @param prefetchCount
+	 *            number of commits, starting with the newest one, whose
+	 *            changes are computed in the background right away, like
+	 *            {@link #build(Repository, ObjectId, ObjectId, TreeFilter)}
+	 *            does for all commits. The changes of the other commits are
+	 *            computed by the first call of {@link Commit#getChildren()}.
+	 * @return list of {@link Commit} object's between {@code srcId} and
+	 *         {@code dstId}
+	 * @throws IOException
+	 */
+	public static List<Commit> build(Repository repo, ObjectId srcId,
+			ObjectId dstId, TreeFilter pathFilter, int prefetchCount)
+			throws IOException {
 		if (dstId.equals(srcId))
 			return new ArrayList<Commit>(0);
 
-		try (RevWalk rw = new RevWalk(repo)) {
+		List<PendingChanges> batch = new ArrayList<PendingChanges>(BATCH_SIZE);
+		try (RevWalk rw = new RevWalk(repo);
+				TreeWalk filterWalk = new TreeWalk(rw.getObjectReader())) {
 
 			final RevFlag localFlag = rw.newFlag("local"); //$NON-NLS-1$
 			final RevFlag remoteFlag = rw.newFlag("remote"); //$NON-NLS-1$
@@ -350,8 +462,14 @@ public static List<Commit> build(Repository repo, ObjectId srcId,
 			rw.markStart(dstCommit);
 			dstCommit = null; // free not needed resources
 
-			if (pathFilter != null)
-				rw.setTreeFilter(pathFilter);
+			if (pathFilter != null) {
+				// filters may keep state while walking, so each walk gets its
+				// own copy
+				rw.setTreeFilter(pathFilter.clone());
+				filterWalk.setRecursive(true);
+				filterWalk.setFilter(AndTreeFilter.create(ANY_DIFF,
+						pathFilter.clone()));
+			}
 
 			List<Commit> result = new ArrayList<Commit>();
 			for (RevCommit revCommit : rw) {
@@ -366,6 +484,10 @@ public static List<Commit> build(Repository repo, ObjectId srcId,
 				commit.commitDate = revCommit.getAuthorIdent().getWhen();
 
 				RevCommit parentCommit = getParentCommit(revCommit);
+				if (!hasChanges(revCommit, parentCommit,
+						pathFilter != null ? filterWalk : null))
+					continue;
+
 				if (revCommit.has(localFlag))
 					// Outgoing
 					commit.direction = RIGHT;
@@ -375,17 +497,58 @@ else if (revCommit.has(remoteFlag))
 				else
 					throw new GitCommitsModelDirectionException();
 
-				commit.children = getChangedObjects(repo, revCommit,
-						parentCommit, pathFilter, commit.direction);
-
-				if (commit.children != null)
-					result.add(commit);
+				commit.repo = repo;
+				commit.pathFilter = pathFilter;
+				commit.pendingChanges = new PendingChanges(revCommit,
+						parentCommit, commit.direction);
+				if (result.size() < prefetchCount) {
+					commit.queued = true;
+					batch.add(commit.pendingChanges);
+					if (batch.size() == BATCH_SIZE) {
+						prefetch(repo, pathFilter, batch);
+						batch = new ArrayList<PendingChanges>(BATCH_SIZE);
+					}
+				}
+				result.add(commit);
 			}
+			if (!batch.isEmpty())
+				prefetch(repo, pathFilter, batch);
 			rw.dispose();
 			return result;
 		}
 	}
 
+	private static void prefetch(Repository repo, TreeFilter pathFilter,
+			List<PendingChanges> batch) {
+		ChangesTask task = new ChangesTask(repo, pathFilter, batch);
+		try {
+			WorkerPool.getExecutor().execute(task);
+		} catch (RejectedExecutionException e) {
+			// the pool is being shut down; compute the changes right here so
+			// that nobody waits for them forever
+			task.run();
+		}
+	}
+
+	/**
+	 * Checks whether a commit has any changes without computing them, so
+	 * that empty commits can be left out before their changes are known
+	 */
+	private static boolean hasChanges(RevCommit commit, RevCommit parentCommit,
+			TreeWalk filterWalk) throws IOException {
+		if (parentCommit != null
+				&& commit.getTree().equals(parentCommit.getTree()))
+			return false;
+		if (filterWalk == null)
+			return true;
+		// only the filtered paths count; stop at the first changed one
+		filterWalk.reset();
+		filterWalk.addTree(commit.getTree());
+		addTree(filterWalk, parentCommit != null ? parentCommit.getTree()
+				: null);
+		return filterWalk.next();
+	}
+
 	private static RevCommit getParentCommit(RevCommit commit) {
 		if (commit.getParents().length > 0)
 			return commit.getParents()[0];
@@ -393,47 +556,54 @@ private static RevCommit getParentCommit(RevCommit commit) {
 			return null;
 	}
 
-	private static Map<String, Change> getChangedObjects(Repository repo,
-			RevCommit commit, RevCommit parentCommit,
-			TreeFilter pathFilter, final int direction) throws IOException {
-		final Map<String, Change> result = new HashMap<String, GitCommitsModelCache.Change>();
-		try (final TreeWalk tw = new TreeWalk(repo)) {
-			int commitIndex = addTree(tw, commit);
-			int parentCommitIndex = addTree(tw, parentCommit);
-
-			tw.setRecursive(true);
-			if (pathFilter == null)
-				tw.setFilter(ANY_DIFF);
-			else
-				tw.setFilter(AndTreeFilter.create(ANY_DIFF, pathFilter));
-
-			final AbbreviatedObjectId commitId = getAbbreviatedObjectId(commit);
-			final AbbreviatedObjectId parentCommitId = getAbbreviatedObjectId(parentCommit);
-
-			MutableObjectId idBuf = new MutableObjectId();
-			while (tw.next()) {
-				Change change = new Change();
-				change.commitId = commitId;
-				change.remoteCommitId = parentCommitId;
-				change.name = tw.getNameString();
-				tw.getObjectId(idBuf, commitIndex);
-				change.objectId = AbbreviatedObjectId.fromObjectId(idBuf);
-				tw.getObjectId(idBuf, parentCommitIndex);
-				change.remoteObjectId = AbbreviatedObjectId.fromObjectId(idBuf);
+	private static Map<String, Change> computeChanges(Repository repo,
+			TreeFilter pathFilter, PendingChanges pending) throws IOException {
+		try (TreeWalk tw = new TreeWalk(repo)) {
+			setFilter(tw, pathFilter);
+			return getChangedObjects(tw, pending);
+		}
+	}
 
-				calculateAndSetChangeKind(direction, change);
+	private static void setFilter(TreeWalk tw, TreeFilter pathFilter) {
+		tw.setRecursive(true);
+		if (pathFilter == null)
+			tw.setFilter(ANY_DIFF);
+		else
+			tw.setFilter(AndTreeFilter.create(ANY_DIFF, pathFilter.clone()));
+	}
 
-				result.put(tw.getPathString(), change);
-			}
+	private static Map<String, Change> getChangedObjects(TreeWalk tw,
+			PendingChanges pending) throws IOException {
+		final Map<String, Change> result = new HashMap<String, GitCommitsModelCache.Change>();
+		tw.reset();
+		int commitIndex = tw.addTree(pending.tree);
+		int parentCommitIndex = addTree(tw, pending.parentTree);
+
+		final AbbreviatedObjectId commitId = pending.commitId;
+		final AbbreviatedObjectId parentCommitId = pending.parentCommitId;
+
+		MutableObjectId idBuf = new MutableObjectId();
+		while (tw.next()) {
+			Change change = new Change();
+			change.commitId = commitId;
+			change.remoteCommitId = parentCommitId;
+			change.name = tw.getNameString();
+			tw.getObjectId(idBuf, commitIndex);
+			change.objectId = AbbreviatedObjectId.fromObjectId(idBuf);
+			tw.getObjectId(idBuf, parentCommitIndex);
+			change.remoteObjectId = AbbreviatedObjectId.fromObjectId(idBuf);
+
+			calculateAndSetChangeKind(pending.direction, change);
+
+			result.put(tw.getPathString(), change);
 		}
 
-		return result.size() > 0 ? result : null;
+		return result;
 	}
 
-	private static int addTree(TreeWalk tw, RevCommit commit)
-			throws IOException {
-		if (commit != null)
-			return tw.addTree(commit.getTree());
+	private static int addTree(TreeWalk tw, ObjectId tree) throws IOException {
+		if (tree != null)
+			return tw.addTree(tree);
 		else
 			return tw.addTree(new EmptyTreeIterator());
 	}
@@ -445,6 +615,140 @@ private static AbbreviatedObjectId getAbbreviatedObjectId(RevCommit commit) {
 			return ZERO_ID;
 	}
 
+	/**
+	 * What is needed to compute the changes of a commit, and the changes once
+	 * a {@link ChangesTask} has computed them. Whoever claims the entry first
+	 * computes the changes: a task that has not started on it yet leaves it
+	 * to the caller of {@link Commit#getChildren()}, so that nobody waits for
+	 * a task that the {@link WorkerPool} dropped.
+	 */
+	private static class PendingChanges {
+
+		final AbbreviatedObjectId commitId;
+
+		final AbbreviatedObjectId parentCommitId;
+
+		final ObjectId tree;
+
+		final ObjectId parentTree;
+
+		final int direction;
+
+		private boolean claimed;
+
+		private boolean done;
+
+		private boolean canceled;
+
+		private Map<String, Change> changes;
+
+		private IOException error;
+
+		PendingChanges(RevCommit commit, RevCommit parentCommit,
+				int direction) {
+			this.commitId = getAbbreviatedObjectId(commit);
+			this.parentCommitId = getAbbreviatedObjectId(parentCommit);
+			this.tree = commit.getTree().copy();
+			this.parentTree = parentCommit != null ? parentCommit.getTree()
+					.copy() : null;
+			this.direction = direction;
+		}
+
+		synchronized void cancel() {
+			canceled = true;
+		}
+
+		/**
+		 * @return {@code true} if the caller has to compute the changes,
+		 *         {@code false} if they are computed by somebody else or not
+		 *         needed any more
+		 */
+		synchronized boolean claim() {
+			if (claimed || canceled)
+				return false;
+			claimed = true;
+			return true;
+		}
+
+		/**
+		 * Releases the waiting threads if the changes have been claimed but
+		 * not set
+		 */
+		synchronized void abandon() {
+			if (claimed && !done)
+				set(null, new IOException(NLS.bind(
+						CoreText.GitCommitsModelCache_changesNotComputed,
+						commitId.name())));
+		}
+
+		synchronized void set(Map<String, Change> result, IOException e) {
+			changes = result;
+			error = e;
+			done = true;
+			notifyAll();
+		}
+
+		synchronized Map<String, Change> peek() {
+			return done ? changes : null;
+		}
+
+		synchronized Map<String, Change> get() throws IOException {
+			while (!done) {
+				try {
+					wait();
+				} catch (InterruptedException e) {
+					throw new InterruptedIOException();
+				}
+			}
+			if (error != null)
+				throw error;
+			return changes;
+		}
+	}
+
+	/**
+	 * Computes the changes of a batch of commits with its own
+	 * {@link ObjectReader} and {@link TreeWalk}
+	 */
+	private static class ChangesTask implements Runnable {
+
+		private final Repository repo;
+
+		private final TreeFilter pathFilter;
+
+		private final List<PendingChanges> batch;
+
+		ChangesTask(Repository repo, TreeFilter pathFilter,
+				List<PendingChanges> batch) {
+			this.repo = repo;
+			this.pathFilter = pathFilter;
+			this.batch = batch;
+		}
+
+		@Override
+		public void run() {
+			try (ObjectReader reader = repo.newObjectReader();
+					TreeWalk tw = new TreeWalk(reader)) {
+				setFilter(tw, pathFilter);
+				for (PendingChanges pending : batch) {
+					if (!pending.claim())
+						continue;
+					try {
+						pending.set(getChangedObjects(tw, pending), null);
+					} catch (IOException e) {
+						pending.set(null, e);
+					} catch (RuntimeException e) {
+						pending.set(null, new IOException(e));
+					}
+				}
+			} finally {
+				// even after an Error nobody must wait for these forever
+				for (PendingChanges pending : batch)
+					pending.abandon();
+			}
+		}
+	}
+
 	static void calculateAndSetChangeKind(final int direction, Change change) {
 		if (ZERO_ID.equals(change.objectId)) { // removed in commit
 			change.objectId = null; // clear zero id;
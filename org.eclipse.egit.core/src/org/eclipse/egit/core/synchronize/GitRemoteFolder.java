@@ -89,7 +89,7 @@ GitRemoteResource[] members(IProgressMonitor monitor) {
 				String memberPath = diffEntry.getPath();
 
 				GitRemoteResource obj;
-				ObjectId id = diffEntry.getRemoteId().toObjectId();
+				ObjectId id = diffEntry.getRemoteObjectId();
 				if (diffEntry.isTree())
 					obj = new GitRemoteFolder(repo, member, getCommitId(), id,
 							memberPath);
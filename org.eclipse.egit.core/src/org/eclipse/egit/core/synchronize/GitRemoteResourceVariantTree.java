@@ -26,7 +26,7 @@ class GitRemoteResourceVariantTree extends GitResourceVariantTree {
 
 	@Override
 	protected ObjectId getObjectId(ThreeWayDiffEntry diffEntry) {
-		return diffEntry.getRemoteId().toObjectId();
+		return diffEntry.getRemoteObjectId();
 	}
 
 	@Override
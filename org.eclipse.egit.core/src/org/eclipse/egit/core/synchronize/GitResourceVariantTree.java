@@ -117,7 +117,7 @@ private IResourceVariant fetchVariant(IResource resource) {
 
 		IResourceVariant variant = null;
 		ObjectId objectId = getObjectId(cachedData.getDiffEntry());
-		if (!objectId.equals(zeroId())) {
+		if (objectId != null && !objectId.equals(zeroId())) {
 			if (resource.getType() == IResource.FILE)
 				variant = new GitRemoteFile(repo, getCommitId(gsd), objectId,
 						path);
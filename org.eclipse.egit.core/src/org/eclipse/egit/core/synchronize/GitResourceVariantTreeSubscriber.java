@@ -15,11 +15,15 @@
 
 import static org.eclipse.jgit.lib.Repository.stripWorkDir;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
 import org.eclipse.core.resources.IContainer;
@@ -28,14 +32,27 @@
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.eclipse.egit.core.Activator;
 import org.eclipse.egit.core.internal.CoreText;
+import org.eclipse.egit.core.internal.indexdiff.IndexDiffCache;
+import org.eclipse.egit.core.internal.indexdiff.IndexDiffCacheEntry;
+import org.eclipse.egit.core.internal.indexdiff.IndexDiffChangedListener;
+import org.eclipse.egit.core.internal.indexdiff.IndexDiffData;
 import org.eclipse.egit.core.internal.storage.WorkspaceFileRevision;
+import org.eclipse.egit.core.internal.util.ResourceUtil;
 import org.eclipse.egit.core.project.RepositoryMapping;
 import org.eclipse.egit.core.synchronize.dto.GitSynchronizeData;
 import org.eclipse.egit.core.synchronize.dto.GitSynchronizeDataSet;
+import org.eclipse.jgit.events.ListenerHandle;
+import org.eclipse.jgit.events.RefsChangedEvent;
+import org.eclipse.jgit.events.RefsChangedListener;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.osgi.util.NLS;
 import org.eclipse.team.core.TeamException;
@@ -76,15 +93,59 @@ public class GitResourceVariantTreeSubscriber extends
 
 	private IResource[] roots;
 
+	/** guarded by cacheLock */
 	private GitSyncCache cache;
 
+	private final Object cacheLock = new Object();
+
 	private GitSyncInfoToDiffConverter syncInfoConverter = new GitSyncInfoToDiffConverter();
 
+	private final IndexDiffChangedListener indexChangeListener = new IndexDiffChangedListener() {
+		@Override
+		public void indexDiffChanged(Repository repository,
+				IndexDiffData indexDiffData) {
+			handleIndexDiffChange(repository, indexDiffData);
+		}
+	};
+
+	private final RefsChangedListener refsChangedListener = new RefsChangedListener() {
+		@Override
+		public void onRefsChanged(RefsChangedEvent event) {
+			handleRefsChange(event.getRepository());
+		}
+	};
+
+	private final Map<Repository, IndexDiffCacheEntry> indexDiffEntries = new HashMap<Repository, IndexDiffCacheEntry>();
+
+	private final List<ListenerHandle> refsChangedHandles = new ArrayList<ListenerHandle>();
+
+	/** Last index diff seen per repository, null if unknown */
+	private final Map<Repository, IndexDiffData> indexDiffs = new HashMap<Repository, IndexDiffData>();
+
+	/** Paths to update per synchronize data, guarded by itself */
+	private final Map<GitSynchronizeData, Set<String>> pendingPaths = new HashMap<GitSynchronizeData, Set<String>>();
+
+	/**
+	 * Synchronize data whose revisions may have moved, guarded by
+	 * pendingPaths
+	 */
+	private final Set<GitSynchronizeData> pendingRevUpdates = new HashSet<GitSynchronizeData>();
+
+	private final Job updateJob = new Job(
+			CoreText.GitResourceVariantTreeSubscriber_updateJobName) {
+		@Override
+		protected IStatus run(IProgressMonitor monitor) {
+			processPendingUpdates(monitor);
+			return Status.OK_STATUS;
+		}
+	};
+
 	/**
 	 * @param data
 	 */
 	public GitResourceVariantTreeSubscriber(GitSynchronizeDataSet data) {
 		this.gsds = data;
+		updateJob.setSystem(true);
 	}
 
 	/**
@@ -99,12 +160,184 @@ public void init(IProgressMonitor monitor) {
 				CoreText.GitResourceVariantTreeSubscriber_fetchTaskName,
 				gsds.size());
 		try {
-			cache = GitSyncCache.getAllData(gsds, monitor);
+			setCache(GitSyncCache.getAllData(gsds, monitor));
 		} finally {
 			monitor.done();
 		}
 	}
 
+	/**
+	 * Keeps the pre-fetched data up to date while the subscriber is in use.
+	 * Changes of the index diffs of the synchronized repositories update only
+	 * the paths whose state changed, and ref changes only the paths which
+	 * differ in the trees of the moved revisions, so the working tree is not
+	 * scanned again. The listeners are removed by {@link #dispose()}.
+	 *
+	 * @since 4.2
+	 */
+	public void trackRepositoryChanges() {
+		Activator activator = Activator.getDefault();
+		IndexDiffCache indexDiffCache = activator != null ? activator
+				.getIndexDiffCache() : null;
+		for (GitSynchronizeData gsd : gsds) {
+			Repository repo = gsd.getRepository();
+			synchronized (indexDiffs) {
+				if (indexDiffs.containsKey(repo))
+					continue;
+				IndexDiffCacheEntry entry = null;
+				if (indexDiffCache != null)
+					entry = indexDiffCache.getIndexDiffCacheEntry(repo);
+				indexDiffs.put(repo,
+						entry != null ? entry.getIndexDiff() : null);
+				if (entry != null) {
+					entry.addIndexDiffChangedListener(indexChangeListener);
+					indexDiffEntries.put(repo, entry);
+				}
+			}
+			refsChangedHandles.add(repo.getListenerList()
+					.addRefsChangedListener(refsChangedListener));
+		}
+	}
+
+	private void handleIndexDiffChange(Repository repository,
+			IndexDiffData indexDiffData) {
+		IndexDiffData previous;
+		synchronized (indexDiffs) {
+			previous = indexDiffs.put(repository, indexDiffData);
+		}
+		Set<String> paths;
+		if (previous != null)
+			paths = GitSyncCache.getChangedPaths(previous, indexDiffData);
+		else
+			// unknown previous state, update the whole repository
+			paths = Collections.singleton(""); //$NON-NLS-1$
+		if (paths.isEmpty())
+			return;
+		synchronized (pendingPaths) {
+			for (GitSynchronizeData gsd : gsds)
+				if (repository.equals(gsd.getRepository()))
+					addPendingPaths(gsd, paths);
+		}
+		updateJob.schedule();
+	}
+
+	private void handleRefsChange(Repository repository) {
+		synchronized (pendingPaths) {
+			for (GitSynchronizeData gsd : gsds)
+				if (repository.equals(gsd.getRepository()))
+					pendingRevUpdates.add(gsd);
+		}
+		updateJob.schedule();
+	}
+
+	private void addPendingPaths(GitSynchronizeData gsd,
+			Collection<String> paths) {
+		Set<String> pending = pendingPaths.get(gsd);
+		if (pending == null) {
+			pending = new HashSet<String>();
+			pendingPaths.put(gsd, pending);
+		}
+		pending.addAll(paths);
+	}
+
+	private void processPendingUpdates(IProgressMonitor monitor) {
+		Set<GitSynchronizeData> revUpdates;
+		synchronized (pendingPaths) {
+			revUpdates = new HashSet<GitSynchronizeData>(pendingRevUpdates);
+			pendingRevUpdates.clear();
+		}
+		// compare the trees of moved revisions before merging paths
+		// computed with the new ones
+		for (GitSynchronizeData gsd : revUpdates) {
+			Set<String> paths = updateRevs(gsd);
+			if (!paths.isEmpty())
+				synchronized (pendingPaths) {
+					addPendingPaths(gsd, paths);
+				}
+		}
+		Map<GitSynchronizeData, Collection<String>> updateRequests;
+		synchronized (pendingPaths) {
+			updateRequests = new HashMap<GitSynchronizeData, Collection<String>>(
+					pendingPaths);
+			pendingPaths.clear();
+		}
+		GitSyncCache snapshot = getCache();
+		if (updateRequests.isEmpty() || snapshot == null
+				|| monitor.isCanceled())
+			return;
+		try {
+			refreshPaths(updateRequests, snapshot, monitor);
+		} catch (TeamException e) {
+			Activator.logError(
+					CoreText.GitSubscriberMergeContext_FailedRefreshSyncView, e);
+		}
+	}
+
+	private Set<String> updateRevs(GitSynchronizeData gsd) {
+		RevCommit oldSrc = gsd.getSrcRevCommit();
+		RevCommit oldAncestor = gsd.getCommonAncestorRev();
+		RevCommit oldDst = gsd.getDstRevCommit();
+		try {
+			gsd.updateRevs();
+			return GitSyncCache.getChangedPaths(gsd, oldSrc, oldAncestor,
+					oldDst);
+		} catch (IOException e) {
+			Activator.logError(
+					CoreText.GitSubscriberMergeContext_FailedUpdateRevs, e);
+			return Collections.emptySet();
+		}
+	}
+
+	/**
+	 * Updates the cached data of the given repository relative paths and
+	 * refreshes the resources at them
+	 */
+	private void refreshPaths(
+			Map<GitSynchronizeData, Collection<String>> updateRequests,
+			GitSyncCache snapshot, IProgressMonitor monitor)
+			throws TeamException {
+		synchronized (cacheLock) {
+			// a cache loaded in the meantime contains the changes already
+			if (cache != snapshot)
+				return;
+			GitSyncCache.mergeAllDataIntoCache(updateRequests, monitor,
+					snapshot);
+		}
+
+		Set<IResource> resources = new HashSet<IResource>();
+		for (Entry<GitSynchronizeData, Collection<String>> entry : updateRequests
+				.entrySet()) {
+			GitSynchronizeData gsd = entry.getKey();
+			Path workTree = new Path(gsd.getRepository().getWorkTree()
+					.getAbsolutePath());
+			for (String path : entry.getValue()) {
+				if (path.length() == 0) {
+					resources.addAll(gsd.getProjects());
+					continue;
+				}
+				IResource resource = ResourceUtil.getResourceForLocation(
+						workTree.append(path), false);
+				if (resource != null && gsds.contains(resource.getProject()))
+					resources.add(resource);
+			}
+		}
+		if (!resources.isEmpty())
+			super.refresh(resources.toArray(new IResource[resources.size()]),
+					IResource.DEPTH_INFINITE, monitor);
+	}
+
+	private GitSyncCache getCache() {
+		synchronized (cacheLock) {
+			return cache;
+		}
+	}
+
+	private void setCache(GitSyncCache newCache) {
+		synchronized (cacheLock) {
+			cache = newCache;
+		}
+	}
+
 	@Override
 	public boolean isSupervised(IResource res) throws TeamException {
 		return IResource.FILE == res.getType()
@@ -125,7 +358,7 @@ public IResource[] members(IResource res) throws TeamException {
 
 		GitSynchronizeData gsd = gsds.getData(res.getProject());
 		Repository repo = gsd.getRepository();
-		GitSyncObjectCache repoCache = cache.get(repo);
+		GitSyncObjectCache repoCache = getCache().get(repo);
 
 		Set<IResource> gitMembers = new HashSet<IResource>();
 		Map<String, IResource> allMembers = new HashMap<String, IResource>();
@@ -161,7 +394,7 @@ public void refresh(IResource[] resources, int depth,
 			// check to see if there is a full refresh
 			if (resource.getType() == IResource.ROOT) {
 				// refresh entire cache
-				cache = GitSyncCache.getAllData(gsds, monitor);
+				setCache(GitSyncCache.getAllData(gsds, monitor));
 				super.refresh(resources, depth, monitor);
 				return;
 			}
@@ -196,7 +429,10 @@ public void refresh(IResource[] resources, int depth,
 		// scan only the repositories that were affected
 		if (!updateRequests.isEmpty()) {
 			// refresh cache
-			GitSyncCache.mergeAllDataIntoCache(updateRequests, monitor, cache);
+			synchronized (cacheLock) {
+				GitSyncCache.mergeAllDataIntoCache(updateRequests, monitor,
+						cache);
+			}
 		}
 
 		super.refresh(resources, depth, monitor);
@@ -217,6 +453,17 @@ public IResource[] roots() {
 	 * @param data
 	 */
 	public void reset(GitSynchronizeDataSet data) {
+		// pending updates belong to the previous data
+		updateJob.cancel();
+		try {
+			updateJob.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (pendingPaths) {
+			pendingPaths.clear();
+			pendingRevUpdates.clear();
+		}
 		gsds = data;
 
 		roots = null;
@@ -229,6 +476,16 @@ public void reset(GitSynchronizeDataSet data) {
 	 * Disposes nested resources
 	 */
 	public void dispose() {
+		synchronized (indexDiffs) {
+			for (IndexDiffCacheEntry entry : indexDiffEntries.values())
+				entry.removeIndexDiffChangedListener(indexChangeListener);
+			indexDiffEntries.clear();
+			indexDiffs.clear();
+		}
+		for (ListenerHandle handle : refsChangedHandles)
+			handle.remove();
+		refsChangedHandles.clear();
+		updateJob.cancel();
 		if (sourceTree != null)
 			sourceTree.dispose();
 		if (baseTree != null)
@@ -486,7 +743,7 @@ public IResourceVariantComparator getResourceComparator() {
 	 */
 	protected IResourceVariantTree getSourceTree() {
 		if (sourceTree == null)
-			sourceTree = new GitSourceResourceVariantTree(cache, gsds);
+			sourceTree = new GitSourceResourceVariantTree(getCache(), gsds);
 
 		return sourceTree;
 	}
@@ -510,7 +767,7 @@ public IFileRevision getSourceFileRevision(IFile resource)
 	@Override
 	protected IResourceVariantTree getBaseTree() {
 		if (baseTree == null)
-			baseTree = new GitBaseResourceVariantTree(cache, gsds);
+			baseTree = new GitBaseResourceVariantTree(getCache(), gsds);
 
 		return baseTree;
 	}
@@ -518,7 +775,7 @@ protected IResourceVariantTree getBaseTree() {
 	@Override
 	protected IResourceVariantTree getRemoteTree() {
 		if (remoteTree == null)
-			remoteTree = new GitRemoteResourceVariantTree(cache, gsds);
+			remoteTree = new GitRemoteResourceVariantTree(getCache(), gsds);
 
 		return remoteTree;
 	}
@@ -529,7 +786,7 @@ protected SyncInfo getSyncInfo(IResource local, IResourceVariant base,
 
 		Repository repo = gsds.getData(local.getProject()).getRepository();
 		SyncInfo info = new GitSyncInfo(local, base, remote,
-				getResourceComparator(), cache.get(repo), repo);
+				getResourceComparator(), getCache().get(repo), repo);
 
 		info.init();
 		return info;
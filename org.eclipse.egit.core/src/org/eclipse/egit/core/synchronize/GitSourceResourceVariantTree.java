@@ -62,7 +62,7 @@ protected IResourceVariant[] fetchMembers(IResourceVariant variant,
 
 	@Override
 	protected ObjectId getObjectId(ThreeWayDiffEntry diffEntry) {
-		return diffEntry.getLocalId().toObjectId();
+		return diffEntry.getLocalObjectId();
 	}
 
 	@Override
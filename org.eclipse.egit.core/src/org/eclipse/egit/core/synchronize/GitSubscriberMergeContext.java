@@ -8,7 +8,6 @@
  *******************************************************************************/
 package org.eclipse.egit.core.synchronize;
 
-import java.io.IOException;
 import java.util.Collection;
 
 import org.eclipse.core.resources.IFile;
@@ -17,22 +16,17 @@
 import org.eclipse.core.resources.IResourceChangeListener;
 import org.eclipse.core.resources.IResourceDelta;
 import org.eclipse.core.resources.ResourcesPlugin;
-import org.eclipse.core.resources.mapping.ResourceTraversal;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.egit.core.Activator;
 import org.eclipse.egit.core.internal.CoreText;
 import org.eclipse.egit.core.internal.indexdiff.GitResourceDeltaVisitor;
-import org.eclipse.egit.core.internal.indexdiff.IndexDiffCache;
-import org.eclipse.egit.core.internal.indexdiff.IndexDiffChangedListener;
-import org.eclipse.egit.core.internal.indexdiff.IndexDiffData;
 import org.eclipse.egit.core.op.AddToIndexOperation;
 import org.eclipse.egit.core.project.RepositoryMapping;
 import org.eclipse.egit.core.synchronize.dto.GitSynchronizeData;
 import org.eclipse.egit.core.synchronize.dto.GitSynchronizeDataSet;
 import org.eclipse.jgit.lib.Repository;
-import org.eclipse.team.core.TeamException;
 import org.eclipse.team.core.diff.IDiff;
 import org.eclipse.team.core.mapping.ISynchronizationScopeManager;
 import org.eclipse.team.core.subscribers.SubscriberMergeContext;
@@ -44,8 +38,6 @@ public class GitSubscriberMergeContext extends SubscriberMergeContext {
 
 	private final GitSynchronizeDataSet gsds;
 
-	private final IndexDiffChangedListener indexChangeListener;
-
 	private final IResourceChangeListener resourceChangeListener;
 
 	private final GitResourceVariantTreeSubscriber subscriber;
@@ -61,14 +53,6 @@ public GitSubscriberMergeContext(final GitResourceVariantTreeSubscriber subscrib
 		this.subscriber = subscriber;
 		this.gsds = gsds;
 
-
-		indexChangeListener = new IndexDiffChangedListener() {
-			@Override
-			public void indexDiffChanged(Repository repository,
-					IndexDiffData indexDiffData) {
-				handleRepositoryChange(repository);
-			}
-		};
 		resourceChangeListener = new IResourceChangeListener() {
 
 			@Override
@@ -80,9 +64,7 @@ public void resourceChanged(IResourceChangeEvent event) {
 				handleResourceChange(delta);
 			}
 		};
-		IndexDiffCache indexDiffCache = Activator.getDefault().getIndexDiffCache();
-		if (indexDiffCache != null)
-			indexDiffCache.addIndexDiffChangedListener(indexChangeListener);
+		subscriber.trackRepositoryChanges();
 
 		ResourcesPlugin.getWorkspace().addResourceChangeListener(resourceChangeListener);
 
@@ -125,38 +107,11 @@ public void dispose() {
 		if (activator == null)
 			return;
 
-		IndexDiffCache indexDiffCache = activator.getIndexDiffCache();
-		if (indexDiffCache != null)
-			indexDiffCache.removeIndexDiffChangedListener(indexChangeListener);
-
 		ResourcesPlugin.getWorkspace().removeResourceChangeListener(resourceChangeListener);
 		subscriber.dispose();
 		super.dispose();
 	}
 
-	private void handleRepositoryChange(Repository which) {
-		boolean shouldRefresh = false;
-		for (GitSynchronizeData gsd : gsds) {
-			if (which.equals(gsd.getRepository())) {
-				updateRevs(gsd);
-				shouldRefresh = true;
-			}
-		}
-
-		if (!shouldRefresh)
-			return;
-
-		subscriber.reset(this.gsds);
-		ResourceTraversal[] traversals = getScopeManager().getScope()
-				.getTraversals();
-		try {
-			subscriber.refresh(traversals, new NullProgressMonitor());
-		} catch (TeamException e) {
-			Activator.logError(
-					CoreText.GitSubscriberMergeContext_FailedRefreshSyncView, e);
-		}
-	}
-
 	private void handleResourceChange(IResourceDelta delta) {
 		IResourceDelta[] children = delta.getAffectedChildren();
 		for (IResourceDelta resourceDelta : children) {
@@ -200,14 +155,4 @@ private void refreshResources(Collection<IFile> resources) {
 		}
 	}
 
-	private void updateRevs(GitSynchronizeData gsd) {
-		try {
-			gsd.updateRevs();
-		} catch (IOException e) {
-			Activator.logError(
-					CoreText.GitSubscriberMergeContext_FailedUpdateRevs, e);
-			return;
-		}
-	}
-
 }
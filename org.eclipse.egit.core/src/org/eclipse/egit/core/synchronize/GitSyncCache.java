@@ -9,6 +9,7 @@
 package org.eclipse.egit.core.synchronize;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -22,12 +23,14 @@
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.SubMonitor;
 import org.eclipse.egit.core.Activator;
+import org.eclipse.egit.core.internal.indexdiff.IndexDiffData;
+import org.eclipse.egit.core.internal.indexdiff.IndexDiffData.Kind;
 import org.eclipse.egit.core.synchronize.dto.GitSynchronizeData;
 import org.eclipse.egit.core.synchronize.dto.GitSynchronizeDataSet;
 import org.eclipse.jgit.dircache.DirCache;
 import org.eclipse.jgit.dircache.DirCacheIterator;
-import org.eclipse.jgit.lib.AbbreviatedObjectId;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.treewalk.EmptyTreeIterator;
@@ -152,15 +155,112 @@ private static void loadDataFromGit(GitSynchronizeData gsd,
 				tw.addTree(dci);
 				fti.setDirCacheIterator(tw, 3);
 			}
-			List<ThreeWayDiffEntry> diffEntrys = ThreeWayDiffEntry.scan(tw);
-
-			for (ThreeWayDiffEntry diffEntry : diffEntrys)
-				repoCache.addMember(diffEntry);
+			ThreeWayDiffEntry.scan(tw, repoCache.createMemberAdder());
 		} catch (Exception e) {
 			Activator.logError(e.getMessage(), e);
 		}
 	}
 
+	/**
+	 * Finds the paths whose working tree or index state changed between two
+	 * index diffs of a repository: the paths added to or removed from any of
+	 * their path sets.
+	 *
+	 * @param oldData
+	 * @param newData
+	 * @return the repository relative paths which need to be updated
+	 */
+	static Set<String> getChangedPaths(IndexDiffData oldData,
+			IndexDiffData newData) {
+		Set<String> paths = new HashSet<String>();
+		for (Kind kind : Kind.values()) {
+			Set<String> oldPaths = oldData.getPaths(kind);
+			Set<String> newPaths = newData.getPaths(kind);
+			// unchanged path sets are shared by incremental index diffs
+			if (oldPaths == newPaths)
+				continue;
+			addMissingPaths(oldPaths, newPaths, paths);
+			addMissingPaths(newPaths, oldPaths, paths);
+		}
+		return paths;
+	}
+
+	private static void addMissingPaths(Set<String> paths, Set<String> other,
+			Set<String> result) {
+		for (String path : paths) {
+			if (other.contains(path))
+				continue;
+			// folder paths end with /
+			if (path.endsWith("/")) //$NON-NLS-1$
+				result.add(path.substring(0, path.length() - 1));
+			else
+				result.add(path);
+		}
+	}
+
+	/**
+	 * Finds the paths whose content differs between the trees the cache was
+	 * built from and the current revisions of the synchronize data. The
+	 * working tree is not scanned; only the trees of the sides whose commit
+	 * moved are compared.
+	 *
+	 * @param gsd
+	 *            synchronize data with updated revisions
+	 * @param oldSrc
+	 *            previous source commit
+	 * @param oldAncestor
+	 *            previous common ancestor
+	 * @param oldDst
+	 *            previous destination commit
+	 * @return the repository relative paths which need to be updated
+	 * @throws IOException
+	 */
+	static Set<String> getChangedPaths(GitSynchronizeData gsd,
+			RevCommit oldSrc, RevCommit oldAncestor, RevCommit oldDst)
+			throws IOException {
+		Set<String> paths = new HashSet<String>();
+		TreeFilter filter = gsd.getPathFilter();
+		try (ObjectReader reader = gsd.getRepository().newObjectReader()) {
+			// the local side is the working tree when it is included
+			if (!gsd.shouldIncludeLocal())
+				addChangedPaths(reader, oldSrc, gsd.getSrcRevCommit(), filter,
+						paths);
+			addChangedPaths(reader, oldAncestor, gsd.getCommonAncestorRev(),
+					filter, paths);
+			addChangedPaths(reader, oldDst, gsd.getDstRevCommit(), filter,
+					paths);
+		}
+		return paths;
+	}
+
+	private static void addChangedPaths(ObjectReader reader,
+			RevCommit oldCommit, RevCommit newCommit, TreeFilter filter,
+			Set<String> paths) throws IOException {
+		ObjectId oldTree = getTree(oldCommit);
+		ObjectId newTree = getTree(newCommit);
+		if (oldTree.equals(newTree))
+			return;
+		try (TreeWalk tw = new TreeWalk(reader)) {
+			tw.setRecursive(true);
+			if (filter != null)
+				tw.setFilter(AndTreeFilter.create(filter, TreeFilter.ANY_DIFF));
+			else
+				tw.setFilter(TreeFilter.ANY_DIFF);
+			addTree(tw, oldCommit);
+			addTree(tw, newCommit);
+			while (tw.next())
+				paths.add(tw.getPathString());
+		}
+	}
+
+	private static void addTree(TreeWalk tw, RevCommit commit)
+			throws IOException {
+		if (commit != null)
+			tw.addTree(commit.getTree());
+		else
+			tw.addTree(new EmptyTreeIterator());
+	}
+
 	private static ObjectId getTree(RevCommit commit) {
 		if (commit != null)
 			return commit.getTree();
@@ -216,8 +316,8 @@ public String toString() {
 	private GitSyncObjectCache put(Repository repo, ObjectId baseTree,
 			ObjectId remoteTree) {
 		ThreeWayDiffEntry entry = new ThreeWayDiffEntry();
-		entry.baseId = AbbreviatedObjectId.fromObjectId(baseTree);
-		entry.remoteId = AbbreviatedObjectId.fromObjectId(remoteTree);
+		entry.setBaseId(baseTree);
+		entry.setRemoteId(remoteTree);
 		GitSyncObjectCache objectCache = new GitSyncObjectCache("", entry); //$NON-NLS-1$
 		cache.put(repo.getDirectory(), objectCache);
 
@@ -8,8 +8,10 @@
  *******************************************************************************/
 package org.eclipse.egit.core.synchronize;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -102,6 +104,48 @@ public void addMember(ThreeWayDiffEntry entry) {
 		parent.put(newName, obj);
 	}
 
+	/**
+	 * Creates a visitor storing the entries of a
+	 * {@link ThreeWayDiffEntry#scan(org.eclipse.jgit.treewalk.TreeWalk, ThreeWayDiffEntry.Visitor)}
+	 * in this cache, which has to be the one of the root of the scanned trees.
+	 * The entries are added as they are found, without parsing their paths.
+	 *
+	 * @return the visitor
+	 */
+	ThreeWayDiffEntry.Visitor createMemberAdder() {
+		return new ThreeWayDiffEntry.Visitor() {
+
+			// the cached folders on the path to the current entry
+			private final List<GitSyncObjectCache> folders = new ArrayList<GitSyncObjectCache>();
+
+			@Override
+			public void visit(ThreeWayDiffEntry entry) {
+				ThreeWayDiffEntry parentEntry = entry.getParent();
+				int size = folders.size();
+				while (size > 0
+						&& folders.get(size - 1).diffEntry != parentEntry)
+					folders.remove(--size);
+				GitSyncObjectCache parent;
+				if (size > 0)
+					parent = folders.get(size - 1);
+				else if (parentEntry == null)
+					parent = GitSyncObjectCache.this;
+				else
+					throw new RuntimeException(NLS.bind(
+							CoreText.GitSyncObjectCache_noData,
+							parentEntry.getName()));
+
+				if (parent.members == null)
+					parent.members = new HashMap<String, GitSyncObjectCache>();
+				GitSyncObjectCache member = new GitSyncObjectCache(
+						entry.getName(), entry);
+				parent.members.put(entry.getName(), member);
+				if (entry.isTree())
+					folders.add(member);
+			}
+		};
+	}
+
 	/**
 	 * @param childPath
 	 *            repository relative path of entry that should be obtained
@@ -167,18 +211,17 @@ public String toString() {
 	}
 
 	void merge(GitSyncObjectCache other, Set<String> filterPaths) {
+		// the entries of folders are computed from whole trees, even when
+		// the members are filtered, so the newer ones are always up to date
+		diffEntry = other.diffEntry;
 		if (other.members != null) {
 			if (members == null)
 				members = new HashMap<String, GitSyncObjectCache>();
 
 			for (Entry<String, GitSyncObjectCache> entry : members.entrySet()) {
 				String key = entry.getKey();
-				if (!other.members.containsKey(key)) {
-					GitSyncObjectCache obj = entry.getValue();
-					String entryPath = obj.getDiffEntry().getPath();
-					if (containsPathOrParent(filterPaths, entryPath))
-						obj.getDiffEntry().changeType = ChangeType.IN_SYNC;
-				}
+				if (!other.members.containsKey(key))
+					markInSync(entry.getValue(), filterPaths);
 			}
 
 			for (Entry<String, GitSyncObjectCache> entry : other.members
@@ -192,18 +235,44 @@ void merge(GitSyncObjectCache other, Set<String> filterPaths) {
 				}
 			}
 		} else if (members != null) {
-			for (GitSyncObjectCache obj : members.values()) {
-				String entryPath = obj.getDiffEntry().getPath();
-				if (containsPathOrParent(filterPaths, entryPath))
-					obj.getDiffEntry().changeType = ChangeType.IN_SYNC;
-			}
-		} else {
-			// we are on a leaf entry, use the newer diff entry (need to update
-			// changeType, direction and other fields)
-			diffEntry = other.diffEntry;
+			for (GitSyncObjectCache obj : members.values())
+				markInSync(obj, filterPaths);
 		}
 	}
 
+	/**
+	 * Marks the cached entries which are not part of a newer cache as in sync
+	 * if they were covered by its filter. Folders containing filtered paths
+	 * are searched for such entries.
+	 */
+	private static void markInSync(GitSyncObjectCache obj,
+			Set<String> filterPaths) {
+		String entryPath = obj.getDiffEntry().getPath();
+		if (containsPathOrParent(filterPaths, entryPath)) {
+			markInSync(obj);
+		} else if (obj.members != null
+				&& containsChildPath(filterPaths, entryPath)) {
+			for (GitSyncObjectCache member : obj.members.values())
+				markInSync(member, filterPaths);
+		}
+	}
+
+	private static void markInSync(GitSyncObjectCache obj) {
+		obj.getDiffEntry().changeType = ChangeType.IN_SYNC;
+		if (obj.members != null)
+			for (GitSyncObjectCache member : obj.members.values())
+				markInSync(member);
+	}
+
+	private static boolean containsChildPath(Set<String> filterPaths,
+			String folderPath) {
+		String prefix = folderPath + '/';
+		for (String path : filterPaths)
+			if (path.startsWith(prefix))
+				return true;
+		return false;
+	}
+
 	private static boolean containsPathOrParent(Set<String> filterPaths,
 			String pathToTest) {
 		if (filterPaths.contains(pathToTest))
@@ -10,9 +10,13 @@
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.jgit.lib.AbbreviatedObjectId;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.MutableObjectId;
 import org.eclipse.jgit.lib.ObjectId;
@@ -21,12 +25,22 @@
 /**
  * Based on {@link org.eclipse.jgit.diff.DiffEntry}. Represents change to a file
  * with additional information about change direction.
+ * <p>
+ * Entries are kept compact, as a synchronization may hold hundreds of
+ * thousands of them: an entry references its parent folder entry and its name
+ * instead of its path, the names of one scan are shared, and the three object
+ * ids are stored in a single byte array.
  */
 public final class ThreeWayDiffEntry {
 
-	/** Magical SHA1 used for file adds or deletes */
-	private static final AbbreviatedObjectId A_ZERO = AbbreviatedObjectId
-			.fromObjectId(ObjectId.zeroId());
+	private static final int LOCAL = 0;
+
+	private static final int BASE = Constants.OBJECT_ID_LENGTH;
+
+	private static final int REMOTE = 2 * Constants.OBJECT_ID_LENGTH;
+
+	/** {@link #knownIds} of entries which have all three ids */
+	private static final byte ALL_IDS = 7;
 
 	/** General type of change a single file-level patch describes. */
 	public static enum ChangeType {
@@ -63,6 +77,21 @@ public static enum Direction {
 		// reduce the visibility of the default constructor
 	}
 
+	/**
+	 * Receives the entries of a
+	 * {@link ThreeWayDiffEntry#scan(TreeWalk, Visitor)} as they are found
+	 */
+	public interface Visitor {
+
+		/**
+		 * Called for every changed file or folder, folders before their
+		 * members
+		 *
+		 * @param entry
+		 */
+		void visit(ThreeWayDiffEntry entry);
+	}
+
 	/**
 	 * Converts the TreeWalk into TreeWayDiffEntry headers.
 	 *
@@ -78,6 +107,34 @@ public static enum Direction {
 	 */
 	public static List<ThreeWayDiffEntry> scan(TreeWalk walk)
 			throws IOException {
+		final List<ThreeWayDiffEntry> r = new ArrayList<ThreeWayDiffEntry>();
+		scan(walk, new Visitor() {
+			@Override
+			public void visit(ThreeWayDiffEntry entry) {
+				r.add(entry);
+			}
+		});
+		return r;
+	}
+
+	/**
+	 * Converts the TreeWalk into TreeWayDiffEntry headers, passing each one
+	 * to a visitor instead of collecting them. Folders without changes are
+	 * not entered, and nothing is allocated for entries which are in sync.
+	 *
+	 * @param walk
+	 *            the TreeWalk to walk through. Must have exactly three trees in
+	 *            this order: local, base and remote and can't be recursive.
+	 * @param visitor
+	 *            receives the headers describing the changed files
+	 * @throws IOException
+	 *             the repository cannot be accessed.
+	 * @throws IllegalArgumentException
+	 *             when {@code walk} doen't have exactly three trees, or when
+	 *             {@code walk} is recursive
+	 */
+	public static void scan(TreeWalk walk, Visitor visitor)
+			throws IOException {
 		if (walk.getTreeCount() != 3 && walk.getTreeCount() != 4)
 			throw new IllegalArgumentException(
 					"TreeWalk need to have three or four trees"); //$NON-NLS-1$
@@ -85,26 +142,38 @@ public static List<ThreeWayDiffEntry> scan(TreeWalk walk)
 			throw new IllegalArgumentException(
 					"TreeWalk shouldn't be recursive."); //$NON-NLS-1$
 
-		List<ThreeWayDiffEntry> r = new ArrayList<ThreeWayDiffEntry>();
-		MutableObjectId idBuf = new MutableObjectId();
+		MutableObjectId localId = new MutableObjectId();
+		MutableObjectId baseId = new MutableObjectId();
+		MutableObjectId remoteId = new MutableObjectId();
+		Map<String, String> names = new HashMap<String, String>();
+		// the folder entries on the path to the current entry
+		ThreeWayDiffEntry[] folders = new ThreeWayDiffEntry[16];
 		while (walk.next()) {
-			ThreeWayDiffEntry e = new ThreeWayDiffEntry();
-
-			walk.getObjectId(idBuf, 0);
-			e.localId = AbbreviatedObjectId.fromObjectId(idBuf);
-
-			walk.getObjectId(idBuf, 1);
-			e.baseId = AbbreviatedObjectId.fromObjectId(idBuf);
+			walk.getObjectId(localId, 0);
+			walk.getObjectId(baseId, 1);
+			walk.getObjectId(remoteId, 2);
 
-			walk.getObjectId(idBuf, 2);
-			e.remoteId = AbbreviatedObjectId.fromObjectId(idBuf);
-
-			boolean localSameAsBase = e.localId.equals(e.baseId);
-			if (!A_ZERO.equals(e.localId) && localSameAsBase
-					&& e.baseId.equals(e.remoteId))
+			boolean localSameAsBase = localId.equals(baseId);
+			if (!ObjectId.zeroId().equals(localId) && localSameAsBase
+					&& baseId.equals(remoteId))
 				continue;
 
-			e.path = walk.getPathString();
+			ThreeWayDiffEntry e = new ThreeWayDiffEntry();
+			localId.copyRawTo(e.ids, LOCAL);
+			baseId.copyRawTo(e.ids, BASE);
+			remoteId.copyRawTo(e.ids, REMOTE);
+			e.knownIds = ALL_IDS;
+
+			int depth = walk.getDepth();
+			e.parent = depth > 0 ? folders[depth - 1] : null;
+			String name = walk.getNameString();
+			String shared = names.get(name);
+			if (shared == null)
+				names.put(name, name);
+			else
+				name = shared;
+			e.name = name;
+
 			boolean localIsMissing = walk.getFileMode(0) == FileMode.MISSING;
 			boolean baseIsMissing = walk.getFileMode(1) == FileMode.MISSING;
 			boolean remoteIsMissing = walk.getFileMode(2) == FileMode.MISSING;
@@ -127,10 +196,9 @@ public static List<ThreeWayDiffEntry> scan(TreeWalk walk)
 					e.changeType = ChangeType.MODIFY;
 				}
 			} else {
-				if (localSameAsBase && !e.localId.equals(e.remoteId))
+				if (localSameAsBase && !localId.equals(remoteId))
 					e.direction = Direction.INCOMING;
-				else if (e.remoteId.equals(e.baseId)
-						&& !e.remoteId.equals(e.localId))
+				else if (remoteId.equals(baseId) && !remoteId.equals(localId))
 					e.direction = Direction.OUTGOING;
 				else
 					e.direction = Direction.CONFLICTING;
@@ -138,42 +206,111 @@ else if (e.remoteId.equals(e.baseId)
 				e.changeType = ChangeType.MODIFY;
 			}
 
-			r.add(e);
 			if (walk.isSubtree()) {
 				e.isTree = true;
-				walk.enterSubtree();
+				if (depth == folders.length) {
+					ThreeWayDiffEntry[] larger = new ThreeWayDiffEntry[depth * 2];
+					System.arraycopy(folders, 0, larger, 0, depth);
+					folders = larger;
+				}
+				folders[depth] = e;
 			}
+			visitor.visit(e);
+			if (e.isTree)
+				walk.enterSubtree();
 		}
-
-		return r;
 	}
 
 	ChangeType changeType;
 
-	AbbreviatedObjectId baseId;
+	private ThreeWayDiffEntry parent;
 
-	AbbreviatedObjectId remoteId;
+	private String name;
 
-	private String path;
+	/** the raw local, base and remote ids */
+	private final byte[] ids = new byte[3 * Constants.OBJECT_ID_LENGTH];
 
-	private Direction direction;
+	/** which of the {@link #ids} are set, one bit per id */
+	private byte knownIds;
 
-	private AbbreviatedObjectId localId;
+	private Direction direction;
 
 	private boolean isTree = false;
 
+	void setBaseId(AnyObjectId id) {
+		setId(id, BASE);
+	}
+
+	void setRemoteId(AnyObjectId id) {
+		setId(id, REMOTE);
+	}
+
+	private void setId(AnyObjectId id, int offset) {
+		id.copyRawTo(ids, offset);
+		knownIds |= idBit(offset);
+	}
+
+	private static int idBit(int offset) {
+		return 1 << (offset / Constants.OBJECT_ID_LENGTH);
+	}
+
 	/**
-	 * @return base id
+	 * @return the entry of the folder containing this entry, or null if it is
+	 *         at the top level
+	 */
+	ThreeWayDiffEntry getParent() {
+		return parent;
+	}
+
+	/**
+	 * @return the last segment of the path
+	 */
+	String getName() {
+		return name;
+	}
+
+	/**
+	 * @return base id; null if it is not known
 	 */
 	public AbbreviatedObjectId getBaseId() {
-		return baseId;
+		return getAbbreviatedId(BASE);
+	}
+
+	/**
+	 * @return base id; null if it is not known
+	 */
+	public ObjectId getBaseObjectId() {
+		return getId(BASE);
+	}
+
+	private AbbreviatedObjectId getAbbreviatedId(int offset) {
+		ObjectId id = getId(offset);
+		return id != null ? AbbreviatedObjectId.fromObjectId(id) : null;
+	}
+
+	private ObjectId getId(int offset) {
+		if ((knownIds & idBit(offset)) == 0)
+			return null;
+		return ObjectId.fromRaw(ids, offset);
 	}
 
 	/**
 	 * @return path
 	 */
 	public String getPath() {
-		return path;
+		if (parent == null)
+			return name;
+		StringBuilder path = new StringBuilder();
+		appendPath(path);
+		return path.toString();
+	}
+
+	private void appendPath(StringBuilder path) {
+		if (parent != null) {
+			parent.appendPath(path);
+			path.append('/');
+		}
+		path.append(name);
 	}
 
 	/**
@@ -189,21 +326,31 @@ public ChangeType getChangeType() {
 	}
 
 	/**
-	 * Get the old object id from the <code>index</code>.
-	 *
-	 * @return the object id; null if there is no index line
+	 * @return local id; null if it is not known
 	 */
 	public AbbreviatedObjectId getLocalId() {
-		return localId;
+		return getAbbreviatedId(LOCAL);
 	}
 
 	/**
-	 * Get the new object id from the <code>index</code>.
-	 *
-	 * @return the object id; null if there is no index line
+	 * @return local id; null if it is not known
+	 */
+	public ObjectId getLocalObjectId() {
+		return getId(LOCAL);
+	}
+
+	/**
+	 * @return remote id; null if it is not known
 	 */
 	public AbbreviatedObjectId getRemoteId() {
-		return remoteId;
+		return getAbbreviatedId(REMOTE);
+	}
+
+	/**
+	 * @return remote id; null if it is not known
+	 */
+	public ObjectId getRemoteObjectId() {
+		return getId(REMOTE);
 	}
 
 	/**
@@ -217,7 +364,7 @@ public Direction getDirection() {
 	public String toString() {
 		StringBuilder buf = new StringBuilder();
 		buf.append("ThreeDiffEntry["); //$NON-NLS-1$
-		buf.append(changeType).append(" ").append(path); //$NON-NLS-1$
+		buf.append(changeType).append(" ").append(getPath()); //$NON-NLS-1$
 		buf.append("]"); //$NON-NLS-1$
 
 		return buf.toString();
@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.ui.internal.blame;
+
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+
+import org.eclipse.jgit.api.BlameCommand;
+import org.eclipse.jgit.blame.BlameResult;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link BlameCache}.
+ */
+public class BlameCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Repository repository;
+
+	private TestRepository<Repository> util;
+
+	@Before
+	public void setUp() throws Exception {
+		repository = FileRepositoryBuilder.create(new File(folder.getRoot(),
+				".git"));
+		repository.create();
+		util = new TestRepository<Repository>(repository);
+	}
+
+	@After
+	public void tearDown() {
+		util.getRevWalk().close();
+		repository.close();
+	}
+
+	@Test
+	public void testReuseForLaterCommits() throws Exception {
+		RevCommit first = util.commit().add("a.txt", "a\nb\n").create();
+		RevCommit other = util.commit().parent(first).add("b.txt", "b")
+				.create();
+		RevCommit side = util.commit().parent(first).add("c.txt", "c")
+				.create();
+		RevCommit merge = util.commit().parent(other).parent(side).create();
+		RevCommit changed = util.commit().parent(merge)
+				.add("a.txt", "a\nc\n").create();
+
+		BlameResult result = new BlameCommand(repository)
+				.setFilePath("a.txt").setStartCommit(first).call();
+		BlameCache.put(repository, "a.txt", first, false, result);
+
+		assertSame(result, BlameCache.get(repository, "a.txt", first, false));
+		assertSame(result, BlameCache.get(repository, "a.txt", merge, false));
+		assertNull(BlameCache.get(repository, "a.txt", merge, true));
+		assertNull(BlameCache.get(repository, "a.txt", changed, false));
+		assertNull(BlameCache.get(repository, "b.txt", merge, false));
+	}
+}
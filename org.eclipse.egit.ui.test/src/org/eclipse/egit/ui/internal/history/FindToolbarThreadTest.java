@@ -0,0 +1,234 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.ui.internal.history;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.eclipse.egit.ui.internal.history.FindToolbarThread.Matcher;
+import org.eclipse.egit.ui.internal.history.FindToolbarThread.Request;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.util.IntList;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link FindToolbarThread}.
+ */
+public class FindToolbarThreadTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Repository repository;
+
+	private TestRepository<Repository> util;
+
+	private SWTWalk walk;
+
+	@Before
+	public void setUp() throws Exception {
+		repository = FileRepositoryBuilder.create(new File(folder.getRoot(),
+				".git"));
+		repository.create();
+		util = new TestRepository<Repository>(repository);
+		walk = new SWTWalk(repository);
+	}
+
+	@After
+	public void tearDown() {
+		walk.close();
+		util.getRevWalk().close();
+		repository.close();
+	}
+
+	@Test
+	public void testRawBytesIgnoringCase() {
+		byte[] raw = Constants.encode("a FiXed bug");
+
+		Matcher ignoringCase = new Matcher("FIX", true);
+		assertTrue(ignoringCase.isRaw());
+		assertTrue(ignoringCase.matches(raw, 0, raw.length));
+		assertFalse(ignoringCase.matches(raw, 0, 4));
+		assertFalse(ignoringCase.matches(raw, 3, raw.length));
+
+		Matcher caseSensitive = new Matcher("FiX", false);
+		assertTrue(caseSensitive.matches(raw, 0, raw.length));
+		assertFalse(new Matcher("FIX", false).matches(raw, 0, raw.length));
+	}
+
+	@Test
+	public void testNonAsciiPatternMatchesDecodedText() throws Exception {
+		SWTCommit commit = commit("Größe ändern");
+
+		Matcher matcher = new Matcher("ÄNDERN", true);
+		assertFalse(matcher.isRaw());
+		assertTrue(FindToolbarThread.matches(request("ÄNDERN", true),
+				matcher, commit, null));
+		assertFalse(FindToolbarThread.matches(request("ÄNDERN", false),
+				new Matcher("ÄNDERN", false), commit, null));
+		// ASCII parts of a non-ASCII message are still matched raw
+		assertTrue(FindToolbarThread.matches(request("NDERN", true),
+				new Matcher("NDERN", true), commit, null));
+	}
+
+	@Test
+	public void testMultiByteEncodingIsDecoded() throws Exception {
+		// in Shift_JIS the second byte of KATAKANA LETTER A is an 'A'
+		SWTCommit commit = commit("\u30a2", "Shift_JIS");
+
+		assertFalse(matches(request("a", true), commit));
+		assertTrue(matches(request("\u30a2", true), commit));
+
+		SWTCommit latin = commit("Gr\u00f6\u00dfe fixed", "ISO-8859-1");
+		assertTrue(matches(request("FIX", true), latin));
+		assertTrue(matches(request("GR\u00d6\u00dfE", true), latin));
+	}
+
+	@Test
+	public void testCommitIdNibbles() {
+		ObjectId id = ObjectId
+				.fromString("0123456789abcdef0123456789abcdef01234567");
+
+		// starting in the second half of a byte
+		assertTrue(new Matcher("12", true).matches(id));
+		// across bytes
+		assertTrue(new Matcher("def0", true).matches(id));
+		assertTrue(new Matcher("ABC", true).matches(id));
+		assertTrue(new Matcher("01234567", true).matches(id));
+		assertFalse(new Matcher("ABC", false).matches(id));
+		assertFalse(new Matcher("70", true).matches(id));
+		assertFalse(new Matcher("Größe", true).matches(id));
+	}
+
+	@Test
+	public void testAuthorAndCommitter() throws Exception {
+		SWTCommit commit = commit("message");
+
+		Request author = request("thor", true);
+		author.findInComments = false;
+		author.findInAuthor = true;
+		assertTrue(matches(author, commit));
+		author.pattern = "AUTHOR@example";
+		assertTrue(matches(author, commit));
+		// the space before the email address is not part of the name
+		author.pattern = "thor <";
+		assertFalse(matches(author, commit));
+		author.pattern = "mitter";
+		assertFalse(matches(author, commit));
+
+		Request committer = request("mitter", true);
+		committer.findInComments = false;
+		committer.findInCommitter = true;
+		assertTrue(matches(committer, commit));
+	}
+
+	@Test
+	public void testRefines() {
+		Request previous = request("fo", true);
+		Request longer = request("FOO", true);
+		assertTrue(longer.refines(previous));
+		assertFalse(previous.refines(longer));
+
+		Request caseSensitive = request("FOO", false);
+		assertFalse(caseSensitive.refines(request("fo", false)));
+
+		Request otherInput = request("foo", true);
+		otherInput.findInAuthor = true;
+		assertFalse(otherInput.refines(previous));
+
+		assertFalse(longer.refines(request("", true)));
+	}
+
+	@Test
+	public void testRefinementChecksPreviousMatchesOnly() {
+		FindToolbarThread thread = new FindToolbarThread(null);
+		IntList matches = new IntList();
+		matches.add(3);
+		matches.add(7);
+		thread.completed(request("fo", true), matches, false);
+
+		assertSame(matches, thread.takePreviousMatches(request("foo", true)));
+		// the matches belong to the search that took them
+		assertNull(thread.takePreviousMatches(request("foo", true)));
+
+		thread.completed(request("fo", true), matches, false);
+		assertNull(thread.takePreviousMatches(request("bar", true)));
+	}
+
+	@Test
+	public void testNoRefinementAfterMaxResults() {
+		FindToolbarThread thread = new FindToolbarThread(null);
+		IntList matches = new IntList(FindToolbarThread.MAX_RESULTS);
+		for (int i = 0; i < FindToolbarThread.MAX_RESULTS; i++)
+			matches.add(i);
+		thread.completed(request("fo", true), matches, true);
+
+		assertNull(thread.takePreviousMatches(request("foo", true)));
+	}
+
+	private SWTCommit commit(String message) throws Exception {
+		RevCommit commit = util.commit().message(message)
+				.author(new PersonIdent("A U Thor", "author@example.com"))
+				.committer(new PersonIdent("Com Mitter",
+						"committer@example.com"))
+				.create();
+		SWTCommit result = (SWTCommit) walk.parseCommit(commit);
+		result.parseBody();
+		return result;
+	}
+
+	private SWTCommit commit(String message, String encoding)
+			throws Exception {
+		CommitBuilder commit = new CommitBuilder();
+		commit.setTreeId(util.tree());
+		commit.setAuthor(new PersonIdent("A U Thor", "author@example.com"));
+		commit.setCommitter(new PersonIdent("Com Mitter",
+				"committer@example.com"));
+		commit.setEncoding(encoding);
+		commit.setMessage(message);
+		ObjectId id;
+		try (ObjectInserter inserter = repository.newObjectInserter()) {
+			id = inserter.insert(commit);
+			inserter.flush();
+		}
+		SWTCommit result = (SWTCommit) walk.parseCommit(id);
+		result.parseBody();
+		return result;
+	}
+
+	private static boolean matches(Request request, SWTCommit commit) {
+		return FindToolbarThread.matches(request,
+				new Matcher(request.pattern, request.ignoreCase), commit,
+				null);
+	}
+
+	private static Request request(String pattern, boolean ignoreCase) {
+		Request request = new Request();
+		request.pattern = pattern;
+		request.ignoreCase = ignoreCase;
+		request.findInComments = true;
+		return request;
+	}
+}
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.ui.internal.search;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.regex.Pattern;
+
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.egit.ui.internal.commit.RepositoryCommit;
+import org.eclipse.jgit.junit.TestRepository;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link CommitSearchQuery}.
+ */
+public class CommitSearchQueryTest {
+
+	private static final String[] MESSAGES = { "Fix bug in parser",
+			"fix Größe of the dialog", "Größe ändern",
+			"unrelated change" };
+
+	private static final Executor SEQUENTIAL = new Executor() {
+
+		@Override
+		public void execute(Runnable command) {
+			command.run();
+		}
+	};
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final List<Repository> repositories = new ArrayList<Repository>();
+
+	@Before
+	public void setUp() throws Exception {
+		for (int i = 0; i < 3; i++) {
+			Repository repository = FileRepositoryBuilder.create(new File(
+					folder.newFolder("repo" + i), ".git"));
+			repository.create();
+			repositories.add(repository);
+			TestRepository<Repository> util = new TestRepository<Repository>(
+					repository);
+			RevCommit parent = null;
+			for (String message : MESSAGES) {
+				TestRepository<Repository>.CommitBuilder commit = util
+						.commit().message(message + " " + i)
+						.add("file.txt", message);
+				if (parent != null)
+					commit.parent(parent);
+				parent = commit.create();
+			}
+			util.update("master", parent);
+			util.getRevWalk().close();
+		}
+	}
+
+	@After
+	public void tearDown() {
+		for (Repository repository : repositories)
+			repository.close();
+	}
+
+	@Test
+	public void testAsciiPattern() throws Exception {
+		assertParallelEqualsSequential("fix", false, 6);
+	}
+
+	@Test
+	public void testCaseSensitiveAsciiPattern() throws Exception {
+		assertParallelEqualsSequential("Fix", true, 3);
+	}
+
+	@Test
+	public void testNonAsciiPattern() throws Exception {
+		assertParallelEqualsSequential("größe", false, 6);
+	}
+
+	private void assertParallelEqualsSequential(String text,
+			boolean caseSensitive, int expectedCount) throws Exception {
+		CommitSearchSettings settings = new CommitSearchSettings();
+		settings.setTextPattern(text);
+		settings.setCaseSensitive(caseSensitive);
+		settings.setMatchMessage(true);
+		settings.setAllBranches(true);
+		for (Repository repository : repositories)
+			settings.addRepository(repository.getDirectory()
+					.getAbsolutePath());
+
+		Set<String> expected = findByFullMessage(PatternUtils.createPattern(
+				text, caseSensitive, false));
+		Set<String> sequential = search(settings, SEQUENTIAL);
+		Set<String> parallel = search(settings);
+
+		assertEquals(expectedCount, expected.size());
+		assertEquals(expected, sequential);
+		assertEquals(expected, parallel);
+	}
+
+	private Set<String> findByFullMessage(Pattern pattern) throws Exception {
+		Set<String> found = new HashSet<String>();
+		for (Repository repository : repositories) {
+			try (RevWalk walk = new RevWalk(repository)) {
+				walk.markStart(walk.parseCommit(repository.resolve("master")));
+				for (RevCommit commit : walk)
+					if (pattern.matcher(commit.getFullMessage()).find())
+						found.add(commit.name());
+			}
+		}
+		return found;
+	}
+
+	private static Set<String> search(CommitSearchSettings settings,
+			Executor executor) {
+		CommitSearchQuery query = new CommitSearchQuery(settings);
+		query.run(new NullProgressMonitor(), executor);
+		return getFound(query);
+	}
+
+	// the public run method searches on the shared worker pool
+	private static Set<String> search(CommitSearchSettings settings) {
+		CommitSearchQuery query = new CommitSearchQuery(settings);
+		query.run(new NullProgressMonitor());
+		return getFound(query);
+	}
+
+	private static Set<String> getFound(CommitSearchQuery query) {
+		Set<String> found = new HashSet<String>();
+		for (Object element : ((CommitSearchResult) query.getSearchResult())
+				.getElements())
+			found.add(((RepositoryCommit) element).getRevCommit().name());
+		return found;
+	}
+}
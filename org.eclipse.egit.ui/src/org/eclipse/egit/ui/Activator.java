@@ -39,6 +39,7 @@
 import org.eclipse.egit.core.RepositoryCache;
 import org.eclipse.egit.core.RepositoryUtil;
 import org.eclipse.egit.core.project.RepositoryMapping;
+import org.eclipse.egit.ui.internal.ActiveEditorRepositoryTracker;
 import org.eclipse.egit.ui.internal.ConfigurationChecker;
 import org.eclipse.egit.ui.internal.UIText;
 import org.eclipse.egit.ui.internal.credentials.EGitCredentialsProvider;
@@ -62,6 +63,7 @@
 import org.eclipse.swt.graphics.Font;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.ui.IWindowListener;
+import org.eclipse.ui.IWorkbench;
 import org.eclipse.ui.IWorkbenchWindow;
 import org.eclipse.ui.PlatformUI;
 import org.eclipse.ui.plugin.AbstractUIPlugin;
@@ -204,6 +206,7 @@ public static Font getBoldFont(final String id) {
 
 	private volatile boolean uiIsActive;
 	private IWindowListener focusListener;
+	private volatile ActiveEditorRepositoryTracker editorTracker;
 
 	/**
 	 * Construct the {@link Activator} egit ui plugin singleton instance
@@ -321,9 +324,10 @@ public void windowActivated(IWorkbenchWindow window) {
 		Job job = new Job(UIText.Activator_setupFocusListener) {
 			@Override
 			protected IStatus run(IProgressMonitor monitor) {
-				if (PlatformUI.isWorkbenchRunning())
+				if (PlatformUI.isWorkbenchRunning()) {
 					PlatformUI.getWorkbench().addWindowListener(focusListener);
-				else
+					setupEditorTracking();
+				} else
 					schedule(1000L);
 				return Status.OK_STATUS;
 			}
@@ -331,6 +335,19 @@ protected IStatus run(IProgressMonitor monitor) {
 		job.schedule();
 	}
 
+	private void setupEditorTracking() {
+		final IWorkbench workbench = PlatformUI.getWorkbench();
+		workbench.getDisplay().asyncExec(new Runnable() {
+			@Override
+			public void run() {
+				if (workbench.isClosing())
+					return;
+				editorTracker = new ActiveEditorRepositoryTracker();
+				editorTracker.start(workbench);
+			}
+		});
+	}
+
 	@Override
 	public void optionsChanged(DebugOptions options) {
 		// initialize the trace stuff
@@ -632,6 +649,20 @@ public void stop(final BundleContext context) throws Exception {
 			focusListener = null;
 		}
 
+		if (editorTracker != null) {
+			if (PlatformUI.isWorkbenchRunning()) {
+				final IWorkbench workbench = PlatformUI.getWorkbench();
+				final ActiveEditorRepositoryTracker tracker = editorTracker;
+				workbench.getDisplay().syncExec(new Runnable() {
+					@Override
+					public void run() {
+						tracker.stop(workbench);
+					}
+				});
+			}
+			editorTracker = null;
+		}
+
 		if (GitTraceLocation.REPOSITORYCHANGESCANNER.isActive())
 			GitTraceLocation.getTrace().trace(
 					GitTraceLocation.REPOSITORYCHANGESCANNER.getLocation(),
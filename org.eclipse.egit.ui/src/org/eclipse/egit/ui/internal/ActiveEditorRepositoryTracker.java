@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.ui.internal;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.egit.core.AdapterUtils;
+import org.eclipse.egit.core.internal.indexdiff.IndexDiffScheduler;
+import org.eclipse.egit.core.project.RepositoryMapping;
+import org.eclipse.jgit.annotations.Nullable;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.ui.IEditorPart;
+import org.eclipse.ui.IEditorReference;
+import org.eclipse.ui.IPartListener2;
+import org.eclipse.ui.IWindowListener;
+import org.eclipse.ui.IWorkbench;
+import org.eclipse.ui.IWorkbenchPage;
+import org.eclipse.ui.IWorkbenchPart;
+import org.eclipse.ui.IWorkbenchPartReference;
+import org.eclipse.ui.IWorkbenchWindow;
+
+/**
+ * Tells the {@link IndexDiffScheduler} which repository the file in the
+ * active editor belongs to, so that its index diff is calculated before the
+ * ones of repositories nobody is looking at.
+ * <p>
+ * All methods must be called in the UI thread.
+ */
+public class ActiveEditorRepositoryTracker implements IWindowListener,
+		IPartListener2 {
+
+	private Repository current;
+
+	/**
+	 * Starts tracking the editors of all open and later opened windows.
+	 *
+	 * @param workbench
+	 */
+	public void start(IWorkbench workbench) {
+		workbench.addWindowListener(this);
+		for (IWorkbenchWindow window : workbench.getWorkbenchWindows())
+			window.getPartService().addPartListener(this);
+		IWorkbenchWindow active = workbench.getActiveWorkbenchWindow();
+		if (active != null)
+			update(active.getActivePage(), null);
+	}
+
+	/**
+	 * Stops tracking and unregisters the current repository.
+	 *
+	 * @param workbench
+	 */
+	public void stop(IWorkbench workbench) {
+		workbench.removeWindowListener(this);
+		for (IWorkbenchWindow window : workbench.getWorkbenchWindows())
+			window.getPartService().removePartListener(this);
+		setRepository(null);
+	}
+
+	@Override
+	public void windowOpened(IWorkbenchWindow window) {
+		window.getPartService().addPartListener(this);
+	}
+
+	@Override
+	public void windowClosed(IWorkbenchWindow window) {
+		window.getPartService().removePartListener(this);
+	}
+
+	@Override
+	public void windowActivated(IWorkbenchWindow window) {
+		update(window.getActivePage(), null);
+	}
+
+	@Override
+	public void windowDeactivated(IWorkbenchWindow window) {
+		// the editor stays visible
+	}
+
+	@Override
+	public void partActivated(IWorkbenchPartReference partRef) {
+		if (partRef instanceof IEditorReference)
+			update(partRef.getPage(), null);
+	}
+
+	@Override
+	public void partBroughtToTop(IWorkbenchPartReference partRef) {
+		if (partRef instanceof IEditorReference)
+			update(partRef.getPage(), null);
+	}
+
+	@Override
+	public void partClosed(IWorkbenchPartReference partRef) {
+		if (partRef instanceof IEditorReference)
+			update(partRef.getPage(), partRef.getPart(false));
+	}
+
+	@Override
+	public void partDeactivated(IWorkbenchPartReference partRef) {
+		// the editor stays visible
+	}
+
+	@Override
+	public void partOpened(IWorkbenchPartReference partRef) {
+		// wait for the activation
+	}
+
+	@Override
+	public void partHidden(IWorkbenchPartReference partRef) {
+		// another editor is brought to top
+	}
+
+	@Override
+	public void partVisible(IWorkbenchPartReference partRef) {
+		// wait for the activation
+	}
+
+	@Override
+	public void partInputChanged(IWorkbenchPartReference partRef) {
+		if (partRef instanceof IEditorReference)
+			update(partRef.getPage(), null);
+	}
+
+	private void update(@Nullable IWorkbenchPage page,
+			@Nullable IWorkbenchPart closed) {
+		IEditorPart editor = page != null ? page.getActiveEditor() : null;
+		if (editor == null || editor == closed)
+			setRepository(null);
+		else
+			setRepository(getRepository(editor));
+	}
+
+	@Nullable
+	private static Repository getRepository(IEditorPart editor) {
+		IResource resource = AdapterUtils.adapt(editor.getEditorInput(),
+				IResource.class);
+		if (resource == null)
+			return null;
+		RepositoryMapping mapping = RepositoryMapping.getMapping(resource);
+		return mapping != null ? mapping.getRepository() : null;
+	}
+
+	private void setRepository(@Nullable Repository repository) {
+		if (repository == current)
+			return;
+		IndexDiffScheduler scheduler = IndexDiffScheduler.getInstance();
+		if (current != null)
+			scheduler.removeVisibleRepository(current);
+		current = repository;
+		if (repository != null)
+			scheduler.addVisibleRepository(repository);
+	}
+}
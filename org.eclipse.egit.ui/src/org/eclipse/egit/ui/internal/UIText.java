@@ -5001,6 +5001,9 @@ public class UIText extends NLS {
 	/** */
 	public static String CommitSearchQuery_TaskSearchCommits;
 
+	/** */
+	public static String CommitSearchQuery_TaskSearchRepositories;
+
 	/** */
 	public static String CommitSearchResult_LabelPlural;
 
@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Copyright (C) 2016 EGit contributors and others.
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *******************************************************************************/
+package org.eclipse.egit.ui.internal.blame;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.jgit.annotations.Nullable;
+import org.eclipse.jgit.blame.BlameResult;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+/**
+ * Least recently used cache of computed {@link BlameResult}s.
+ * <p>
+ * A result depends only on the repository, the path, the start commit and
+ * whether whitespace is ignored. If there is no result for a start commit,
+ * the commits the blame would pass the unchanged file to are looked up, as a
+ * blame started at any of them has the same result. This makes re-blaming
+ * after new commits that did not touch the file cheap.
+ */
+class BlameCache {
+
+	private static final int MAX_RESULTS = 20;
+
+	/**
+	 * How many commits without changes of the file to follow when looking
+	 * for a result of an earlier start commit
+	 */
+	private static final int MAX_SKIPPED_COMMITS = 1000;
+
+	private static final Map<Key, BlameResult> results = new LinkedHashMap<Key, BlameResult>(
+			16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, BlameResult> eldest) {
+			return size() > MAX_RESULTS;
+		}
+	};
+
+	private BlameCache() {
+		// static access only
+	}
+
+	/**
+	 * @param repository
+	 * @param path
+	 *            repository-relative path of the file
+	 * @param startCommit
+	 * @param ignoreWhitespace
+	 * @return the result of a blame with the given parameters, or null if it
+	 *         has to be computed
+	 * @throws IOException
+	 */
+	@Nullable
+	static BlameResult get(Repository repository, String path,
+			AnyObjectId startCommit, boolean ignoreWhitespace)
+			throws IOException {
+		Key key = new Key(repository, path, startCommit, ignoreWhitespace);
+		synchronized (results) {
+			BlameResult result = results.get(key);
+			if (result != null || !hasResultsForFile(key))
+				return result;
+		}
+		BlameResult result = findEarlierResult(repository, key);
+		if (result != null)
+			put(key, result);
+		return result;
+	}
+
+	/**
+	 * @param repository
+	 * @param path
+	 * @param startCommit
+	 * @param ignoreWhitespace
+	 * @param result
+	 *            the completely computed result of a blame with the given
+	 *            parameters
+	 */
+	static void put(Repository repository, String path,
+			AnyObjectId startCommit, boolean ignoreWhitespace,
+			BlameResult result) {
+		put(new Key(repository, path, startCommit, ignoreWhitespace), result);
+	}
+
+	private static void put(Key key, BlameResult result) {
+		synchronized (results) {
+			results.put(key, result);
+		}
+	}
+
+	private static boolean hasResultsForFile(Key key) {
+		for (Key other : results.keySet())
+			if (other.isSameFile(key))
+				return true;
+		return false;
+	}
+
+	/**
+	 * Follows the commits a blame passes the file to as long as its content
+	 * doesn't change: the first parent having the same blob, as in
+	 * {@link org.eclipse.jgit.blame.BlameGenerator}.
+	 */
+	@Nullable
+	private static BlameResult findEarlierResult(Repository repository,
+			Key key) throws IOException {
+		try (RevWalk walk = new RevWalk(repository)) {
+			walk.setRetainBody(false);
+			ObjectReader reader = walk.getObjectReader();
+			RevCommit commit = walk.parseCommit(key.commit);
+			ObjectId blob = getBlob(reader, commit, key.path);
+			if (blob == null)
+				return null;
+			for (int i = 0; i < MAX_SKIPPED_COMMITS; i++) {
+				RevCommit next = null;
+				for (RevCommit parent : commit.getParents()) {
+					walk.parseHeaders(parent);
+					if (blob.equals(getBlob(reader, parent, key.path))) {
+						next = parent;
+						break;
+					}
+				}
+				if (next == null)
+					return null;
+				Key earlier = new Key(key.directory, key.path, next,
+						key.ignoreWhitespace);
+				synchronized (results) {
+					BlameResult result = results.get(earlier);
+					if (result != null)
+						return result;
+				}
+				commit = next;
+			}
+		}
+		return null;
+	}
+
+	@Nullable
+	private static ObjectId getBlob(ObjectReader reader, RevCommit commit,
+			String path) throws IOException {
+		try (TreeWalk walk = TreeWalk.forPath(reader, path, commit.getTree())) {
+			return walk != null ? walk.getObjectId(0) : null;
+		}
+	}
+
+	private static class Key {
+
+		final File directory;
+
+		final String path;
+
+		final ObjectId commit;
+
+		final boolean ignoreWhitespace;
+
+		Key(Repository repository, String path, AnyObjectId commit,
+				boolean ignoreWhitespace) {
+			this(repository.getDirectory(), path, commit, ignoreWhitespace);
+		}
+
+		Key(File directory, String path, AnyObjectId commit,
+				boolean ignoreWhitespace) {
+			this.directory = directory;
+			this.path = path;
+			this.commit = commit.copy();
+			this.ignoreWhitespace = ignoreWhitespace;
+		}
+
+		boolean isSameFile(Key other) {
+			return directory.equals(other.directory)
+					&& path.equals(other.path)
+					&& ignoreWhitespace == other.ignoreWhitespace;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return isSameFile(other) && commit.equals(other.commit);
+		}
+
+		@Override
+		public int hashCode() {
+			return (directory.hashCode() * 31 + path.hashCode()) * 31
+					+ commit.hashCode() + (ignoreWhitespace ? 1 : 0);
+		}
+	}
+}
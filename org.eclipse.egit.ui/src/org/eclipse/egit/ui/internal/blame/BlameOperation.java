@@ -30,6 +30,8 @@
 import org.eclipse.egit.ui.internal.history.HistoryPageInput;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
+import org.eclipse.jface.text.ITextOperationTarget;
+import org.eclipse.jface.text.ITextViewer;
 import org.eclipse.jface.text.revisions.IRevisionRulerColumn;
 import org.eclipse.jface.text.revisions.IRevisionRulerColumnExtension;
 import org.eclipse.jface.text.revisions.RevisionInformation;
@@ -38,10 +40,11 @@
 import org.eclipse.jface.viewers.ISelectionChangedListener;
 import org.eclipse.jface.viewers.IStructuredSelection;
 import org.eclipse.jface.viewers.SelectionChangedEvent;
-import org.eclipse.jgit.api.BlameCommand;
+import org.eclipse.jgit.blame.BlameGenerator;
 import org.eclipse.jgit.blame.BlameResult;
 import org.eclipse.jgit.diff.RawTextComparator;
 import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.swt.widgets.Shell;
@@ -57,6 +60,15 @@
  */
 public class BlameOperation implements IEGitOperation {
 
+	/**
+	 * Time in milliseconds after which partial results of a long running
+	 * blame are shown
+	 */
+	private static final long FIRST_UPDATE_DELAY = 500;
+
+	/** Time in milliseconds between updates of partial results */
+	private static final long UPDATE_INTERVAL = 2000;
+
 	static class BlameHistoryPageInput extends HistoryPageInput
 			implements IAdaptable {
 
@@ -157,6 +169,17 @@ else if (nonResourceFile != null)
 
 	private int lineNumberToReveal;
 
+	// set in the UI thread once the editor is open
+	private volatile AbstractDecoratedTextEditor editor;
+
+	private volatile boolean editorClosed;
+
+	private volatile int visibleTop = -1;
+
+	private volatile int visibleBottom = -1;
+
+	private BlameInformationControlCreator controlCreator;
+
 	/**
 	 * Create annotate operation
 	 *
@@ -198,35 +221,95 @@ public BlameOperation(Repository repository, IStorage storage, String path,
 
 	@Override
 	public void execute(IProgressMonitor monitor) throws CoreException {
-		final RevisionInformation info = new RevisionInformation();
-
-		final BlameCommand command = new BlameCommand(repository)
-				.setFollowFileRenames(true).setFilePath(path);
+		ObjectId start;
 		if (startCommit != null)
-			command.setStartCommit(startCommit);
+			start = startCommit;
 		else {
 			try {
-				command.setStartCommit(repository.resolve(Constants.HEAD));
+				start = repository.resolve(Constants.HEAD);
 			} catch (IOException e) {
 				Activator
 						.error("Error resolving HEAD for showing annotations in repository: " + repository, e); //$NON-NLS-1$
 				return;
 			}
+			if (start == null)
+				return;
 		}
-		if (Activator.getDefault().getPreferenceStore()
-				.getBoolean(UIPreferences.BLAME_IGNORE_WHITESPACE))
-			command.setTextComparator(RawTextComparator.WS_IGNORE_ALL);
+		boolean ignoreWhitespace = Activator.getDefault().getPreferenceStore()
+				.getBoolean(UIPreferences.BLAME_IGNORE_WHITESPACE);
 
 		BlameResult result;
 		try {
-			result = command.call();
+			result = BlameCache.get(repository, path, start, ignoreWhitespace);
+			if (result == null) {
+				try (BlameGenerator generator = new BlameGenerator(repository,
+						path)) {
+					generator.setFollowFileRenames(true);
+					if (ignoreWhitespace)
+						generator.setTextComparator(
+								RawTextComparator.WS_IGNORE_ALL);
+					generator.push(null, start);
+					result = BlameResult.create(generator);
+					if (result == null)
+						return;
+					if (!compute(result, monitor))
+						return;
+				}
+				BlameCache.put(repository, path, start, ignoreWhitespace,
+						result);
+			}
 		} catch (Exception e1) {
 			Activator.error(e1.getMessage(), e1);
 			return;
 		}
-		if (result == null)
-			return;
+		showRevisionInformation(createRevisionInformation(result));
+	}
+
+	/**
+	 * Computes the blame region by region. Partial results are shown after
+	 * {@link #FIRST_UPDATE_DELAY}, then every {@link #UPDATE_INTERVAL} and as
+	 * soon as all lines visible in the editor are resolved.
+	 *
+	 * @return whether the result is complete; false if the operation was
+	 *         canceled or the editor closed
+	 */
+	private boolean compute(BlameResult result, IProgressMonitor monitor)
+			throws IOException {
+		int lineCount = result.getResultContents().size();
+		monitor.beginTask("", lineCount); //$NON-NLS-1$
+		long nextUpdate = System.currentTimeMillis() + FIRST_UPDATE_DELAY;
+		boolean visibleLinesResolved = false;
+		while (result.computeNext() >= 0) {
+			monitor.worked(result.lastLength());
+			if (editorClosed)
+				return false;
+			if (monitor.isCanceled()) {
+				// keep what has been found so far
+				if (editor != null)
+					showRevisionInformation(createRevisionInformation(result));
+				return false;
+			}
+			boolean update = System.currentTimeMillis() >= nextUpdate;
+			int top = visibleTop;
+			int bottom = Math.min(visibleBottom + 1, lineCount);
+			if (!visibleLinesResolved && top >= 0 && top < bottom
+					&& result.hasSourceData(top, bottom)) {
+				visibleLinesResolved = true;
+				update = true;
+			}
+			if (update) {
+				showRevisionInformation(createRevisionInformation(result));
+				nextUpdate = System.currentTimeMillis() + UPDATE_INTERVAL;
+			}
+		}
+		return true;
+	}
 
+	/**
+	 * @return revisions of all lines for which the result has source data
+	 */
+	private RevisionInformation createRevisionInformation(BlameResult result) {
+		RevisionInformation info = new RevisionInformation();
 		Map<RevCommit, BlameRevision> revisions = new HashMap<RevCommit, BlameRevision>();
 		int lineCount = result.getResultContents().size();
 		BlameRevision previous = null;
@@ -263,7 +346,10 @@ public void execute(IProgressMonitor monitor) throws CoreException {
 		}
 		if (previous != null)
 			previous.register();
+		return info;
+	}
 
+	private void showRevisionInformation(final RevisionInformation info) {
 		if (shell.isDisposed()) {
 			return;
 		}
@@ -271,27 +357,36 @@ public void execute(IProgressMonitor monitor) throws CoreException {
 		shell.getDisplay().asyncExec(new Runnable() {
 			@Override
 			public void run() {
-				openEditor(info);
+				if (editorClosed)
+					return;
+				if (editor == null)
+					openEditor(info);
+				else
+					updateEditor(info);
 			}
 		});
 	}
 
 	private void openEditor(final RevisionInformation info) {
-		AbstractDecoratedTextEditor editor;
+		AbstractDecoratedTextEditor openedEditor;
 		try {
 			if (storage instanceof IFile)
-				editor = RevisionAnnotationController.openEditor(page,
+				openedEditor = RevisionAnnotationController.openEditor(page,
 						(IFile) storage);
 			else
-				editor = RevisionAnnotationController.openEditor(page, storage,
-						storage);
+				openedEditor = RevisionAnnotationController.openEditor(page,
+						storage, storage);
 		} catch (PartInitException e) {
+			editorClosed = true;
 			Activator.handleError("Error displaying blame annotations", e, //$NON-NLS-1$
 					false);
 			return;
 		}
-		if (editor == null)
+		if (openedEditor == null) {
+			editorClosed = true;
 			return;
+		}
+		editor = openedEditor;
 
 		// Show history view for path
 		try {
@@ -309,13 +404,8 @@ private void openEditor(final RevisionInformation info) {
 		IVerticalRulerInfo rulerInfo = AdapterUtils.adapt(editor,
 				IVerticalRulerInfo.class);
 
-		BlameInformationControlCreator creator = new BlameInformationControlCreator(
-				rulerInfo);
-		info.setHoverControlCreator(creator);
-		info.setInformationPresenterControlCreator(creator);
-
-		editor.showRevisionInformation(info,
-				"org.eclipse.egit.ui.internal.decorators.GitQuickDiffProvider"); //$NON-NLS-1$
+		controlCreator = new BlameInformationControlCreator(rulerInfo);
+		updateEditor(info);
 
 		if (lineNumberToReveal >= 0) {
 			IDocument document = editor.getDocumentProvider().getDocument(
@@ -328,6 +418,7 @@ private void openEditor(final RevisionInformation info) {
 				Activator.logError(
 						"Error revealing line " + lineNumberToReveal, e); //$NON-NLS-1$
 			}
+			rememberVisibleLines();
 		}
 
 		IRevisionRulerColumn revisionRuler = AdapterUtils.adapt(editor,
@@ -340,6 +431,29 @@ private void openEditor(final RevisionInformation info) {
 									storage));
 	}
 
+	private void updateEditor(RevisionInformation info) {
+		// the source viewer is gone once the editor is closed
+		if (editor.getAdapter(ITextOperationTarget.class) == null) {
+			editorClosed = true;
+			return;
+		}
+		info.setHoverControlCreator(controlCreator);
+		info.setInformationPresenterControlCreator(controlCreator);
+
+		editor.showRevisionInformation(info,
+				"org.eclipse.egit.ui.internal.decorators.GitQuickDiffProvider"); //$NON-NLS-1$
+		rememberVisibleLines();
+	}
+
+	private void rememberVisibleLines() {
+		Object target = editor.getAdapter(ITextOperationTarget.class);
+		if (target instanceof ITextViewer) {
+			ITextViewer viewer = (ITextViewer) target;
+			visibleBottom = viewer.getBottomIndex();
+			visibleTop = viewer.getTopIndex();
+		}
+	}
+
 	private HistoryPageInput createHistoryPageInputWhenEditorOpened() {
 		if (storage instanceof IFile) {
 			IResource resource = (IResource) storage;
@@ -20,6 +20,7 @@
 import org.eclipse.core.resources.mapping.ResourceMapping;
 import org.eclipse.core.runtime.IPath;
 import org.eclipse.egit.core.internal.indexdiff.IndexDiffData;
+import org.eclipse.egit.core.internal.indexdiff.IndexDiffData.Kind;
 import org.eclipse.egit.core.project.RepositoryMapping;
 import org.eclipse.egit.ui.internal.resources.ResourceStateFactory;
 import org.eclipse.jgit.annotations.Nullable;
@@ -88,14 +89,11 @@ public DecoratableResourceMapping(ResourceMapping mapping) throws IOException {
 			}
 			repoRelative += "/"; //$NON-NLS-1$
 
-			Set<String> modified = diffData.getModified();
-			Set<String> conflicting = diffData.getConflicting();
-
 			// attention - never reset these to false (so don't use the return value of the methods!)
-			if(containsPrefix(modified, repoRelative))
+			if (diffData.hasEntryUnder(repoRelative, Kind.MODIFIED))
 				setDirty(true);
 
-			if(containsPrefix(conflicting, repoRelative))
+			if (diffData.hasEntryUnder(repoRelative, Kind.CONFLICTING))
 				setConflicts(true);
 
 			// collect repository
@@ -162,16 +160,4 @@ private String makeRepoRelative(Repository repository, IResource res) {
 		}
 		return stripWorkDir(repository.getWorkTree(), location.toFile());
 	}
-
-	private boolean containsPrefix(Set<String> collection, String prefix) {
-		// when prefix is empty we are handling repository root, therefore we
-		// should return true whenever collection isn't empty
-		if (prefix.length() == 1 && !collection.isEmpty())
-			return true;
-
-		for (String path : collection)
-			if (path.startsWith(prefix))
-				return true;
-		return false;
-	}
 }
@@ -22,6 +22,7 @@
 import org.eclipse.egit.core.internal.CompareCoreUtils;
 import org.eclipse.egit.core.internal.util.ResourceUtil;
 import org.eclipse.egit.core.project.RepositoryMapping;
+import org.eclipse.egit.core.storage.GitBlobCache;
 import org.eclipse.egit.ui.Activator;
 import org.eclipse.egit.ui.internal.UIText;
 import org.eclipse.egit.ui.internal.trace.GitTraceLocation;
@@ -218,13 +219,11 @@ void populate() throws IOException {
 					GitTraceLocation.getTrace().trace(
 							GitTraceLocation.QUICKDIFF.getLocation(),
 							"(GitDocument) compareTo: " + baseline); //$NON-NLS-1$
-				ObjectLoader loader = repository.open(id, Constants.OBJ_BLOB);
-				byte[] bytes = loader.getBytes();
 				String charset;
 				charset = CompareCoreUtils.getResourceEncoding(resource);
 				// Finally we could consider validating the content with respect
 				// to the content. We don't do that here.
-				String s = new String(bytes, charset);
+				String s = getText(repository, id, charset);
 				setResolved(commitId, treeId, id, s);
 				if (GitTraceLocation.QUICKDIFF.isActive())
 					GitTraceLocation
@@ -246,6 +245,21 @@ void populate() throws IOException {
 
 	}
 
+	/**
+	 * Editors with the same baseline share its decoded text through the blob
+	 * cache of the core plug-in.
+	 */
+	private static String getText(Repository repository, ObjectId blobId,
+			String charset) throws IOException {
+		org.eclipse.egit.core.Activator core = org.eclipse.egit.core.Activator
+				.getDefault();
+		GitBlobCache cache = core != null ? core.getBlobCache() : null;
+		if (cache != null)
+			return cache.getText(repository, blobId, charset);
+		ObjectLoader loader = repository.open(blobId, Constants.OBJ_BLOB);
+		return new String(loader.getBytes(), charset);
+	}
+
 	void dispose() {
 		if (GitTraceLocation.QUICKDIFF.isActive())
 			GitTraceLocation.getTrace().trace(
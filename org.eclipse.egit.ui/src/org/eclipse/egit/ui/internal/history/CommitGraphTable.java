@@ -62,6 +62,7 @@
 import org.eclipse.jface.viewers.StructuredSelection;
 import org.eclipse.jface.viewers.TableLayout;
 import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.jgit.lib.AnyObjectId;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
@@ -143,8 +144,8 @@ static Font highlightFont() {
 
 	private int allCommitsLength = 0;
 
-	// used for resolving PlotCommit objects by ids
-	private HashMap<String, PlotCommit> commitsMap = null;
+	// used for resolving commits by ids; maps to the index in allCommits
+	private HashMap<AnyObjectId, Integer> commitIndices = null;
 
 	private RevFlag highlight;
 
@@ -343,15 +344,16 @@ void selectCommitStored(final RevCommit c) {
 	}
 
 	void selectCommit(final RevCommit c) {
-		if (c instanceof PlotCommit)
+		Integer index = commitIndices != null ? commitIndices.get(c) : null;
+		if (index != null) {
+			SWTCommit swtCommit = allCommits.getCommit(index.intValue());
+			// the lazy viewer can only select elements which have a row
+			table.replace(swtCommit, index.intValue());
+			table.setSelection(new StructuredSelection(swtCommit), true);
+		} else if (c instanceof PlotCommit)
 			table.setSelection(new StructuredSelection(c), true);
-		else if (commitsMap != null) {
-			PlotCommit swtCommit = commitsMap.get(c.getId().name());
-			if (swtCommit == null && tableLoader != null)
-				tableLoader.loadCommit(c);
-			if (swtCommit != null)
-				table.setSelection(new StructuredSelection(swtCommit), true);
-		}
+		else if (commitIndices != null && tableLoader != null)
+			tableLoader.loadCommit(c);
 	}
 
 	void addSelectionChangedListener(final ISelectionChangedListener l) {
@@ -386,8 +388,19 @@ private void doCopy() {
 				new Transfer[] { TextTransfer.getInstance() }, DND.CLIPBOARD);
 	}
 
+	/**
+	 * Shows the first commits of a list. The list may still be filled by
+	 * another thread; only its first {@code size} commits are shown.
+	 *
+	 * @param hFlag
+	 * @param list
+	 * @param size
+	 *            number of commits of the list to show
+	 * @param input
+	 * @param keepPosition
+	 */
 	void setInput(final RevFlag hFlag, final SWTCommitList list,
-			final SWTCommit[] asArray, HistoryPageInput input, boolean keepPosition) {
+			final int size, HistoryPageInput input, boolean keepPosition) {
 		int topIndex = -1;
 		if (keepPosition)
 			topIndex = table.getTable().getTopIndex();
@@ -397,14 +410,17 @@ void setInput(final RevFlag hFlag, final SWTCommitList list,
 			oldList.dispose();
 		highlight = hFlag;
 		allCommits = list;
-		int newAllCommitsLength = allCommits.size();
-		table.setInput(asArray);
-		if (asArray != null && asArray.length > 0) {
-			if (oldList != list || allCommitsLength < newAllCommitsLength)
-				initCommitsMap();
-		} else
+		// rows already shown are refreshed as well since adding commits may
+		// add passing lanes to them
+		table.setInput(list);
+		table.setItemCount(size);
+		if (oldList != list)
+			commitIndices = null;
+		if (size > 0)
+			updateCommitIndices(size);
+		else
 			table.getTable().deselectAll();
-		allCommitsLength = newAllCommitsLength;
+		allCommitsLength = size;
 		if (commitToShow != null)
 			selectCommit(commitToShow);
 		if (keepPosition)
@@ -417,14 +433,17 @@ void setHistoryPageInput(HistoryPageInput input) {
 			menuListener.setInput(input);
 	}
 
-	private void initCommitsMap() {
-		commitsMap = new HashMap<String, PlotCommit>();
+	private void updateCommitIndices(int size) {
+		int start = allCommitsLength;
+		if (commitIndices == null) {
+			commitIndices = new HashMap<AnyObjectId, Integer>();
+			start = 0;
+		}
 		// ensure that filling (GenerateHistoryJob) and reading (here)
 		// the commit list is thread safe
 		synchronized (allCommits) {
-			for (PlotCommit commit : allCommits)
-				if (commit != null)
-					commitsMap.put(commit.getId().name(), commit);
+			for (int i = start; i < size; i++)
+				commitIndices.put(allCommits.get(i), Integer.valueOf(i));
 		}
 	}
 
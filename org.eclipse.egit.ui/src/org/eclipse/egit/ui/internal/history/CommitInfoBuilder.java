@@ -24,6 +24,7 @@
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.OperationCanceledException;
+import org.eclipse.egit.core.internal.commitgraph.ReachabilityIndex;
 import org.eclipse.egit.ui.Activator;
 import org.eclipse.egit.ui.UIPreferences;
 import org.eclipse.egit.ui.internal.CommonUtils;
@@ -263,6 +264,13 @@ private static List<Ref> getBranches(RevCommit commit,
 			IOException {
 		try (RevWalk revWalk = new RevWalk(db)) {
 			revWalk.setRetainBody(false);
+			ReachabilityIndex index = ReachabilityIndex.get(db);
+			if (index != null) {
+				List<Ref> branches = index.findRefsContaining(revWalk,
+						revWalk.parseCommit(commit), allRefs);
+				if (branches != null)
+					return branches;
+			}
 			return RevWalkUtils.findBranchesReachableFrom(commit, revWalk, allRefs);
 		}
 	}
@@ -315,6 +323,9 @@ private Ref getNextTag(boolean searchDescendant, IProgressMonitor monitor)
 			throws IOException, OperationCanceledException {
 		if (monitor.isCanceled())
 			throw new OperationCanceledException();
+		ReachabilityIndex index = ReachabilityIndex.get(db);
+		if (index != null && index.canFindTags(commit))
+			return index.findNearestTag(commit, searchDescendant);
 		try (RevWalk revWalk = new RevWalk(db)) {
 			revWalk.setRetainBody(false);
 			Map<String, Ref> tagsMap = db.getTags();
@@ -237,8 +237,8 @@ private void updateUi() {
 				.valueOf(allCommits.size()), repository.getDirectory()
 				.toString()));
 		setMessage(UIText.CommitSelectionDialog_DialogMessage);
-		table.setInput(highlightFlag, allCommits, allCommits
-				.toArray(new SWTCommit[allCommits.size()]), null, true);
+		table.setInput(highlightFlag, allCommits, allCommits.size(), null,
+				true);
 	}
 
 	private void markStartAllRefs(RevWalk currentWalk, String prefix)
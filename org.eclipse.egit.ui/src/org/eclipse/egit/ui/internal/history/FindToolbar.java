@@ -21,6 +21,7 @@
 import org.eclipse.egit.ui.internal.UIIcons;
 import org.eclipse.egit.ui.internal.UIText;
 import org.eclipse.jface.preference.IPersistentPreferenceStore;
+import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevFlag;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.DisposeEvent;
@@ -89,7 +90,13 @@ public class FindToolbar extends Composite {
 
 	private Table historyTable;
 
-	private SWTCommit[] fileRevisions;
+	private SWTCommitList fileRevisions;
+
+	private int fileRevisionCount;
+
+	private Repository repository;
+
+	private FindToolbarThread finder;
 
 	private Text patternField;
 
@@ -259,11 +266,12 @@ else if (referenceItem.getSelection())
 		patternField.addModifyListener(new ModifyListener() {
 			@Override
 			public void modifyText(ModifyEvent e) {
-				final FindToolbarThread finder = createFinder();
+				final FindToolbarThread.Request request = createRequest();
 				getDisplay().timerExec(200, new Runnable() {
 					@Override
 					public void run() {
-						finder.start();
+						if (!isDisposed())
+							getFinder().find(request);
 					}
 				});
 			}
@@ -276,8 +284,7 @@ public void handleEvent(Event event) {
 						&& findResults.size() == 0) {
 					// If the toolbar was cleared and has a pattern typed,
 					// then we redo the find with the new table data.
-					final FindToolbarThread finder = createFinder();
-					finder.start();
+					getFinder().find(createRequest());
 					patternField.setSelection(0, 0);
 				} else {
 					int currentIx = historyTable.getSelectionIndex();
@@ -369,6 +376,8 @@ private void registerDisposal() {
 
 			@Override
 			public void widgetDisposed(DisposeEvent e) {
+				if (finder != null)
+					finder.dispose();
 				prefsMenu.dispose();
 				errorBackgroundColor.dispose();
 				nextIcon.dispose();
@@ -441,26 +450,35 @@ private void findInPreferenceChanged(int findin, MenuItem item) {
 		clear();
 	}
 
-	private FindToolbarThread createFinder() {
-		final FindToolbarThread finder = new FindToolbarThread();
-		finder.pattern = patternField.getText();
-		finder.fileRevisions = fileRevisions;
-		finder.toolbar = this;
-		finder.ignoreCase = caseItem.getSelection();
+	private FindToolbarThread getFinder() {
+		if (finder == null) {
+			finder = new FindToolbarThread(this);
+			finder.start();
+		}
+		return finder;
+	}
+
+	private FindToolbarThread.Request createRequest() {
+		FindToolbarThread.Request request = new FindToolbarThread.Request();
+		request.pattern = patternField.getText();
+		request.fileRevisions = fileRevisions;
+		request.fileRevisionCount = fileRevisionCount;
+		request.repository = repository;
+		request.ignoreCase = caseItem.getSelection();
 		if (allItem.getSelection()) {
-			finder.findInCommitId = true;
-			finder.findInComments = true;
-			finder.findInAuthor = true;
-			finder.findInCommitter = true;
-			finder.findInReference = true;
+			request.findInCommitId = true;
+			request.findInComments = true;
+			request.findInAuthor = true;
+			request.findInCommitter = true;
+			request.findInReference = true;
 		} else {
-			finder.findInCommitId = commitIdItem.getSelection();
-			finder.findInComments = commentsItem.getSelection();
-			finder.findInAuthor = authorItem.getSelection();
-			finder.findInCommitter = committerItem.getSelection();
-			finder.findInReference = referenceItem.getSelection();
+			request.findInCommitId = commitIdItem.getSelection();
+			request.findInComments = commentsItem.getSelection();
+			request.findInAuthor = authorItem.getSelection();
+			request.findInCommitter = committerItem.getSelection();
+			request.findInReference = referenceItem.getSelection();
 		}
-		return finder;
+		return request;
 	}
 
 	/**
@@ -469,14 +487,20 @@ private FindToolbarThread createFinder() {
 	 *
 	 * @param hFlag
 	 * @param historyTable
-	 * @param commitArray
+	 * @param commitList
+	 * @param size
+	 *            number of commits of the list to search
+	 * @param repository
+	 *            repository of the commits
 	 */
 	void setInput(final RevFlag hFlag, final Table historyTable,
-			final SWTCommit[] commitArray) {
-		// this may cause a FindBugs warning, but
-		// copying the array is probably not a good
-		// idea
-		this.fileRevisions = commitArray;
+			final SWTCommitList commitList, final int size,
+			final Repository repository) {
+		this.fileRevisions = commitList;
+		this.fileRevisionCount = size;
+		this.repository = repository;
+		if (finder != null)
+			finder.cancel();
 		this.historyTable = historyTable;
 		findResults.setHighlightFlag(hFlag);
 	}
@@ -571,7 +595,8 @@ void clear() {
 			historyTable.clearAll();
 		}
 
-		FindToolbarThread.updateGlobalThreadIx();
+		if (finder != null)
+			finder.cancel();
 	}
 
 	private void sendEvent(Widget widget, int index) {
@@ -579,7 +604,7 @@ private void sendEvent(Widget widget, int index) {
 		event.type = SWT.Selection;
 		event.index = index;
 		event.widget = widget;
-		event.data = fileRevisions[index];
+		event.data = fileRevisions.getCommit(index);
 		for (Listener listener : eventList) {
 			listener.handleEvent(event);
 		}
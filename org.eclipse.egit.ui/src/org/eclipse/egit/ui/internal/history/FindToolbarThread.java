@@ -9,21 +9,38 @@
 package org.eclipse.egit.ui.internal.history;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.eclipse.egit.core.internal.commitindex.CommitIndex;
+import org.eclipse.egit.core.internal.commitindex.CommitIndexCache;
 import org.eclipse.egit.ui.Activator;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.util.IntList;
+import org.eclipse.jgit.util.RawParseUtils;
 
 /**
- * This class executes the search function for the find toolbar. Only one thread
- * is executed at a time.
+ * This class executes the search function for the find toolbar. One thread
+ * serves all searches of a toolbar.
  * <p>
- * This class maintains a <code>globalThreadIx</code> internal variable that
- * is incremented for each new thread started and the current running thread
- * constantly checks this variable. If the current thread has the same value as
- * <code>globalThreadIx</code> it continues executing, if it has a lower value
- * it means that a more recent search needs to be done and the current isn't
- * necessary any more, so the current thread returns.
+ * Searches are handed to the thread with {@link #find(Request)}. Only the
+ * latest request is executed; a request arriving while a search is running
+ * makes the running search return. If the pattern of a request extends the
+ * pattern of the previous, completed search over the same commits, only the
+ * previous matches are checked again.
+ * </p>
+ * <p>
+ * Patterns consisting of ASCII characters are matched against the raw bytes
+ * of the commits, ignoring case without creating lower case copies of the
+ * texts. Other patterns, and commits in encodings where bytes of multi-byte
+ * characters may look like ASCII characters, are matched against the
+ * decoded texts.
  * </p>
  * <p>
  * To avoid consuming all the memory in the system, this class limits the
@@ -35,80 +52,180 @@
  */
 public class FindToolbarThread extends Thread {
 
-	private static final Object EXEC_LOCK = new Object();
+	static final int MAX_RESULTS = 20000;
+
+	/** Whether commits in an encoding may be matched raw, by encoding name */
+	private static final Map<String, Boolean> asciiCompatibleEncodings = new ConcurrentHashMap<String, Boolean>();
+
+	/**
+	 * The parameters of a search.
+	 */
+	static class Request {
+
+		String pattern;
 
-	private static final int MAX_RESULTS = 20000;
+		SWTCommitList fileRevisions;
 
-	String pattern;
+		int fileRevisionCount;
 
-	SWTCommit[] fileRevisions;
+		Repository repository;
 
-	FindToolbar toolbar;
+		// looked up by the search thread
+		CommitIndex index;
 
-	boolean ignoreCase;
+		boolean ignoreCase;
 
-	boolean findInCommitId;
+		boolean findInCommitId;
 
-	boolean findInComments;
+		boolean findInComments;
 
-	boolean findInAuthor;
+		boolean findInAuthor;
 
-	boolean findInCommitter;
+		boolean findInCommitter;
 
-	boolean findInReference;
+		boolean findInReference;
 
-	private volatile static int globalThreadIx = 0;
+		boolean hasSameInput(Request other) {
+			return fileRevisions == other.fileRevisions
+					&& fileRevisionCount == other.fileRevisionCount
+					&& ignoreCase == other.ignoreCase
+					&& findInCommitId == other.findInCommitId
+					&& findInComments == other.findInComments
+					&& findInAuthor == other.findInAuthor
+					&& findInCommitter == other.findInCommitter
+					&& findInReference == other.findInReference;
+		}
 
-	private int currentThreadIx;
+		boolean refines(Request previous) {
+			int length = previous.pattern.length();
+			return length > 0 && hasSameInput(previous)
+					&& pattern.length() >= length && pattern.regionMatches(
+							ignoreCase, 0, previous.pattern, 0, length);
+		}
+	}
+
+	private final FindToolbar toolbar;
+
+	private final Object lock = new Object();
+
+	private Request pending;
+
+	private boolean forgetMatches;
+
+	private boolean disposed;
+
+	private volatile int generation;
+
+	// the last completed search and its matches, only used by this thread
+	private Request last;
+
+	private IntList lastMatches;
 
 	/**
-	 * Creates a new object and increments the internal
-	 * <code>globalThreadIx</code> variable causing any earlier running thread
-	 * to return.
+	 * @param toolbar
+	 *            the toolbar to report to
 	 */
-	public FindToolbarThread() {
-		super("history_find_thread" + ++globalThreadIx); //$NON-NLS-1$
-		currentThreadIx = globalThreadIx;
+	FindToolbarThread(FindToolbar toolbar) {
+		super("history_find_thread"); //$NON-NLS-1$
+		setDaemon(true);
+		this.toolbar = toolbar;
+	}
+
+	/**
+	 * Searches in the background, replacing any running or pending search.
+	 *
+	 * @param request
+	 */
+	void find(Request request) {
+		synchronized (lock) {
+			pending = request;
+			generation++;
+			lock.notifyAll();
+		}
+	}
+
+	/**
+	 * Stops the running search. The next search starts from scratch.
+	 */
+	void cancel() {
+		synchronized (lock) {
+			pending = null;
+			forgetMatches = true;
+			generation++;
+		}
+	}
+
+	/**
+	 * Stops the running search and ends the thread.
+	 */
+	void dispose() {
+		synchronized (lock) {
+			pending = null;
+			disposed = true;
+			generation++;
+			lock.notifyAll();
+		}
 	}
 
 	@Override
 	public void run() {
-		synchronized (EXEC_LOCK) {
-			execFind();
+		for (;;) {
+			Request request;
+			int current;
+			synchronized (lock) {
+				while (pending == null && !disposed) {
+					try {
+						lock.wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				if (disposed)
+					return;
+				request = pending;
+				pending = null;
+				current = generation;
+				if (forgetMatches) {
+					last = null;
+					lastMatches = null;
+					forgetMatches = false;
+				}
+			}
+			execFind(request, current);
 		}
 	}
 
-	private void execFind() {
-		// If it isn't the last event, just ignore it.
-		if (currentThreadIx < globalThreadIx) {
-			return;
-		}
+	private void execFind(Request request, int current) {
+		IntList previous = takePreviousMatches(request);
 
 		FindResults findResults = toolbar.findResults;
 		findResults.clear();
 
+		IntList matches = new IntList();
 		boolean maxResultsOverflow = false;
-		if (pattern.length() > 0 && fileRevisions != null) {
-			String findPattern = pattern;
-			if (ignoreCase) {
-				findPattern = pattern.toLowerCase();
-			}
+		if (request.pattern.length() > 0 && request.fileRevisions != null) {
+			Matcher matcher = new Matcher(request.pattern, request.ignoreCase);
+			// previous matches are few, the index doesn't narrow them down
+			BitSet candidates = null;
+			if (previous == null && request.repository != null)
+				request.index = CommitIndexCache.get(request.repository);
+			if (request.index != null)
+				candidates = request.index.findCandidates(request.pattern);
 
 			long lastUIUpdate = System.currentTimeMillis();
 
-			int totalRevisions = fileRevisions.length;
-			int totalMatches = 0;
-			boolean notFound = true;
-			for (int i = 0; i < totalRevisions; i++) {
-				// If a new find event was generated, ends the current thread.
+			int totalRevisions = previous != null ? previous.size()
+					: request.fileRevisionCount;
+			for (int n = 0; n < totalRevisions; n++) {
+				// If a new find event was generated, ends the current search.
 				if (toolbar.getDisplay().isDisposed()
-						|| currentThreadIx < globalThreadIx) {
+						|| current != generation) {
 					return;
 				}
 
 				// Updates the toolbar with in process info.
 				if (System.currentTimeMillis() - lastUIUpdate > 500) {
-					final int percentage = (int) (((i + 1F) / totalRevisions) * 100);
+					final int percentage = (int) (((n + 1F) / totalRevisions) * 100);
 					toolbar.getDisplay().asyncExec(new Runnable() {
 						@Override
 						public void run() {
@@ -122,125 +239,22 @@ public void run() {
 				}
 
 				// Finds for the pattern in the revision history.
-				notFound = true;
-				SWTCommit revision = fileRevisions[i];
-				try {
-					revision.parseBody();
-				} catch (IOException e) {
-					Activator.error("Error parsing body", e); //$NON-NLS-1$
-					continue;
-				}
-
-				if (findInCommitId) {
-					String contentId = revision.getId().name();
-					if (contentId != null) {
-						if (ignoreCase) {
-							contentId = contentId.toLowerCase();
-						}
-						if (contentId.indexOf(findPattern) != -1) {
-							totalMatches++;
-							findResults.add(i, revision);
-							notFound = false;
-						}
-					}
-				}
-
-				if (findInComments && notFound) {
-					String comment = revision.getFullMessage();
-					if (comment != null) {
-						if (ignoreCase) {
-							comment = comment.toLowerCase();
-						}
-						if (comment.indexOf(findPattern) != -1) {
-							totalMatches++;
-							findResults.add(i, revision);
-							notFound = false;
-						}
-					}
-				}
-
-				if (findInAuthor && notFound) {
-					String author = revision.getAuthorIdent().getName();
-					if (author != null) {
-						if (ignoreCase) {
-							author = author.toLowerCase();
-						}
-						if (author.indexOf(findPattern) != -1) {
-							totalMatches++;
-							findResults.add(i, revision);
-							notFound = false;
-						}
-					}
-					if (notFound) {
-						String email = revision.getAuthorIdent()
-								.getEmailAddress();
-						if (email != null) {
-							if (ignoreCase) {
-								email = email.toLowerCase();
-							}
-							if (email.indexOf(findPattern) != -1) {
-								totalMatches++;
-								findResults.add(i, revision);
-								notFound = false;
-							}
-						}
-					}
-				}
-
-				if (findInCommitter && notFound) {
-					String committer = revision.getCommitterIdent().getName();
-					if (committer != null) {
-						if (ignoreCase) {
-							committer = committer.toLowerCase();
-						}
-						if (committer.indexOf(findPattern) != -1) {
-							totalMatches++;
-							findResults.add(i, revision);
-							notFound = false;
-						}
-					}
-					if (notFound) {
-						String email = revision.getCommitterIdent()
-								.getEmailAddress();
-						if (email != null) {
-							if (ignoreCase) {
-								email = email.toLowerCase();
-							}
-							if (email.indexOf(findPattern) != -1) {
-								totalMatches++;
-								findResults.add(i, revision);
-								notFound = false;
-							}
-						}
-					}
-				}
-
-				if (findInReference && notFound) {
-					if (revision.getRefCount() > 0) {
-						for (int j = 0; j < revision.getRefCount(); j++) {
-							Ref ref = revision.getRef(j);
-							String refName = ref.getName();
-							refName = Repository.shortenRefName(refName);
-							if (ignoreCase)
-								refName = refName.toLowerCase();
-							if (refName.indexOf(findPattern) != -1) {
-								totalMatches++;
-								findResults.add(i, revision);
-								notFound = false;
-							}
-						}
+				int i = previous != null ? previous.get(n) : n;
+				SWTCommit revision = request.fileRevisions.getCommit(i);
+				if (matches(request, matcher, revision, candidates)) {
+					matches.add(i);
+					findResults.add(i, revision);
+					if (matches.size() == MAX_RESULTS) {
+						maxResultsOverflow = true;
+						break;
 					}
 				}
-
-				if (totalMatches == MAX_RESULTS) {
-					maxResultsOverflow = true;
-					break;
-				}
 			}
-
 		}
+		completed(request, matches, maxResultsOverflow);
 
 		// Updates the toolbar with the result find info.
+		final String pattern = request.pattern;
 		final boolean overflow = maxResultsOverflow;
 		toolbar.getDisplay().syncExec(new Runnable() {
 			@Override
@@ -253,7 +267,265 @@ public void run() {
 		});
 	}
 
-	static void updateGlobalThreadIx() {
-		++globalThreadIx;
+	/**
+	 * @param request
+	 * @return the matches of the last completed search if the request refines
+	 *         it, so that only they need to be checked, or null if all commits
+	 *         need to be checked
+	 */
+	IntList takePreviousMatches(Request request) {
+		IntList previous = null;
+		if (last != null && lastMatches != null && request.refines(last))
+			previous = lastMatches;
+		last = null;
+		lastMatches = null;
+		return previous;
+	}
+
+	/**
+	 * Remembers a completed search so that a later request can refine it.
+	 *
+	 * @param request
+	 * @param matches
+	 *            the indexes of the matching commits
+	 * @param overflow
+	 *            whether the search stopped after {@link #MAX_RESULTS}
+	 *            matches; incomplete matches can't be refined
+	 */
+	void completed(Request request, IntList matches, boolean overflow) {
+		if (!overflow) {
+			last = request;
+			lastMatches = matches;
+		}
+	}
+
+	static boolean matches(Request request, Matcher matcher,
+			SWTCommit revision, BitSet candidates) {
+		boolean mayMatch = true;
+		if (candidates != null) {
+			int ordinal = request.index.find(revision);
+			mayMatch = ordinal < 0 || candidates.get(ordinal);
+		}
+
+		if (mayMatch) {
+			if (request.findInCommitId && matcher.matches(revision))
+				return true;
+			if (request.findInComments || request.findInAuthor
+					|| request.findInCommitter) {
+				try {
+					revision.parseBody();
+				} catch (IOException e) {
+					Activator.error("Error parsing body", e); //$NON-NLS-1$
+					return false;
+				}
+				byte[] raw = revision.getRawBuffer();
+				if (matcher.isRaw() && isAsciiCompatible(raw)) {
+					if (matchesRaw(request, matcher, raw))
+						return true;
+				} else if (matchesDecoded(request, matcher, revision))
+					return true;
+			}
+		}
+
+		if (request.findInReference) {
+			for (int j = 0; j < revision.getRefCount(); j++) {
+				Ref ref = revision.getRef(j);
+				if (matcher.matches(Repository.shortenRefName(ref.getName())))
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param raw
+	 *            the raw commit
+	 * @return whether the ASCII characters of the commit are the only ASCII
+	 *         bytes in it, i.e. whether it is encoded in UTF-8 or in a single
+	 *         byte encoding which extends ASCII. In encodings like Shift_JIS,
+	 *         GBK or Big5 the second byte of a character may be an ASCII
+	 *         letter.
+	 */
+	private static boolean isAsciiCompatible(byte[] raw) {
+		int start = RawParseUtils.encoding(raw, 0);
+		if (start < 0)
+			return true;
+		int end = RawParseUtils.nextLF(raw, start) - 1;
+		String encoding = RawParseUtils.decode(raw, start, end);
+		Boolean compatible = asciiCompatibleEncodings.get(encoding);
+		if (compatible == null) {
+			compatible = Boolean.valueOf(isAsciiCompatible(encoding));
+			asciiCompatibleEncodings.put(encoding, compatible);
+		}
+		return compatible.booleanValue();
+	}
+
+	private static boolean isAsciiCompatible(String encoding) {
+		Charset charset;
+		try {
+			charset = Charset.forName(encoding);
+		} catch (IllegalArgumentException e) {
+			// illegal or unsupported; JGit falls back to UTF-8
+			return true;
+		}
+		if (charset.equals(RawParseUtils.UTF8_CHARSET))
+			return true;
+		if (charset.newEncoder().maxBytesPerChar() != 1)
+			return false;
+		// single byte encodings like EBCDIC aren't based on ASCII
+		byte[] ascii = new byte[0x80];
+		for (int i = 0; i < ascii.length; i++)
+			ascii[i] = (byte) i;
+		String decoded = new String(ascii, charset);
+		if (decoded.length() != ascii.length)
+			return false;
+		for (int i = 0; i < ascii.length; i++)
+			if (decoded.charAt(i) != i)
+				return false;
+		return true;
+	}
+
+	private static boolean matchesRaw(Request request, Matcher matcher,
+			byte[] raw) {
+		if (request.findInComments) {
+			int start = RawParseUtils.commitMessage(raw, 0);
+			if (start >= 0 && matcher.matches(raw, start, raw.length))
+				return true;
+		}
+		if (request.findInAuthor
+				&& matchesPerson(matcher, raw, RawParseUtils.author(raw, 0)))
+			return true;
+		if (request.findInCommitter && matchesPerson(matcher, raw,
+				RawParseUtils.committer(raw, 0)))
+			return true;
+		return false;
+	}
+
+	// see RawParseUtils.parsePersonIdent
+	private static boolean matchesPerson(Matcher matcher, byte[] raw,
+			int nameStart) {
+		if (nameStart < 0)
+			return false;
+		int emailStart = RawParseUtils.nextLF(raw, nameStart, '<');
+		if (emailStart >= raw.length || raw[emailStart - 1] != '<')
+			return false;
+		int nameEnd = emailStart - 1;
+		while (nameEnd > nameStart && raw[nameEnd - 1] == ' ')
+			nameEnd--;
+		if (matcher.matches(raw, nameStart, nameEnd))
+			return true;
+		int emailEnd = RawParseUtils.nextLF(raw, emailStart, '>') - 1;
+		return matcher.matches(raw, emailStart, emailEnd);
+	}
+
+	private static boolean matchesDecoded(Request request, Matcher matcher,
+			SWTCommit revision) {
+		if (request.findInComments
+				&& matcher.matches(revision.getFullMessage()))
+			return true;
+		if (request.findInAuthor
+				&& matchesPerson(matcher, revision.getAuthorIdent()))
+			return true;
+		if (request.findInCommitter
+				&& matchesPerson(matcher, revision.getCommitterIdent()))
+			return true;
+		return false;
+	}
+
+	private static boolean matchesPerson(Matcher matcher, PersonIdent person) {
+		return person != null && (matcher.matches(person.getName())
+				|| matcher.matches(person.getEmailAddress()));
+	}
+
+	/**
+	 * Finds a pattern in raw commit bytes, ids and strings.
+	 */
+	static class Matcher {
+
+		private static final byte[] HEX = Constants
+				.encodeASCII("0123456789abcdef"); //$NON-NLS-1$
+
+		private final String pattern;
+
+		private final boolean ignoreCase;
+
+		// lower case if case is ignored, or null if the pattern isn't ASCII
+		private final byte[] bytes;
+
+		private final byte[] id = new byte[Constants.OBJECT_ID_LENGTH];
+
+		Matcher(String pattern, boolean ignoreCase) {
+			this.pattern = pattern;
+			this.ignoreCase = ignoreCase;
+			bytes = toBytes(pattern, ignoreCase);
+		}
+
+		private static byte[] toBytes(String pattern, boolean ignoreCase) {
+			byte[] result = new byte[pattern.length()];
+			for (int i = 0; i < result.length; i++) {
+				char c = pattern.charAt(i);
+				if (c >= 0x80)
+					return null;
+				result[i] = ignoreCase ? toLowerCase((byte) c) : (byte) c;
+			}
+			return result;
+		}
+
+		private static byte toLowerCase(byte b) {
+			return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+		}
+
+		/**
+		 * @return whether raw bytes can be matched; only ASCII patterns can
+		 *         be, and only in commits whose encoding stores ASCII
+		 *         characters as single ASCII bytes
+		 */
+		boolean isRaw() {
+			return bytes != null;
+		}
+
+		boolean matches(byte[] raw, int start, int end) {
+			int last = end - bytes.length;
+			outer: for (int i = start; i <= last; i++) {
+				for (int j = 0; j < bytes.length; j++) {
+					byte b = raw[i + j];
+					if (b != bytes[j]
+							&& (!ignoreCase || toLowerCase(b) != bytes[j]))
+						continue outer;
+				}
+				return true;
+			}
+			return false;
+		}
+
+		boolean matches(AnyObjectId objectId) {
+			if (bytes == null)
+				return false;
+			objectId.copyRawTo(id, 0);
+			int last = Constants.OBJECT_ID_STRING_LENGTH - bytes.length;
+			outer: for (int i = 0; i <= last; i++) {
+				for (int j = 0; j < bytes.length; j++)
+					if (hexDigit(i + j) != bytes[j])
+						continue outer;
+				return true;
+			}
+			return false;
+		}
+
+		private byte hexDigit(int index) {
+			int b = id[index >>> 1];
+			return HEX[(index & 1) == 0 ? (b >>> 4) & 0xf : b & 0xf];
+		}
+
+		boolean matches(String text) {
+			if (text == null)
+				return false;
+			int last = text.length() - pattern.length();
+			for (int i = 0; i <= last; i++)
+				if (text.regionMatches(ignoreCase, i, pattern, 0,
+						pattern.length()))
+					return true;
+			return false;
+		}
 	}
 }
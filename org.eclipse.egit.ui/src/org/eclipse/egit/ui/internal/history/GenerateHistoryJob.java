@@ -72,6 +72,8 @@ class GenerateHistoryJob extends Job {
 	@Override
 	protected IStatus run(final IProgressMonitor monitor) {
 		IStatus status = Status.OK_STATUS;
+		// every loaded commit stays in memory as a PlotCommit since lanes are
+		// assigned by the PlotCommitList; this limit is the only memory bound
 		int maxCommits = Activator.getDefault().getPreferenceStore()
 					.getInt(UIPreferences.HISTORY_MAX_NUM_COMMITS);
 		boolean incomplete = false;
@@ -161,11 +163,10 @@ private void updateUI(boolean incomplete) {
 				return;
 			if (forcedRedrawsAfterListIsCompleted == 1)
 				forcedRedrawsAfterListIsCompleted++;
-			final SWTCommit[] asArray = new SWTCommit[loadedCommits.size()];
-			loadedCommits.toArray(asArray);
-			page.showCommitList(this, loadedCommits, asArray, commitToShow, incomplete, highlightFlag);
+			int size = loadedCommits.size();
+			page.showCommitList(this, loadedCommits, size, commitToShow, incomplete, highlightFlag);
 			commitToShow = null;
-			lastUpdateCnt = loadedCommits.size();
+			lastUpdateCnt = size;
 		} finally {
 			if (trace)
 				GitTraceLocation.getTrace().traceExit(
@@ -1712,7 +1712,7 @@ public void run() {
 
 	@SuppressWarnings("boxing")
 	void showCommitList(final Job j, final SWTCommitList list,
-			final SWTCommit[] asArray, final RevCommit toSelect, final boolean incomplete, final RevFlag highlightFlag) {
+			final int size, final RevCommit toSelect, final boolean incomplete, final RevFlag highlightFlag) {
 		if (trace)
 			GitTraceLocation.getTrace().traceEntry(
 					GitTraceLocation.HISTORYVIEW.getLocation(),
@@ -1724,7 +1724,7 @@ void showCommitList(final Job j, final SWTCommitList list,
 			@Override
 			public void run() {
 				if (!graph.getControl().isDisposed() && job == j) {
-					graph.setInput(highlightFlag, list, asArray, input, true);
+					graph.setInput(highlightFlag, list, size, input, true);
 					if (toSelect != null)
 						graph.selectCommit(toSelect);
 					if (getFollowRenames())
@@ -1734,7 +1734,7 @@ public void run() {
 								GitTraceLocation.HISTORYVIEW.getLocation(),
 								"Setting input to table"); //$NON-NLS-1$
 					findToolbar.setInput(highlightFlag, graph.getTableView()
-							.getTable(), asArray);
+							.getTable(), list, size, input.getRepository());
 					if (incomplete)
 						setWarningText(UIText.GitHistoryPage_ListIncompleteWarningMessage);
 					else
@@ -1781,7 +1781,8 @@ void initAndStartRevWalk(boolean forceNewWalk) throws IllegalStateException {
 
 			AnyObjectId headId = resolveHead(db, true);
 			if (headId == null) {
-				graph.getTableView().setInput(new SWTCommit[0]);
+				graph.getTableView().setInput(null);
+				graph.getTableView().setItemCount(0);
 				currentHeadId = null;
 				return;
 			}
@@ -8,21 +8,31 @@
  *******************************************************************************/
 package org.eclipse.egit.ui.internal.history;
 
-import org.eclipse.jface.viewers.IStructuredContentProvider;
+import org.eclipse.jface.viewers.ILazyContentProvider;
+import org.eclipse.jface.viewers.TableViewer;
 import org.eclipse.jface.viewers.Viewer;
 
-class GraphContentProvider implements IStructuredContentProvider {
-	private SWTCommit[] list;
+/**
+ * Provides the rows of the commit table on demand straight from the
+ * {@link SWTCommitList}, so growing the list doesn't require copying it. The
+ * number of rows is set by the {@link CommitGraphTable}.
+ */
+class GraphContentProvider implements ILazyContentProvider {
+	private TableViewer viewer;
+
+	private SWTCommitList list;
 
 	@Override
 	public void inputChanged(final Viewer newViewer, final Object oldInput,
 			final Object newInput) {
-		list = (SWTCommit[]) newInput;
+		viewer = (TableViewer) newViewer;
+		list = (SWTCommitList) newInput;
 	}
 
 	@Override
-	public Object[] getElements(final Object inputElement) {
-		return list;
+	public void updateElement(int index) {
+		if (list != null)
+			viewer.replace(list.getCommit(index), index);
 	}
 
 	@Override
@@ -73,6 +73,19 @@ protected IStatus run(IProgressMonitor monitor) {
 			control.removeDisposeListener(this);
 	}
 
+	/**
+	 * Returns the commit at the given index. Unlike {@link #get(int)} this is
+	 * safe to call while another thread is filling the list.
+	 *
+	 * @param index
+	 * @return the commit
+	 */
+	SWTCommit getCommit(int index) {
+		synchronized (this) {
+			return get(index);
+		}
+	}
+
 	private void repackColors() {
 		availableColors.addAll(allColors);
 	}
@@ -11,12 +11,12 @@
 import static org.eclipse.jgit.lib.Repository.stripWorkDir;
 
 import java.util.Collection;
-import java.util.Set;
 
 import org.eclipse.core.resources.IResource;
 import org.eclipse.egit.core.internal.indexdiff.IndexDiffCache;
 import org.eclipse.egit.core.internal.indexdiff.IndexDiffCacheEntry;
 import org.eclipse.egit.core.internal.indexdiff.IndexDiffData;
+import org.eclipse.egit.core.internal.indexdiff.IndexDiffData.Kind;
 import org.eclipse.egit.core.op.CreatePatchOperation;
 import org.eclipse.egit.ui.internal.UIText;
 import org.eclipse.egit.ui.internal.history.GitCreatePatchWizard;
@@ -119,16 +119,10 @@ private boolean isWorkingTreeClean() {
 			}
 			IndexDiffData diffData = diffCacheEntry.getIndexDiff();
 			if (diffData != null) {
-				Set<String> modified = diffData.getModified();
-				Set<String> untracked = diffData.getUntracked();
-				Set<String> missing = diffData.getMissing();
 				for (IResource resource : resources) {
 					String repoRelativePath = makeRepoRelative(resource);
-					if (containsPrefix(modified, repoRelativePath))
-						return false;
-					if (containsPrefix(untracked, repoRelativePath))
-						return false;
-					if (containsPrefix(missing, repoRelativePath))
+					if (diffData.hasEntryUnder(repoRelativePath, Kind.MODIFIED,
+							Kind.UNTRACKED, Kind.MISSING))
 						return false;
 				}
 			}
@@ -141,13 +135,6 @@ private String makeRepoRelative(IResource res) {
 				.toFile());
 	}
 
-	private boolean containsPrefix(Set<String> collection, String prefix) {
-		for (String path : collection)
-			if (path.startsWith(prefix))
-				return true;
-		return false;
-	}
-
 	private Shell getShell() {
 		return getShell(part);
 	}
@@ -28,7 +28,6 @@
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.util.HashSet;
 import java.util.Set;
 
 import org.eclipse.core.resources.IContainer;
@@ -38,6 +37,7 @@
 import org.eclipse.egit.core.Activator;
 import org.eclipse.egit.core.internal.indexdiff.IndexDiffCacheEntry;
 import org.eclipse.egit.core.internal.indexdiff.IndexDiffData;
+import org.eclipse.egit.core.internal.indexdiff.IndexDiffData.Kind;
 import org.eclipse.egit.core.internal.util.ResourceUtil;
 import org.eclipse.egit.core.project.RepositoryMapping;
 import org.eclipse.egit.ui.internal.resources.IResourceState.StagingState;
@@ -259,7 +259,7 @@ private void extractFileProperties(@NonNull IndexDiffData indexDiffData,
 			@NonNull String repoRelativePath, @NonNull ResourceState state) {
 		Set<String> ignoredFiles = indexDiffData.getIgnoredNotInIndex();
 		boolean ignored = ignoredFiles.contains(repoRelativePath)
-				|| containsPrefixPath(ignoredFiles, repoRelativePath);
+				|| indexDiffData.hasParentEntry(repoRelativePath, Kind.IGNORED);
 		state.setIgnored(ignored);
 		Set<String> untracked = indexDiffData.getUntracked();
 		state.setTracked(!ignored && !untracked.contains(repoRelativePath));
@@ -297,60 +297,27 @@ private void extractContainerProperties(
 			@NonNull IndexDiffData indexDiffData,
 			@NonNull String repoRelativePath, @NonNull FileSystemItem directory,
 			@NonNull ResourceState state) {
-		Set<String> ignoredFiles = indexDiffData.getIgnoredNotInIndex();
-		Set<String> untrackedFolders = indexDiffData.getUntrackedFolders();
-		boolean ignored = containsPrefixPath(ignoredFiles, repoRelativePath)
-				|| !directory.hasContainerAnyFiles();
+		boolean ignored = indexDiffData.hasParentEntry(repoRelativePath,
+				Kind.IGNORED) || !directory.hasContainerAnyFiles();
 		state.setIgnored(ignored);
-		state.setTracked(!ignored
-				&& !containsPrefixPath(untrackedFolders, repoRelativePath));
+		state.setTracked(!ignored && !indexDiffData
+				.hasParentEntry(repoRelativePath, Kind.UNTRACKED_FOLDERS));
 
 		// containers are marked as staged whenever file was added, removed or
 		// changed
-		Set<String> changed = new HashSet<String>(indexDiffData.getChanged());
-		changed.addAll(indexDiffData.getAdded());
-		changed.addAll(indexDiffData.getRemoved());
-		if (containsPrefix(changed, repoRelativePath)) {
+		if (indexDiffData.hasEntryUnder(repoRelativePath, Kind.CHANGED,
+				Kind.ADDED, Kind.REMOVED)) {
 			state.setStagingState(StagingState.MODIFIED);
 		} else {
 			state.setStagingState(StagingState.NOT_STAGED);
 		}
 		// conflicting
-		Set<String> conflicting = indexDiffData.getConflicting();
-		state.setConflicts(containsPrefix(conflicting, repoRelativePath));
+		state.setConflicts(indexDiffData.hasEntryUnder(repoRelativePath,
+				Kind.CONFLICTING));
 
 		// locally modified / untracked
-		Set<String> modified = indexDiffData.getModified();
-		Set<String> untracked = indexDiffData.getUntracked();
-		Set<String> missing = indexDiffData.getMissing();
-		state.setDirty(containsPrefix(modified, repoRelativePath)
-				|| containsPrefix(untracked, repoRelativePath)
-				|| containsPrefix(missing, repoRelativePath));
-	}
-
-	private boolean containsPrefix(Set<String> collection, String prefix) {
-		// when prefix is empty we are handling repository root, therefore we
-		// should return true whenever collection isn't empty
-		if (prefix.length() == 1 && !collection.isEmpty())
-			return true;
-
-		for (String path : collection)
-			if (path.startsWith(prefix))
-				return true;
-		return false;
-	}
-
-	private boolean containsPrefixPath(Set<String> collection, String path) {
-		for (String entry : collection) {
-			String entryPath;
-			if (entry.endsWith("/")) //$NON-NLS-1$
-				entryPath = entry;
-			else
-				entryPath = entry + "/"; //$NON-NLS-1$
-			if (path.startsWith(entryPath))
-				return true;
-		}
-		return false;
+		state.setDirty(indexDiffData.hasEntryUnder(repoRelativePath,
+				Kind.MODIFIED, Kind.UNTRACKED, Kind.MISSING));
 	}
 
 	private interface FileSystemItem {
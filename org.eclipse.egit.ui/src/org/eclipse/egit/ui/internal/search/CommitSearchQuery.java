@@ -13,8 +13,17 @@
 import java.io.File;
 import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -22,6 +31,9 @@
 import org.eclipse.core.runtime.OperationCanceledException;
 import org.eclipse.core.runtime.Status;
 import org.eclipse.egit.core.Activator;
+import org.eclipse.egit.core.internal.commitindex.CommitIndex;
+import org.eclipse.egit.core.internal.commitindex.CommitIndexCache;
+import org.eclipse.egit.core.internal.job.WorkerPool;
 import org.eclipse.egit.ui.internal.UIText;
 import org.eclipse.egit.ui.internal.commit.RepositoryCommit;
 import org.eclipse.jgit.lib.Constants;
@@ -32,6 +44,7 @@
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevTree;
 import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.util.RawParseUtils;
 import org.eclipse.search.ui.ISearchQuery;
 import org.eclipse.search.ui.ISearchResult;
 
@@ -83,7 +96,68 @@ private class MessageMatcher extends SearchMatcher {
 
 		@Override
 		public boolean matches(Pattern pattern, RevCommit commit) {
-			return matches(pattern, commit.getFullMessage());
+			byte[] raw = commit.getRawBuffer();
+			int start = RawParseUtils.commitMessage(raw, 0);
+			if (start < 0)
+				return false;
+			CharSequence message = RawMessage.create(raw, start);
+			if (message == null)
+				// non-ASCII message, needs decoding
+				return matches(pattern, commit.getFullMessage());
+			return message.length() > 0 && pattern.matcher(message).find();
+		}
+	}
+
+	/**
+	 * Character view of a pure ASCII range of a raw commit buffer. ASCII is
+	 * the same in all encodings a commit message may use, so the bytes can be
+	 * matched without decoding the message into a new string.
+	 */
+	private static class RawMessage implements CharSequence {
+
+		private final byte[] raw;
+
+		private final int start;
+
+		private final int end;
+
+		private RawMessage(byte[] raw, int start, int end) {
+			this.raw = raw;
+			this.start = start;
+			this.end = end;
+		}
+
+		/**
+		 * @param raw
+		 * @param start
+		 * @return a view of the bytes from {@code start} to the end of the
+		 *         buffer, or null if they are not all ASCII
+		 */
+		static RawMessage create(byte[] raw, int start) {
+			for (int i = start; i < raw.length; i++)
+				if (raw[i] < 0)
+					return null;
+			return new RawMessage(raw, start, raw.length);
+		}
+
+		@Override
+		public int length() {
+			return end - start;
+		}
+
+		@Override
+		public char charAt(int index) {
+			return (char) raw[start + index];
+		}
+
+		@Override
+		public CharSequence subSequence(int from, int to) {
+			return new RawMessage(raw, start + from, start + to);
+		}
+
+		@Override
+		public String toString() {
+			return RawParseUtils.decode(raw, start, end);
 		}
 	}
 
@@ -123,6 +197,8 @@ public boolean matches(Pattern pattern, RevCommit commit) {
 
 	private List<SearchMatcher> matchers = new LinkedList<SearchMatcher>();
 
+	private boolean useIndex;
+
 	/**
 	 * Create git search query
 	 *
@@ -143,6 +219,11 @@ public CommitSearchQuery(CommitSearchSettings settings) {
 			matchers.add(new TreeMatcher());
 		if (this.settings.isMatchParents())
 			matchers.add(new ParentMatcher());
+		// the index knows the texts of commits and their ids, but not their
+		// trees and parents, and can't narrow down regular expressions
+		useIndex = !this.settings.isRegExSearch()
+				&& !this.settings.isMatchTree()
+				&& !this.settings.isMatchParents();
 	}
 
 	/**
@@ -167,40 +248,100 @@ private Repository getRepository(String name) throws IOException {
 	 * @see org.eclipse.search.ui.ISearchQuery#run(org.eclipse.core.runtime.IProgressMonitor)
 	 */
 	@Override
-	public IStatus run(IProgressMonitor monitor)
+	public IStatus run(final IProgressMonitor monitor)
+			throws OperationCanceledException {
+		return run(monitor, WorkerPool.getExecutor());
+	}
+
+	/**
+	 * Runs the query, walking the repositories on the given executor
+	 *
+	 * @param monitor
+	 * @param executor
+	 * @return the status of the search
+	 * @throws OperationCanceledException
+	 */
+	IStatus run(final IProgressMonitor monitor, Executor executor)
 			throws OperationCanceledException {
 		this.result.removeAll();
 
-		Pattern pattern = PatternUtils.createPattern(
+		final Pattern pattern = PatternUtils.createPattern(
 				this.settings.getTextPattern(),
 				this.settings.isCaseSensitive(), this.settings.isRegExSearch());
 		List<String> paths = settings.getRepositories();
+		if (paths.size() == 1)
+			monitor.beginTask(MessageFormat.format(
+					UIText.CommitSearchQuery_TaskSearchCommits,
+					new File(paths.get(0)).getParentFile().getName()),
+					IProgressMonitor.UNKNOWN);
+		else
+			monitor.beginTask(MessageFormat.format(
+					UIText.CommitSearchQuery_TaskSearchRepositories,
+					Integer.valueOf(paths.size())), paths.size());
+
+		// repositories are walked concurrently; matches are added to the
+		// result as soon as they are found, and the result notifies the view
+		CompletionService<Void> completion = new ExecutorCompletionService<Void>(
+				executor);
+		List<Future<Void>> futures = new ArrayList<Future<Void>>(paths.size());
+		for (final String path : paths) {
+			futures.add(completion.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws IOException {
+					Repository repo = getRepository(path);
+					if (repo != null)
+						walkRepository(repo, pattern, monitor);
+					return null;
+				}
+			}));
+		}
+		Throwable error = null;
 		try {
-			for (String path : paths) {
-				if (monitor.isCanceled())
-					throw new OperationCanceledException();
-
-				Repository repo = getRepository(path);
-				if (repo == null)
-					continue;
-
-				monitor.setTaskName(MessageFormat.format(
-						UIText.CommitSearchQuery_TaskSearchCommits, repo
-								.getDirectory().getParentFile().getName()));
-				walkRepository(repo, pattern, monitor);
+			for (int i = 0; i < futures.size(); i++) {
+				try {
+					waitFor(completion, monitor).get();
+				} catch (ExecutionException e) {
+					// keep searching the other repositories
+					Throwable cause = e.getCause();
+					if (cause instanceof OperationCanceledException)
+						throw (OperationCanceledException) cause;
+					if (error == null)
+						error = cause;
+				}
+				monitor.worked(1);
 			}
-		} catch (IOException e) {
-			org.eclipse.egit.ui.Activator.handleError(
-					"Error searching commits", e, true); //$NON-NLS-1$
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OperationCanceledException();
+		} finally {
+			// running walks stop by checking the monitor, the others don't
+			// need to start
+			for (Future<Void> future : futures)
+				future.cancel(false);
+			monitor.done();
 		}
+		if (error != null)
+			org.eclipse.egit.ui.Activator.handleError(
+					"Error searching commits", error, true); //$NON-NLS-1$
 		return Status.OK_STATUS;
 	}
 
+	private static Future<Void> waitFor(CompletionService<Void> completion,
+			IProgressMonitor monitor) throws InterruptedException {
+		for (;;) {
+			if (monitor.isCanceled())
+				throw new OperationCanceledException();
+			Future<Void> done = completion.poll(100, TimeUnit.MILLISECONDS);
+			if (done != null)
+				return done;
+		}
+	}
+
 	private void walkRepository(Repository repository, Pattern pattern,
 			IProgressMonitor monitor) throws IOException {
 		try (RevWalk walk = new RevWalk(repository)) {
 			walk.setRetainBody(true);
-			List<RevCommit> commits = new LinkedList<RevCommit>();
+			List<RevCommit> commits = new ArrayList<RevCommit>();
 			if (this.settings.isAllBranches()) {
 				for (Ref ref : repository.getRefDatabase()
 						.getRefs(Constants.R_HEADS).values())
@@ -216,11 +357,26 @@ private void walkRepository(Repository repository, Pattern pattern,
 					commits.add(walk.parseCommit(headCommit));
 			}
 
+			CommitIndex index = null;
+			BitSet candidates = null;
+			if (useIndex) {
+				index = CommitIndexCache.get(repository);
+				if (index != null)
+					candidates = index.findCandidates(getPattern());
+			}
+
 			if (!commits.isEmpty()) {
 				walk.markStart(commits);
 				for (RevCommit commit : walk) {
 					if (monitor.isCanceled())
 						throw new OperationCanceledException();
+					if (candidates != null) {
+						int ordinal = index.find(commit);
+						if (ordinal >= 0 && !candidates.get(ordinal)) {
+							commit.disposeBody();
+							continue;
+						}
+					}
 					for (SearchMatcher matcher : this.matchers)
 						if (matcher.matches(pattern, commit)) {
 							result.addResult(new RepositoryCommit(repository,
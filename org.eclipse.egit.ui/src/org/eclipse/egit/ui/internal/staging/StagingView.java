@@ -53,6 +53,7 @@
 import org.eclipse.egit.core.internal.indexdiff.IndexDiffCacheEntry;
 import org.eclipse.egit.core.internal.indexdiff.IndexDiffChangedListener;
 import org.eclipse.egit.core.internal.indexdiff.IndexDiffData;
+import org.eclipse.egit.core.internal.indexdiff.IndexDiffScheduler;
 import org.eclipse.egit.core.internal.job.RuleUtil;
 import org.eclipse.egit.core.op.CommitOperation;
 import org.eclipse.egit.core.project.RepositoryMapping;
@@ -2687,6 +2688,27 @@ private boolean isValidRepo(final Repository repository) {
 				&& repository.getWorkTree().exists();
 	}
 
+	/**
+	 * Sets the repository shown by this view, and lets the index diff
+	 * scheduler prefer it over repositories nobody is looking at.
+	 *
+	 * @param repository
+	 */
+	private void setCurrentRepository(@Nullable Repository repository) {
+		Repository previous = currentRepository;
+		currentRepository = repository;
+		if (previous == repository) {
+			return;
+		}
+		IndexDiffScheduler scheduler = IndexDiffScheduler.getInstance();
+		if (previous != null) {
+			scheduler.removeVisibleRepository(previous);
+		}
+		if (repository != null) {
+			scheduler.addVisibleRepository(repository);
+		}
+	}
+
 	/**
 	 * Clear the view's state.
 	 * <p>
@@ -2696,7 +2718,7 @@ private boolean isValidRepo(final Repository repository) {
 	 */
 	private void clearRepository(@Nullable Repository repository) {
 		saveCommitMessageComponentState();
-		currentRepository = null;
+		setCurrentRepository(null);
 		StagingViewUpdate update = new StagingViewUpdate(null, null, null);
 		unstagedViewer.setInput(update);
 		stagedViewer.setInput(update);
@@ -2786,7 +2808,7 @@ public void run() {
 		}
 
 		final boolean repositoryChanged = currentRepository != repository;
-		currentRepository = repository;
+		setCurrentRepository(repository);
 
 		asyncExec(new Runnable() {
 
@@ -3281,6 +3303,7 @@ public void dispose() {
 		if (cacheEntry != null) {
 			cacheEntry.removeIndexDiffChangedListener(myIndexDiffListener);
 		}
+		setCurrentRepository(null);
 
 		if (undoRedoActionGroup != null) {
 			undoRedoActionGroup.dispose();
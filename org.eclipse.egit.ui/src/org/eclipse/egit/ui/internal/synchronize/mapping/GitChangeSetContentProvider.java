@@ -20,6 +20,7 @@
 import org.eclipse.core.runtime.NullProgressMonitor;
 import org.eclipse.egit.core.Activator;
 import org.eclipse.egit.core.AdapterUtils;
+import org.eclipse.egit.core.synchronize.GitCommitsModelCache.Change;
 import org.eclipse.egit.core.synchronize.GitResourceVariantTreeSubscriber;
 import org.eclipse.egit.core.synchronize.GitSubscriberMergeContext;
 import org.eclipse.egit.core.synchronize.GitSubscriberResourceMappingContext;
@@ -54,6 +55,13 @@ public boolean hasChildren(Object element) {
 		if (element instanceof GitModelBlob)
 			return false;
 
+		// don't load the changes before the commit is expanded
+		if (element instanceof GitModelCommit) {
+			Map<String, Change> changes = ((GitModelCommit) element)
+					.getCachedCommitObj().peekChildren();
+			return changes == null || !changes.isEmpty();
+		}
+
 		if (element instanceof GitModelObjectContainer)
 			return ((GitModelObjectContainer) element).getChildren().length > 0;
 
@@ -8,6 +8,10 @@
  *******************************************************************************/
 package org.eclipse.egit.ui.internal.synchronize.model;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
 import org.eclipse.compare.structuremergeviewer.Differencer;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.runtime.IPath;
@@ -24,13 +28,22 @@
 public class GitModelCommit extends GitModelObjectContainer implements
 		HasProjects {
 
+	/**
+	 * Maximum number of commits whose children are kept; the children of the
+	 * least recently used ones are loaded again when needed
+	 */
+	private static final int MAX_LOADED_COMMITS = 50;
+
+	/** Commits with loaded children, least recently used first */
+	private static final Deque<GitModelCommit> loadedCommits = new ArrayDeque<GitModelCommit>();
+
 	private final Commit commit;
 
 	private final Repository repo;
 
 	private final IProject[] projects;
 
-	private GitModelObject[] children;
+	private volatile GitModelObject[] children;
 
 	/**
 	 * @param parent
@@ -78,9 +91,45 @@ public String getName() {
 
 	@Override
 	public GitModelObject[] getChildren() {
-		if (children == null)
-			children = createChildren();
-		return children;
+		GitModelObject[] result = children;
+		if (result == null) {
+			result = createChildren();
+			children = result;
+		}
+		markUsed(this);
+		return result;
+	}
+
+	private static void markUsed(GitModelCommit commit) {
+		GitModelCommit evicted = null;
+		synchronized (loadedCommits) {
+			remove(commit);
+			loadedCommits.addLast(commit);
+			if (loadedCommits.size() > MAX_LOADED_COMMITS)
+				evicted = loadedCommits.removeFirst();
+		}
+		if (evicted != null)
+			evicted.unload();
+	}
+
+	private static void remove(GitModelCommit commit) {
+		// equal commits of different synchronizations are different entries
+		for (Iterator<GitModelCommit> it = loadedCommits.iterator(); it
+				.hasNext();) {
+			if (it.next() == commit) {
+				it.remove();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Drops the children without disposing them; a viewer may still show
+	 * them.
+	 */
+	private void unload() {
+		children = null;
+		commit.releaseChildren();
 	}
 
 	private GitModelObject[] createChildren() {
@@ -116,8 +165,12 @@ public Commit getCachedCommitObj() {
 
 	@Override
 	public void dispose() {
-		if (children != null) {
-			for (GitModelObject child : children)
+		synchronized (loadedCommits) {
+			remove(this);
+		}
+		GitModelObject[] oldChildren = children;
+		if (oldChildren != null) {
+			for (GitModelObject child : oldChildren)
 				child.dispose();
 			children = null;
 		}
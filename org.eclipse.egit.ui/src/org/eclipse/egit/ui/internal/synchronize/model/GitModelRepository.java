@@ -37,6 +37,12 @@
  */
 public class GitModelRepository extends GitModelObjectContainer implements HasProjects {
 
+	/**
+	 * Number of newest commits whose changes are computed in the background
+	 * as soon as the commits are listed
+	 */
+	private static final int PREFETCHED_COMMITS = 20;
+
 	private IPath location;
 
 	private final GitSynchronizeData gsd;
@@ -63,8 +69,10 @@ public GitModelObject[] getChildren() {
 		List<Commit> commitCache;
 		if (srcRevCommit != null && dstRevCommit != null)
 			try {
+				// warm up the changes of the commits visible first, the others
+				// are only loaded when they get expanded
 				commitCache = GitCommitsModelCache.build(repo, srcRevCommit,
-						dstRevCommit, pathFilter);
+						dstRevCommit, pathFilter, PREFETCHED_COMMITS);
 			} catch (IOException e) {
 				Activator.logError(e.getMessage(), e);
 				commitCache = null;